@@ -0,0 +1,91 @@
+package com.pplflw.challenge.storage;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contention of concurrent state changes in storages filled with one million employees:
+ * - {@code updateIfState}: conditional changes of random employees, which only contend on a shared stripe
+ * - {@code updateEmployee}: the same changes saved as whole employees, the baseline
+ * - {@code hotEmployee}: conditional changes of one employee by all the threads, repeated until one succeeds
+ * <p>
+ * Run with {@code gradle :common:jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(4)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class EmployeeStateUpdateBenchmark {
+
+    private static final int EMPLOYEES = 1_000_000;
+
+    private static final EmployeeState[] STATES = EmployeeState.values();
+
+    @Param({"in-memory", "compact", "compact-off"})
+    private String storageType;
+
+    private EmployeeStorage storage;
+
+    @Setup
+    public void setUp() {
+
+        switch (storageType) {
+            case "compact":
+                storage = new CompactEmployeeStorage(EMPLOYEES, false);
+                break;
+            case "compact-off":
+                storage = new CompactEmployeeStorage(EMPLOYEES, true);
+                break;
+            default:
+                storage = new InMemoryEmployeeStorage();
+        }
+
+        for (long id = 0; id < EMPLOYEES; id++) {
+            storage.updateEmployee(EmployeeStorageFootprint.createEmployee(id));
+        }
+    }
+
+    @Benchmark
+    public Optional<Employee> updateIfState() {
+        return changeState(ThreadLocalRandom.current().nextLong(EMPLOYEES));
+    }
+
+    @Benchmark
+    public Employee updateEmployee() {
+
+        Employee employee = storage.getEmployee(ThreadLocalRandom.current().nextLong(EMPLOYEES)).orElseThrow();
+
+        return storage.updateEmployee(employee.withState(next(employee.getState())));
+    }
+
+    @Benchmark
+    public Employee hotEmployee() {
+
+        Optional<Employee> employee;
+
+        do {
+            employee = changeState(0L);
+        } while (employee.isEmpty());
+
+        return employee.get();
+    }
+
+    private Optional<Employee> changeState(long id) {
+
+        EmployeeState state = storage.getEmployee(id).orElseThrow().getState();
+
+        return storage.updateIfState(id, state, next(state));
+    }
+
+    private static EmployeeState next(EmployeeState state) {
+        return STATES[(state.ordinal() + 1) % STATES.length];
+    }
+}
@@ -0,0 +1,77 @@
+package com.pplflw.challenge.storage;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares lookups and state updates of {@link InMemoryEmployeeStorage} and {@link CompactEmployeeStorage}
+ * filled with one million employees. {@code getName} forces the lazy decoding of the compact storage's strings.
+ * See {@link EmployeeStorageFootprint} for the memory side of the comparison.
+ * <p>
+ * Run with {@code gradle :common:jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(4)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class EmployeeStorageBenchmark {
+
+    private static final int EMPLOYEES = 1_000_000;
+
+    @Param({"in-memory", "compact", "compact-off"})
+    private String storageType;
+
+    private EmployeeStorage storage;
+
+    @Setup
+    public void setUp() {
+
+        switch (storageType) {
+            case "compact":
+                storage = new CompactEmployeeStorage(EMPLOYEES, false);
+                break;
+            case "compact-off":
+                storage = new CompactEmployeeStorage(EMPLOYEES, true);
+                break;
+            default:
+                storage = new InMemoryEmployeeStorage();
+        }
+
+        for (long id = 0; id < EMPLOYEES; id++) {
+            storage.updateEmployee(EmployeeStorageFootprint.createEmployee(id));
+        }
+    }
+
+    @Benchmark
+    public EmployeeState getState() {
+        return storage.getEmployee(randomId()).orElseThrow().getState();
+    }
+
+    @Benchmark
+    public String getName() {
+        return storage.getEmployee(randomId()).orElseThrow().getName();
+    }
+
+    @Benchmark
+    public Employee updateState() {
+
+        Employee employee = storage.getEmployee(randomId()).orElseThrow();
+
+        return storage.updateEmployee(new Employee(employee.getId(),
+                EmployeeState.ACTIVE,
+                employee.getName(),
+                employee.getContractInfo(),
+                employee.getAge()));
+    }
+
+    private static long randomId() {
+        return ThreadLocalRandom.current().nextLong(EMPLOYEES);
+    }
+}
@@ -0,0 +1,82 @@
+package com.pplflw.challenge.storage;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.statemachine.EmployeeState;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+
+/**
+ * Prints the memory taken by {@link InMemoryEmployeeStorage} and {@link CompactEmployeeStorage}
+ * (heap and direct) filled with the given numbers of employees.
+ * Footprint is measured as the growth of used heap plus direct buffer memory after full GCs,
+ * so run it with a heap big enough for the largest in-memory storage, e.g.
+ * {@code java -Xmx6g -cp common/build/libs/common-jmh.jar com.pplflw.challenge.storage.EmployeeStorageFootprint 1000000 10000000}
+ * after {@code gradle :common:jmhJar}.
+ */
+public class EmployeeStorageFootprint {
+
+    public static void main(String[] args) {
+
+        String[] counts = args.length == 0 ? new String[]{"1000000", "10000000"} : args;
+
+        System.out.printf("%-12s %-10s %12s %14s%n", "storage", "employees", "total, MB", "per entry, B");
+
+        for (String count : counts) {
+
+            int employees = Integer.parseInt(count);
+
+            measure("in-memory", employees, InMemoryEmployeeStorage::new);
+            measure("compact", employees, () -> new CompactEmployeeStorage(employees, false));
+            measure("compact-off", employees, () -> new CompactEmployeeStorage(employees, true));
+        }
+    }
+
+    private static void measure(String name, int employees, Supplier<EmployeeStorage> storageSupplier) {
+
+        long before = usedMemory();
+
+        EmployeeStorage storage = storageSupplier.get();
+
+        for (long id = 0; id < employees; id++) {
+            storage.updateEmployee(createEmployee(id));
+        }
+
+        long footprint = usedMemory() - before;
+
+        System.out.printf("%-12s %-10d %12d %14d%n", name, employees, footprint >> 20, footprint / employees);
+
+        // keep the storage reachable until it has been measured
+        if (storage.getEmployee(0L).isEmpty()) {
+            throw new IllegalStateException("Employee 0 is missing");
+        }
+    }
+
+    /**
+     * Typical employee: sequential id, ~15 characters name, ~30 characters contract info.
+     */
+    static Employee createEmployee(long id) {
+        return new Employee(id,
+                EmployeeState.values()[(int) (id & 3)],
+                "Employee #" + id,
+                "Full-time contract, office " + (id % 100),
+                20 + (int) (id % 45));
+    }
+
+    private static long usedMemory() {
+
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+
+        long direct = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> "direct".equals(pool.getName()))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+
+        return runtime.totalMemory() - runtime.freeMemory() + direct;
+    }
+}
@@ -0,0 +1,173 @@
+package com.pplflw.challenge.storage;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks of {@link MappedEmployeeStorage}:
+ * - restart time with one million employees after a clean close and after a crash, which rebuilds the index
+ * - write throughput of state updates compared with {@link InMemoryEmployeeStorage} and {@link CompactEmployeeStorage}
+ * <p>
+ * Run with {@code gradle :common:jmh}.
+ */
+public class MappedEmployeeStorageBenchmark {
+
+    private static final int EMPLOYEES = 1_000_000;
+
+    private static final Duration MAINTENANCE_INTERVAL = Duration.ofSeconds(1);
+
+    @State(Scope.Benchmark)
+    public static class Restart {
+
+        private Path clean;
+
+        private Path crashSnapshot;
+
+        private Path crashed;
+
+        private MappedEmployeeStorage storage;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+
+            clean = Files.createTempDirectory("employees-clean");
+            crashSnapshot = Files.createTempDirectory("employees-crash");
+
+            try (MappedEmployeeStorage storage = new MappedEmployeeStorage(clean, EMPLOYEES, MAINTENANCE_INTERVAL, 0.5)) {
+
+                for (long id = 0; id < EMPLOYEES; id++) {
+                    storage.updateEmployee(EmployeeStorageFootprint.createEmployee(id));
+                }
+
+                storage.flush();
+
+                // the index of a running storage is not marked clean
+                copy(clean, crashSnapshot);
+            }
+        }
+
+        @Setup(Level.Invocation)
+        public void crash() throws IOException {
+            crashed = Files.createTempDirectory("employees-crashed");
+            copy(crashSnapshot, crashed);
+        }
+
+        @TearDown(Level.Invocation)
+        public void closeStorage() {
+            storage.close();
+            delete(crashed);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            delete(clean);
+            delete(crashSnapshot);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Writes {
+
+        @Param({"in-memory", "compact", "mapped"})
+        private String storageType;
+
+        private Path directory;
+
+        private EmployeeStorage storage;
+
+        @Setup
+        public void setUp() throws IOException {
+
+            directory = Files.createTempDirectory("employees-writes");
+
+            switch (storageType) {
+                case "compact":
+                    storage = new CompactEmployeeStorage(EMPLOYEES, false);
+                    break;
+                case "mapped":
+                    storage = new MappedEmployeeStorage(directory, EMPLOYEES, MAINTENANCE_INTERVAL, 0.5);
+                    break;
+                default:
+                    storage = new InMemoryEmployeeStorage();
+            }
+
+            for (long id = 0; id < EMPLOYEES; id++) {
+                storage.updateEmployee(EmployeeStorageFootprint.createEmployee(id));
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            if (storage instanceof MappedEmployeeStorage) {
+                ((MappedEmployeeStorage) storage).close();
+            }
+            delete(directory);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    @Fork(1)
+    public int restartClean(Restart restart) {
+        restart.storage = new MappedEmployeeStorage(restart.clean, EMPLOYEES, MAINTENANCE_INTERVAL, 0.5);
+        return restart.storage.size();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    @Fork(1)
+    public int restartAfterCrash(Restart restart) {
+        restart.storage = new MappedEmployeeStorage(restart.crashed, EMPLOYEES, MAINTENANCE_INTERVAL, 0.5);
+        return restart.storage.size();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(4)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+    public Employee updateState(Writes writes) {
+
+        long id = ThreadLocalRandom.current().nextLong(EMPLOYEES);
+
+        return writes.storage.updateEmployee(new Employee(id,
+                EmployeeState.values()[(int) (id & 3)],
+                "Employee #" + id,
+                "Full-time contract, office " + (id % 100),
+                30));
+    }
+
+    private static void copy(Path source, Path target) throws IOException {
+        for (String file : new String[]{MappedEmployeeStorage.LOG_FILE, MappedEmployeeStorage.INDEX_FILE}) {
+            Files.copy(source.resolve(file), target.resolve(file), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void delete(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package com.pplflw.challenge.codec;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.dto.EmployeeAddEventDto;
+import com.pplflw.challenge.dto.EmployeeChangeStateEventDto;
+import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import com.pplflw.challenge.statemachine.EmployeeState;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Compact binary encoding of the employee events: {@link EmployeeAddEventDto}, {@link EmployeeChangeStateEventDto}
+ * and {@link EmployeeStatusEventDto}.
+ * Layout: event type(byte), then the event's fields. Every object starts with a byte of presence flags
+ * of its nullable fields, absent fields are not written. Enums are written as ordinals and lengths as varints,
+ * signed numbers as zigzag varints and strings as their UTF-8 length followed by the UTF-8 bytes.
+ * <p>
+ * Events are encoded into a per-thread buffer, strings are written into it char by char,
+ * so encoding allocates the resulting array only.
+ */
+public final class EmployeeEventCodec {
+
+    private static final byte ADD_EVENT = 1;
+
+    private static final byte CHANGE_STATE_EVENT = 2;
+
+    private static final byte STATUS_EVENT = 3;
+
+    private static final EmployeeState[] STATES = EmployeeState.values();
+
+    private static final EmployeeEvent[] EVENTS = EmployeeEvent.values();
+
+    /**
+     * Larger buffers, grown by huge events, are not kept for the next event.
+     */
+    private static final int MAX_POOLED_BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<Writer> WRITERS = ThreadLocal.withInitial(() -> new Writer(256));
+
+    private EmployeeEventCodec() {
+    }
+
+    /**
+     * @param event event
+     * @return true if the event can be encoded
+     */
+    public static boolean supports(Object event) {
+        return event instanceof EmployeeAddEventDto
+                || event instanceof EmployeeChangeStateEventDto
+                || event instanceof EmployeeStatusEventDto;
+    }
+
+    /**
+     * @param event event to encode
+     * @return encoded event
+     * @throws IllegalArgumentException if the event is not {@link #supports(Object) supported}
+     */
+    public static byte[] encode(Object event) {
+
+        Writer writer = WRITERS.get();
+
+        writer.position = 0;
+
+        if (event instanceof EmployeeAddEventDto) {
+
+            EmployeeAddEventDto addEvent = (EmployeeAddEventDto) event;
+
+            writer.writeByte(ADD_EVENT);
+            writer.writeByte(flag(addEvent.getEmployee() != null, 0));
+            writer.writeEmployee(addEvent.getEmployee());
+
+        } else if (event instanceof EmployeeChangeStateEventDto) {
+
+            EmployeeChangeStateEventDto changeStateEvent = (EmployeeChangeStateEventDto) event;
+
+            writer.writeByte(CHANGE_STATE_EVENT);
+            writer.writeByte(flag(changeStateEvent.getEmployeeId() != null, 0)
+                    | flag(changeStateEvent.getEvent() != null, 1));
+            writer.writeSignedVarLong(changeStateEvent.getEmployeeId());
+            writer.writeOrdinal(changeStateEvent.getEvent());
+
+        } else if (event instanceof EmployeeStatusEventDto) {
+
+            EmployeeStatusEventDto statusEvent = (EmployeeStatusEventDto) event;
+
+            writer.writeByte(STATUS_EVENT);
+            writer.writeByte(flag(statusEvent.getEvent() != null, 0)
+                    | flag(statusEvent.getResult() != null, 1)
+                    | flag(statusEvent.getEmployee() != null, 2));
+            writer.writeOrdinal(statusEvent.getEvent());
+            writer.writeString(statusEvent.getResult());
+            writer.writeEmployee(statusEvent.getEmployee());
+
+        } else {
+            throw new IllegalArgumentException("Cannot encode " + (event == null ? null : event.getClass().getName()));
+        }
+
+        byte[] encoded = Arrays.copyOf(writer.buffer, writer.position);
+
+        if (writer.buffer.length > MAX_POOLED_BUFFER_SIZE) {
+            WRITERS.remove();
+        }
+
+        return encoded;
+    }
+
+    /**
+     * @param data encoded event
+     * @return decoded event
+     * @throws IllegalArgumentException if the data is not an encoded event
+     */
+    public static Object decode(byte[] data) {
+
+        Reader reader = new Reader(data);
+
+        try {
+            Object event;
+
+            switch (reader.readByte()) {
+                case ADD_EVENT: {
+
+                    int flags = reader.readByte();
+
+                    event = new EmployeeAddEventDto(isSet(flags, 0) ? reader.readEmployee() : null);
+                    break;
+                }
+                case CHANGE_STATE_EVENT: {
+
+                    int flags = reader.readByte();
+
+                    event = new EmployeeChangeStateEventDto(isSet(flags, 0) ? reader.readSignedVarLong() : null,
+                            isSet(flags, 1) ? EVENTS[reader.readVarInt()] : null);
+                    break;
+                }
+                case STATUS_EVENT: {
+
+                    int flags = reader.readByte();
+
+                    event = new EmployeeStatusEventDto(isSet(flags, 0) ? EVENTS[reader.readVarInt()] : null,
+                            isSet(flags, 1) ? reader.readString() : null,
+                            isSet(flags, 2) ? reader.readEmployee() : null);
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown event type " + data[0]);
+            }
+
+            if (reader.position != data.length) {
+                throw new IllegalArgumentException((data.length - reader.position) + " trailing bytes after the event");
+            }
+
+            return event;
+
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed or truncated event of " + data.length + " bytes", e);
+        }
+    }
+
+    private static int flag(boolean present, int bit) {
+        return present ? 1 << bit : 0;
+    }
+
+    private static boolean isSet(int flags, int bit) {
+        return (flags & (1 << bit)) != 0;
+    }
+
+    /**
+     * Growable buffer, reused by the events encoded on the same thread.
+     */
+    private static final class Writer {
+
+        private byte[] buffer;
+
+        private int position;
+
+        private Writer(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        /**
+         * Writes the employee's fields, nothing for null.
+         */
+        private void writeEmployee(Employee employee) {
+
+            if (employee == null) {
+                return;
+            }
+
+            writeByte(flag(employee.getId() != null, 0)
+                    | flag(employee.getState() != null, 1)
+                    | flag(employee.getName() != null, 2)
+                    | flag(employee.getContractInfo() != null, 3));
+            writeSignedVarLong(employee.getId());
+            writeOrdinal(employee.getState());
+            writeZigZag(employee.getAge());
+            writeString(employee.getName());
+            writeString(employee.getContractInfo());
+        }
+
+        private void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[position++] = (byte) value;
+        }
+
+        /**
+         * Writes nothing for null.
+         */
+        private void writeOrdinal(Enum<?> value) {
+            if (value != null) {
+                writeVarLong(value.ordinal());
+            }
+        }
+
+        /**
+         * Writes nothing for null.
+         */
+        private void writeSignedVarLong(Long value) {
+            if (value != null) {
+                writeZigZag(value);
+            }
+        }
+
+        private void writeZigZag(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        private void writeVarLong(long value) {
+
+            ensureCapacity(10);
+
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+
+            buffer[position++] = (byte) value;
+        }
+
+        /**
+         * Writes nothing for null. Unpaired surrogates are written as '?', the way {@link String#getBytes} does it.
+         */
+        private void writeString(String value) {
+
+            if (value == null) {
+                return;
+            }
+
+            int length = value.length();
+            int utf8Length = utf8Length(value);
+
+            writeVarLong(utf8Length);
+            ensureCapacity(utf8Length);
+
+            byte[] buffer = this.buffer;
+            int position = this.position;
+
+            for (int i = 0; i < length; i++) {
+
+                char c = value.charAt(i);
+
+                if (c < 0x80) {
+                    buffer[position++] = (byte) c;
+                } else if (c < 0x800) {
+                    buffer[position++] = (byte) (0xC0 | (c >> 6));
+                    buffer[position++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    buffer[position++] = '?';
+                } else {
+                    buffer[position++] = (byte) (0xE0 | (c >> 12));
+                    buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+
+            this.position = position;
+        }
+
+        private static int utf8Length(String value) {
+
+            int length = value.length();
+            int utf8Length = length;
+
+            for (int i = 0; i < length; i++) {
+
+                char c = value.charAt(i);
+
+                if (c >= 0x80) {
+                    if (c < 0x800) {
+                        utf8Length += 1;
+                    } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                        utf8Length += 2;
+                        i++;
+                    } else if (!Character.isSurrogate(c)) {
+                        utf8Length += 2;
+                    }
+                }
+            }
+
+            return utf8Length;
+        }
+
+        private void ensureCapacity(int bytes) {
+            if (position + bytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+            }
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] data;
+
+        private int position;
+
+        private Reader(byte[] data) {
+            this.data = data;
+        }
+
+        private Employee readEmployee() {
+
+            int flags = readByte();
+
+            Long id = isSet(flags, 0) ? readSignedVarLong() : null;
+            EmployeeState state = isSet(flags, 1) ? STATES[readVarInt()] : null;
+            int age = (int) readSignedVarLong();
+            String name = isSet(flags, 2) ? readString() : null;
+            String contractInfo = isSet(flags, 3) ? readString() : null;
+
+            return new Employee(id, state, name, contractInfo, age);
+        }
+
+        private byte readByte() {
+            return data[position++];
+        }
+
+        private long readSignedVarLong() {
+
+            long value = readVarLong();
+
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private int readVarInt() {
+
+            long value = readVarLong();
+
+            if (value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Length or ordinal " + value + " is out of range");
+            }
+
+            return (int) value;
+        }
+
+        private long readVarLong() {
+
+            long value = 0;
+
+            for (int shift = 0; shift < 64; shift += 7) {
+
+                byte b = data[position++];
+
+                value |= (long) (b & 0x7F) << shift;
+
+                if (b >= 0) {
+                    return value;
+                }
+            }
+
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        private String readString() {
+
+            int length = readVarInt();
+
+            if (length > data.length - position) {
+                throw new IndexOutOfBoundsException("String of " + length + " bytes exceeds the event");
+            }
+
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+
+            position += length;
+
+            return value;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.pplflw.challenge.codec;
+
+import com.pplflw.challenge.dto.EmployeeEventHeaders;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.utils.Utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Kafka deserializer of the employee events written by {@link EmployeeEventSerializer} or by JSON-only producers.
+ * Values with the binary {@link EmployeeEventHeaders#CONTENT_TYPE} header are decoded by {@link EmployeeEventCodec},
+ * the others are passed to the JSON deserializer configured with {@value #JSON_DELEGATE_CLASS_CONFIG}.
+ * The delegate is configured with the same properties.
+ *
+ * @param <T> value type
+ */
+public class EmployeeEventDeserializer<T> implements Deserializer<T> {
+
+    public static final String JSON_DELEGATE_CLASS_CONFIG = "employee.codec.json.delegate.class";
+
+    private static final byte[] BINARY_CONTENT_TYPE = EmployeeEventHeaders.BINARY_CONTENT_TYPE.getBytes(StandardCharsets.UTF_8);
+
+    private Deserializer<? extends T> jsonDelegate;
+
+    public EmployeeEventDeserializer() {
+    }
+
+    /**
+     * @param jsonDelegate JSON deserializer, configured by {@link #configure(Map, boolean)} too
+     */
+    public EmployeeEventDeserializer(Deserializer<? extends T> jsonDelegate) {
+        this.jsonDelegate = jsonDelegate;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void configure(Map<String, ?> configs, boolean isKey) {
+
+        Object delegateClass = configs.get(JSON_DELEGATE_CLASS_CONFIG);
+
+        if (jsonDelegate == null && delegateClass != null) {
+            try {
+                jsonDelegate = delegateClass instanceof Class
+                        ? (Deserializer<T>) Utils.newInstance((Class<?>) delegateClass)
+                        : Utils.newInstance(delegateClass.toString(), Deserializer.class);
+            } catch (ClassNotFoundException e) {
+                throw new ConfigException(JSON_DELEGATE_CLASS_CONFIG, delegateClass, "Class not found");
+            }
+        }
+
+        if (jsonDelegate != null) {
+            jsonDelegate.configure(configs, isKey);
+        }
+    }
+
+    /**
+     * Without headers the value cannot be recognized as binary, so it is always read as JSON.
+     */
+    @Override
+    public T deserialize(String topic, byte[] data) {
+        return data == null ? null : jsonDelegate().deserialize(topic, data);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T deserialize(String topic, Headers headers, byte[] data) {
+
+        if (data == null) {
+            return null;
+        }
+
+        Header contentType = headers.lastHeader(EmployeeEventHeaders.CONTENT_TYPE);
+
+        if (contentType != null && Arrays.equals(BINARY_CONTENT_TYPE, contentType.value())) {
+            try {
+                return (T) EmployeeEventCodec.decode(data);
+            } catch (IllegalArgumentException e) {
+                throw new SerializationException("Cannot decode employee event of topic " + topic, e);
+            }
+        }
+
+        return jsonDelegate().deserialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        if (jsonDelegate != null) {
+            jsonDelegate.close();
+        }
+    }
+
+    private Deserializer<? extends T> jsonDelegate() {
+
+        if (jsonDelegate == null) {
+            throw new SerializationException("No JSON deserializer has been configured with " + JSON_DELEGATE_CLASS_CONFIG);
+        }
+
+        return jsonDelegate;
+    }
+}
@@ -0,0 +1,121 @@
+package com.pplflw.challenge.codec;
+
+import com.pplflw.challenge.dto.EmployeeEventHeaders;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.utils.Utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Kafka serializer of the employee events. Writes {@link EmployeeEventCodec binary} or JSON events and marks them
+ * with the {@link EmployeeEventHeaders#CONTENT_TYPE} header, so consumers of both formats can read them.
+ * Configured with:
+ * - {@value #CODEC_CONFIG}: {@code json} (default) or {@code binary}
+ * - {@value #JSON_DELEGATE_CLASS_CONFIG}: JSON serializer, also used for the values the codec doesn't support.
+ * The delegate is configured with the same properties.
+ *
+ * @param <T> value type
+ */
+public class EmployeeEventSerializer<T> implements Serializer<T> {
+
+    public static final String CODEC_CONFIG = "employee.codec";
+
+    public static final String JSON_DELEGATE_CLASS_CONFIG = "employee.codec.json.delegate.class";
+
+    private static final byte[] BINARY_CONTENT_TYPE = EmployeeEventHeaders.BINARY_CONTENT_TYPE.getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] JSON_CONTENT_TYPE = EmployeeEventHeaders.JSON_CONTENT_TYPE.getBytes(StandardCharsets.UTF_8);
+
+    private Serializer<? super T> jsonDelegate;
+
+    private boolean binary;
+
+    public EmployeeEventSerializer() {
+    }
+
+    /**
+     * @param jsonDelegate JSON serializer, configured by {@link #configure(Map, boolean)} too
+     * @param binary       true to write the supported values in the binary format
+     */
+    public EmployeeEventSerializer(Serializer<? super T> jsonDelegate, boolean binary) {
+        this.jsonDelegate = jsonDelegate;
+        this.binary = binary;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void configure(Map<String, ?> configs, boolean isKey) {
+
+        Object codec = configs.get(CODEC_CONFIG);
+
+        if (codec != null) {
+            if (!"binary".equals(codec) && !"json".equals(codec)) {
+                throw new ConfigException(CODEC_CONFIG, codec, "Has to be 'binary' or 'json'");
+            }
+            binary = "binary".equals(codec);
+        }
+
+        Object delegateClass = configs.get(JSON_DELEGATE_CLASS_CONFIG);
+
+        if (jsonDelegate == null && delegateClass != null) {
+            try {
+                jsonDelegate = delegateClass instanceof Class
+                        ? (Serializer<T>) Utils.newInstance((Class<?>) delegateClass)
+                        : Utils.newInstance(delegateClass.toString(), Serializer.class);
+            } catch (ClassNotFoundException e) {
+                throw new ConfigException(JSON_DELEGATE_CLASS_CONFIG, delegateClass, "Class not found");
+            }
+        }
+
+        if (jsonDelegate != null) {
+            jsonDelegate.configure(configs, isKey);
+        }
+    }
+
+    /**
+     * Without headers the value cannot be marked as binary, so it is always written as JSON.
+     */
+    @Override
+    public byte[] serialize(String topic, T data) {
+        return data == null ? null : jsonDelegate().serialize(topic, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, T data) {
+
+        if (data == null) {
+            return null;
+        }
+
+        if (binary && EmployeeEventCodec.supports(data)) {
+
+            headers.add(EmployeeEventHeaders.CONTENT_TYPE, BINARY_CONTENT_TYPE);
+
+            return EmployeeEventCodec.encode(data);
+        }
+
+        headers.add(EmployeeEventHeaders.CONTENT_TYPE, JSON_CONTENT_TYPE);
+
+        return jsonDelegate().serialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        if (jsonDelegate != null) {
+            jsonDelegate.close();
+        }
+    }
+
+    private Serializer<? super T> jsonDelegate() {
+
+        if (jsonDelegate == null) {
+            throw new SerializationException("No JSON serializer has been configured with " + JSON_DELEGATE_CLASS_CONFIG);
+        }
+
+        return jsonDelegate;
+    }
+}
@@ -4,7 +4,8 @@ import com.pplflw.challenge.statemachine.EmployeeState;
 import lombok.*;
 
 /**
- * Entity to represent an employee.
+ * Entity to represent an employee. Effectively immutable: changes are copies saved through the storage,
+ * so a stored instance can be shared between threads.
  */
 @AllArgsConstructor
 @NoArgsConstructor
@@ -16,7 +17,6 @@ public class Employee {
     private Long id;
 
     @Getter
-    @Setter
     private EmployeeState state;
 
     @Getter
@@ -27,4 +27,13 @@ public class Employee {
 
     @Getter
     private int age;
+
+    /**
+     * @param state new state
+     * @return copy of the employee in the state
+     */
+    public Employee withState(EmployeeState state) {
+        // getters, as the storages may decode the strings lazily
+        return new Employee(getId(), state, getName(), getContractInfo(), getAge());
+    }
 }
@@ -0,0 +1,29 @@
+package com.pplflw.challenge.dto;
+
+/**
+ * Kafka record headers of the employee events.
+ */
+public final class EmployeeEventHeaders {
+
+    /**
+     * UTF-8 correlation ID of a change-state event, echoed on its status event.
+     * Set only by the callers waiting for the status event.
+     */
+    public static final String CORRELATION_ID = "employee-correlation-id";
+
+    /**
+     * UTF-8 content type of the event, {@link #BINARY_CONTENT_TYPE} or {@link #JSON_CONTENT_TYPE}.
+     * Events without it are JSON.
+     */
+    public static final String CONTENT_TYPE = "content-type";
+
+    /**
+     * Content type of the events encoded by {@link com.pplflw.challenge.codec.EmployeeEventCodec}.
+     */
+    public static final String BINARY_CONTENT_TYPE = "application/x-employee-event";
+
+    public static final String JSON_CONTENT_TYPE = "application/json";
+
+    private EmployeeEventHeaders() {
+    }
+}
@@ -0,0 +1,86 @@
+package com.pplflw.challenge.kafka;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Named tunings of the Kafka producers, selected per topic. Every profile runs the idempotent producer,
+ * so retries neither duplicate nor reorder records, and compresses the producer batches:
+ * - low-latency: sends every record immediately in small lz4 batches
+ * - high-throughput: lingers to fill large zstd batches, allows many unacknowledged records
+ * - exactly-once: moderate lz4 batches and fewer unacknowledged records, for the topics whose records
+ * are written once per consumed record
+ * <p>
+ * The profile's max-in-flight bounds the records a reactive sender keeps unacknowledged, the sender stops
+ * requesting records when it is reached.
+ */
+public enum ProducerProfile {
+
+    LOW_LATENCY("low-latency", 0, 16 * 1024, "lz4", 256),
+    HIGH_THROUGHPUT("high-throughput", 20, 256 * 1024, "zstd", 4096),
+    EXACTLY_ONCE("exactly-once", 5, 64 * 1024, "lz4", 1024);
+
+    private final String profileName;
+
+    private final int lingerMs;
+
+    private final int batchSize;
+
+    private final String compressionType;
+
+    private final int maxInFlight;
+
+    ProducerProfile(String profileName, int lingerMs, int batchSize, String compressionType, int maxInFlight) {
+        this.profileName = profileName;
+        this.lingerMs = lingerMs;
+        this.batchSize = batchSize;
+        this.compressionType = compressionType;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * @param profileName profile name, e.g. 'low-latency'
+     * @return the profile
+     * @throws IllegalArgumentException if there is no such profile
+     */
+    public static ProducerProfile forName(String profileName) {
+
+        for (ProducerProfile profile : values()) {
+            if (profile.profileName.equals(profileName)) {
+                return profile;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown producer profile '" + profileName + "'");
+    }
+
+    /**
+     * @param producerProperties producer properties, not modified
+     * @return copy of the properties with the profile's settings
+     */
+    public Map<String, Object> apply(Map<String, Object> producerProperties) {
+
+        Map<String, Object> properties = new HashMap<>(producerProperties);
+
+        properties.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        properties.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        properties.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        properties.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        properties.put(ProducerConfig.ACKS_CONFIG, "all");
+
+        return properties;
+    }
+
+    /**
+     * @return maximum number of records a reactive sender keeps unacknowledged
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public String getProfileName() {
+        return profileName;
+    }
+}
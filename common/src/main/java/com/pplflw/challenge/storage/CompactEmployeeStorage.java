@@ -0,0 +1,358 @@
+package com.pplflw.challenge.storage;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.statemachine.EmployeeState;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Memory-efficient {@link EmployeeStorage} implementation for tens of millions of employees.
+ * Keeps no {@link Employee} or boxed {@link Long} per entry:
+ * - the index is an open-addressing hash map of primitive ids to record addresses, with linear probing
+ * - records are encoded into fixed-size {@link ByteBuffer} chunks, either on heap or off heap (direct)
+ * A record is its allocated length(int) followed by the {@link EmployeeRecordCodec} encoding.
+ * A record is overwritten in place when the new version fits, otherwise it is appended and the old space
+ * is only counted as {@link #garbageBytes()}, so a state change never allocates.
+ * {@link #getEmployee(Long)} copies the record's bytes and decodes state and age only,
+ * strings are decoded on first access.
+ * All the operations are guarded by a read-write lock, reads don't block each other.
+ * {@link #updateIfState(Long, EmployeeState, EmployeeState)} only rewrites the state byte of the record,
+ * so it runs under the read lock and one of the striped locks, which serializes the changes of an employee
+ * without blocking the changes of the employees of the other stripes.
+ */
+public class CompactEmployeeStorage implements EmployeeStorage {
+
+    static final int CHUNK_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Number of index slots visited by {@link #forEachEmployee(Consumer)} under one read lock.
+     */
+    private static final int ITERATION_BATCH_SLOTS = 4096;
+
+    private static final float LOAD_FACTOR = 0.7f;
+
+    private static final int LENGTH_BYTES = Integer.BYTES;
+
+    /**
+     * Number of the locks of the conditional state changes, a power of two.
+     */
+    private static final int STRIPES = 256;
+
+    private final boolean direct;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Object[] stripes = new Object[STRIPES];
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+
+    private long[] keys;
+
+    /**
+     * Record address plus one: chunk index in the upper 32 bits and offset within the chunk in the lower ones.
+     * Zero marks a free slot.
+     */
+    private long[] addresses;
+
+    private int size;
+
+    private int resizeThreshold;
+
+    private int tailOffset = CHUNK_SIZE;
+
+    private long garbageBytes;
+
+    /**
+     * @param expectedSize number of employees to size the index for
+     * @param direct       whether records are kept off heap
+     */
+    public CompactEmployeeStorage(int expectedSize, boolean direct) {
+        this.direct = direct;
+
+        int capacity = Integer.highestOneBit(Math.max(16, (int) Math.ceil(expectedSize / LOAD_FACTOR)) - 1) << 1;
+
+        this.keys = new long[capacity];
+        this.addresses = new long[capacity];
+        this.resizeThreshold = (int) (capacity * LOAD_FACTOR);
+
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    @Override
+    public Employee updateEmployee(Employee employee) {
+
+        byte[] record = encode(employee);
+
+        lock.writeLock().lock();
+        try {
+            put(employee.getId(), record);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        return employee;
+    }
+
+    @Override
+    public Collection<Employee> updateEmployees(Collection<Employee> employees) {
+
+        List<byte[]> records = new ArrayList<>(employees.size());
+
+        for (Employee employee : employees) {
+            records.add(encode(employee));
+        }
+
+        lock.writeLock().lock();
+        try {
+            int i = 0;
+            for (Employee employee : employees) {
+                put(employee.getId(), records.get(i++));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        return employees;
+    }
+
+    @Override
+    public Optional<Employee> getEmployee(Long id) {
+
+        byte[] record;
+
+        lock.readLock().lock();
+        try {
+            int slot = find(id);
+
+            if (addresses[slot] == 0) {
+                return Optional.empty();
+            }
+
+            record = copy(addresses[slot]);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return Optional.of(EmployeeRecordCodec.decode(id, record, LENGTH_BYTES));
+    }
+
+    @Override
+    public Optional<Employee> updateIfState(Long id, EmployeeState expected, EmployeeState newState) {
+
+        byte[] record;
+
+        lock.readLock().lock();
+        try {
+            int slot = find(id);
+
+            if (addresses[slot] == 0) {
+                return Optional.empty();
+            }
+
+            ByteBuffer chunk = chunk(addresses[slot]);
+            int stateOffset = offset(addresses[slot]) + LENGTH_BYTES;
+
+            // the write lock excludes full updates, the stripe the other state changes of the employee
+            synchronized (stripes[hash(id) & (STRIPES - 1)]) {
+
+                if (chunk.get(stateOffset) != EmployeeRecordCodec.encodeState(expected)) {
+                    return Optional.empty();
+                }
+
+                chunk.put(stateOffset, EmployeeRecordCodec.encodeState(newState));
+                // copied under the stripe, so the returned employee has the new state and no later one
+                record = copy(addresses[slot]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return Optional.of(EmployeeRecordCodec.decode(id, record, LENGTH_BYTES));
+    }
+
+    /**
+     * Visits the index in batches of slots, so updates are only blocked for one batch.
+     * Starts over if the index is resized in between, so an employee may be visited more than once.
+     */
+    @Override
+    public void forEachEmployee(Consumer<Employee> action) {
+
+        List<Employee> batch = new ArrayList<>();
+        long[] visitedKeys = null;
+        int slot = 0;
+
+        while (true) {
+
+            lock.readLock().lock();
+            try {
+                if (visitedKeys != keys) {
+                    visitedKeys = keys;
+                    slot = 0;
+                }
+
+                if (slot >= keys.length) {
+                    return;
+                }
+
+                int end = Math.min(slot + ITERATION_BATCH_SLOTS, keys.length);
+
+                for (; slot < end; slot++) {
+                    if (addresses[slot] != 0) {
+                        batch.add(EmployeeRecordCodec.decode(keys[slot], copy(addresses[slot]), LENGTH_BYTES));
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            batch.forEach(action);
+            batch.clear();
+        }
+    }
+
+    /**
+     * @return number of stored employees
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of record bytes left behind by updates which didn't fit in place
+     */
+    public long garbageBytes() {
+        lock.readLock().lock();
+        try {
+            return garbageBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void put(long id, byte[] record) {
+
+        int slot = find(id);
+        long address = addresses[slot];
+
+        if (address != 0) {
+
+            ByteBuffer chunk = chunk(address);
+            int offset = offset(address);
+            int allocated = chunk.getInt(offset);
+
+            if (record.length <= allocated) {
+                // keep the allocated length so the slack can be reused by later updates
+                chunk.duplicate().position(offset + LENGTH_BYTES).put(record, LENGTH_BYTES, record.length - LENGTH_BYTES);
+                return;
+            }
+
+            garbageBytes += allocated;
+            addresses[slot] = append(record);
+            return;
+        }
+
+        keys[slot] = id;
+        addresses[slot] = append(record);
+
+        if (++size > resizeThreshold) {
+            resize();
+        }
+    }
+
+    private int find(long id) {
+
+        int mask = keys.length - 1;
+        int slot = hash(id) & mask;
+
+        while (addresses[slot] != 0 && keys[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private void resize() {
+
+        long[] oldKeys = keys;
+        long[] oldAddresses = addresses;
+
+        keys = new long[oldKeys.length << 1];
+        addresses = new long[oldAddresses.length << 1];
+        resizeThreshold = (int) (keys.length * LOAD_FACTOR);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldAddresses[i] != 0) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                addresses[slot] = oldAddresses[i];
+            }
+        }
+    }
+
+    private long append(byte[] record) {
+
+        if (record.length > CHUNK_SIZE) {
+            throw new IllegalArgumentException("Employee record of " + record.length + " bytes exceeds the chunk size");
+        }
+
+        if (tailOffset + record.length > CHUNK_SIZE) {
+            chunks.add(direct ? ByteBuffer.allocateDirect(CHUNK_SIZE) : ByteBuffer.allocate(CHUNK_SIZE));
+            tailOffset = 0;
+        }
+
+        int offset = tailOffset;
+
+        chunks.get(chunks.size() - 1).duplicate().position(offset).put(record);
+        tailOffset += record.length;
+
+        return (((long) (chunks.size() - 1) << 32) | offset) + 1;
+    }
+
+    private byte[] copy(long address) {
+
+        ByteBuffer chunk = chunk(address);
+        int offset = offset(address);
+
+        byte[] record = new byte[chunk.getInt(offset)];
+
+        chunk.duplicate().position(offset).get(record);
+
+        return record;
+    }
+
+    private ByteBuffer chunk(long address) {
+        return chunks.get((int) ((address - 1) >>> 32));
+    }
+
+    private static int offset(long address) {
+        return (int) (address - 1);
+    }
+
+    private static byte[] encode(Employee employee) {
+
+        byte[] record = EmployeeRecordCodec.encode(employee, LENGTH_BYTES);
+
+        ByteBuffer.wrap(record).putInt(0, record.length);
+
+        return record;
+    }
+
+    static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
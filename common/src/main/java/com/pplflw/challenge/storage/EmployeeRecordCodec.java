@@ -0,0 +1,140 @@
+package com.pplflw.challenge.storage;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.statemachine.EmployeeState;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary encoding of an {@link Employee} without its id, shared by the binary storages.
+ * Layout: state ordinal(byte, -1 for null), age(int), name length(int, -1 for null), name(UTF-8),
+ * contract info length(int, -1 for null), contract info(UTF-8).
+ * Records are encoded after a header reserved for the storage.
+ */
+final class EmployeeRecordCodec {
+
+    private static final EmployeeState[] STATES = EmployeeState.values();
+
+    private EmployeeRecordCodec() {
+    }
+
+    /**
+     * @param employee    employee to encode
+     * @param headerBytes number of zero bytes to reserve at the beginning of the record
+     * @return encoded record
+     */
+    static byte[] encode(Employee employee, int headerBytes) {
+
+        byte[] name = employee.getName() == null ? null : employee.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] contractInfo = employee.getContractInfo() == null
+                ? null
+                : employee.getContractInfo().getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer record = ByteBuffer.allocate(headerBytes + 1 + Integer.BYTES
+                + Integer.BYTES + (name == null ? 0 : name.length)
+                + Integer.BYTES + (contractInfo == null ? 0 : contractInfo.length));
+
+        record.position(headerBytes);
+        record.put(encodeState(employee.getState()));
+        record.putInt(employee.getAge());
+        putString(record, name);
+        putString(record, contractInfo);
+
+        return record.array();
+    }
+
+    /**
+     * Decodes state and age of the record, the strings are decoded on first access.
+     * The record must not be modified afterwards.
+     *
+     * @param id     employee's ID
+     * @param record encoded record
+     * @param offset offset of the record's body, i.e. its header size
+     * @return decoded employee
+     */
+    static Employee decode(Long id, byte[] record, int offset) {
+        return new LazyEmployee(id, record, offset);
+    }
+
+    /**
+     * @param state state, may be null
+     * @return the state's byte, the first one of the encoding
+     */
+    static byte encodeState(EmployeeState state) {
+        return state == null ? -1 : (byte) state.ordinal();
+    }
+
+    static EmployeeState decodeState(byte state) {
+        return state < 0 ? null : STATES[state];
+    }
+
+    private static void putString(ByteBuffer record, byte[] value) {
+        if (value == null) {
+            record.putInt(-1);
+        } else {
+            record.putInt(value.length);
+            record.put(value);
+        }
+    }
+
+    private static String getString(ByteBuffer record) {
+
+        int length = record.getInt();
+
+        if (length < 0) {
+            return null;
+        }
+
+        String value = new String(record.array(), record.position(), length, StandardCharsets.UTF_8);
+
+        record.position(record.position() + length);
+
+        return value;
+    }
+
+    /**
+     * {@link Employee} decoded from a copy of its record. Strings are decoded on first access.
+     */
+    private static class LazyEmployee extends Employee {
+
+        private byte[] record;
+
+        private final int stringsOffset;
+
+        private String name;
+
+        private String contractInfo;
+
+        private LazyEmployee(Long id, byte[] record, int offset) {
+            super(id,
+                    decodeState(record[offset]),
+                    null,
+                    null,
+                    ByteBuffer.wrap(record).getInt(offset + 1));
+            this.record = record;
+            this.stringsOffset = offset + 1 + Integer.BYTES;
+        }
+
+        @Override
+        public String getName() {
+            decode();
+            return name;
+        }
+
+        @Override
+        public String getContractInfo() {
+            decode();
+            return contractInfo;
+        }
+
+        private synchronized void decode() {
+            if (record != null) {
+                ByteBuffer buffer = ByteBuffer.wrap(record).position(stringsOffset);
+                name = getString(buffer);
+                contractInfo = getString(buffer);
+                record = null;
+            }
+        }
+    }
+}
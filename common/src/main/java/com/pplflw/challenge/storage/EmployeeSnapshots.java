@@ -0,0 +1,295 @@
+package com.pplflw.challenge.storage;
+
+import com.pplflw.challenge.domain.Employee;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Directory of employee snapshots, each stored with the checkpoints of the data it reflects
+ * (e.g. consumed offsets).
+ * Snapshot format: magic(long), version(int), checkpoint count(int), checkpoints(UTF key, long value),
+ * records(marker byte 1, id(long), payload length(int), {@link EmployeeRecordCodec} payload),
+ * end marker(byte 0), record count(long), CRC32 of all the preceding bytes(int).
+ * Snapshot files are named by their creation time, the latest sorts last.
+ * A snapshot is written to a temporary file, forced to the device and then atomically renamed,
+ * so a crash never leaves a partially written snapshot behind.
+ */
+@Slf4j
+public class EmployeeSnapshots {
+
+    private static final String PREFIX = "snapshot-";
+
+    private static final String SUFFIX = ".bin";
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private static final long MAGIC = 0x454d50534e415031L;
+
+    private static final int VERSION = 1;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path directory;
+
+    private final int retained;
+
+    /**
+     * @param directory directory of the snapshot files
+     * @param retained  number of the latest snapshots to keep
+     */
+    public EmployeeSnapshots(Path directory, int retained) {
+        this.directory = directory;
+        this.retained = retained;
+
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create " + directory, e);
+        }
+    }
+
+    /**
+     * Writes a new snapshot and deletes the ones exceeding the retained number.
+     *
+     * @param checkpoints checkpoints of the snapshot
+     * @param employees   source of the snapshot's employees, called with a writer of every employee
+     * @return number of written employees
+     */
+    public long write(Map<String, Long> checkpoints, Consumer<Consumer<Employee>> employees) {
+
+        Path file = directory.resolve(PREFIX + String.format("%019d", nextSequence()) + SUFFIX);
+        Path temporary = directory.resolve(file.getFileName() + TEMPORARY_SUFFIX);
+
+        long count;
+
+        try (FileOutputStream fileStream = new FileOutputStream(temporary.toFile())) {
+
+            CheckedOutputStream checkedStream = new CheckedOutputStream(new BufferedOutputStream(fileStream, BUFFER_SIZE), new CRC32());
+            DataOutputStream output = new DataOutputStream(checkedStream);
+
+            output.writeLong(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(checkpoints.size());
+
+            for (Map.Entry<String, Long> checkpoint : checkpoints.entrySet()) {
+                output.writeUTF(checkpoint.getKey());
+                output.writeLong(checkpoint.getValue());
+            }
+
+            long[] written = new long[1];
+
+            employees.accept(employee -> {
+                try {
+                    byte[] payload = EmployeeRecordCodec.encode(employee, 0);
+
+                    output.writeByte(1);
+                    output.writeLong(employee.getId());
+                    output.writeInt(payload.length);
+                    output.write(payload);
+
+                    written[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            count = written[0];
+
+            output.writeByte(0);
+            output.writeLong(count);
+            output.writeInt((int) checkedStream.getChecksum().getValue());
+            output.flush();
+
+            fileStream.getFD().sync();
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(temporary);
+            throw e instanceof IOException
+                    ? new UncheckedIOException("Cannot write snapshot " + temporary, (IOException) e)
+                    : (RuntimeException) e;
+        }
+
+        try {
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+
+            List<Path> snapshots = list();
+
+            for (Path snapshot : snapshots.subList(Math.min(retained, snapshots.size()), snapshots.size())) {
+                Files.delete(snapshot);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot publish snapshot " + file, e);
+        }
+
+        return count;
+    }
+
+    /**
+     * Loads the latest valid snapshot. Snapshots failing the checksum verification are skipped.
+     *
+     * @param storage storage to load the snapshot's employees into
+     * @return checkpoints of the loaded snapshot, or empty if there is no valid snapshot
+     */
+    public Optional<Map<String, Long>> loadLatest(EmployeeStorage storage) {
+
+        for (Path snapshot : list()) {
+            if (verify(snapshot)) {
+                return Optional.of(load(snapshot, storage));
+            }
+            log.warn("Skipping snapshot {} which failed the checksum verification", snapshot);
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * @return snapshot files, the latest first
+     */
+    List<Path> list() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(file -> file.getFileName().toString().startsWith(PREFIX)
+                            && file.getFileName().toString().endsWith(SUFFIX))
+                    .sorted(Comparator.comparing(Path::getFileName).reversed())
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list " + directory, e);
+        }
+    }
+
+    /**
+     * @return creation time of the new snapshot, or the latest one's plus one if that's not earlier,
+     * so the file names always sort in the order of creation
+     */
+    private long nextSequence() {
+
+        long sequence = System.currentTimeMillis();
+
+        for (Path snapshot : list()) {
+            String name = snapshot.getFileName().toString();
+            sequence = Math.max(sequence, Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())) + 1);
+        }
+
+        return sequence;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Cannot delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    private boolean verify(Path snapshot) {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+
+            long size = channel.size();
+
+            if (size < Integer.BYTES) {
+                return false;
+            }
+
+            CRC32 crc = new CRC32();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            long remaining = size - Integer.BYTES;
+
+            while (remaining > 0) {
+
+                buffer.clear().limit((int) Math.min(buffer.capacity(), remaining));
+
+                int read = channel.read(buffer);
+
+                if (read < 0) {
+                    return false;
+                }
+
+                buffer.flip();
+                crc.update(buffer);
+                remaining -= read;
+            }
+
+            ByteBuffer expected = ByteBuffer.allocate(Integer.BYTES);
+
+            channel.read(expected, size - Integer.BYTES);
+
+            return expected.getInt(0) == (int) crc.getValue();
+        } catch (IOException e) {
+            log.warn("Cannot verify snapshot {}: {}", snapshot, e.getMessage());
+            return false;
+        }
+    }
+
+    private Map<String, Long> load(Path snapshot, EmployeeStorage storage) {
+
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(snapshot), BUFFER_SIZE))) {
+
+            if (input.readLong() != MAGIC || input.readInt() != VERSION) {
+                throw new IllegalStateException("Unsupported snapshot " + snapshot);
+            }
+
+            int checkpointCount = input.readInt();
+
+            Map<String, Long> checkpoints = new HashMap<>(checkpointCount);
+
+            for (int i = 0; i < checkpointCount; i++) {
+                checkpoints.put(input.readUTF(), input.readLong());
+            }
+
+            List<Employee> batch = new ArrayList<>(BUFFER_SIZE);
+            long count = 0;
+
+            while (input.readByte() != 0) {
+
+                long id = input.readLong();
+                byte[] payload = new byte[input.readInt()];
+
+                input.readFully(payload);
+
+                batch.add(EmployeeRecordCodec.decode(id, payload, 0));
+                count++;
+
+                if (batch.size() == BUFFER_SIZE) {
+                    storage.updateEmployees(batch);
+                    batch.clear();
+                }
+            }
+
+            storage.updateEmployees(batch);
+
+            if (input.readLong() != count) {
+                throw new IllegalStateException("Snapshot " + snapshot + " is inconsistent");
+            }
+
+            log.info("Loaded {} employees from snapshot {}", count, snapshot);
+
+            return checkpoints;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load snapshot " + snapshot, e);
+        }
+    }
+}
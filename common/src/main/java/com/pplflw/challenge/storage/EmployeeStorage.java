@@ -1,8 +1,11 @@
 package com.pplflw.challenge.storage;
 
 import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.statemachine.EmployeeState;
 
+import java.util.Collection;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Employee storage interface.
@@ -10,5 +13,34 @@ import java.util.Optional;
 public interface EmployeeStorage {
     Employee updateEmployee(Employee employee);
 
+    /**
+     * Bulk counterpart of {@link #updateEmployee(Employee)}.
+     *
+     * @param employees employees to save
+     * @return saved employees
+     */
+    Collection<Employee> updateEmployees(Collection<Employee> employees);
+
     Optional<Employee> getEmployee(Long id);
+
+    /**
+     * Changes the employee's state if it is still the expected one, atomically with respect to the other updates
+     * of the employee, so concurrent state changes can't overwrite each other.
+     * A caller losing the race re-reads the employee and decides again.
+     *
+     * @param id       employee's ID
+     * @param expected state the change was decided on
+     * @param newState state to change to
+     * @return employee in the new state, empty if the employee doesn't exist or isn't in the expected state
+     */
+    Optional<Employee> updateIfState(Long id, EmployeeState expected, EmployeeState newState);
+
+    /**
+     * Visits the stored employees without blocking updates for the whole iteration.
+     * Every employee stored before the call is visited at least once, possibly with a later version.
+     * Employees stored during the call may or may not be visited.
+     *
+     * @param action action to run for every employee
+     */
+    void forEachEmployee(Consumer<Employee> action);
 }
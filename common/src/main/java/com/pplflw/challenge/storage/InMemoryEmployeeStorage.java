@@ -1,13 +1,18 @@
 package com.pplflw.challenge.storage;
 
 import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.statemachine.EmployeeState;
 
+import java.util.Collection;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * Simple in-memory {@link EmployeeStorage} implementation.
+ * {@link #updateIfState(Long, EmployeeState, EmployeeState)} runs under the lock of the employee's map bin only,
+ * so state changes of different employees hardly ever contend.
  */
 public class InMemoryEmployeeStorage implements EmployeeStorage {
 
@@ -21,8 +26,35 @@ public class InMemoryEmployeeStorage implements EmployeeStorage {
         return employee;
     }
 
+    @Override
+    public Collection<Employee> updateEmployees(Collection<Employee> employees) {
+
+        for (Employee employee : employees) {
+            this.employees.put(employee.getId(), employee);
+        }
+
+        return employees;
+    }
+
     @Override
     public Optional<Employee> getEmployee(Long id) {
         return Optional.ofNullable(employees.get(id));
     }
+
+    @Override
+    public Optional<Employee> updateIfState(Long id, EmployeeState expected, EmployeeState newState) {
+
+        Employee[] updated = new Employee[1];
+
+        employees.computeIfPresent(id, (employeeId, employee) -> employee.getState() == expected
+                ? updated[0] = employee.withState(newState)
+                : employee);
+
+        return Optional.ofNullable(updated[0]);
+    }
+
+    @Override
+    public void forEachEmployee(Consumer<Employee> action) {
+        employees.values().forEach(action);
+    }
 }
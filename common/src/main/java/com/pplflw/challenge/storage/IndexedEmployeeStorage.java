@@ -0,0 +1,250 @@
+package com.pplflw.challenge.storage;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.statemachine.EmployeeState;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * {@link EmployeeStorage} decorator which maintains secondary indexes of the employees by state and by age,
+ * so the employees of a state or an age range are found without scanning the storage.
+ * Every index is a {@link SortedIdSet}, so results are pages in ascending ID order, continued after the last ID
+ * of the previous page.
+ * An update and the index maintenance run under the write lock, a page is collected from the indexes
+ * and the delegate under the read lock, so a page never contains an employee not matching the query.
+ * Point reads and iterations go to the delegate without locking.
+ * Conditional state changes are serialized by the write lock as well, even if the delegate stripes them:
+ * the indexes are shared by all the employees and have to change together with the delegate, or a page could
+ * contain an employee whose state has just changed.
+ * Stored employees must not be modified in place, every update has to go through the storage.
+ * Closes the delegate if it is {@link Closeable}.
+ */
+public class IndexedEmployeeStorage implements EmployeeStorage, Closeable {
+
+    private final EmployeeStorage delegate;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<EmployeeState, SortedIdSet> byState = new EnumMap<>(EmployeeState.class);
+
+    private final NavigableMap<Integer, SortedIdSet> byAge = new TreeMap<>();
+
+    /**
+     * Indexes the employees already stored in the delegate, e.g. restored from a snapshot.
+     *
+     * @param delegate storage to index
+     */
+    public IndexedEmployeeStorage(EmployeeStorage delegate) {
+        this.delegate = delegate;
+
+        for (EmployeeState state : EmployeeState.values()) {
+            byState.put(state, new SortedIdSet());
+        }
+
+        delegate.forEachEmployee(employee -> index(employee.getId(), null, employee));
+    }
+
+    @Override
+    public Employee updateEmployee(Employee employee) {
+
+        lock.writeLock().lock();
+        try {
+            Employee previous = delegate.getEmployee(employee.getId()).orElse(null);
+            Employee saved = delegate.updateEmployee(employee);
+
+            index(employee.getId(), previous, employee);
+
+            return saved;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Collection<Employee> updateEmployees(Collection<Employee> employees) {
+
+        lock.writeLock().lock();
+        try {
+            List<Employee> previous = new ArrayList<>(employees.size());
+
+            for (Employee employee : employees) {
+                previous.add(delegate.getEmployee(employee.getId()).orElse(null));
+            }
+
+            Collection<Employee> saved = delegate.updateEmployees(employees);
+
+            int i = 0;
+            for (Employee employee : employees) {
+                index(employee.getId(), previous.get(i++), employee);
+            }
+
+            return saved;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Employee> getEmployee(Long id) {
+        return delegate.getEmployee(id);
+    }
+
+    @Override
+    public Optional<Employee> updateIfState(Long id, EmployeeState expected, EmployeeState newState) {
+
+        lock.writeLock().lock();
+        try {
+            Employee previous = delegate.getEmployee(id).orElse(null);
+            Optional<Employee> updated = delegate.updateIfState(id, expected, newState);
+
+            updated.ifPresent(employee -> index(id, previous, employee));
+
+            return updated;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEachEmployee(Consumer<Employee> action) {
+        delegate.forEachEmployee(action);
+    }
+
+    /**
+     * @param state   employees' state
+     * @param afterId ID of the last employee of the previous page, null for the first page
+     * @param limit   maximum number of employees
+     * @return employees in the state with IDs greater than {@code afterId}, in ascending ID order
+     */
+    public List<Employee> findByState(EmployeeState state, Long afterId, int limit) {
+
+        long[] ids = new long[limit];
+
+        lock.readLock().lock();
+        try {
+            return getEmployees(ids, byState.get(state).copyAfter(after(afterId), limit, ids));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param minAge  minimum age, inclusive
+     * @param maxAge  maximum age, inclusive
+     * @param afterId ID of the last employee of the previous page, null for the first page
+     * @param limit   maximum number of employees
+     * @return employees in the age range with IDs greater than {@code afterId}, in ascending ID order,
+     * none if {@code minAge} is greater than {@code maxAge}
+     */
+    public List<Employee> findByAge(int minAge, int maxAge, Long afterId, int limit) {
+
+        if (minAge > maxAge) {
+            return List.of();
+        }
+
+        long[] ids = new long[limit];
+        long[] candidates = new long[limit];
+        int found = 0;
+
+        lock.readLock().lock();
+        try {
+            // the page is the lowest IDs of the union, so it is within the first page of every age
+            for (SortedIdSet ageIds : byAge.subMap(minAge, true, maxAge, true).values()) {
+                found = merge(ids, found, candidates, ageIds.copyAfter(after(afterId), limit, candidates), limit);
+            }
+
+            return getEmployees(ids, found);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param state employees' state
+     * @return number of employees in the state
+     */
+    public int countByState(EmployeeState state) {
+        lock.readLock().lock();
+        try {
+            return byState.get(state).size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (delegate instanceof Closeable) {
+            ((Closeable) delegate).close();
+        }
+    }
+
+    private void index(long id, Employee previous, Employee employee) {
+
+        if (previous != null) {
+
+            if (previous.getState() != null) {
+                byState.get(previous.getState()).remove(id);
+            }
+
+            SortedIdSet ageIds = byAge.get(previous.getAge());
+
+            if (ageIds != null && ageIds.remove(id) && ageIds.size() == 0) {
+                byAge.remove(previous.getAge());
+            }
+        }
+
+        if (employee.getState() != null) {
+            byState.get(employee.getState()).add(id);
+        }
+
+        byAge.computeIfAbsent(employee.getAge(), age -> new SortedIdSet()).add(id);
+    }
+
+    private List<Employee> getEmployees(long[] ids, int count) {
+
+        List<Employee> employees = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            delegate.getEmployee(ids[i]).ifPresent(employees::add);
+        }
+
+        return employees;
+    }
+
+    /**
+     * Merges two ascending ID arrays into the first one, keeping the lowest {@code limit} IDs.
+     *
+     * @return number of IDs in the first array
+     */
+    private static int merge(long[] ids, int count, long[] other, int otherCount, int limit) {
+
+        long[] merged = new long[Math.min(count + otherCount, limit)];
+        int i = 0;
+        int j = 0;
+
+        for (int k = 0; k < merged.length; k++) {
+            merged[k] = j == otherCount || (i < count && ids[i] < other[j]) ? ids[i++] : other[j++];
+        }
+
+        System.arraycopy(merged, 0, ids, 0, merged.length);
+
+        return merged.length;
+    }
+
+    private static long after(Long afterId) {
+        return afterId == null ? Long.MIN_VALUE : afterId;
+    }
+}
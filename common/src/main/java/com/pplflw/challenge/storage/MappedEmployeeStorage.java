@@ -0,0 +1,761 @@
+package com.pplflw.challenge.storage;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Durable {@link EmployeeStorage} implementation backed by two memory-mapped files in a directory:
+ * - {@code employees.log}, an append-only log of records: payload length(int), CRC32 of id and payload(int),
+ * id(long), {@link EmployeeRecordCodec} payload
+ * - {@code employees.idx}, an open-addressing hash table of ids to log positions, with linear probing
+ * Every update appends a record and repoints the index, earlier versions become garbage.
+ * Data survives a process crash as soon as it is written, the page cache is forced to the device
+ * every maintenance interval and on {@link #close()}.
+ * <p>
+ * After a clean {@link #close()} the files are reopened as they are, without reading the log.
+ * After a crash the index is rebuilt by scanning the log, and the log is truncated at the first torn record.
+ * <p>
+ * Every maintenance interval the files are forced and the log is compacted if garbage exceeds the given ratio.
+ * Compaction copies the live records to new files and atomically replaces the old ones, blocking the storage meanwhile.
+ * All the operations are guarded by a read-write lock, reads don't block each other.
+ * As every update appends to the log and repoints the shared index, conditional state changes take the write lock
+ * too and are not striped per employee like in {@link CompactEmployeeStorage}: a stripe would only guard the state
+ * check, the append would still be serialized by the write lock.
+ */
+@Slf4j
+public class MappedEmployeeStorage implements EmployeeStorage, Closeable {
+
+    static final String LOG_FILE = "employees.log";
+
+    static final String INDEX_FILE = "employees.idx";
+
+    private static final String COMPACTING_SUFFIX = ".compacting";
+
+    private static final int LOG_REGION_SIZE = 64 * 1024 * 1024;
+
+    private static final int INDEX_REGION_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Log record header: payload length, CRC32 and id.
+     */
+    private static final int RECORD_HEADER_BYTES = Integer.BYTES + Integer.BYTES + Long.BYTES;
+
+    /**
+     * Marks the end of the log region's data when the next record doesn't fit in the region.
+     */
+    private static final int PADDING = -1;
+
+    private static final long INDEX_MAGIC = 0x454d504c4f594545L;
+
+    private static final int INDEX_VERSION = 1;
+
+    private static final int INDEX_HEADER_BYTES = 64;
+
+    private static final int INDEX_SLOT_BYTES = 2 * Long.BYTES;
+
+    private static final int CLEAN = 1;
+
+    private static final int DIRTY = 0;
+
+    private static final float LOAD_FACTOR = 0.7f;
+
+    /**
+     * Number of index slots visited by {@link #forEachEmployee(Consumer)} under one read lock.
+     */
+    private static final int ITERATION_BATCH_SLOTS = 4096;
+
+    private final Path directory;
+
+    private final double compactionGarbageRatio;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final ScheduledExecutorService maintenance;
+
+    private MappedFile logFile;
+
+    private MappedFile indexFile;
+
+    private long tail;
+
+    private int capacity;
+
+    private int size;
+
+    private long garbageBytes;
+
+    private boolean closed;
+
+    /**
+     * Opens the storage in the directory, creating it if needed.
+     *
+     * @param directory              directory of the storage files
+     * @param expectedSize           number of employees to size a new index for
+     * @param maintenanceInterval    interval of forcing the files and checking whether the log needs compaction
+     * @param compactionGarbageRatio share of garbage in the log which triggers compaction
+     */
+    public MappedEmployeeStorage(Path directory,
+                                 int expectedSize,
+                                 Duration maintenanceInterval,
+                                 double compactionGarbageRatio) {
+
+        this.directory = directory;
+        this.compactionGarbageRatio = compactionGarbageRatio;
+
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create " + directory, e);
+        }
+
+        open(Math.max(16, Integer.highestOneBit((int) Math.ceil(expectedSize / LOAD_FACTOR) - 1) << 1));
+
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "employee-storage-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.maintenance.scheduleWithFixedDelay(this::maintain,
+                maintenanceInterval.toMillis(),
+                maintenanceInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Employee updateEmployee(Employee employee) {
+
+        byte[] record = encode(employee);
+
+        lock.writeLock().lock();
+        try {
+            put(employee.getId(), record);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        return employee;
+    }
+
+    @Override
+    public Collection<Employee> updateEmployees(Collection<Employee> employees) {
+
+        List<byte[]> records = new ArrayList<>(employees.size());
+
+        for (Employee employee : employees) {
+            records.add(encode(employee));
+        }
+
+        lock.writeLock().lock();
+        try {
+            int i = 0;
+            for (Employee employee : employees) {
+                put(employee.getId(), records.get(i++));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        return employees;
+    }
+
+    @Override
+    public Optional<Employee> getEmployee(Long id) {
+
+        byte[] payload;
+
+        lock.readLock().lock();
+        try {
+            checkOpen();
+
+            long position = find(indexFile, capacity, id);
+
+            long address = indexFile.getLong(position + Long.BYTES);
+
+            if (address == 0) {
+                return Optional.empty();
+            }
+
+            payload = readPayload(address);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return Optional.of(EmployeeRecordCodec.decode(id, payload, 0));
+    }
+
+    @Override
+    public Optional<Employee> updateIfState(Long id, EmployeeState expected, EmployeeState newState) {
+
+        byte[] record;
+
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+
+            long address = indexFile.getLong(find(indexFile, capacity, id) + Long.BYTES);
+
+            if (address == 0) {
+                return Optional.empty();
+            }
+
+            byte[] payload = readPayload(address);
+
+            if (payload[0] != EmployeeRecordCodec.encodeState(expected)) {
+                return Optional.empty();
+            }
+
+            // the payload is copied with the new state byte, there is no need to encode the strings again
+            record = new byte[RECORD_HEADER_BYTES + payload.length];
+
+            System.arraycopy(payload, 0, record, RECORD_HEADER_BYTES, payload.length);
+            record[RECORD_HEADER_BYTES] = EmployeeRecordCodec.encodeState(newState);
+
+            put(id, seal(record, id));
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        return Optional.of(EmployeeRecordCodec.decode(id, record, RECORD_HEADER_BYTES));
+    }
+
+    /**
+     * Visits the index in batches of slots, so updates are only blocked for one batch.
+     * Starts over if the index is resized or the log is compacted in between,
+     * so an employee may be visited more than once.
+     */
+    @Override
+    public void forEachEmployee(Consumer<Employee> action) {
+
+        List<Employee> batch = new ArrayList<>();
+        MappedFile visitedIndex = null;
+        int slot = 0;
+
+        while (true) {
+
+            lock.readLock().lock();
+            try {
+                checkOpen();
+
+                if (visitedIndex != indexFile) {
+                    visitedIndex = indexFile;
+                    slot = 0;
+                }
+
+                if (slot >= capacity) {
+                    return;
+                }
+
+                int end = Math.min(slot + ITERATION_BATCH_SLOTS, capacity);
+
+                for (; slot < end; slot++) {
+
+                    long address = indexFile.getLong(slotPosition(slot) + Long.BYTES);
+
+                    if (address != 0) {
+                        batch.add(EmployeeRecordCodec.decode(indexFile.getLong(slotPosition(slot)), readPayload(address), 0));
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            batch.forEach(action);
+            batch.clear();
+        }
+    }
+
+    /**
+     * @return number of stored employees
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of log bytes taken by overwritten records
+     */
+    public long garbageBytes() {
+        lock.readLock().lock();
+        try {
+            return garbageBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return log position of the next record
+     */
+    long logTail() {
+        lock.readLock().lock();
+        try {
+            return tail;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes all the changes to the storage device.
+     */
+    public void flush() {
+
+        List<MappedByteBuffer> logRegions;
+        List<MappedByteBuffer> indexRegions;
+
+        lock.readLock().lock();
+        try {
+            checkOpen();
+
+            logRegions = logFile.mappedRegions();
+            indexRegions = indexFile.mappedRegions();
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        MappedFile.force(logRegions);
+        MappedFile.force(indexRegions);
+    }
+
+    /**
+     * Rewrites the log with the live records only.
+     */
+    public void compact() {
+
+        lock.writeLock().lock();
+        try {
+            checkOpen();
+
+            Path compactingLog = directory.resolve(LOG_FILE + COMPACTING_SUFFIX);
+            Path compactingIndex = directory.resolve(INDEX_FILE + COMPACTING_SUFFIX);
+
+            Files.deleteIfExists(compactingLog);
+            Files.deleteIfExists(compactingIndex);
+
+            MappedFile newLog = new MappedFile(compactingLog, LOG_REGION_SIZE);
+            MappedFile newIndex = createIndex(compactingIndex, capacity);
+
+            long newTail = 0;
+
+            for (int slot = 0; slot < capacity; slot++) {
+
+                long address = indexFile.getLong(slotPosition(slot) + Long.BYTES);
+
+                if (address != 0) {
+
+                    byte[] record = new byte[RECORD_HEADER_BYTES + logFile.getInt(address - 1)];
+
+                    logFile.get(address - 1, record, record.length);
+
+                    newTail = alignForRecord(newLog, newTail, record.length);
+                    newLog.put(newTail, record);
+
+                    long position = find(newIndex, capacity, indexFile.getLong(slotPosition(slot)));
+
+                    newIndex.putLong(position, indexFile.getLong(slotPosition(slot)));
+                    newIndex.putLong(position + Long.BYTES, newTail + 1);
+
+                    newTail += record.length;
+                }
+            }
+
+            writeIndexHeader(newIndex, DIRTY, capacity, size, newTail, 0);
+
+            newLog.force();
+            newIndex.force();
+
+            // a crash in between leaves a dirty index, which is rebuilt from whichever log is in place
+            Files.move(compactingLog, directory.resolve(LOG_FILE), StandardCopyOption.ATOMIC_MOVE);
+            Files.move(compactingIndex, directory.resolve(INDEX_FILE), StandardCopyOption.ATOMIC_MOVE);
+
+            logFile.close();
+            indexFile.close();
+
+            log.info("Compacted {} from {} to {} bytes", directory.resolve(LOG_FILE), tail, newTail);
+
+            logFile = newLog;
+            indexFile = newIndex;
+            tail = newTail;
+            garbageBytes = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot compact " + directory, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Forces all the changes and marks the files as cleanly closed, so they are reopened without recovery.
+     */
+    @Override
+    public void close() {
+
+        maintenance.shutdownNow();
+
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+
+            logFile.force();
+            writeIndexHeader(indexFile, CLEAN, capacity, size, tail, garbageBytes);
+            indexFile.force();
+
+            logFile.close();
+            indexFile.close();
+
+            closed = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void open(int newIndexCapacity) {
+
+        Path indexPath = directory.resolve(INDEX_FILE);
+
+        boolean indexExists = Files.exists(indexPath);
+
+        logFile = new MappedFile(directory.resolve(LOG_FILE), LOG_REGION_SIZE);
+        indexFile = indexExists ? new MappedFile(indexPath, INDEX_REGION_SIZE) : createIndex(indexPath, newIndexCapacity);
+
+        boolean validHeader = indexExists
+                && indexFile.getLong(0) == INDEX_MAGIC
+                && indexFile.getInt(8) == INDEX_VERSION;
+
+        if (validHeader && indexFile.getInt(12) == CLEAN) {
+
+            capacity = indexFile.getInt(16);
+            size = indexFile.getInt(20);
+            tail = indexFile.getLong(24);
+            garbageBytes = indexFile.getLong(32);
+        } else {
+            // the capacity of a torn or foreign header can't be trusted, the index grows during recovery anyway
+            int indexCapacity = validHeader ? indexFile.getInt(16) : 0;
+
+            recover(indexCapacity > 0 && Integer.bitCount(indexCapacity) == 1
+                    ? Math.max(newIndexCapacity, indexCapacity)
+                    : newIndexCapacity);
+        }
+
+        // any crash from now on requires recovery
+        writeIndexHeader(indexFile, DIRTY, capacity, size, tail, garbageBytes);
+        indexFile.force();
+    }
+
+    /**
+     * Rebuilds the index from the log and truncates the log at the first torn record.
+     */
+    private void recover(int indexCapacity) {
+
+        long start = System.nanoTime();
+
+        indexFile.close();
+
+        try {
+            Files.deleteIfExists(directory.resolve(INDEX_FILE));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        indexFile = createIndex(directory.resolve(INDEX_FILE), indexCapacity);
+        capacity = indexCapacity;
+        size = 0;
+        garbageBytes = 0;
+
+        long position = 0;
+
+        while (position < logFile.size()) {
+
+            int remaining = logFile.remaining(position);
+
+            if (remaining < RECORD_HEADER_BYTES) {
+                position += remaining;
+                continue;
+            }
+
+            int length = logFile.getInt(position);
+
+            if (length == PADDING) {
+                position += remaining;
+                continue;
+            }
+
+            if (length == 0) {
+                // pages reach the device out of order, records written after the hole must not come back later
+                logFile.truncate(position);
+                break;
+            }
+
+            if (length < 0 || length > remaining - RECORD_HEADER_BYTES) {
+                log.warn("Truncating {} at torn record of length {}, position={}", directory.resolve(LOG_FILE), length, position);
+                logFile.truncate(position);
+                break;
+            }
+
+            byte[] record = new byte[RECORD_HEADER_BYTES + length];
+
+            logFile.get(position, record, record.length);
+
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+
+            if (buffer.getInt(Integer.BYTES) != checksum(record)) {
+                log.warn("Truncating {} at record with invalid checksum, position={}", directory.resolve(LOG_FILE), position);
+                logFile.truncate(position);
+                break;
+            }
+
+            index(buffer.getLong(2 * Integer.BYTES), position);
+
+            position += record.length;
+        }
+
+        tail = position;
+
+        log.info("Recovered {} employees from {} log bytes in {} ms",
+                size,
+                tail,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private byte[] readPayload(long address) {
+
+        byte[] payload = new byte[logFile.getInt(address - 1)];
+
+        logFile.get(address - 1 + RECORD_HEADER_BYTES, payload, payload.length);
+
+        return payload;
+    }
+
+    private void put(long id, byte[] record) {
+
+        checkOpen();
+
+        tail = alignForRecord(logFile, tail, record.length);
+
+        logFile.put(tail, record);
+
+        index(id, tail);
+
+        tail += record.length;
+    }
+
+    /**
+     * Points the id's index slot to the record at the log position.
+     */
+    private void index(long id, long recordPosition) {
+
+        long position = find(indexFile, capacity, id);
+        long address = indexFile.getLong(position + Long.BYTES);
+
+        if (address != 0) {
+            garbageBytes += RECORD_HEADER_BYTES + logFile.getInt(address - 1);
+            indexFile.putLong(position + Long.BYTES, recordPosition + 1);
+            return;
+        }
+
+        indexFile.putLong(position, id);
+        indexFile.putLong(position + Long.BYTES, recordPosition + 1);
+
+        if (++size > capacity * LOAD_FACTOR) {
+            resizeIndex();
+        }
+    }
+
+    private void resizeIndex() {
+
+        Path resizingIndex = directory.resolve(INDEX_FILE + COMPACTING_SUFFIX);
+
+        try {
+            Files.deleteIfExists(resizingIndex);
+
+            int newCapacity = capacity << 1;
+
+            MappedFile newIndex = createIndex(resizingIndex, newCapacity);
+
+            for (int slot = 0; slot < capacity; slot++) {
+
+                long address = indexFile.getLong(slotPosition(slot) + Long.BYTES);
+
+                if (address != 0) {
+
+                    long id = indexFile.getLong(slotPosition(slot));
+                    long position = find(newIndex, newCapacity, id);
+
+                    newIndex.putLong(position, id);
+                    newIndex.putLong(position + Long.BYTES, address);
+                }
+            }
+
+            writeIndexHeader(newIndex, DIRTY, newCapacity, size, tail, garbageBytes);
+
+            Files.move(resizingIndex, directory.resolve(INDEX_FILE), StandardCopyOption.ATOMIC_MOVE);
+
+            indexFile.close();
+
+            indexFile = newIndex;
+            capacity = newCapacity;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot resize " + directory.resolve(INDEX_FILE), e);
+        }
+    }
+
+    /**
+     * @return position of the id's slot, or of the free slot where it should be put
+     */
+    private static long find(MappedFile index, int capacity, long id) {
+
+        int mask = capacity - 1;
+        int slot = CompactEmployeeStorage.hash(id) & mask;
+
+        while (index.getLong(slotPosition(slot) + Long.BYTES) != 0 && index.getLong(slotPosition(slot)) != id) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slotPosition(slot);
+    }
+
+    private static long slotPosition(int slot) {
+        return INDEX_HEADER_BYTES + (long) slot * INDEX_SLOT_BYTES;
+    }
+
+    private static MappedFile createIndex(Path path, int indexCapacity) {
+
+        MappedFile index = new MappedFile(path, INDEX_REGION_SIZE);
+
+        index.putLong(0, INDEX_MAGIC);
+        index.putInt(8, INDEX_VERSION);
+        index.putInt(12, DIRTY);
+        index.putInt(16, indexCapacity);
+
+        // map all the slots up front, the file is sparse until they are used
+        index.getLong(slotPosition(indexCapacity - 1));
+
+        return index;
+    }
+
+    /**
+     * Header layout: magic(long), version(int), state(int), capacity(int), size(int), log tail(long), garbage bytes(long).
+     * The header is only trusted when the state is {@link #CLEAN}.
+     */
+    private static void writeIndexHeader(MappedFile index,
+                                         int state,
+                                         int indexCapacity,
+                                         int indexSize,
+                                         long logTail,
+                                         long logGarbageBytes) {
+        index.putInt(16, indexCapacity);
+        index.putInt(20, indexSize);
+        index.putLong(24, logTail);
+        index.putLong(32, logGarbageBytes);
+        index.putInt(12, state);
+    }
+
+    /**
+     * @return position of the next record, moved to the next region if the record doesn't fit in the current one
+     */
+    private static long alignForRecord(MappedFile log, long position, int recordLength) {
+
+        if (recordLength > log.regionSize()) {
+            throw new IllegalArgumentException("Employee record of " + recordLength + " bytes exceeds the log region size");
+        }
+
+        int remaining = log.remaining(position);
+
+        if (recordLength <= remaining) {
+            return position;
+        }
+
+        if (remaining >= Integer.BYTES) {
+            log.putInt(position, PADDING);
+        }
+
+        return position + remaining;
+    }
+
+    private void maintain() {
+        try {
+            flush();
+
+            boolean compactionNeeded;
+
+            lock.readLock().lock();
+            try {
+                compactionNeeded = !closed && tail > 0 && garbageBytes > tail * compactionGarbageRatio;
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            if (compactionNeeded) {
+                compact();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Maintenance of {} failed", directory, e);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Employee storage " + directory + " is closed");
+        }
+    }
+
+    private static byte[] encode(Employee employee) {
+
+        return seal(EmployeeRecordCodec.encode(employee, RECORD_HEADER_BYTES), employee.getId());
+    }
+
+    /**
+     * Fills the header of the record.
+     */
+    private static byte[] seal(byte[] record, long id) {
+
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+
+        buffer.putInt(0, record.length - RECORD_HEADER_BYTES);
+        buffer.putLong(2 * Integer.BYTES, id);
+        buffer.putInt(Integer.BYTES, checksum(record));
+
+        return record;
+    }
+
+    /**
+     * @return CRC32 of the record's id and payload
+     */
+    private static int checksum(byte[] record) {
+
+        CRC32 crc = new CRC32();
+
+        crc.update(record, 2 * Integer.BYTES, record.length - 2 * Integer.BYTES);
+
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,166 @@
+package com.pplflw.challenge.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * File mapped into memory as a list of fixed-size regions, so it may grow beyond 2 GB.
+ * Regions are mapped on first access, which extends the file. Values must not cross region boundaries.
+ * Not thread-safe, callers guard mapping of new regions.
+ */
+final class MappedFile implements Closeable {
+
+    private final FileChannel channel;
+
+    private final int regionSize;
+
+    private final List<MappedByteBuffer> regions = new ArrayList<>();
+
+    MappedFile(Path path, int regionSize) {
+        this.regionSize = regionSize;
+
+        try {
+            this.channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+
+            long size = channel.size();
+
+            while ((long) regions.size() * regionSize < size) {
+                mapNext();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map " + path, e);
+        }
+    }
+
+    int regionSize() {
+        return regionSize;
+    }
+
+    /**
+     * @return size of the mapped regions, which is the file size
+     */
+    long size() {
+        return (long) regions.size() * regionSize;
+    }
+
+    /**
+     * @param position position in the file
+     * @return number of bytes between the position and the end of its region
+     */
+    int remaining(long position) {
+        return regionSize - offset(position);
+    }
+
+    int getInt(long position) {
+        return region(position).getInt(offset(position));
+    }
+
+    void putInt(long position, int value) {
+        region(position).putInt(offset(position), value);
+    }
+
+    long getLong(long position) {
+        return region(position).getLong(offset(position));
+    }
+
+    void putLong(long position, long value) {
+        region(position).putLong(offset(position), value);
+    }
+
+    void get(long position, byte[] destination, int length) {
+        region(position).duplicate().position(offset(position)).get(destination, 0, length);
+    }
+
+    void put(long position, byte[] source) {
+        region(position).duplicate().position(offset(position)).put(source);
+    }
+
+    /**
+     * Fills the rest of the position's region with zeros and drops all the following regions.
+     *
+     * @param position new end of data
+     */
+    void truncate(long position) {
+
+        ByteBuffer region = region(position).duplicate();
+
+        for (int i = offset(position); i < regionSize; i++) {
+            region.put(i, (byte) 0);
+        }
+
+        int keptRegions = (int) (position / regionSize) + 1;
+
+        while (regions.size() > keptRegions) {
+            regions.remove(regions.size() - 1);
+        }
+
+        try {
+            channel.truncate(size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes all the modified regions to the storage device.
+     */
+    void force() {
+        force(mappedRegions());
+    }
+
+    /**
+     * @return currently mapped regions, to be forced with {@link #force(List)} without guarding the file
+     */
+    List<MappedByteBuffer> mappedRegions() {
+        return new ArrayList<>(regions);
+    }
+
+    static void force(List<MappedByteBuffer> regions) {
+        for (MappedByteBuffer region : regions) {
+            region.force();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ByteBuffer region(long position) {
+
+        int index = (int) (position / regionSize);
+
+        while (index >= regions.size()) {
+            mapNext();
+        }
+
+        return regions.get(index);
+    }
+
+    private int offset(long position) {
+        return (int) (position % regionSize);
+    }
+
+    private void mapNext() {
+        try {
+            regions.add(channel.map(FileChannel.MapMode.READ_WRITE, size(), regionSize));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.pplflw.challenge.storage;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.statemachine.EmployeeState;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * {@link EmployeeStorage} decorator which takes point-in-time snapshots without blocking updates.
+ * While a snapshot is open, the first update of every employee saves the employee's pre-image,
+ * so the snapshot sees the storage as it was when the snapshot was opened (copy-on-write).
+ * Only pre-images of employees updated during the snapshot are kept in memory.
+ * Stored employees must not be modified in place, every update has to go through the storage.
+ * Closes the delegate if it is {@link Closeable}.
+ */
+public class SnapshottingEmployeeStorage implements EmployeeStorage, Closeable {
+
+    private final EmployeeStorage delegate;
+
+    /**
+     * Pre-images of the open snapshot, empty for employees which didn't exist. Null if no snapshot is open.
+     */
+    private volatile Map<Long, Optional<Employee>> preImages;
+
+    public SnapshottingEmployeeStorage(EmployeeStorage delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Employee updateEmployee(Employee employee) {
+
+        savePreImage(employee.getId());
+
+        return delegate.updateEmployee(employee);
+    }
+
+    @Override
+    public Collection<Employee> updateEmployees(Collection<Employee> employees) {
+
+        employees.forEach(employee -> savePreImage(employee.getId()));
+
+        return delegate.updateEmployees(employees);
+    }
+
+    @Override
+    public Optional<Employee> getEmployee(Long id) {
+        return delegate.getEmployee(id);
+    }
+
+    @Override
+    public Optional<Employee> updateIfState(Long id, EmployeeState expected, EmployeeState newState) {
+
+        // saving the pre-image of a change which turns out to fail is harmless, it is the current version
+        savePreImage(id);
+
+        return delegate.updateIfState(id, expected, newState);
+    }
+
+    @Override
+    public void forEachEmployee(Consumer<Employee> action) {
+        delegate.forEachEmployee(action);
+    }
+
+    /**
+     * Opens a snapshot of the current state. Must be called while no updates are in progress,
+     * and the snapshot has to be closed with {@link #closeSnapshot()}.
+     *
+     * @throws IllegalStateException if a snapshot is already open
+     */
+    public synchronized void openSnapshot() {
+
+        if (preImages != null) {
+            throw new IllegalStateException("A snapshot is already open");
+        }
+
+        preImages = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Visits the employees as they were when the snapshot was opened. May visit an employee more than once.
+     *
+     * @param action action to run for every employee of the snapshot
+     * @throws IllegalStateException if no snapshot is open
+     */
+    public void forEachSnapshotEmployee(Consumer<Employee> action) {
+
+        Map<Long, Optional<Employee>> snapshotPreImages = preImages;
+
+        if (snapshotPreImages == null) {
+            throw new IllegalStateException("No snapshot is open");
+        }
+
+        // the pre-image is saved before the delegate is updated, so it has to be looked up after the current version
+        delegate.forEachEmployee(employee -> {
+
+            Optional<Employee> preImage = snapshotPreImages.get(employee.getId());
+
+            if (preImage == null) {
+                action.accept(employee);
+            } else {
+                preImage.ifPresent(action);
+            }
+        });
+    }
+
+    /**
+     * @return number of pre-images kept for the open snapshot
+     */
+    public int preImages() {
+
+        Map<Long, Optional<Employee>> snapshotPreImages = preImages;
+
+        return snapshotPreImages == null ? 0 : snapshotPreImages.size();
+    }
+
+    /**
+     * Closes the open snapshot and drops its pre-images.
+     */
+    public synchronized void closeSnapshot() {
+        preImages = null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (delegate instanceof Closeable) {
+            ((Closeable) delegate).close();
+        }
+    }
+
+    private void savePreImage(Long id) {
+
+        Map<Long, Optional<Employee>> snapshotPreImages = preImages;
+
+        if (snapshotPreImages != null) {
+            snapshotPreImages.computeIfAbsent(id, delegate::getEmployee);
+        }
+    }
+}
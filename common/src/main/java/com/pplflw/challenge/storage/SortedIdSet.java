@@ -0,0 +1,237 @@
+package com.pplflw.challenge.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sorted set of primitive ids, for the indexes of {@link IndexedEmployeeStorage}.
+ * Ids are kept in sorted blocks of up to {@link #BLOCK_SIZE} ids, a full block is split in halves and a block is
+ * merged into a neighbour when both together hold at most half a full block. Every two neighbouring blocks so hold more
+ * than half a full block and, with block arrays growing by doubling, an id takes 8 to about 32 bytes and no boxed
+ * {@link Long}.
+ * Blocks are found by a binary search over their last ids, so add, remove and seek are O(log n) plus a block copy.
+ * Not thread-safe, guarded by the storage's lock.
+ */
+final class SortedIdSet {
+
+    static final int BLOCK_SIZE = 1024;
+
+    private static final int MIN_BLOCK_CAPACITY = 16;
+
+    private final List<Block> blocks = new ArrayList<>();
+
+    private int size;
+
+    /**
+     * @return true if the id has been added, false if it was already there
+     */
+    boolean add(long id) {
+
+        if (blocks.isEmpty()) {
+
+            Block block = new Block();
+
+            block.insert(0, id);
+            blocks.add(block);
+            size++;
+
+            return true;
+        }
+
+        int blockIndex = blockIndex(id);
+
+        if (blockIndex == blocks.size()) {
+            blockIndex--;
+        }
+
+        Block block = blocks.get(blockIndex);
+        int position = Arrays.binarySearch(block.ids, 0, block.size, id);
+
+        if (position >= 0) {
+            return false;
+        }
+
+        position = -position - 1;
+
+        if (block.size == BLOCK_SIZE) {
+
+            Block upper = block.splitUpper();
+
+            blocks.add(blockIndex + 1, upper);
+
+            if (position > block.size) {
+                block = upper;
+                position -= BLOCK_SIZE - upper.size;
+            }
+        }
+
+        block.insert(position, id);
+        size++;
+
+        return true;
+    }
+
+    /**
+     * @return true if the id has been removed, false if it wasn't there
+     */
+    boolean remove(long id) {
+
+        int blockIndex = blockIndex(id);
+
+        if (blockIndex == blocks.size()) {
+            return false;
+        }
+
+        Block block = blocks.get(blockIndex);
+        int position = Arrays.binarySearch(block.ids, 0, block.size, id);
+
+        if (position < 0) {
+            return false;
+        }
+
+        block.delete(position);
+        size--;
+
+        if (block.size == 0) {
+            blocks.remove(blockIndex);
+        } else {
+            mergeNeighbours(blockIndex);
+        }
+
+        return true;
+    }
+
+    /**
+     * @param afterId exclusive lower bound
+     * @param limit   maximum number of ids to copy
+     * @param target  array to copy the ids to, at least {@code limit} long
+     * @return number of copied ids, the ones following {@code afterId} in ascending order
+     */
+    int copyAfter(long afterId, int limit, long[] target) {
+
+        int copied = 0;
+        int blockIndex = afterId == Long.MAX_VALUE ? blocks.size() : blockIndex(afterId + 1);
+
+        for (; blockIndex < blocks.size() && copied < limit; blockIndex++) {
+
+            Block block = blocks.get(blockIndex);
+            int position = Arrays.binarySearch(block.ids, 0, block.size, afterId);
+
+            position = position >= 0 ? position + 1 : -position - 1;
+
+            int count = Math.min(block.size - position, limit - copied);
+
+            System.arraycopy(block.ids, position, target, copied, count);
+            copied += count;
+        }
+
+        return copied;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int blockCount() {
+        return blocks.size();
+    }
+
+    /**
+     * Merges the block with its neighbours that together with it hold at most half a full block.
+     */
+    private void mergeNeighbours(int blockIndex) {
+
+        Block block = blocks.get(blockIndex);
+
+        if (blockIndex + 1 < blocks.size() && block.size + blocks.get(blockIndex + 1).size <= BLOCK_SIZE / 2) {
+            block.append(blocks.remove(blockIndex + 1));
+        }
+
+        if (blockIndex > 0 && blocks.get(blockIndex - 1).size + block.size <= BLOCK_SIZE / 2) {
+            blocks.get(blockIndex - 1).append(blocks.remove(blockIndex));
+        }
+    }
+
+    /**
+     * @return index of the first block whose last id is not lower than the given one, the number of blocks if none
+     */
+    private int blockIndex(long id) {
+
+        int low = 0;
+        int high = blocks.size() - 1;
+
+        while (low <= high) {
+
+            int middle = (low + high) >>> 1;
+
+            if (blocks.get(middle).last() < id) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        return low;
+    }
+
+    private static final class Block {
+
+        private long[] ids = new long[MIN_BLOCK_CAPACITY];
+
+        private int size;
+
+        private long last() {
+            return ids[size - 1];
+        }
+
+        private void insert(int position, long id) {
+            ensureCapacity(size + 1);
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+
+        private void delete(int position) {
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+        }
+
+        /**
+         * Moves the upper half of the ids to a new block.
+         */
+        private Block splitUpper() {
+
+            Block upper = new Block();
+
+            upper.ensureCapacity(size / 2);
+            upper.size = size / 2;
+            size -= upper.size;
+            System.arraycopy(ids, size, upper.ids, 0, upper.size);
+
+            return upper;
+        }
+
+        /**
+         * Appends the ids of the following block.
+         */
+        private void append(Block next) {
+            ensureCapacity(size + next.size);
+            System.arraycopy(next.ids, 0, ids, size, next.size);
+            size += next.size;
+        }
+
+        private void ensureCapacity(int capacity) {
+
+            int newCapacity = ids.length;
+
+            while (newCapacity < capacity) {
+                newCapacity *= 2;
+            }
+
+            if (newCapacity > ids.length) {
+                ids = Arrays.copyOf(ids, Math.min(newCapacity, BLOCK_SIZE));
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.pplflw.challenge.codec;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.dto.EmployeeAddEventDto;
+import com.pplflw.challenge.dto.EmployeeChangeStateEventDto;
+import com.pplflw.challenge.dto.EmployeeEventHeaders;
+import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmployeeEventCodecTest {
+
+    @Test
+    public void testEventsAreEncodedAndDecoded() {
+
+        Employee employee = new Employee(Long.MIN_VALUE, EmployeeState.IN_CHECK, "Ilya Samsonov",
+                "\u0425\u043e\u043a\u043a\u0435\u0438\u0441\u0442 \uD83C\uDFD2", -24);
+
+        Object[] events = {
+                new EmployeeAddEventDto(employee),
+                new EmployeeAddEventDto(new Employee(0L, null, null, null, 0)),
+                new EmployeeAddEventDto(null),
+                new EmployeeChangeStateEventDto(Long.MAX_VALUE, EmployeeEvent.APPROVE),
+                new EmployeeChangeStateEventDto(null, null),
+                new EmployeeStatusEventDto(EmployeeEvent.CHECK, "DENIED", employee),
+                new EmployeeStatusEventDto(null, "", null)
+        };
+
+        for (Object event : events) {
+            assertTrue(EmployeeEventCodec.supports(event));
+            assertEquals(event, EmployeeEventCodec.decode(EmployeeEventCodec.encode(event)));
+        }
+    }
+
+    @Test
+    public void testStringsAreEncodedAsUtf8() {
+
+        String name = "Ren\u00e9 \u4e2d\u6587 \uD83D\uDE00 \uD800 end";
+
+        byte[] encoded = EmployeeEventCodec.encode(new EmployeeAddEventDto(new Employee(1L, null, name, null, 0)));
+        Employee decoded = ((EmployeeAddEventDto) EmployeeEventCodec.decode(encoded)).getEmployee();
+
+        // the lone surrogate is replaced the way String.getBytes does it
+        assertEquals(new String(name.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8), decoded.getName());
+    }
+
+    @Test
+    public void testMalformedEventsAreRejected() {
+
+        byte[] encoded = EmployeeEventCodec.encode(new EmployeeStatusEventDto(EmployeeEvent.CHECK, "ACCEPTED",
+                new Employee(1L, EmployeeState.ADDED, "Name", "Contract", 30)));
+
+        assertThrows(IllegalArgumentException.class, () -> EmployeeEventCodec.decode(Arrays.copyOf(encoded, encoded.length - 1)));
+        assertThrows(IllegalArgumentException.class, () -> EmployeeEventCodec.decode(Arrays.copyOf(encoded, encoded.length + 1)));
+        assertThrows(IllegalArgumentException.class, () -> EmployeeEventCodec.decode(new byte[]{42}));
+        assertThrows(IllegalArgumentException.class, () -> EmployeeEventCodec.decode(new byte[0]));
+        assertThrows(IllegalArgumentException.class, () -> EmployeeEventCodec.encode("not an event"));
+        assertFalse(EmployeeEventCodec.supports("not an event"));
+    }
+
+    @Test
+    public void testSerializerMarksContentType() {
+
+        EmployeeEventSerializer<Object> serializer = new EmployeeEventSerializer<>();
+        EmployeeEventDeserializer<Object> deserializer = new EmployeeEventDeserializer<>();
+
+        serializer.configure(Map.of(EmployeeEventSerializer.CODEC_CONFIG, "binary",
+                EmployeeEventSerializer.JSON_DELEGATE_CLASS_CONFIG, ToStringSerializer.class), false);
+        deserializer.configure(Map.of(EmployeeEventDeserializer.JSON_DELEGATE_CLASS_CONFIG, StringDeserializer.class.getName()), false);
+
+        EmployeeChangeStateEventDto event = new EmployeeChangeStateEventDto(1L, EmployeeEvent.ACTIVATE);
+
+        Headers binaryHeaders = new RecordHeaders();
+        byte[] binary = serializer.serialize("topic", binaryHeaders, event);
+
+        assertEquals(EmployeeEventHeaders.BINARY_CONTENT_TYPE, contentType(binaryHeaders));
+        assertEquals(event, deserializer.deserialize("topic", binaryHeaders, binary));
+
+        // values the codec doesn't support, and all values without headers, go to the JSON delegate
+        Headers jsonHeaders = new RecordHeaders();
+        byte[] json = serializer.serialize("topic", jsonHeaders, "{}");
+
+        assertEquals(EmployeeEventHeaders.JSON_CONTENT_TYPE, contentType(jsonHeaders));
+        assertEquals("{}", deserializer.deserialize("topic", jsonHeaders, json));
+        assertEquals(event.toString(), deserializer.deserialize("topic", new RecordHeaders(), serializer.serialize("topic", event)));
+
+        assertNull(serializer.serialize("topic", new RecordHeaders(), null));
+        assertThrows(SerializationException.class, () -> deserializer.deserialize("topic", binaryHeaders, new byte[]{42}));
+    }
+
+    @Test
+    public void testJsonCodecSkipsBinaryEncoding() {
+
+        EmployeeEventSerializer<Object> serializer = new EmployeeEventSerializer<>(new ToStringSerializer(), false);
+
+        Headers headers = new RecordHeaders();
+        EmployeeChangeStateEventDto event = new EmployeeChangeStateEventDto(1L, EmployeeEvent.ACTIVATE);
+
+        assertArrayEquals(event.toString().getBytes(StandardCharsets.UTF_8), serializer.serialize("topic", headers, event));
+        assertEquals(EmployeeEventHeaders.JSON_CONTENT_TYPE, contentType(headers));
+    }
+
+    private static String contentType(Headers headers) {
+        return new String(headers.lastHeader(EmployeeEventHeaders.CONTENT_TYPE).value(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Stands in for the JSON serializer, which is not available in this module.
+     */
+    public static class ToStringSerializer implements Serializer<Object> {
+
+        private final StringSerializer delegate = new StringSerializer();
+
+        @Override
+        public byte[] serialize(String topic, Object data) {
+            return delegate.serialize(topic, data.toString());
+        }
+    }
+}
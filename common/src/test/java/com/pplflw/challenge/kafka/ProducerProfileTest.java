@@ -0,0 +1,36 @@
+package com.pplflw.challenge.kafka;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProducerProfileTest {
+
+    @Test
+    public void testProfilesAreFoundByName() {
+        for (ProducerProfile profile : ProducerProfile.values()) {
+            assertSame(profile, ProducerProfile.forName(profile.getProfileName()));
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> ProducerProfile.forName("HIGH_THROUGHPUT"));
+    }
+
+    @Test
+    public void testProfileOverridesProducerProperties() {
+
+        Map<String, Object> properties = Map.of(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "kafka:9092",
+                ProducerConfig.LINGER_MS_CONFIG, 100);
+
+        Map<String, Object> tuned = ProducerProfile.HIGH_THROUGHPUT.apply(properties);
+
+        assertEquals("kafka:9092", tuned.get(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG));
+        assertEquals(20, tuned.get(ProducerConfig.LINGER_MS_CONFIG));
+        assertEquals("zstd", tuned.get(ProducerConfig.COMPRESSION_TYPE_CONFIG));
+        assertEquals(true, tuned.get(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG));
+        assertEquals("all", tuned.get(ProducerConfig.ACKS_CONFIG));
+        assertEquals(100, properties.get(ProducerConfig.LINGER_MS_CONFIG));
+    }
+}
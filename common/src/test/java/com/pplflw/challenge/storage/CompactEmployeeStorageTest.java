@@ -0,0 +1,124 @@
+package com.pplflw.challenge.storage;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactEmployeeStorageTest {
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testEmployeesAreStoredAndDecoded(boolean direct) {
+
+        CompactEmployeeStorage storage = new CompactEmployeeStorage(1, direct);
+
+        Employee employee = new Employee(Long.MIN_VALUE, EmployeeState.IN_CHECK, "Ilya Samsonov", "\u0425\u043e\u043a\u043a\u0435\u0438\u0441\u0442", 24);
+        Employee withNulls = new Employee(0L, null, null, null, 0);
+
+        storage.updateEmployee(employee);
+        storage.updateEmployee(withNulls);
+
+        assertEquals(Optional.of(employee), storage.getEmployee(Long.MIN_VALUE));
+        assertEquals(Optional.of(withNulls), storage.getEmployee(0L));
+        assertEquals(Optional.empty(), storage.getEmployee(1L));
+        assertEquals(2, storage.size());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testUpdatesAreAppliedInPlaceWhenTheyFit(boolean direct) {
+
+        CompactEmployeeStorage storage = new CompactEmployeeStorage(16, direct);
+
+        storage.updateEmployee(new Employee(1L, EmployeeState.ADDED, "Aliaksei Protas", "Washington Capitals prospect", 20));
+        storage.updateEmployee(new Employee(1L, EmployeeState.ACTIVE, "Aliaksei Protas", "Capitals", 21));
+
+        assertEquals(0, storage.garbageBytes());
+        assertEquals(Optional.of(new Employee(1L, EmployeeState.ACTIVE, "Aliaksei Protas", "Capitals", 21)),
+                storage.getEmployee(1L));
+
+        // doesn't fit any more, the record is moved
+        Employee moved = new Employee(1L, EmployeeState.ACTIVE, "Aliaksei Protas", "Washington Capitals forward, 2021-2023", 21);
+
+        storage.updateEmployee(moved);
+
+        assertTrue(storage.garbageBytes() > 0);
+        assertEquals(Optional.of(moved), storage.getEmployee(1L));
+        assertEquals(1, storage.size());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testIndexGrowsAndRecordsSpanChunks(boolean direct) {
+
+        CompactEmployeeStorage storage = new CompactEmployeeStorage(16, direct);
+
+        // long contract info fills a chunk with a few thousand records
+        String contractInfo = "x".repeat(1000);
+        int count = 3 * CompactEmployeeStorage.CHUNK_SIZE / 1000;
+
+        List<Employee> employees = new ArrayList<>(count);
+
+        for (long id = 0; id < count; id++) {
+            employees.add(new Employee(id * 1024, EmployeeState.values()[(int) (id % 4)], "Employee " + id, contractInfo, 30));
+        }
+
+        storage.updateEmployees(employees);
+
+        assertEquals(count, storage.size());
+
+        for (Employee employee : employees) {
+            assertEquals(Optional.of(employee), storage.getEmployee(employee.getId()));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testConcurrentStateChangesAreNotLost(boolean direct) {
+
+        CompactEmployeeStorage storage = new CompactEmployeeStorage(16, direct);
+
+        storage.updateEmployee(new Employee(1L, EmployeeState.ADDED, "Martin Fehervary", "Defenseman", 21));
+
+        assertEquals(Optional.empty(), storage.updateIfState(1L, EmployeeState.ACTIVE, EmployeeState.APPROVED));
+        assertEquals(Optional.empty(), storage.updateIfState(2L, EmployeeState.ADDED, EmployeeState.IN_CHECK));
+
+        EmployeeState[] states = EmployeeState.values();
+        int threads = 4;
+        int changesPerThread = 5000;
+
+        // every thread moves the employee to the next state, re-reading it whenever another thread has been faster
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[threads];
+
+        for (int i = 0; i < threads; i++) {
+            futures[i] = CompletableFuture.runAsync(() -> {
+                for (int changes = 0; changes < changesPerThread; ) {
+
+                    EmployeeState state = storage.getEmployee(1L).orElseThrow().getState();
+                    EmployeeState next = states[(state.ordinal() + 1) % states.length];
+                    Optional<Employee> changed = storage.updateIfState(1L, state, next);
+
+                    // the changed employee is returned, not a later state set by another thread
+                    if (changed.isPresent()) {
+                        assertEquals(next, changed.get().getState());
+                        changes++;
+                    }
+                }
+            });
+        }
+
+        CompletableFuture.allOf(futures).join();
+
+        assertEquals(Optional.of(new Employee(1L, states[threads * changesPerThread % states.length], "Martin Fehervary", "Defenseman", 21)),
+                storage.getEmployee(1L));
+        assertEquals(0, storage.garbageBytes());
+    }
+}
@@ -0,0 +1,120 @@
+package com.pplflw.challenge.storage;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EmployeeSnapshotsTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testSnapshotSeesStorageAsOfOpening() {
+
+        SnapshottingEmployeeStorage storage = new SnapshottingEmployeeStorage(new InMemoryEmployeeStorage());
+
+        storage.updateEmployee(new Employee(1L, EmployeeState.ADDED, "Connor McDavid", "Edmonton Oilers", 24));
+        storage.updateEmployee(new Employee(2L, EmployeeState.ADDED, "Leon Draisaitl", "Edmonton Oilers", 25));
+
+        storage.openSnapshot();
+
+        storage.updateEmployee(new Employee(1L, EmployeeState.IN_CHECK, "Connor McDavid", "Edmonton Oilers", 24));
+        storage.updateEmployee(new Employee(1L, EmployeeState.APPROVED, "Connor McDavid", "Edmonton Oilers", 24));
+        storage.updateEmployees(List.of(new Employee(3L, EmployeeState.ADDED, "Zach Hyman", "Edmonton Oilers", 29)));
+
+        assertEquals(2, storage.preImages());
+
+        Map<Long, Employee> snapshot = new HashMap<>();
+        storage.forEachSnapshotEmployee(employee -> snapshot.put(employee.getId(), employee));
+
+        storage.closeSnapshot();
+
+        assertEquals(Map.of(
+                1L, new Employee(1L, EmployeeState.ADDED, "Connor McDavid", "Edmonton Oilers", 24),
+                2L, new Employee(2L, EmployeeState.ADDED, "Leon Draisaitl", "Edmonton Oilers", 25)), snapshot);
+        assertEquals(0, storage.preImages());
+        assertEquals(EmployeeState.APPROVED, storage.getEmployee(1L).map(Employee::getState).orElseThrow());
+        assertThrows(IllegalStateException.class, () -> storage.forEachSnapshotEmployee(employee -> { }));
+    }
+
+    @Test
+    public void testLatestSnapshotIsLoaded() {
+
+        EmployeeSnapshots snapshots = new EmployeeSnapshots(directory, 2);
+        List<Employee> employees = createEmployees(100_000);
+
+        assertEquals(Optional.empty(), snapshots.loadLatest(new InMemoryEmployeeStorage()));
+
+        snapshots.write(Map.of("topic-0", 10L), writer -> employees.subList(0, 10).forEach(writer));
+        assertEquals(employees.size(), snapshots.write(Map.of("topic-0", 42L, "topic-1", 7L), employees::forEach));
+
+        CompactEmployeeStorage storage = new CompactEmployeeStorage(16, false);
+
+        assertEquals(Optional.of(Map.of("topic-0", 42L, "topic-1", 7L)), snapshots.loadLatest(storage));
+        assertEquals(employees.size(), storage.size());
+
+        for (Employee employee : employees) {
+            assertEquals(Optional.of(employee), storage.getEmployee(employee.getId()));
+        }
+    }
+
+    @Test
+    public void testCorruptSnapshotIsSkipped() throws IOException {
+
+        EmployeeSnapshots snapshots = new EmployeeSnapshots(directory, 2);
+
+        snapshots.write(Map.of("topic-0", 1L), createEmployees(1)::forEach);
+        snapshots.write(Map.of("topic-0", 2L), createEmployees(2)::forEach);
+
+        try (FileChannel channel = FileChannel.open(snapshots.list().get(0), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), channel.size() / 2);
+        }
+
+        InMemoryEmployeeStorage storage = new InMemoryEmployeeStorage();
+
+        assertEquals(Optional.of(Map.of("topic-0", 1L)), snapshots.loadLatest(storage));
+        assertTrue(storage.getEmployee(0L).isPresent());
+        assertFalse(storage.getEmployee(1L).isPresent());
+    }
+
+    @Test
+    public void testOnlyRetainedSnapshotsAreKept() {
+
+        EmployeeSnapshots snapshots = new EmployeeSnapshots(directory, 2);
+        List<Path> written = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            snapshots.write(Map.of(), createEmployees(i)::forEach);
+            written.add(snapshots.list().get(0));
+        }
+
+        assertEquals(List.of(written.get(3), written.get(2)), snapshots.list());
+    }
+
+    private static List<Employee> createEmployees(int count) {
+
+        List<Employee> employees = new ArrayList<>(count);
+
+        for (long id = 0; id < count; id++) {
+            employees.add(new Employee(id, EmployeeState.values()[(int) (id % EmployeeState.values().length)],
+                    id % 7 == 0 ? null : "Employee " + id, "Contract " + id, (int) (id % 60)));
+        }
+
+        return employees;
+    }
+}
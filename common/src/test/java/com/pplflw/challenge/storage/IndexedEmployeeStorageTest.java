@@ -0,0 +1,110 @@
+package com.pplflw.challenge.storage;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexedEmployeeStorageTest {
+
+    @Test
+    public void testIndexesFollowUpdates() {
+
+        InMemoryEmployeeStorage delegate = new InMemoryEmployeeStorage();
+
+        delegate.updateEmployee(new Employee(1L, EmployeeState.ADDED, "Braden Holtby", "Goaltender", 31));
+
+        IndexedEmployeeStorage storage = new IndexedEmployeeStorage(delegate);
+
+        storage.updateEmployee(new Employee(2L, EmployeeState.ADDED, "Dmitry Orlov", "Defenseman", 29));
+        storage.updateEmployees(List.of(new Employee(3L, EmployeeState.ADDED, "Lars Eller", "Center", 32),
+                new Employee(1L, EmployeeState.IN_CHECK, "Braden Holtby", "Goaltender", 31)));
+        storage.updateEmployee(new Employee(2L, EmployeeState.APPROVED, "Dmitry Orlov", "Defenseman", 30));
+        storage.updateIfState(4L, EmployeeState.ADDED, EmployeeState.IN_CHECK);
+        storage.updateIfState(3L, EmployeeState.ADDED, EmployeeState.IN_CHECK);
+        storage.updateIfState(1L, EmployeeState.ADDED, EmployeeState.IN_CHECK);
+
+        assertEquals(List.of(), ids(storage.findByState(EmployeeState.ADDED, null, 10)));
+        assertEquals(List.of(1L, 3L), ids(storage.findByState(EmployeeState.IN_CHECK, null, 10)));
+        assertEquals(List.of(2L), ids(storage.findByState(EmployeeState.APPROVED, null, 10)));
+        assertEquals(0, storage.countByState(EmployeeState.ACTIVE));
+
+        assertEquals(List.of(2L), ids(storage.findByAge(29, 30, null, 10)));
+        assertEquals(List.of(1L, 2L, 3L), ids(storage.findByAge(0, 100, null, 10)));
+        assertEquals(List.of(2L, 3L), ids(storage.findByAge(0, 100, 1L, 10)));
+        assertEquals(List.of(1L, 2L), ids(storage.findByAge(0, 100, null, 2)));
+        assertEquals(List.of(), ids(storage.findByAge(40, 50, null, 10)));
+        assertEquals(List.of(), ids(storage.findByAge(30, 29, null, 10)));
+    }
+
+    @Test
+    public void testPagesSpanIndexBlocks() {
+
+        IndexedEmployeeStorage storage = new IndexedEmployeeStorage(new InMemoryEmployeeStorage());
+        int employees = SortedIdSet.BLOCK_SIZE * 5;
+
+        // descending inserts split every block at its lower end
+        for (long id = employees; id > 0; id--) {
+            storage.updateEmployee(new Employee(id, EmployeeState.ADDED, "Employee #" + id, null, 20 + (int) (id % 3)));
+        }
+
+        // every third employee moves on
+        for (long id = 3; id <= employees; id += 3) {
+            storage.updateEmployee(new Employee(id, EmployeeState.IN_CHECK, "Employee #" + id, null, 20));
+        }
+
+        List<Long> pagedIds = new ArrayList<>();
+        Long afterId = null;
+        List<Employee> page;
+
+        while (!(page = storage.findByState(EmployeeState.ADDED, afterId, 1000)).isEmpty()) {
+            pagedIds.addAll(ids(page));
+            afterId = page.get(page.size() - 1).getId();
+        }
+
+        assertEquals(LongStream.rangeClosed(1, employees).filter(id -> id % 3 != 0).boxed().collect(Collectors.toList()), pagedIds);
+        assertEquals(employees / 3, storage.countByState(EmployeeState.IN_CHECK));
+        assertEquals(employees, ids(storage.findByAge(20, 22, null, employees)).size());
+        assertEquals(LongStream.rangeClosed(1, employees).filter(id -> id % 3 != 2).limit(50).boxed().collect(Collectors.toList()),
+                ids(storage.findByAge(20, 21, null, 50)));
+    }
+
+    @Test
+    public void testSparseIndexBlocksAreMerged() {
+
+        SortedIdSet ids = new SortedIdSet();
+        int count = SortedIdSet.BLOCK_SIZE * 8;
+
+        for (long id = 0; id < count; id++) {
+            ids.add(id);
+        }
+
+        int blocks = ids.blockCount();
+
+        // keep every eighth id
+        for (long id = 0; id < count; id++) {
+            if (id % 8 != 0) {
+                ids.remove(id);
+            }
+        }
+
+        long[] target = new long[count];
+
+        assertEquals(count / 8, ids.size());
+        assertEquals(count / 8, ids.copyAfter(Long.MIN_VALUE, count, target));
+        assertEquals(LongStream.range(0, count / 8).map(index -> index * 8).boxed().collect(Collectors.toList()),
+                Arrays.stream(target, 0, count / 8).boxed().collect(Collectors.toList()));
+        assertTrue(ids.blockCount() * 4 < blocks, ids.blockCount() + " of " + blocks + " blocks left");
+    }
+
+    private static List<Long> ids(List<Employee> employees) {
+        return employees.stream().map(Employee::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,241 @@
+package com.pplflw.challenge.storage;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedEmployeeStorageTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testEmployeesSurviveCleanRestart() {
+
+        Employee employee = new Employee(1L, EmployeeState.ADDED, "Aliaksei Protas", "Washington Capitals prospect", 20);
+        Employee withNulls = new Employee(Long.MIN_VALUE, null, null, null, 0);
+
+        try (MappedEmployeeStorage storage = open(directory)) {
+            storage.updateEmployee(employee);
+            storage.updateEmployee(withNulls);
+            storage.updateEmployee(new Employee(1L, EmployeeState.IN_CHECK, "Aliaksei Protas", "Washington Capitals prospect", 20));
+        }
+
+        try (MappedEmployeeStorage storage = open(directory)) {
+            assertEquals(2, storage.size());
+            assertTrue(storage.garbageBytes() > 0);
+            assertEquals(Optional.of(new Employee(1L, EmployeeState.IN_CHECK, "Aliaksei Protas", "Washington Capitals prospect", 20)),
+                    storage.getEmployee(1L));
+            assertEquals(Optional.of(withNulls), storage.getEmployee(Long.MIN_VALUE));
+            assertEquals(Optional.empty(), storage.getEmployee(2L));
+        }
+    }
+
+    @Test
+    public void testStateChangesAreConditional() {
+
+        Employee employee = new Employee(1L, EmployeeState.ADDED, "Connor McMichael", "Center", 20);
+
+        try (MappedEmployeeStorage storage = open(directory)) {
+            storage.updateEmployee(employee);
+
+            assertEquals(Optional.of(employee.withState(EmployeeState.IN_CHECK)),
+                    storage.updateIfState(1L, EmployeeState.ADDED, EmployeeState.IN_CHECK));
+            assertEquals(Optional.empty(), storage.updateIfState(1L, EmployeeState.ADDED, EmployeeState.APPROVED));
+            assertEquals(Optional.empty(), storage.updateIfState(2L, EmployeeState.ADDED, EmployeeState.IN_CHECK));
+        }
+
+        try (MappedEmployeeStorage storage = open(directory)) {
+            assertEquals(Optional.of(employee.withState(EmployeeState.IN_CHECK)), storage.getEmployee(1L));
+        }
+    }
+
+    @Test
+    public void testCrashRecoveryTruncatesTornTail() throws IOException {
+
+        List<Employee> employees = createEmployees(100);
+        Path crashed = Files.createDirectory(directory.resolve("crashed"));
+        long tail;
+
+        try (MappedEmployeeStorage storage = open(directory)) {
+            storage.updateEmployees(employees);
+            storage.flush();
+
+            tail = storage.logTail();
+
+            // the files as they are on the device when the process dies, the index is not marked clean
+            Files.copy(directory.resolve(MappedEmployeeStorage.LOG_FILE), crashed.resolve(MappedEmployeeStorage.LOG_FILE));
+            Files.copy(directory.resolve(MappedEmployeeStorage.INDEX_FILE), crashed.resolve(MappedEmployeeStorage.INDEX_FILE));
+        }
+
+        // a record which had been partially written when the process died
+        try (FileChannel log = FileChannel.open(crashed.resolve(MappedEmployeeStorage.LOG_FILE), StandardOpenOption.WRITE)) {
+            log.write(ByteBuffer.allocate(24).putInt(64).putInt(42).putLong(1000L).putLong(-1L).flip(), tail);
+        }
+
+        try (MappedEmployeeStorage storage = open(crashed)) {
+
+            assertEquals(100, storage.size());
+            assertEquals(tail, storage.logTail());
+
+            for (Employee employee : employees) {
+                assertEquals(Optional.of(employee), storage.getEmployee(employee.getId()));
+            }
+
+            storage.updateEmployee(new Employee(1000L, EmployeeState.ADDED, "Vitaly Abramov", "Ottawa Senators prospect", 22));
+        }
+
+        try (MappedEmployeeStorage storage = open(crashed)) {
+            assertEquals(101, storage.size());
+            assertEquals(EmployeeState.ADDED, storage.getEmployee(1000L).orElseThrow().getState());
+        }
+    }
+
+    @Test
+    public void testCrashRecoveryDropsRecordsBehindHole() throws IOException {
+
+        List<Employee> employees = createEmployees(100);
+        Path crashed = Files.createDirectory(directory.resolve("crashed"));
+        Path crashedAgain = Files.createDirectory(directory.resolve("crashed-again"));
+        long tail;
+
+        try (MappedEmployeeStorage storage = open(directory)) {
+            storage.updateEmployees(employees);
+            storage.flush();
+
+            tail = storage.logTail();
+
+            storage.updateEmployee(new Employee(1000L, EmployeeState.ADDED, "Lost", "Defenseman", 20));
+            storage.updateEmployee(new Employee(2000L, EmployeeState.ADDED, "Gone", "Defenseman", 20));
+            storage.flush();
+
+            // the files as they are on the device when the process dies, the index is not marked clean
+            Files.copy(directory.resolve(MappedEmployeeStorage.LOG_FILE), crashed.resolve(MappedEmployeeStorage.LOG_FILE));
+            Files.copy(directory.resolve(MappedEmployeeStorage.INDEX_FILE), crashed.resolve(MappedEmployeeStorage.INDEX_FILE));
+        }
+
+        // the page of the first record has not reached the device, the one of the second record has
+        try (FileChannel log = FileChannel.open(crashed.resolve(MappedEmployeeStorage.LOG_FILE), StandardOpenOption.WRITE)) {
+            log.write(ByteBuffer.allocate(Integer.BYTES).flip().limit(Integer.BYTES), tail);
+        }
+
+        try (MappedEmployeeStorage storage = open(crashed)) {
+
+            assertEquals(100, storage.size());
+            assertEquals(tail, storage.logTail());
+
+            // lands right in front of the record behind the hole
+            storage.updateEmployee(new Employee(3000L, EmployeeState.ADDED, "Next", "Defenseman", 20));
+            storage.flush();
+
+            Files.copy(crashed.resolve(MappedEmployeeStorage.LOG_FILE), crashedAgain.resolve(MappedEmployeeStorage.LOG_FILE));
+            Files.copy(crashed.resolve(MappedEmployeeStorage.INDEX_FILE), crashedAgain.resolve(MappedEmployeeStorage.INDEX_FILE));
+        }
+
+        try (MappedEmployeeStorage storage = open(crashedAgain)) {
+            assertEquals(101, storage.size());
+            assertEquals(Optional.empty(), storage.getEmployee(2000L));
+        }
+    }
+
+    @Test
+    public void testCorruptIndexHeaderIsNotTrusted() throws IOException {
+
+        List<Employee> employees = createEmployees(100);
+
+        try (MappedEmployeeStorage storage = open(directory)) {
+            storage.updateEmployees(employees);
+        }
+
+        // torn magic and a capacity which would not fit in memory
+        try (FileChannel index = FileChannel.open(directory.resolve(MappedEmployeeStorage.INDEX_FILE), StandardOpenOption.WRITE)) {
+            index.write(ByteBuffer.allocate(20).putLong(-1L).putInt(-1).putInt(-1).putInt(Integer.MAX_VALUE).flip(), 0);
+        }
+
+        try (MappedEmployeeStorage storage = open(directory)) {
+
+            assertEquals(100, storage.size());
+
+            for (Employee employee : employees) {
+                assertEquals(Optional.of(employee), storage.getEmployee(employee.getId()));
+            }
+        }
+    }
+
+    @Test
+    public void testCompactionDropsOverwrittenRecords() {
+
+        try (MappedEmployeeStorage storage = open(directory)) {
+
+            for (int i = 0; i < 10; i++) {
+                for (EmployeeState state : EmployeeState.values()) {
+                    storage.updateEmployee(new Employee((long) i, state, "Employee " + i, "Contract " + i, 30));
+                }
+            }
+
+            long tail = storage.logTail();
+
+            storage.compact();
+
+            assertEquals(0, storage.garbageBytes());
+            assertEquals(tail / EmployeeState.values().length, storage.logTail());
+            assertEquals(EmployeeState.ACTIVE, storage.getEmployee(9L).orElseThrow().getState());
+
+            storage.updateEmployee(new Employee(10L, EmployeeState.ADDED, "Employee 10", "Contract 10", 30));
+        }
+
+        try (MappedEmployeeStorage storage = open(directory)) {
+            assertEquals(11, storage.size());
+            assertEquals(EmployeeState.ACTIVE, storage.getEmployee(0L).orElseThrow().getState());
+            assertEquals(EmployeeState.ADDED, storage.getEmployee(10L).orElseThrow().getState());
+        }
+    }
+
+    @Test
+    public void testIndexGrows() {
+
+        List<Employee> employees = createEmployees(1000);
+
+        try (MappedEmployeeStorage storage = open(directory)) {
+            storage.updateEmployees(employees);
+        }
+
+        try (MappedEmployeeStorage storage = open(directory)) {
+
+            assertEquals(1000, storage.size());
+
+            for (Employee employee : employees) {
+                assertEquals(Optional.of(employee), storage.getEmployee(employee.getId()));
+            }
+        }
+    }
+
+    private static MappedEmployeeStorage open(Path directory) {
+        return new MappedEmployeeStorage(directory, 16, Duration.ofHours(1), 0.5);
+    }
+
+    private static List<Employee> createEmployees(int count) {
+
+        List<Employee> employees = new ArrayList<>(count);
+
+        for (long id = 0; id < count; id++) {
+            employees.add(new Employee(id * 31, EmployeeState.values()[(int) (id % 4)], "Employee " + id, "Contract " + id, 30));
+        }
+
+        return employees;
+    }
+}
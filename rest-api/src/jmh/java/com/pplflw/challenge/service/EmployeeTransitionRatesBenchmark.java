@@ -0,0 +1,50 @@
+package com.pplflw.challenge.service;
+
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cost of counting a state change attempt in {@link EmployeeTransitionRates} with 8 threads counting concurrently:
+ * - all the threads counting the same event, so they compete for the same buckets,
+ * - every thread counting random events, spread over the 8 series.
+ * A single shared {@link LongAdder}, without any windowing, is measured as the baseline.
+ * <p>
+ * Run with {@code gradle :rest-api:jmh}, add {@code -prof gc} to see that counting doesn't allocate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(8)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmployeeTransitionRatesBenchmark {
+
+    private static final EmployeeEvent[] EVENTS = EmployeeEvent.values();
+
+    private final EmployeeTransitionRates rates = new EmployeeTransitionRates();
+
+    private final LongAdder adder = new LongAdder();
+
+    @Benchmark
+    public void sameEvent() {
+        rates.record(EmployeeEvent.APPROVE, true, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public void randomEvents() {
+
+        int series = ThreadLocalRandom.current().nextInt(EVENTS.length * 2);
+
+        rates.record(EVENTS[series >> 1], (series & 1) == 0, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public void longAdder() {
+        adder.increment();
+    }
+}
@@ -0,0 +1,50 @@
+package com.pplflw.challenge.service.id;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures IDs per second of the {@link EmployeeIdGenerator} implementations with 16 threads competing for IDs.
+ * The previous per-JVM {@link AtomicLong} counter is measured as the baseline.
+ * <p>
+ * Run with {@code gradle :rest-api:jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(16)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmployeeIdGeneratorBenchmark {
+
+    private final AtomicLong atomicCounter = new AtomicLong();
+
+    private final EmployeeIdGenerator snowflake = new SnowflakeEmployeeIdGenerator(1);
+
+    private EmployeeIdGenerator blockLeasing;
+
+    @Setup
+    public void setUp() {
+        AtomicLong sharedSource = new AtomicLong(1);
+
+        blockLeasing = new BlockLeasingEmployeeIdGenerator(sharedSource::getAndAdd, 10_000);
+    }
+
+    @Benchmark
+    public long atomicCounter() {
+        return atomicCounter.incrementAndGet();
+    }
+
+    @Benchmark
+    public long snowflake() {
+        return snowflake.nextId();
+    }
+
+    @Benchmark
+    public long blockLeasing() {
+        return blockLeasing.nextId();
+    }
+}
@@ -0,0 +1,145 @@
+package com.pplflw.challenge.service.search;
+
+import com.pplflw.challenge.service.dto.EmployeeSearchResultDto;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Top-10 name searches in {@link EmployeeNameIndex} with ten million employees, names are random pairs
+ * of 1600 first names and 64000 last names made of syllables:
+ * - a two-letter prefix, matching many words,
+ * - a whole first name,
+ * - a part of a last name, found by the trigrams,
+ * - a first name followed by itself, which all the trigrams are common for but only a few names contain,
+ * so the trigram postings are intersected to the end.
+ * A scan of all the names for the last query is measured as the baseline.
+ * Also measures indexing batches of 10000 new employees.
+ * <p>
+ * Run with {@code gradle :rest-api:jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3500m")
+public class EmployeeNameIndexBenchmark {
+
+    private static final int EMPLOYEES = 10_000_000;
+
+    private static final int LIMIT = 10;
+
+    private static final int NEW_EMPLOYEES = 10_000;
+
+    private static final String[] SYLLABLES = {"ka", "lo", "mi", "ra", "ne", "to", "vi", "sa", "de", "ku",
+            "po", "li", "ma", "re", "no", "ta", "ve", "si", "da", "ko", "pe", "lu", "mo", "ri", "na", "te", "vo",
+            "su", "di", "ke", "pa", "le", "mu", "ro", "ni", "tu", "va", "se", "do", "ki"};
+
+    private final String[] firstNames = new String[SYLLABLES.length * SYLLABLES.length];
+
+    private final String[] lastNames = new String[SYLLABLES.length * SYLLABLES.length * SYLLABLES.length];
+
+    private final EmployeeNameIndex index = new EmployeeNameIndex();
+
+    private String[] names;
+
+    private String firstName;
+
+    private String lastNamePart;
+
+    private String rare;
+
+    private long nextId = EMPLOYEES;
+
+    @Setup
+    public void setUp() {
+
+        for (int i = 0; i < firstNames.length; i++) {
+            firstNames[i] = capitalize(SYLLABLES[i % SYLLABLES.length] + SYLLABLES[i / SYLLABLES.length]);
+        }
+
+        for (int i = 0; i < lastNames.length; i++) {
+            lastNames[i] = capitalize(SYLLABLES[i % SYLLABLES.length]
+                    + SYLLABLES[i / SYLLABLES.length % SYLLABLES.length]
+                    + SYLLABLES[i / SYLLABLES.length / SYLLABLES.length] + "n");
+        }
+
+        Random random = new Random(42);
+
+        names = new String[EMPLOYEES];
+
+        for (int id = 0; id < EMPLOYEES; id++) {
+            names[id] = randomName(random);
+            index.index(id, names[id]);
+        }
+
+        firstName = firstNames[17].toLowerCase();
+        lastNamePart = lastNames[12345].substring(2, 6).toLowerCase();
+        rare = (firstNames[3] + " " + firstNames[3]).toLowerCase();
+    }
+
+    @Benchmark
+    public List<EmployeeSearchResultDto> prefix() {
+        return index.search("ka", LIMIT);
+    }
+
+    @Benchmark
+    public List<EmployeeSearchResultDto> word() {
+        return index.search(firstName, LIMIT);
+    }
+
+    @Benchmark
+    public List<EmployeeSearchResultDto> substring() {
+        return index.search(lastNamePart, LIMIT);
+    }
+
+    @Benchmark
+    public List<EmployeeSearchResultDto> rare() {
+        return index.search(rare, LIMIT);
+    }
+
+    @Benchmark
+    public int rareScan() {
+
+        int found = 0;
+
+        for (String name : names) {
+            for (int i = 0; i + rare.length() <= name.length(); i++) {
+                if (name.regionMatches(true, i, rare, 0, rare.length())) {
+                    if (++found == LIMIT) {
+                        return found;
+                    }
+                    break;
+                }
+            }
+        }
+
+        return found;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 10)
+    public int indexNewEmployees() {
+
+        Random random = new Random(nextId);
+
+        for (int i = 0; i < NEW_EMPLOYEES; i++) {
+            index.index(nextId++, randomName(random));
+        }
+
+        return index.size();
+    }
+
+    private String randomName(Random random) {
+        return firstNames[random.nextInt(firstNames.length)] + " " + lastNames[random.nextInt(lastNames.length)];
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+}
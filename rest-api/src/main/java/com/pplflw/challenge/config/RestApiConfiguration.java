@@ -2,54 +2,124 @@ package com.pplflw.challenge.config;
 
 import com.pplflw.challenge.dto.EmployeeStatusEventDto;
 import com.pplflw.challenge.dto.EmployeeEventDto;
+import com.pplflw.challenge.kafka.ProducerProfile;
+import com.pplflw.challenge.service.id.BlockLeasingEmployeeIdGenerator;
+import com.pplflw.challenge.service.id.EmployeeIdGenerator;
+import com.pplflw.challenge.service.id.FileIdBlockSource;
+import com.pplflw.challenge.service.id.SnowflakeEmployeeIdGenerator;
+import com.pplflw.challenge.storage.InMemoryEmployeeStorage;
+import com.pplflw.challenge.storage.IndexedEmployeeStorage;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.context.annotation.Scope;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.core.reactive.ReactiveKafkaConsumerTemplate;
 import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate;
 import reactor.kafka.receiver.ReceiverOptions;
 import reactor.kafka.sender.SenderOptions;
 
+import java.nio.file.Path;
 import java.util.Collections;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
 
 @Configuration
 @EnableKafka
 @Slf4j
 public class RestApiConfiguration {
 
-    private final AtomicInteger clientSuffixGenerator = new AtomicInteger();
+    /**
+     * Producer of the single add-employee events.
+     */
+    @Bean
+    public ReactiveKafkaProducerTemplate<String, EmployeeEventDto> addKafkaProducer(
+            @Value(value = "${com.pplflw.challenge.kafka.producer-profile.employee-add-topic}") String profileName,
+            KafkaProperties kafkaProperties) {
+        return new ReactiveKafkaProducerTemplate<>(senderOptions(ProducerProfile.forName(profileName), kafkaProperties));
+    }
 
+    /**
+     * Producer of the single change-state events.
+     */
     @Bean
-    public ReactiveKafkaProducerTemplate<String, EmployeeEventDto> kafkaProducer(KafkaProperties kafkaProperties) {
-        return new ReactiveKafkaProducerTemplate<>(SenderOptions.create(kafkaProperties.buildProducerProperties()));
+    public ReactiveKafkaProducerTemplate<String, EmployeeEventDto> changeStateKafkaProducer(
+            @Value(value = "${com.pplflw.challenge.kafka.producer-profile.employee-change-state-topic}") String profileName,
+            KafkaProperties kafkaProperties) {
+        return new ReactiveKafkaProducerTemplate<>(senderOptions(ProducerProfile.forName(profileName), kafkaProperties));
     }
 
+    /**
+     * Producer of the bulk imports and state changes, sending to both topics. Reports a failed record in its send result
+     * instead of failing the whole bulk.
+     */
+    @Bean
+    public ReactiveKafkaProducerTemplate<String, EmployeeEventDto> bulkKafkaProducer(
+            @Value(value = "${com.pplflw.challenge.kafka.producer-profile.bulk}") String profileName,
+            KafkaProperties kafkaProperties) {
+        return new ReactiveKafkaProducerTemplate<>(senderOptions(ProducerProfile.forName(profileName), kafkaProperties)
+                .stopOnError(false));
+    }
+
+    /**
+     * @return sender options tuned by the profile, the sender keeps at most the profile's max-in-flight records unacknowledged
+     */
+    private static SenderOptions<String, EmployeeEventDto> senderOptions(ProducerProfile profile, KafkaProperties kafkaProperties) {
+        return SenderOptions.<String, EmployeeEventDto>create(profile.apply(kafkaProperties.buildProducerProperties()))
+                .maxInFlight(profile.getMaxInFlight());
+    }
+
+    /**
+     * The only employee-status-topic consumer of the node, shared by all the status subscribers.
+     */
     @Bean
-    @Scope("prototype")
     public ReactiveKafkaConsumerTemplate<String, EmployeeStatusEventDto> kafkaConsumer(
             @Value(value = "${com.pplflw.challenge.kafka.employee-status-topic}") String topic,
             @Value(value = "${spring.kafka.consumer.client-id}") String clientId,
             @Value(value = "${spring.kafka.consumer.group-id}") String groupId,
+            @Value(value = "${com.pplflw.challenge.node-id}") String nodeId,
             KafkaProperties kafkaProperties) {
 
         Map<String, Object> consumerProperties = kafkaProperties.buildConsumerProperties();
 
-        int consumerNumber = clientSuffixGenerator.incrementAndGet();
-
-        // to be able to register more than one consumer
-        consumerProperties.put(ConsumerConfig.CLIENT_ID_CONFIG, clientId + "-" + consumerNumber);
-        // To make all the consumers receive events in parallel
-        consumerProperties.put(ConsumerConfig.GROUP_ID_CONFIG, groupId + "-" + consumerNumber);
+        consumerProperties.put(ConsumerConfig.CLIENT_ID_CONFIG, clientId + "-" + nodeId);
+        // Every node has to receive all the status events, so nodes must not share a consumer group
+        consumerProperties.put(ConsumerConfig.GROUP_ID_CONFIG, groupId + "-" + nodeId);
 
         return new ReactiveKafkaConsumerTemplate<>(ReceiverOptions
                 .<String, EmployeeStatusEventDto>create(consumerProperties)
                 .subscription(Collections.singleton(topic)));
     }
+
+    /**
+     * Storage of {@link com.pplflw.challenge.service.EmployeeReadModel}, indexed for the queries by state and age.
+     */
+    @Bean
+    public IndexedEmployeeStorage readModelStorage() {
+        return new IndexedEmployeeStorage(new InMemoryEmployeeStorage());
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "com.pplflw.challenge.id-generator.type", havingValue = "snowflake", matchIfMissing = true)
+    public EmployeeIdGenerator snowflakeEmployeeIdGenerator(
+            @Value(value = "${com.pplflw.challenge.id-generator.node-id:#{null}}") Long nodeId) {
+
+        // no default, two nodes started with the same default would generate the same IDs
+        if (nodeId == null) {
+            throw new IllegalStateException("com.pplflw.challenge.id-generator.node-id has to be set to a node ID "
+                    + "unique within the cluster, 0.." + SnowflakeEmployeeIdGenerator.MAX_NODE_ID);
+        }
+
+        return new SnowflakeEmployeeIdGenerator(nodeId);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "com.pplflw.challenge.id-generator.type", havingValue = "block")
+    public EmployeeIdGenerator blockLeasingEmployeeIdGenerator(
+            @Value(value = "${com.pplflw.challenge.id-generator.block-file}") Path blockFile,
+            @Value(value = "${com.pplflw.challenge.id-generator.block-size}") int blockSize) {
+        return new BlockLeasingEmployeeIdGenerator(new FileIdBlockSource(blockFile), blockSize);
+    }
 }
\ No newline at end of file
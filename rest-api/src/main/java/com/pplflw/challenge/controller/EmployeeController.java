@@ -4,16 +4,25 @@ import com.pplflw.challenge.domain.Employee;
 import com.pplflw.challenge.dto.EmployeeChangeStateEventDto;
 import com.pplflw.challenge.dto.EmployeeStatusEventDto;
 import com.pplflw.challenge.service.ReactiveEmployeeService;
+import com.pplflw.challenge.service.dto.EmployeeImportResultDto;
+import com.pplflw.challenge.service.dto.EmployeeSearchResultDto;
+import com.pplflw.challenge.service.dto.EmployeeStateChangeResultDto;
+import com.pplflw.challenge.service.dto.EmployeeViewDto;
 import com.pplflw.challenge.service.dto.InputEmployeeDto;
+import com.pplflw.challenge.service.dto.InputStateChangesDto;
 import com.pplflw.challenge.statemachine.EmployeeEvent;
+import com.pplflw.challenge.statemachine.EmployeeState;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import javax.validation.Valid;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Employee controller. Describes API endpoints, validates input data then passes it to {@link ReactiveEmployeeService}.
@@ -22,6 +31,8 @@ import javax.validation.Valid;
 @RequestMapping("/employees")
 public class EmployeeController {
 
+    private static final int MAX_SEARCH_LIMIT = 100;
+
     private final ReactiveEmployeeService reactiveEmployeeService;
 
     public EmployeeController(ReactiveEmployeeService reactiveEmployeeService) {
@@ -36,6 +47,22 @@ public class EmployeeController {
         return reactiveEmployeeService.addEmployee(employeeDto);
     }
 
+    @PostMapping(value = "/bulk",
+            consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Flux<EmployeeImportResultDto> bulkAdd(@RequestBody Flux<String> lines) {
+        return reactiveEmployeeService.importEmployees(lines);
+    }
+
+    @PutMapping(value = "/bulk",
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<List<EmployeeStateChangeResultDto>> bulkChangeState(@Valid @RequestBody InputStateChangesDto changesDto) {
+        return reactiveEmployeeService.changeEmployeeStates(changesDto.getChanges());
+    }
+
     @PutMapping(value = "/{employeeId}/{event}",
             produces = MediaType.APPLICATION_JSON_VALUE)
     @ResponseStatus(HttpStatus.ACCEPTED)
@@ -43,6 +70,62 @@ public class EmployeeController {
         return reactiveEmployeeService.changeEmployeeState(employeeId, event);
     }
 
+    @PutMapping(value = "/{employeeId}/{event}",
+            params = "wait=true",
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<EmployeeStatusEventDto> changeStateAndWait(@PathVariable Long employeeId, @PathVariable EmployeeEvent event) {
+        return reactiveEmployeeService.changeEmployeeStateAndWait(employeeId, event)
+                .onErrorMap(TimeoutException.class, exception -> new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT,
+                        "No status event of the state change of employee with id=" + employeeId + " has been received in time"));
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Flux<Employee> list(@RequestParam(required = false) EmployeeState state,
+                               @RequestParam(required = false) Integer minAge,
+                               @RequestParam(required = false) Integer maxAge,
+                               @RequestParam(required = false) Long after,
+                               @RequestParam(required = false) Long limit) {
+
+        if (state != null && minAge == null && maxAge == null) {
+            return reactiveEmployeeService.getEmployees(state, after, limit);
+        }
+
+        if (state == null && (minAge != null || maxAge != null)) {
+
+            if (minAge != null && maxAge != null && minAge > maxAge) {
+                return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "minAge can't be greater than maxAge"));
+            }
+
+            return reactiveEmployeeService.getEmployees(minAge == null ? 0 : minAge,
+                    maxAge == null ? Integer.MAX_VALUE : maxAge,
+                    after,
+                    limit);
+        }
+
+        return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Either state or minAge/maxAge has to be given"));
+    }
+
+    @GetMapping(value = "/search", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Flux<EmployeeSearchResultDto> search(@RequestParam String q, @RequestParam(defaultValue = "10") int limit) {
+
+        if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit has to be 1.." + MAX_SEARCH_LIMIT));
+        }
+
+        return reactiveEmployeeService.searchEmployees(q, limit);
+    }
+
+    @GetMapping(value = "/{employeeId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<EmployeeViewDto> get(@PathVariable Long employeeId) {
+        return reactiveEmployeeService.getEmployee(employeeId)
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "Cannot find employee with id=" + employeeId)));
+    }
+
     @GetMapping(value = "{employeeId}/status", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     @ResponseStatus(HttpStatus.OK)
     public Flux<ServerSentEvent<EmployeeStatusEventDto>> status(@PathVariable Long employeeId) {
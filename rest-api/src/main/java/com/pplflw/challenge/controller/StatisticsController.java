@@ -0,0 +1,48 @@
+package com.pplflw.challenge.controller;
+
+import com.pplflw.challenge.service.EmployeeStatistics;
+import com.pplflw.challenge.service.EmployeeTransitionRates;
+import com.pplflw.challenge.service.dto.EmployeeStatisticsDto;
+import com.pplflw.challenge.service.dto.EmployeeTransitionRatesDto;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Statistics controller. Serves the counts maintained by {@link EmployeeStatistics} and {@link EmployeeTransitionRates}.
+ */
+@RestController
+@RequestMapping("/statistics")
+public class StatisticsController {
+
+    private final EmployeeStatistics employeeStatistics;
+
+    private final EmployeeTransitionRates employeeTransitionRates;
+
+    public StatisticsController(EmployeeStatistics employeeStatistics, EmployeeTransitionRates employeeTransitionRates) {
+        this.employeeStatistics = employeeStatistics;
+        this.employeeTransitionRates = employeeTransitionRates;
+    }
+
+    @GetMapping(value = "/employees", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<EmployeeStatisticsDto> employees() {
+        return Mono.fromSupplier(employeeStatistics::getStatistics);
+    }
+
+    @GetMapping(value = "/transitions", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public Mono<EmployeeTransitionRatesDto> transitions(@RequestParam(defaultValue = "MINUTES") ChronoUnit resolution) {
+        return Mono.fromSupplier(() -> employeeTransitionRates.getRates(resolution))
+                .onErrorMap(IllegalArgumentException.class,
+                        exception -> new ResponseStatusException(HttpStatus.BAD_REQUEST, exception.getMessage()));
+    }
+}
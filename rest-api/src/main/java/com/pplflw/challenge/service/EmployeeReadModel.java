@@ -0,0 +1,167 @@
+package com.pplflw.challenge.service;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import com.pplflw.challenge.service.dto.EmployeeViewDto;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import com.pplflw.challenge.storage.IndexedEmployeeStorage;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.reactive.ReactiveKafkaConsumerTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local materialized view of the current employee states, built incrementally from the status events
+ * received by {@link EmployeeStatusHub}, so point queries don't need a Kafka consumer of their own.
+ * Applies employee creations and accepted state changes only.
+ * Employees are also listed by state or age range in pages, from the storage's indexes.
+ * Freshness is tracked for the whole view: the publishing time of the latest applied event and the lag,
+ * the number of events between the applied ones and the end of the status topic, refreshed periodically
+ * from the end offsets of the shared consumer.
+ */
+@Slf4j
+@Component
+public class EmployeeReadModel implements EmployeeStatusListener {
+
+    private static final String ACCEPTED = "ACCEPTED";
+
+    private final ReactiveKafkaConsumerTemplate<String, EmployeeStatusEventDto> kafkaConsumer;
+
+    private final IndexedEmployeeStorage employeeStorage;
+
+    /**
+     * Offset of the next record to apply, per partition.
+     */
+    private final Map<TopicPartition, Long> positions = new ConcurrentHashMap<>();
+
+    @Value(value = "${com.pplflw.challenge.read-model.lag-refresh-interval}")
+    private Duration lagRefreshInterval;
+
+    private volatile long lag = -1;
+
+    /**
+     * Latest publishing time of the applied status events, only updated by the consumer thread.
+     */
+    private volatile long asOf = -1;
+
+    private Disposable lagRefresh;
+
+    public EmployeeReadModel(ReactiveKafkaConsumerTemplate<String, EmployeeStatusEventDto> kafkaConsumer,
+                             IndexedEmployeeStorage employeeStorage) {
+        this.kafkaConsumer = kafkaConsumer;
+        this.employeeStorage = employeeStorage;
+    }
+
+    @PostConstruct
+    public void start() {
+        lagRefresh = Flux.interval(lagRefreshInterval)
+                .concatMap(tick -> kafkaConsumer.doOnConsumer(this::computeLag)
+                        // the consumer is not available until the hub has subscribed
+                        .onErrorResume(throwable -> {
+                            log.debug("Cannot refresh the read model lag: {}", throwable.getMessage());
+                            return Mono.empty();
+                        }))
+                .subscribe(computedLag -> lag = computedLag);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (lagRefresh != null) {
+            lagRefresh.dispose();
+        }
+    }
+
+    @Override
+    public void onStatusRecord(ConsumerRecord<String, EmployeeStatusEventDto> record) {
+
+        EmployeeStatusEventDto eventDto = record.value();
+
+        if (eventDto != null && eventDto.getEmployee() != null
+                && (eventDto.getEvent() == null || ACCEPTED.equals(eventDto.getResult()))) {
+            employeeStorage.updateEmployee(eventDto.getEmployee());
+        }
+
+        positions.put(new TopicPartition(record.topic(), record.partition()), record.offset() + 1);
+        // partitions are consumed independently, so their timestamps interleave
+        asOf = Math.max(asOf, record.timestamp());
+    }
+
+    /**
+     * @param employeeId employee's ID
+     * @return the employee's current state with the view's freshness, or empty if the view doesn't know the employee
+     */
+    public Optional<EmployeeViewDto> getEmployee(Long employeeId) {
+        return employeeStorage.getEmployee(employeeId)
+                .map(employee -> new EmployeeViewDto(employee, lag, asOf < 0 ? null : Instant.ofEpochMilli(asOf)));
+    }
+
+    /**
+     * @param state   employees' state
+     * @param afterId ID of the last employee of the previous page, null for the first page
+     * @param limit   maximum number of employees
+     * @return employees in the state, in ascending ID order
+     */
+    public List<Employee> getEmployees(EmployeeState state, Long afterId, int limit) {
+        return employeeStorage.findByState(state, afterId, limit);
+    }
+
+    /**
+     * @param minAge  minimum age, inclusive
+     * @param maxAge  maximum age, inclusive
+     * @param afterId ID of the last employee of the previous page, null for the first page
+     * @param limit   maximum number of employees
+     * @return employees in the age range, in ascending ID order
+     */
+    public List<Employee> getEmployees(int minAge, int maxAge, Long afterId, int limit) {
+        return employeeStorage.findByAge(minAge, maxAge, afterId, limit);
+    }
+
+    /**
+     * @return number of status events not yet applied to the view as of the latest refresh, -1 if not known yet
+     */
+    public long lag() {
+        return lag;
+    }
+
+    /**
+     * Runs on the consumer's thread.
+     */
+    private long computeLag(Consumer<String, EmployeeStatusEventDto> consumer) {
+
+        Set<TopicPartition> assignment = consumer.assignment();
+        Map<TopicPartition, Long> endOffsets = consumer.endOffsets(assignment);
+
+        Set<TopicPartition> notConsumed = new HashSet<>(assignment);
+        notConsumed.removeAll(positions.keySet());
+
+        Map<TopicPartition, Long> beginningOffsets = notConsumed.isEmpty() ? Map.of() : consumer.beginningOffsets(notConsumed);
+
+        long computedLag = 0;
+
+        for (Map.Entry<TopicPartition, Long> endOffset : endOffsets.entrySet()) {
+
+            Long position = positions.getOrDefault(endOffset.getKey(), beginningOffsets.get(endOffset.getKey()));
+
+            computedLag += Math.max(0, endOffset.getValue() - (position == null ? 0 : position));
+        }
+
+        return computedLag;
+    }
+}
@@ -0,0 +1,284 @@
+package com.pplflw.challenge.service;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import com.pplflw.challenge.service.dto.EmployeeStatisticsDto;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Employee counts per state, age range and contract info, updated incrementally from the status events received by
+ * {@link EmployeeStatusHub}, so queries read the counters instead of scanning the employees.
+ * Applies employee creations and accepted state changes only, like {@link EmployeeReadModel}.
+ * The counted attributes of every employee are remembered, packed into a long, so a change moves the employee from
+ * its old counters to the new ones and a redelivered creation doesn't count the employee twice.
+ * Contract infos are numbered, a number is freed when no employee has the contract info any more and reused by
+ * the next new one, so only the contract infos of current employees are kept.
+ * <p>
+ * Counters are {@link AtomicLong}s written by the consumer thread only, queries just read them.
+ * A query running during an update may see the employee in neither or both of its old and new counters.
+ */
+@Component
+public class EmployeeStatistics implements EmployeeStatusListener {
+
+    private static final String ACCEPTED = "ACCEPTED";
+
+    private static final EmployeeState[] STATES = EmployeeState.values();
+
+    private static final int AGE_RANGE = 10;
+
+    private static final int AGE_RANGES = 10;
+
+    private static final int STATE_BITS = 4;
+
+    private static final int AGE_RANGE_BITS = 4;
+
+    private static final int CONTRACT_SHIFT = STATE_BITS + AGE_RANGE_BITS;
+
+    private static final int NONE = 0;
+
+    private static final float LOAD_FACTOR = 0.7f;
+
+    private final AtomicLong total = new AtomicLong();
+
+    private final AtomicLong[] byState = createCounters(STATES.length);
+
+    private final AtomicLong[] byAge = createCounters(AGE_RANGES);
+
+    /**
+     * Only the consumer thread adds and removes contracts.
+     */
+    private final Map<String, AtomicLong> byContract = new ConcurrentHashMap<>();
+
+    /**
+     * Number of every contract info, only accessed by the consumer thread.
+     */
+    private final Map<String, Integer> contractNumbers = new HashMap<>();
+
+    /**
+     * Contract info of every number, null for a free number, only accessed by the consumer thread.
+     */
+    private final List<String> contracts = new ArrayList<>();
+
+    /**
+     * Stack of the free contract numbers, only accessed by the consumer thread.
+     */
+    private int[] freeContracts = new int[16];
+
+    private int freeContractCount;
+
+    /**
+     * Open-addressing hash map of employee IDs to their counted attributes, with linear probing.
+     * Only accessed by the consumer thread.
+     */
+    private long[] keys = new long[1024];
+
+    /**
+     * Attributes as packed by {@link #pack(Employee)} plus one, zero marks a free slot.
+     */
+    private long[] keyAttributes = new long[1024];
+
+    private int keyCount;
+
+    @Override
+    public void onStatusRecord(ConsumerRecord<String, EmployeeStatusEventDto> record) {
+
+        EmployeeStatusEventDto eventDto = record.value();
+
+        if (eventDto == null || eventDto.getEmployee() == null || eventDto.getEmployee().getId() == null
+                || (eventDto.getEvent() != null && !ACCEPTED.equals(eventDto.getResult()))) {
+            return;
+        }
+
+        long id = eventDto.getEmployee().getId();
+        int slot = find(id);
+        boolean added = keyAttributes[slot] == 0;
+
+        if (added) {
+            total.incrementAndGet();
+        } else {
+            // uncounted before packing, so the number of an unchanged contract info is freed and taken again
+            count(keyAttributes[slot] - 1, -1);
+        }
+
+        long attributes = pack(eventDto.getEmployee());
+
+        keys[slot] = id;
+        keyAttributes[slot] = attributes + 1;
+
+        count(attributes, 1);
+
+        if (added && ++keyCount > keys.length * LOAD_FACTOR) {
+            resize();
+        }
+    }
+
+    /**
+     * @return current counts
+     */
+    public EmployeeStatisticsDto getStatistics() {
+
+        Map<EmployeeState, Long> stateCounts = new EnumMap<>(EmployeeState.class);
+
+        for (EmployeeState state : STATES) {
+            stateCounts.put(state, byState[state.ordinal()].get());
+        }
+
+        Map<String, Long> ageCounts = new LinkedHashMap<>();
+
+        for (int range = 0; range < AGE_RANGES; range++) {
+            ageCounts.put(ageRangeName(range), byAge[range].get());
+        }
+
+        Map<String, Long> contractCounts = new LinkedHashMap<>();
+
+        byContract.forEach((contract, counter) -> {
+
+            long count = counter.get();
+
+            if (count > 0) {
+                contractCounts.put(contract, count);
+            }
+        });
+
+        return new EmployeeStatisticsDto(total.get(), stateCounts, ageCounts, contractCounts);
+    }
+
+    /**
+     * @return number of contract numbers in use or free, for tests
+     */
+    int contractNumbers() {
+        return contracts.size();
+    }
+
+    /**
+     * @return state ordinal + 1 in the lowest {@value #STATE_BITS} bits, age range in the next
+     * {@value #AGE_RANGE_BITS} bits and contract number + 1 in the rest, 0 for a missing state or contract info
+     */
+    private long pack(Employee employee) {
+
+        int state = employee.getState() == null ? NONE : employee.getState().ordinal() + 1;
+        long contract = NONE;
+
+        if (employee.getContractInfo() != null) {
+            contract = contractNumbers.computeIfAbsent(employee.getContractInfo(), this::numberContract) + 1L;
+        }
+
+        return contract << CONTRACT_SHIFT | ageRange(employee.getAge()) << STATE_BITS | state;
+    }
+
+    private int numberContract(String contract) {
+
+        if (freeContractCount > 0) {
+            int number = freeContracts[--freeContractCount];
+            contracts.set(number, contract);
+            return number;
+        }
+
+        contracts.add(contract);
+
+        return contracts.size() - 1;
+    }
+
+    private void count(long attributes, int delta) {
+
+        int state = (int) (attributes & ((1 << STATE_BITS) - 1));
+
+        if (state != NONE) {
+            byState[state - 1].addAndGet(delta);
+        }
+
+        byAge[(int) ((attributes >>> STATE_BITS) & ((1 << AGE_RANGE_BITS) - 1))].addAndGet(delta);
+
+        int contractNumber = (int) (attributes >>> CONTRACT_SHIFT);
+
+        if (contractNumber != NONE) {
+
+            String contract = contracts.get(contractNumber - 1);
+            AtomicLong counter = byContract.computeIfAbsent(contract, key -> new AtomicLong());
+
+            // only the consumer thread updates the counters, so nobody increments it concurrently
+            if (counter.addAndGet(delta) == 0) {
+                byContract.remove(contract);
+                freeContract(contractNumber - 1);
+            }
+        }
+    }
+
+    private void freeContract(int number) {
+
+        contractNumbers.remove(contracts.set(number, null));
+
+        if (freeContractCount == freeContracts.length) {
+            freeContracts = Arrays.copyOf(freeContracts, freeContractCount << 1);
+        }
+
+        freeContracts[freeContractCount++] = number;
+    }
+
+    private int find(long id) {
+
+        int mask = keys.length - 1;
+        int slot = hash(id) & mask;
+
+        while (keyAttributes[slot] != 0 && keys[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private void resize() {
+
+        long[] oldKeys = keys;
+        long[] oldKeyAttributes = keyAttributes;
+
+        keys = new long[oldKeys.length << 1];
+        keyAttributes = new long[oldKeyAttributes.length << 1];
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeyAttributes[i] != 0) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                keyAttributes[slot] = oldKeyAttributes[i];
+            }
+        }
+    }
+
+    private static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int ageRange(int age) {
+        return Math.min(Math.max(age, 0) / AGE_RANGE, AGE_RANGES - 1);
+    }
+
+    private static String ageRangeName(int range) {
+        return range == AGE_RANGES - 1
+                ? range * AGE_RANGE + "+"
+                : range * AGE_RANGE + "-" + (range * AGE_RANGE + AGE_RANGE - 1);
+    }
+
+    private static AtomicLong[] createCounters(int size) {
+
+        AtomicLong[] counters = new AtomicLong[size];
+
+        for (int i = 0; i < size; i++) {
+            counters[i] = new AtomicLong();
+        }
+
+        return counters;
+    }
+}
@@ -0,0 +1,60 @@
+package com.pplflw.challenge.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * Size-bounded cache of the latest status event of every employee, fed by {@link EmployeeStatusHub}.
+ * Primes new status subscribers, so they don't wait for the next event to learn the current state.
+ * Caffeine's W-TinyLFU eviction keeps the frequently subscribed employees even when many others are updated.
+ * Exposes the 'employee-status' cache metrics: gets by hit/miss result, evictions and size.
+ */
+@Component
+public class EmployeeStatusCache implements EmployeeStatusListener {
+
+    private final Cache<Long, EmployeeStatusEventDto> cache;
+
+    public EmployeeStatusCache(@Value(value = "${com.pplflw.challenge.status-cache.maximum-size}") long maximumSize,
+                               MeterRegistry meterRegistry) {
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "employee-status");
+    }
+
+    @Override
+    public void onStatusRecord(ConsumerRecord<String, EmployeeStatusEventDto> record) {
+
+        EmployeeStatusEventDto eventDto = record.value();
+
+        if (eventDto != null && eventDto.getEmployee() != null) {
+            cache.put(eventDto.getEmployee().getId(), eventDto);
+        }
+    }
+
+    /**
+     * @param employeeId employee's ID
+     * @return the latest status event of the employee, empty if it is not cached
+     */
+    public Optional<EmployeeStatusEventDto> getLatest(Long employeeId) {
+        return Optional.ofNullable(cache.getIfPresent(employeeId));
+    }
+
+    /**
+     * @return approximate number of cached employees
+     */
+    public long size() {
+        return cache.estimatedSize();
+    }
+}
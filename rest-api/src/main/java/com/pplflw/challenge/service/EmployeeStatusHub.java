@@ -0,0 +1,177 @@
+package com.pplflw.challenge.service;
+
+import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.reactive.ReactiveKafkaConsumerTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process fan-out of employee status events.
+ * Owns the only employee-status-topic consumer of the node and multicasts every event
+ * to the subscribers registered for the event's employee ID.
+ * Every subscriber has its own bounded buffer, so a slow client loses its oldest events
+ * instead of slowing down the shared consumer or other clients.
+ * Every received record is also passed to the {@link EmployeeStatusListener}s, e.g. {@link EmployeeReadModel}.
+ * A new subscriber first gets the employee's latest status event, from the channel of the employee's other subscribers
+ * or from {@link EmployeeStatusCache}, and then the live ones. Listeners are called before the channel is looked up,
+ * so no event falls between the cached one and the live ones, and a channel created in between, which already starts
+ * with the event, doesn't get it again.
+ * <p>
+ * The consumer group never commits, so a re-subscription after an error receives the topic from the beginning again.
+ * Records below the next offset of their partition are skipped, so neither listeners nor subscribers see them twice.
+ */
+@Slf4j
+@Component
+public class EmployeeStatusHub {
+
+    private final ReactiveKafkaConsumerTemplate<String, EmployeeStatusEventDto> kafkaConsumer;
+
+    private final List<EmployeeStatusListener> listeners;
+
+    private final EmployeeStatusCache statusCache;
+
+    private final Map<Long, EmployeeChannel> channels = new ConcurrentHashMap<>();
+
+    /**
+     * Next offset to dispatch of every partition, only accessed by the consumer, one subscription after another.
+     */
+    private final Map<TopicPartition, Long> nextOffsets = new HashMap<>();
+
+    @Value(value = "${com.pplflw.challenge.status-hub.subscriber-buffer-size}")
+    private int subscriberBufferSize;
+
+    private Disposable subscription;
+
+    public EmployeeStatusHub(ReactiveKafkaConsumerTemplate<String, EmployeeStatusEventDto> kafkaConsumer,
+                             List<EmployeeStatusListener> listeners,
+                             EmployeeStatusCache statusCache) {
+        this.kafkaConsumer = kafkaConsumer;
+        this.listeners = listeners;
+        this.statusCache = statusCache;
+    }
+
+    @PostConstruct
+    public void start() {
+        subscription = kafkaConsumer.receive()
+                .doOnNext(this::dispatch)
+                .doOnError(throwable -> log.error("Something bad happened while consuming : {}", throwable.getMessage()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    /**
+     * Registers a new subscriber for the employee's status events.
+     * The registration is released as soon as the returned stream is cancelled or terminated.
+     *
+     * @param employeeId employee's ID
+     * @return stream of {@link EmployeeStatusEventDto} instances for the employee, starting with the latest known one
+     */
+    public Flux<EmployeeStatusEventDto> subscribe(Long employeeId) {
+        return Flux.defer(() -> channels.compute(employeeId, (id, channel) -> channel == null
+                        ? new EmployeeChannel(statusCache.getLatest(id))
+                        : channel.retain())
+                .sink
+                .asFlux()
+                .onBackpressureBuffer(subscriberBufferSize,
+                        dropped -> log.warn("Subscriber buffer of employee={} is full, dropping {}", employeeId, dropped),
+                        BufferOverflowStrategy.DROP_OLDEST)
+                .doFinally(signalType -> release(employeeId)));
+    }
+
+    /**
+     * @return number of employees having at least one subscriber
+     */
+    public int subscribedEmployees() {
+        return channels.size();
+    }
+
+    private void dispatch(ConsumerRecord<String, EmployeeStatusEventDto> record) {
+
+        TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+        Long nextOffset = nextOffsets.get(partition);
+
+        if (nextOffset != null && record.offset() < nextOffset) {
+            return;
+        }
+
+        nextOffsets.put(partition, record.offset() + 1);
+
+        for (EmployeeStatusListener listener : listeners) {
+            listener.onStatusRecord(record);
+        }
+
+        EmployeeStatusEventDto eventDto = record.value();
+
+        if (eventDto == null || eventDto.getEmployee() == null) {
+            return;
+        }
+
+        log.debug("Successfully consumed {}={}", EmployeeStatusEventDto.class.getSimpleName(), eventDto);
+
+        // emitted outside of the map's lock, a subscriber cancelling in onNext releases its channel synchronously
+        EmployeeChannel channel = channels.get(eventDto.getEmployee().getId());
+
+        if (channel != null && channel.initial != eventDto) {
+            // the consumer emits sequentially, so the only expected failure is a subscriber going away concurrently
+            channel.sink.tryEmitNext(eventDto);
+        }
+    }
+
+    private void release(Long employeeId) {
+        channels.computeIfPresent(employeeId, (id, channel) -> channel.release() == 0 ? null : channel);
+    }
+
+    /**
+     * Multicast sink of one employee, replaying the latest event to new subscribers.
+     * The subscriber counter is guarded by the channels map's per-key atomicity.
+     */
+    private static class EmployeeChannel {
+
+        private final Sinks.Many<EmployeeStatusEventDto> sink = Sinks.many().replay().latest();
+
+        /**
+         * Latest event when the channel was created, the very instance the listeners have received.
+         */
+        private final EmployeeStatusEventDto initial;
+
+        private int subscribers = 1;
+
+        private EmployeeChannel(Optional<EmployeeStatusEventDto> latest) {
+            initial = latest.orElse(null);
+            latest.ifPresent(sink::tryEmitNext);
+        }
+
+        private EmployeeChannel retain() {
+            subscribers++;
+            return this;
+        }
+
+        private int release() {
+            return --subscribers;
+        }
+    }
+}
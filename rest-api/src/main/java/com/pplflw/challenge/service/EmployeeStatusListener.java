@@ -0,0 +1,16 @@
+package com.pplflw.challenge.service;
+
+import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+
+/**
+ * Consumer of every employee status record received by {@link EmployeeStatusHub}.
+ * Called sequentially on the hub's consumer thread, so implementations must not block.
+ */
+public interface EmployeeStatusListener {
+
+    /**
+     * @param record status record, its value is null if it could not be deserialized
+     */
+    void onStatusRecord(ConsumerRecord<String, EmployeeStatusEventDto> record);
+}
@@ -0,0 +1,114 @@
+package com.pplflw.challenge.service;
+
+import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import com.pplflw.challenge.service.dto.EmployeeTransitionRatesDto;
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Accepted and denied state change attempts per event, counted per second over the last minute
+ * and per minute over the last hour, from the status events received by {@link EmployeeStatusHub}.
+ * Attempts are bucketed by their status events' publishing time, so the replayed history of the status topic
+ * only counts within the windows.
+ * Updates are lock-free and allocation-free, see {@link SlidingWindowCounter}, so other producers of attempts,
+ * e.g. request threads, can {@link #record} them concurrently.
+ */
+@Component
+public class EmployeeTransitionRates implements EmployeeStatusListener {
+
+    private static final String ACCEPTED = "ACCEPTED";
+
+    private static final String DENIED = "DENIED";
+
+    private static final EmployeeEvent[] EVENTS = EmployeeEvent.values();
+
+    private static final int BUCKETS = 60;
+
+    private final LongSupplier clock;
+
+    private final SlidingWindowCounter perSecond = new SlidingWindowCounter(EVENTS.length * 2, Duration.ofSeconds(1), BUCKETS);
+
+    private final SlidingWindowCounter perMinute = new SlidingWindowCounter(EVENTS.length * 2, Duration.ofMinutes(1), BUCKETS);
+
+    @Autowired
+    public EmployeeTransitionRates() {
+        this(System::currentTimeMillis);
+    }
+
+    EmployeeTransitionRates(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public void onStatusRecord(ConsumerRecord<String, EmployeeStatusEventDto> record) {
+
+        EmployeeStatusEventDto eventDto = record.value();
+
+        if (eventDto == null || eventDto.getEvent() == null) {
+            return;
+        }
+
+        if (ACCEPTED.equals(eventDto.getResult())) {
+            record(eventDto.getEvent(), true, record.timestamp());
+        } else if (DENIED.equals(eventDto.getResult())) {
+            record(eventDto.getEvent(), false, record.timestamp());
+        }
+    }
+
+    /**
+     * @param event     attempted event
+     * @param accepted  true if the state machine has accepted the event
+     * @param timestamp time of the attempt, ms
+     */
+    public void record(EmployeeEvent event, boolean accepted, long timestamp) {
+
+        int series = series(event, accepted);
+        long now = clock.getAsLong();
+
+        perSecond.increment(series, timestamp, now);
+        perMinute.increment(series, timestamp, now);
+    }
+
+    /**
+     * @param resolution {@link ChronoUnit#SECONDS} for the last minute, {@link ChronoUnit#MINUTES} for the last hour
+     * @return attempts per bucket of the resolution
+     * @throws IllegalArgumentException if the resolution is neither seconds nor minutes
+     */
+    public EmployeeTransitionRatesDto getRates(ChronoUnit resolution) {
+
+        SlidingWindowCounter counter;
+
+        if (resolution == ChronoUnit.SECONDS) {
+            counter = perSecond;
+        } else if (resolution == ChronoUnit.MINUTES) {
+            counter = perMinute;
+        } else {
+            throw new IllegalArgumentException("Unsupported resolution " + resolution + ", use SECONDS or MINUTES");
+        }
+
+        long now = clock.getAsLong();
+
+        Map<EmployeeEvent, long[]> accepted = new EnumMap<>(EmployeeEvent.class);
+        Map<EmployeeEvent, long[]> denied = new EnumMap<>(EmployeeEvent.class);
+
+        for (EmployeeEvent event : EVENTS) {
+            accepted.put(event, counter.counts(series(event, true), now));
+            denied.put(event, counter.counts(series(event, false), now));
+        }
+
+        return new EmployeeTransitionRatesDto(Instant.ofEpochMilli(counter.windowStart(now)), counter.bucket(), accepted, denied);
+    }
+
+    private static int series(EmployeeEvent event, boolean accepted) {
+        return event.ordinal() * 2 + (accepted ? 0 : 1);
+    }
+}
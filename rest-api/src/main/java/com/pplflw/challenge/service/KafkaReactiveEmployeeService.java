@@ -1,36 +1,78 @@
 package com.pplflw.challenge.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pplflw.challenge.domain.Employee;
 import com.pplflw.challenge.dto.EmployeeAddEventDto;
 import com.pplflw.challenge.dto.EmployeeChangeStateEventDto;
+import com.pplflw.challenge.dto.EmployeeEventHeaders;
 import com.pplflw.challenge.dto.EmployeeStatusEventDto;
 import com.pplflw.challenge.dto.EmployeeEventDto;
+import com.pplflw.challenge.service.dto.EmployeeImportResultDto;
+import com.pplflw.challenge.service.dto.EmployeeSearchResultDto;
+import com.pplflw.challenge.service.dto.EmployeeStateChangeResultDto;
+import com.pplflw.challenge.service.dto.EmployeeViewDto;
 import com.pplflw.challenge.service.dto.InputEmployeeDto;
+import com.pplflw.challenge.service.dto.InputStateChangeDto;
+import com.pplflw.challenge.service.id.EmployeeIdGenerator;
+import com.pplflw.challenge.service.search.EmployeeNameIndex;
 import com.pplflw.challenge.statemachine.EmployeeEvent;
 import com.pplflw.challenge.statemachine.EmployeeState;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.kafka.clients.consumer.ConsumerRecord;
-import org.springframework.beans.factory.annotation.Lookup;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.reactive.ReactiveKafkaConsumerTemplate;
 import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.kafka.sender.SenderRecord;
+import reactor.kafka.sender.SenderResult;
 
+import javax.validation.Validator;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
 
 /**
  * {@link ReactiveEmployeeService} implementation. Encapsulates interaction with Apache Kafka.
+ * Exposes the time from sending a change-state event to receiving its status event as the
+ * 'employee.change-state.reply' timer, tagged by the outcome.
  */
 @Slf4j
 @Service
 public class KafkaReactiveEmployeeService implements ReactiveEmployeeService {
 
-    private final AtomicLong ID_GENERATOR = new AtomicLong();
+    private final ReactiveKafkaProducerTemplate<String, EmployeeEventDto> addKafkaProducer;
 
-    private final ReactiveKafkaProducerTemplate<String, EmployeeEventDto> kafkaProducer;
+    private final ReactiveKafkaProducerTemplate<String, EmployeeEventDto> changeStateKafkaProducer;
+
+    private final ReactiveKafkaProducerTemplate<String, EmployeeEventDto> bulkKafkaProducer;
+
+    private final EmployeeStatusHub employeeStatusHub;
+
+    private final EmployeeIdGenerator employeeIdGenerator;
+
+    private final EmployeeReadModel employeeReadModel;
+
+    private final EmployeeNameIndex employeeNameIndex;
+
+    private final PendingStateChanges pendingStateChanges;
+
+    private final ObjectMapper objectMapper;
+
+    private final Validator validator;
+
+    private final Timer repliedTimer;
+
+    private final Timer timedOutTimer;
 
     @Value(value = "${com.pplflw.challenge.kafka.employee-add-topic}")
     private String employeeAddTopic;
@@ -38,23 +80,51 @@ public class KafkaReactiveEmployeeService implements ReactiveEmployeeService {
     @Value(value = "${com.pplflw.challenge.kafka.employee-change-state-topic}")
     private String employeeEventsTopic;
 
-    @Lookup
-    public ReactiveKafkaConsumerTemplate<String, EmployeeStatusEventDto> getKafkaConsumer() {
-        return null;
-    }
-
     @Value(value = "${com.pplflw.challenge.kafka.timeout-in-seconds}")
     private int timeoutInSeconds;
 
-    public KafkaReactiveEmployeeService(ReactiveKafkaProducerTemplate<String, EmployeeEventDto> kafkaProducer) {
-        this.kafkaProducer = kafkaProducer;
+    @Value(value = "${com.pplflw.challenge.bulk.result-timeout}")
+    private Duration resultTimeout;
+
+    @Value(value = "${com.pplflw.challenge.change-state.reply-timeout}")
+    private Duration replyTimeout;
+
+    @Value(value = "${com.pplflw.challenge.read-model.page-size}")
+    private int pageSize;
+
+    public KafkaReactiveEmployeeService(@Qualifier("addKafkaProducer")
+                                                ReactiveKafkaProducerTemplate<String, EmployeeEventDto> addKafkaProducer,
+                                        @Qualifier("changeStateKafkaProducer")
+                                                ReactiveKafkaProducerTemplate<String, EmployeeEventDto> changeStateKafkaProducer,
+                                        @Qualifier("bulkKafkaProducer")
+                                                ReactiveKafkaProducerTemplate<String, EmployeeEventDto> bulkKafkaProducer,
+                                        EmployeeStatusHub employeeStatusHub,
+                                        EmployeeIdGenerator employeeIdGenerator,
+                                        EmployeeReadModel employeeReadModel,
+                                        EmployeeNameIndex employeeNameIndex,
+                                        PendingStateChanges pendingStateChanges,
+                                        ObjectMapper objectMapper,
+                                        Validator validator,
+                                        MeterRegistry meterRegistry) {
+        this.addKafkaProducer = addKafkaProducer;
+        this.changeStateKafkaProducer = changeStateKafkaProducer;
+        this.bulkKafkaProducer = bulkKafkaProducer;
+        this.employeeStatusHub = employeeStatusHub;
+        this.employeeIdGenerator = employeeIdGenerator;
+        this.employeeReadModel = employeeReadModel;
+        this.employeeNameIndex = employeeNameIndex;
+        this.pendingStateChanges = pendingStateChanges;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.repliedTimer = replyTimer("replied", meterRegistry);
+        this.timedOutTimer = replyTimer("timed-out", meterRegistry);
     }
 
     @Override
     public Mono<Employee> addEmployee(InputEmployeeDto employeeDto) {
 
         EmployeeAddEventDto eventDto = new EmployeeAddEventDto(new Employee(
-                ID_GENERATOR.incrementAndGet(),
+                employeeIdGenerator.nextId(),
                 EmployeeState.ADDED,
                 employeeDto.getName(),
                 employeeDto.getContractInfo(),
@@ -62,7 +132,7 @@ public class KafkaReactiveEmployeeService implements ReactiveEmployeeService {
 
         log.debug("Sending add-employee event={} to Kafka", eventDto);
 
-        return kafkaProducer.send(employeeAddTopic, eventDto)
+        return addKafkaProducer.send(employeeAddTopic, eventDto.getEmployee().getId().toString(), eventDto)
                 .timeout(Duration.ofSeconds(timeoutInSeconds))
                 .doOnError(throwable
                         ->
@@ -73,13 +143,33 @@ public class KafkaReactiveEmployeeService implements ReactiveEmployeeService {
                 .map(voidSenderResult -> eventDto.getEmployee());
     }
 
+    /**
+     * Lines are parsed and validated as they arrive, invalid ones are answered right away.
+     * Valid ones are sent by the bulk producer, which reports a failed send in its result instead of cancelling
+     * the import, and stops requesting lines while max-in-flight events are unacknowledged.
+     */
+    @Override
+    public Flux<EmployeeImportResultDto> importEmployees(Flux<String> lines) {
+        return lines.index()
+                .filter(line -> !line.getT2().isBlank())
+                .map(line -> parseImportLine(line.getT1() + 1, line.getT2()))
+                .publish(importLines -> Flux.merge(
+                        importLines
+                                .filter(importLine -> importLine.invalid != null)
+                                .map(importLine -> importLine.invalid),
+                        bulkKafkaProducer.send(importLines
+                                .filter(importLine -> importLine.record != null)
+                                .map(importLine -> importLine.record))
+                                .map(KafkaReactiveEmployeeService::toImportResult)));
+    }
+
     public Mono<EmployeeChangeStateEventDto> changeEmployeeState(Long employeeId, EmployeeEvent event) {
 
         EmployeeChangeStateEventDto eventDto = new EmployeeChangeStateEventDto(employeeId, event);
 
         log.debug("Sending change-employee-state event={} to Kafka", eventDto);
 
-        return kafkaProducer.send(employeeEventsTopic, eventDto)
+        return changeStateKafkaProducer.send(employeeEventsTopic, employeeId.toString(), eventDto)
                 .timeout(Duration.ofSeconds(timeoutInSeconds))
                 .doOnError(throwable
                         ->
@@ -90,12 +180,238 @@ public class KafkaReactiveEmployeeService implements ReactiveEmployeeService {
                 .map(voidSenderResult -> eventDto);
     }
 
+    /**
+     * The status event is awaited before the change-state event is sent, as it may arrive before the acknowledgement
+     * of the change-state event.
+     */
+    @Override
+    public Mono<EmployeeStatusEventDto> changeEmployeeStateAndWait(Long employeeId, EmployeeEvent event) {
+        return Mono.defer(() -> {
+
+            String correlationId = pendingStateChanges.nextCorrelationId();
+            long start = System.nanoTime();
+
+            log.debug("Sending change-employee-state event of employee={} with correlation ID={} to Kafka", employeeId, correlationId);
+
+            // deferred, so nothing is sent before the status event is awaited
+            Mono<Void> sending = Mono.defer(() -> changeStateKafkaProducer.send(toChangeStateRecord(employeeId, event, correlationId)))
+                    .doOnError(throwable
+                            ->
+                            log.error("An exception occurred while sending change-employee-state event of employee={} to Kafka: {}",
+                                    employeeId,
+                                    throwable.getMessage()))
+                    .then();
+
+            return Flux.merge(pendingStateChanges.await(correlationId), sending.cast(EmployeeStatusEventDto.class))
+                    .next()
+                    .timeout(replyTimeout)
+                    .doOnSuccess(statusEventDto -> repliedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                    .doOnError(TimeoutException.class,
+                            exception -> timedOutTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    /**
+     * Every change is registered as pending before any change-state event is sent, as a status event may arrive
+     * before the acknowledgement of its change-state event. A change whose event could not be sent is answered
+     * right away, the others wait for their status events up to the result timeout.
+     * Events of employees unknown to the read model are sent too, as the employee may have been created moments before.
+     * The service publishes no status event for an unknown employee, so such a change times out, and is reported as not found
+     * only if the read model has caught up with the status topic by then.
+     */
+    @Override
+    public Mono<List<EmployeeStateChangeResultDto>> changeEmployeeStates(List<InputStateChangeDto> changes) {
+        return Mono.defer(() -> {
+
+            List<String> correlationIds = changes.stream()
+                    .map(change -> pendingStateChanges.nextCorrelationId())
+                    .collect(Collectors.toList());
+
+            List<Sinks.Empty<Void>> sendFailures = changes.stream()
+                    .map(change -> Sinks.<Void>empty())
+                    .collect(Collectors.toList());
+
+            // subscribes to all the changes at once, so they are registered before the sending below is subscribed
+            Flux<EmployeeStateChangeResultDto> results = Flux.range(0, changes.size())
+                    .flatMapSequential(index -> awaitStateChange(changes.get(index),
+                            correlationIds.get(index),
+                            sendFailures.get(index).asMono()), changes.size());
+
+            Mono<Void> sending = Flux.defer(() -> bulkKafkaProducer.send(Flux.range(0, changes.size())
+                    .map(index -> SenderRecord.create(toChangeStateRecord(changes.get(index).getEmployeeId(),
+                            changes.get(index).getEvent(),
+                            correlationIds.get(index)), index))))
+                    .filter(senderResult -> senderResult.exception() != null)
+                    .doOnNext(senderResult -> {
+
+                        log.error("An exception occurred while sending change-employee-state event of {} to Kafka: {}",
+                                changes.get(senderResult.correlationMetadata()),
+                                senderResult.exception().getMessage());
+
+                        sendFailures.get(senderResult.correlationMetadata()).tryEmitEmpty();
+                    })
+                    .then();
+
+            return Flux.merge(results, sending.cast(EmployeeStateChangeResultDto.class))
+                    .collectList();
+        });
+    }
+
     public Flux<EmployeeStatusEventDto> status(Long employeeId) {
-        return getKafkaConsumer()
-                .receive()
-                .map(ConsumerRecord::value)
-                .filter(eventDto -> eventDto.getEmployee().getId().equals(employeeId))
-                .doOnNext(eventDto -> log.debug("Successfully consumed {}={}", EmployeeStatusEventDto.class.getSimpleName(), eventDto))
-                .doOnError(throwable -> log.error("Something bad happened while consuming : {}", throwable.getMessage()));
+        return employeeStatusHub.subscribe(employeeId);
+    }
+
+    public Mono<EmployeeViewDto> getEmployee(Long employeeId) {
+        return Mono.justOrEmpty(employeeReadModel.getEmployee(employeeId));
+    }
+
+    public Flux<Employee> getEmployees(EmployeeState state, Long afterId, Long limit) {
+        return pages((after, size) -> employeeReadModel.getEmployees(state, after, size), afterId, limit);
+    }
+
+    public Flux<Employee> getEmployees(int minAge, int maxAge, Long afterId, Long limit) {
+        return pages((after, size) -> employeeReadModel.getEmployees(minAge, maxAge, after, size), afterId, limit);
+    }
+
+    public Flux<EmployeeSearchResultDto> searchEmployees(String query, int limit) {
+        return Flux.defer(() -> Flux.fromIterable(employeeNameIndex.search(query, limit)));
+    }
+
+    /**
+     * Reads the next page when the previous one has been consumed, so at most a page is held in memory.
+     */
+    private Flux<Employee> pages(BiFunction<Long, Integer, List<Employee>> pageReader, Long afterId, Long limit) {
+
+        if (limit != null && limit <= 0) {
+            return Flux.empty();
+        }
+
+        int firstPageSize = limit == null ? pageSize : (int) Math.min(pageSize, limit);
+
+        Flux<Employee> employees = Mono.fromSupplier(() -> pageReader.apply(afterId, firstPageSize))
+                .expand(page -> page.size() < firstPageSize
+                        ? Mono.empty()
+                        : Mono.fromSupplier(() -> pageReader.apply(page.get(page.size() - 1).getId(), firstPageSize)))
+                .concatMapIterable(page -> page);
+
+        return limit == null ? employees : employees.take(limit);
+    }
+
+    private ImportLine parseImportLine(long line, String json) {
+
+        InputEmployeeDto employeeDto;
+
+        try {
+            employeeDto = objectMapper.readValue(json, InputEmployeeDto.class);
+        } catch (JsonProcessingException e) {
+            return ImportLine.invalid(line, "Malformed employee: " + e.getOriginalMessage());
+        }
+
+        String violations = validator.validate(employeeDto).stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+
+        if (!violations.isEmpty()) {
+            return ImportLine.invalid(line, violations);
+        }
+
+        EmployeeAddEventDto eventDto = new EmployeeAddEventDto(new Employee(
+                employeeIdGenerator.nextId(),
+                EmployeeState.ADDED,
+                employeeDto.getName(),
+                employeeDto.getContractInfo(),
+                employeeDto.getAge()));
+
+        return new ImportLine(null, SenderRecord.create(
+                new ProducerRecord<String, EmployeeEventDto>(employeeAddTopic, eventDto.getEmployee().getId().toString(), eventDto),
+                new EmployeeImportResultDto(line, EmployeeImportResultDto.Status.CREATED, eventDto.getEmployee(), null)));
+    }
+
+    private Mono<EmployeeStateChangeResultDto> awaitStateChange(InputStateChangeDto change,
+                                                                String correlationId,
+                                                                Mono<Void> sendFailure) {
+        return pendingStateChanges.await(correlationId)
+                .map(statusEventDto -> new EmployeeStateChangeResultDto(change.getEmployeeId(),
+                        change.getEvent(),
+                        EmployeeStateChangeResultDto.Result.ACCEPTED.name().equals(statusEventDto.getResult())
+                                ? EmployeeStateChangeResultDto.Result.ACCEPTED
+                                : EmployeeStateChangeResultDto.Result.DENIED,
+                        statusEventDto.getEmployee()))
+                .timeout(resultTimeout, Mono.fromSupplier(() -> new EmployeeStateChangeResultDto(change.getEmployeeId(),
+                        change.getEvent(),
+                        isNotFound(change.getEmployeeId())
+                                ? EmployeeStateChangeResultDto.Result.NOT_FOUND
+                                : EmployeeStateChangeResultDto.Result.TIMED_OUT,
+                        null)))
+                // cancels the pending change as soon as its event is known not to be sent
+                .or(sendFailure.then(Mono.fromSupplier(() -> new EmployeeStateChangeResultDto(change.getEmployeeId(),
+                        change.getEvent(),
+                        EmployeeStateChangeResultDto.Result.FAILED,
+                        null))));
+    }
+
+    /**
+     * A read model lagging behind the status topic may just not have received the employee yet.
+     */
+    private boolean isNotFound(Long employeeId) {
+        return employeeReadModel.lag() == 0 && employeeReadModel.getEmployee(employeeId).isEmpty();
+    }
+
+    private ProducerRecord<String, EmployeeEventDto> toChangeStateRecord(Long employeeId, EmployeeEvent event, String correlationId) {
+
+        ProducerRecord<String, EmployeeEventDto> record = new ProducerRecord<>(employeeEventsTopic,
+                employeeId.toString(),
+                new EmployeeChangeStateEventDto(employeeId, event));
+
+        record.headers().add(EmployeeEventHeaders.CORRELATION_ID, correlationId.getBytes(StandardCharsets.UTF_8));
+
+        return record;
+    }
+
+    private static Timer replyTimer(String outcome, MeterRegistry meterRegistry) {
+        return Timer.builder("employee.change-state.reply")
+                .description("Time from sending a change-state event to receiving its status event")
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    private static EmployeeImportResultDto toImportResult(SenderResult<EmployeeImportResultDto> senderResult) {
+
+        EmployeeImportResultDto created = senderResult.correlationMetadata();
+
+        if (senderResult.exception() == null) {
+            return created;
+        }
+
+        log.error("An exception occurred while sending add-employee event of line {} to Kafka: {}",
+                created.getLine(),
+                senderResult.exception().getMessage());
+
+        return new EmployeeImportResultDto(created.getLine(),
+                EmployeeImportResultDto.Status.FAILED,
+                null,
+                senderResult.exception().getMessage());
+    }
+
+    /**
+     * Import line which is either invalid or has to be sent, with the result of a successful send as the correlation.
+     */
+    private static class ImportLine {
+
+        private final EmployeeImportResultDto invalid;
+
+        private final SenderRecord<String, EmployeeEventDto, EmployeeImportResultDto> record;
+
+        private ImportLine(EmployeeImportResultDto invalid,
+                           SenderRecord<String, EmployeeEventDto, EmployeeImportResultDto> record) {
+            this.invalid = invalid;
+            this.record = record;
+        }
+
+        private static ImportLine invalid(long line, String message) {
+            return new ImportLine(new EmployeeImportResultDto(line, EmployeeImportResultDto.Status.INVALID, null, message), null);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,90 @@
+package com.pplflw.challenge.service;
+
+import com.pplflw.challenge.dto.EmployeeEventHeaders;
+import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * State changes waiting for their status events, fed by {@link EmployeeStatusHub}, so waiting callers share the node's
+ * only status consumer. A change-state event is sent with a correlation ID in the
+ * {@link EmployeeEventHeaders#CORRELATION_ID} header, which the service echoes on the status event.
+ * Correlation IDs are the node ID followed by a sequence number, so the status events of other nodes' changes
+ * never complete the changes of this node.
+ */
+@Component
+public class PendingStateChanges implements EmployeeStatusListener {
+
+    private final Map<String, Sinks.One<EmployeeStatusEventDto>> pendingChanges = new ConcurrentHashMap<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final String correlationIdPrefix;
+
+    public PendingStateChanges(@Value(value = "${com.pplflw.challenge.node-id}") String nodeId) {
+        this.correlationIdPrefix = nodeId + "-";
+    }
+
+    /**
+     * @return new correlation ID, unique across the nodes
+     */
+    public String nextCorrelationId() {
+        return correlationIdPrefix + sequence.incrementAndGet();
+    }
+
+    /**
+     * Registers the change on subscription, so it has to be subscribed before the change-state event is sent.
+     * The registration is released as soon as the returned mono is cancelled or terminated.
+     *
+     * @param correlationId correlation ID of the sent change-state event
+     * @return status event of the change
+     */
+    public Mono<EmployeeStatusEventDto> await(String correlationId) {
+        return Mono.defer(() -> {
+
+            Sinks.One<EmployeeStatusEventDto> sink = Sinks.one();
+
+            pendingChanges.put(correlationId, sink);
+
+            return sink.asMono()
+                    .doFinally(signalType -> pendingChanges.remove(correlationId, sink));
+        });
+    }
+
+    /**
+     * @return number of changes waiting for their status events
+     */
+    public int pendingChanges() {
+        return pendingChanges.size();
+    }
+
+    @Override
+    public void onStatusRecord(ConsumerRecord<String, EmployeeStatusEventDto> record) {
+
+        if (pendingChanges.isEmpty() || record.value() == null) {
+            return;
+        }
+
+        Header correlationId = record.headers().lastHeader(EmployeeEventHeaders.CORRELATION_ID);
+
+        if (correlationId == null) {
+            return;
+        }
+
+        Sinks.One<EmployeeStatusEventDto> sink = pendingChanges.remove(new String(correlationId.value(), StandardCharsets.UTF_8));
+
+        // the waiting caller continues on the consumer thread
+        if (sink != null) {
+            sink.tryEmitValue(record.value());
+        }
+    }
+}
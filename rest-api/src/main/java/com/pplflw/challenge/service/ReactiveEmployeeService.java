@@ -3,11 +3,19 @@ package com.pplflw.challenge.service;
 import com.pplflw.challenge.domain.Employee;
 import com.pplflw.challenge.dto.EmployeeChangeStateEventDto;
 import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import com.pplflw.challenge.service.dto.EmployeeImportResultDto;
+import com.pplflw.challenge.service.dto.EmployeeSearchResultDto;
+import com.pplflw.challenge.service.dto.EmployeeStateChangeResultDto;
+import com.pplflw.challenge.service.dto.EmployeeViewDto;
 import com.pplflw.challenge.service.dto.InputEmployeeDto;
+import com.pplflw.challenge.service.dto.InputStateChangeDto;
 import com.pplflw.challenge.statemachine.EmployeeEvent;
+import com.pplflw.challenge.statemachine.EmployeeState;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 /**
  * Facade interface to be used on API layer.
  * Returns reactive types because of Webflux nature.
@@ -22,6 +30,15 @@ public interface ReactiveEmployeeService {
      */
     Mono<Employee> addEmployee(InputEmployeeDto employeeDto);
 
+    /**
+     * Imports employees, one JSON {@link InputEmployeeDto} per line. Every valid line becomes a new employee,
+     * the add-employee events are sent in a pipeline with a bounded number of unacknowledged ones.
+     *
+     * @param lines JSON lines, blank ones are skipped
+     * @return result of every non-blank line, in the order of acknowledgement
+     */
+    Flux<EmployeeImportResultDto> importEmployees(Flux<String> lines);
+
     /**
      * Accepts employee change state event.
      *
@@ -32,10 +49,68 @@ public interface ReactiveEmployeeService {
     Mono<EmployeeChangeStateEventDto> changeEmployeeState(Long employeeId, EmployeeEvent event);
 
     /**
-     * Provides 'real' employee state change flow.
+     * Counterpart of {@link #changeEmployeeState(Long, EmployeeEvent)} which waits for the status event of the change.
+     *
+     * @param employeeId employee's ID
+     * @param event state machine event
+     * @return {@link EmployeeStatusEventDto} instance with the state machine result,
+     * or {@link java.util.concurrent.TimeoutException} error if it has not been received within the reply timeout
+     */
+    Mono<EmployeeStatusEventDto> changeEmployeeStateAndWait(Long employeeId, EmployeeEvent event);
+
+    /**
+     * Changes the states of several employees. The change-state events are sent in one pipelined producer batch,
+     * then the results are aggregated from the status events.
+     *
+     * @param changes state changes, the ones of the same employee are applied in the given order
+     * @return result of every change, in the given order
+     */
+    Mono<List<EmployeeStateChangeResultDto>> changeEmployeeStates(List<InputStateChangeDto> changes);
+
+    /**
+     * Provides 'real' employee state change flow, starting with the latest known status event.
      *
      * @param employeeId employee's ID
      * @return stream of {@link EmployeeStatusEventDto} instances
      */
     Flux<EmployeeStatusEventDto> status(Long employeeId);
+
+    /**
+     * Provides the employee's current state from the local read model, without consuming Kafka.
+     *
+     * @param employeeId employee's ID
+     * @return {@link EmployeeViewDto} instance, empty if the read model doesn't know the employee
+     */
+    Mono<EmployeeViewDto> getEmployee(Long employeeId);
+
+    /**
+     * Lists the employees in the state from the local read model, in ascending ID order.
+     * The employees are read from the read model's index page by page as the stream is consumed.
+     *
+     * @param state   employees' state
+     * @param afterId ID to continue after, e.g. the last one of the previous request, null to start with the first one
+     * @param limit   maximum number of employees, null for all of them
+     * @return stream of the employees
+     */
+    Flux<Employee> getEmployees(EmployeeState state, Long afterId, Long limit);
+
+    /**
+     * Age range counterpart of {@link #getEmployees(EmployeeState, Long, Long)}.
+     *
+     * @param minAge  minimum age, inclusive
+     * @param maxAge  maximum age, inclusive
+     * @param afterId ID to continue after, e.g. the last one of the previous request, null to start with the first one
+     * @param limit   maximum number of employees, null for all of them
+     * @return stream of the employees
+     */
+    Flux<Employee> getEmployees(int minAge, int maxAge, Long afterId, Long limit);
+
+    /**
+     * Type-ahead search of the employees by name, from the local name index, without consuming Kafka.
+     *
+     * @param query text to search for, a name word prefix or any part of the name
+     * @param limit maximum number of results
+     * @return found employees, the ones with a name word starting with the query first
+     */
+    Flux<EmployeeSearchResultDto> searchEmployees(String query, int limit);
 }
@@ -0,0 +1,110 @@
+package com.pplflw.challenge.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Event counts of several series over a sliding window of fixed-width time buckets, e.g. the last 60 minutes.
+ * Every series has a preallocated ring of buckets. A bucket packs its period, the bucket's start divided by
+ * the bucket width, into the upper 32 bits and its count into the lower ones, so an increment is a single CAS
+ * that also resets a bucket left over from the previous lap of the ring. Writers neither lock nor allocate.
+ * A bucket's count saturates at 2^32 - 1.
+ */
+final class SlidingWindowCounter {
+
+    private static final long COUNT_MASK = 0xFFFF_FFFFL;
+
+    private final long bucketMillis;
+
+    private final int buckets;
+
+    private final AtomicLongArray slots;
+
+    /**
+     * @param series  number of series
+     * @param bucket  bucket width, the window is {@code buckets} times longer
+     * @param buckets number of buckets of the window
+     */
+    SlidingWindowCounter(int series, Duration bucket, int buckets) {
+        this.bucketMillis = bucket.toMillis();
+        this.buckets = buckets;
+        this.slots = new AtomicLongArray(series * buckets);
+    }
+
+    /**
+     * Counts an event, unless it is older than the window. Events stamped in the future are counted in the current bucket.
+     *
+     * @param series    series index
+     * @param timestamp event's time, ms
+     * @param now       current time, ms
+     */
+    void increment(int series, long timestamp, long now) {
+
+        long currentPeriod = now / bucketMillis;
+        long period = Math.min(timestamp / bucketMillis, currentPeriod);
+
+        if (period <= currentPeriod - buckets) {
+            return;
+        }
+
+        int index = series * buckets + (int) (period % buckets);
+
+        for (; ; ) {
+
+            long slot = slots.get(index);
+            long slotPeriod = slot >>> 32;
+
+            // the bucket already belongs to a newer lap
+            if (slotPeriod > period) {
+                return;
+            }
+
+            long next;
+
+            if (slotPeriod < period) {
+                next = period << 32 | 1;
+            } else if ((slot & COUNT_MASK) == COUNT_MASK) {
+                return;
+            } else {
+                next = slot + 1;
+            }
+
+            if (slots.compareAndSet(index, slot, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param series series index
+     * @param now    current time, ms
+     * @return counts of the window's buckets, from the oldest to the current one
+     */
+    long[] counts(int series, long now) {
+
+        long currentPeriod = now / bucketMillis;
+        long[] counts = new long[buckets];
+
+        for (int i = 0; i < buckets; i++) {
+
+            long period = currentPeriod - buckets + 1 + i;
+            long slot = slots.get(series * buckets + (int) (period % buckets));
+
+            counts[i] = slot >>> 32 == period ? slot & COUNT_MASK : 0;
+        }
+
+        return counts;
+    }
+
+    /**
+     * @param now current time, ms
+     * @return start of the window's oldest bucket, ms
+     */
+    long windowStart(long now) {
+        return (now / bucketMillis - buckets + 1) * bucketMillis;
+    }
+
+    Duration bucket() {
+        return Duration.ofMillis(bucketMillis);
+    }
+}
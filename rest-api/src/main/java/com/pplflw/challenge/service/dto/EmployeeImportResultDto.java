@@ -0,0 +1,51 @@
+package com.pplflw.challenge.service.dto;
+
+import com.pplflw.challenge.domain.Employee;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Result of one line of a bulk employee import.
+ */
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@EqualsAndHashCode
+public class EmployeeImportResultDto {
+
+    /**
+     * Line number in the request body, starting from 1.
+     */
+    private long line;
+
+    private Status status;
+
+    /**
+     * Employee that will be created shortly, null unless {@link Status#CREATED}.
+     */
+    private Employee employee;
+
+    /**
+     * Reason of the failure, null if {@link Status#CREATED}.
+     */
+    private String message;
+
+    public enum Status {
+        /**
+         * The add-employee event has been acknowledged by Kafka.
+         */
+        CREATED,
+        /**
+         * The line is not a valid employee.
+         */
+        INVALID,
+        /**
+         * The add-employee event could not be sent to Kafka.
+         */
+        FAILED
+    }
+}
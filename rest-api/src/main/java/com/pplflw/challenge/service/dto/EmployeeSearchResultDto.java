@@ -0,0 +1,22 @@
+package com.pplflw.challenge.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Employee found by a name search.
+ */
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@EqualsAndHashCode
+public class EmployeeSearchResultDto {
+
+    private Long id;
+
+    private String name;
+}
@@ -0,0 +1,55 @@
+package com.pplflw.challenge.service.dto;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Result of one state change of a bulk state change request.
+ */
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@EqualsAndHashCode
+public class EmployeeStateChangeResultDto {
+
+    private Long employeeId;
+
+    private EmployeeEvent event;
+
+    private Result result;
+
+    /**
+     * Employee as of the status event, null unless {@link Result#ACCEPTED} or {@link Result#DENIED}.
+     */
+    private Employee employee;
+
+    public enum Result {
+        /**
+         * The state machine has accepted the event.
+         */
+        ACCEPTED,
+        /**
+         * The state machine has denied the event.
+         */
+        DENIED,
+        /**
+         * The change-state event could not be sent to Kafka.
+         */
+        FAILED,
+        /**
+         * No status event has been received in time and the employee is unknown to the local read model,
+         * which had caught up with the status topic.
+         */
+        NOT_FOUND,
+        /**
+         * No status event has been received in time.
+         */
+        TIMED_OUT
+    }
+}
@@ -0,0 +1,35 @@
+package com.pplflw.challenge.service.dto;
+
+import com.pplflw.challenge.statemachine.EmployeeState;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.util.Map;
+
+/**
+ * Employee counts aggregated from the status events.
+ */
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@EqualsAndHashCode
+public class EmployeeStatisticsDto {
+
+    private long total;
+
+    private Map<EmployeeState, Long> byState;
+
+    /**
+     * Counts per age range, e.g. '20-29', the last range is open, e.g. '90+'.
+     */
+    private Map<String, Long> byAge;
+
+    /**
+     * Counts per contract info, employees without one are not counted.
+     */
+    private Map<String, Long> byContract;
+}
@@ -0,0 +1,32 @@
+package com.pplflw.challenge.service.dto;
+
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * State change attempts per time bucket over a sliding window, from the oldest bucket to the current one.
+ */
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+public class EmployeeTransitionRatesDto {
+
+    /**
+     * Start of the oldest bucket.
+     */
+    private Instant from;
+
+    private Duration bucket;
+
+    private Map<EmployeeEvent, long[]> accepted;
+
+    private Map<EmployeeEvent, long[]> denied;
+}
@@ -0,0 +1,31 @@
+package com.pplflw.challenge.service.dto;
+
+import com.pplflw.challenge.domain.Employee;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.Instant;
+
+/**
+ * Employee as seen by the local read model, with the read model's freshness.
+ */
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+public class EmployeeViewDto {
+
+    private Employee employee;
+
+    /**
+     * Number of status events published but not yet applied to the read model, -1 if not known yet.
+     */
+    private long lag;
+
+    /**
+     * Publishing time of the latest status event applied to the read model, null if none has been applied.
+     */
+    private Instant asOf;
+}
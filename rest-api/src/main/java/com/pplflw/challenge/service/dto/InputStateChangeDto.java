@@ -0,0 +1,23 @@
+package com.pplflw.challenge.service.dto;
+
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * One state change of a bulk state change request.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class InputStateChangeDto {
+
+    @NotNull
+    private Long employeeId;
+
+    @NotNull
+    private EmployeeEvent event;
+}
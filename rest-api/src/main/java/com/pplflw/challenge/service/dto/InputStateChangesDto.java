@@ -0,0 +1,23 @@
+package com.pplflw.challenge.service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+/**
+ * Bulk state change request. The size is limited as every change waits for its status event until the response.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class InputStateChangesDto {
+
+    @NotEmpty
+    @Size(max = 1000)
+    private List<@Valid InputStateChangeDto> changes;
+}
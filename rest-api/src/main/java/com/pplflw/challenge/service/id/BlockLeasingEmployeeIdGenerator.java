@@ -0,0 +1,71 @@
+package com.pplflw.challenge.service.id;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link EmployeeIdGenerator} handing out IDs from blocks leased from a shared {@link IdBlockSource}.
+ * IDs within a block are taken with a single atomic increment, the source is contacted once per block only.
+ */
+@Slf4j
+public class BlockLeasingEmployeeIdGenerator implements EmployeeIdGenerator {
+
+    private final IdBlockSource idBlockSource;
+
+    private final int blockSize;
+
+    private volatile Block block;
+
+    public BlockLeasingEmployeeIdGenerator(IdBlockSource idBlockSource, int blockSize) {
+
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive, got " + blockSize);
+        }
+
+        this.idBlockSource = idBlockSource;
+        this.blockSize = blockSize;
+        this.block = new Block(0, 0);
+    }
+
+    @Override
+    public long nextId() {
+        while (true) {
+            Block current = block;
+
+            long id = current.next.getAndIncrement();
+
+            if (id < current.end) {
+                return id;
+            }
+
+            renew(current);
+        }
+    }
+
+    private synchronized void renew(Block exhausted) {
+
+        // another thread has already leased a new block
+        if (block != exhausted) {
+            return;
+        }
+
+        long first = idBlockSource.leaseBlock(blockSize);
+
+        log.debug("Leased ID block [{}, {})", first, first + blockSize);
+
+        block = new Block(first, first + blockSize);
+    }
+
+    private static class Block {
+
+        private final AtomicLong next;
+
+        private final long end;
+
+        private Block(long first, long end) {
+            this.next = new AtomicLong(first);
+            this.end = end;
+        }
+    }
+}
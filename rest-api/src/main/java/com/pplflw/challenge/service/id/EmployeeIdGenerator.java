@@ -0,0 +1,13 @@
+package com.pplflw.challenge.service.id;
+
+/**
+ * Generates employee IDs. Implementations have to be thread-safe and must not return the same ID twice
+ * within the whole cluster, even after a restart.
+ */
+public interface EmployeeIdGenerator {
+
+    /**
+     * @return new unique employee ID
+     */
+    long nextId();
+}
@@ -0,0 +1,50 @@
+package com.pplflw.challenge.service.id;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * {@link IdBlockSource} keeping the next free ID in a file shared by all the nodes, e.g. on a shared volume.
+ * Leases are serialized between processes with an exclusive file lock.
+ */
+public class FileIdBlockSource implements IdBlockSource {
+
+    /**
+     * The very first ID, keeps IDs positive.
+     */
+    private static final long FIRST_ID = 1;
+
+    private final Path path;
+
+    public FileIdBlockSource(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public synchronized long leaseBlock(int size) {
+
+        try (FileChannel channel = FileChannel.open(path, CREATE, READ, WRITE)) {
+
+            // released by closing the channel
+            channel.lock();
+
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+
+            long first = channel.read(buffer, 0) == Long.BYTES ? buffer.flip().getLong() : FIRST_ID;
+
+            buffer.clear().putLong(first + size).flip();
+
+            channel.write(buffer, 0);
+            channel.force(false);
+
+            return first;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot lease an ID block from " + path, e);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.pplflw.challenge.service.id;
+
+/**
+ * Cluster-wide source of ID blocks used by {@link BlockLeasingEmployeeIdGenerator}.
+ */
+public interface IdBlockSource {
+
+    /**
+     * Atomically reserves a block of IDs which is never handed out again.
+     *
+     * @param size number of IDs in the block
+     * @return the first ID of the block, the block covers [first, first + size)
+     */
+    long leaseBlock(int size);
+}
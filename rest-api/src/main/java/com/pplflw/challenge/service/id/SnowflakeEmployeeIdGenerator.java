@@ -0,0 +1,103 @@
+package com.pplflw.challenge.service.id;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Snowflake-style {@link EmployeeIdGenerator}. An ID consists of:
+ * - 41 bits of milliseconds since {@link #EPOCH}
+ * - 10 bits of node ID, unique within the cluster
+ * - 12 bits of per-millisecond sequence
+ * The timestamp and the sequence are kept in one {@link AtomicLong}, so generation is a single CAS and needs no locks.
+ * When the sequence of a millisecond is exhausted, or the clock goes backwards, the generator keeps counting into
+ * the next millisecond instead of waiting for the clock, but at most {@link #MAX_DRIFT_MILLIS} ahead of the clock.
+ * Beyond that it waits for the clock to catch up.
+ * As no ID is ever issued more than {@link #MAX_DRIFT_MILLIS} ahead of the clock, a new generator waits that long
+ * before issuing its first ID, so a node restarted with the same node ID can't reissue the IDs of its previous run,
+ * unless the wall clock is set back across the restart.
+ */
+public class SnowflakeEmployeeIdGenerator implements EmployeeIdGenerator {
+
+    /**
+     * 2021-01-01T00:00:00Z
+     */
+    public static final long EPOCH = 1609459200000L;
+
+    public static final int NODE_ID_BITS = 10;
+
+    public static final int SEQUENCE_BITS = 12;
+
+    public static final long MAX_NODE_ID = (1L << NODE_ID_BITS) - 1;
+
+    /**
+     * How far IDs may be issued ahead of the clock, which covers bursts of about 400 000 IDs.
+     */
+    public static final long MAX_DRIFT_MILLIS = 100;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeBits;
+
+    private final LongSupplier clock;
+
+    /**
+     * Timestamp shifted by {@link #SEQUENCE_BITS} combined with the sequence.
+     */
+    private final AtomicLong lastState = new AtomicLong();
+
+    /**
+     * Waits {@link #MAX_DRIFT_MILLIS} before returning, see the class description.
+     *
+     * @param nodeId node ID, unique within the cluster
+     */
+    public SnowflakeEmployeeIdGenerator(long nodeId) {
+        this(nodeId, System::currentTimeMillis);
+
+        try {
+            Thread.sleep(MAX_DRIFT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting out the drift of the previous run", e);
+        }
+    }
+
+    SnowflakeEmployeeIdGenerator(long nodeId, LongSupplier clock) {
+
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node ID must be between 0 and " + MAX_NODE_ID + ", got " + nodeId);
+        }
+
+        this.nodeBits = nodeId << SEQUENCE_BITS;
+        this.clock = clock;
+    }
+
+    @Override
+    public long nextId() {
+
+        long state;
+
+        while (true) {
+            long last = lastState.get();
+            long millis = clock.getAsLong() - EPOCH;
+            long now = millis << SEQUENCE_BITS;
+
+            // an overflowed sequence increments the timestamp part
+            state = now > last ? now : last + 1;
+
+            if ((state >>> SEQUENCE_BITS) > millis + MAX_DRIFT_MILLIS) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                continue;
+            }
+
+            if (lastState.compareAndSet(last, state)) {
+                break;
+            }
+        }
+
+        long timestamp = state >>> SEQUENCE_BITS;
+
+        return (timestamp << (NODE_ID_BITS + SEQUENCE_BITS)) | nodeBits | (state & SEQUENCE_MASK);
+    }
+}
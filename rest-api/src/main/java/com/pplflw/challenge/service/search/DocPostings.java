@@ -0,0 +1,132 @@
+package com.pplflw.challenge.service.search;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Posting list of {@link EmployeeNameIndex} doc numbers: ascending docs encoded as varint gaps in a growable byte array,
+ * so a dense posting takes a byte. Docs can only be appended, deleted docs are skipped by the readers.
+ * Not thread-safe, guarded by the index's lock.
+ */
+final class DocPostings {
+
+    private byte[] bytes = new byte[4];
+
+    private int length;
+
+    private int size;
+
+    private int lastDoc = -1;
+
+    /**
+     * @param doc doc to append, not lower than the last appended one, which is ignored
+     */
+    void add(int doc) {
+
+        if (doc == lastDoc) {
+            return;
+        }
+
+        if (doc < lastDoc) {
+            throw new IllegalArgumentException("Doc " + doc + " is lower than the last one " + lastDoc);
+        }
+
+        if (length + 5 > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 5));
+        }
+
+        int gap = doc - lastDoc;
+
+        while ((gap & ~0x7F) != 0) {
+            bytes[length++] = (byte) ((gap & 0x7F) | 0x80);
+            gap >>>= 7;
+        }
+
+        bytes[length++] = (byte) gap;
+        lastDoc = doc;
+        size++;
+    }
+
+    /**
+     * @param visitor called for every doc in ascending order, returns false to stop
+     * @return false if the visitor has stopped
+     */
+    boolean forEach(IntPredicate visitor) {
+
+        int position = 0;
+        int doc = -1;
+
+        while (position < length) {
+
+            int gap = 0;
+
+            for (int shift = 0; ; shift += 7) {
+
+                byte b = bytes[position++];
+
+                gap |= (b & 0x7F) << shift;
+
+                if (b >= 0) {
+                    break;
+                }
+            }
+
+            doc += gap;
+
+            if (!visitor.test(doc)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Forward-only position in the postings, for intersections.
+     */
+    final class Cursor {
+
+        private int position;
+
+        private int doc = -1;
+
+        /**
+         * @param target doc to move to
+         * @return the first doc not lower than the target, {@link Integer#MAX_VALUE} if there is none
+         */
+        int advance(int target) {
+
+            while (doc < target) {
+
+                if (position >= length) {
+                    return doc = Integer.MAX_VALUE;
+                }
+
+                int gap = 0;
+
+                for (int shift = 0; ; shift += 7) {
+
+                    byte b = bytes[position++];
+
+                    gap |= (b & 0x7F) << shift;
+
+                    if (b >= 0) {
+                        break;
+                    }
+                }
+
+                doc += gap;
+            }
+
+            return doc;
+        }
+    }
+}
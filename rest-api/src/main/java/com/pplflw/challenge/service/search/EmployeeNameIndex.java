@@ -0,0 +1,359 @@
+package com.pplflw.challenge.service.search;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import com.pplflw.challenge.service.EmployeeStatusHub;
+import com.pplflw.challenge.service.EmployeeStatusListener;
+import com.pplflw.challenge.service.dto.EmployeeSearchResultDto;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory search index of the employee names, updated incrementally from the status events received by
+ * {@link EmployeeStatusHub}, like {@link com.pplflw.challenge.service.EmployeeReadModel}.
+ * Every indexed name is a doc, numbered in the order of indexing, so posting lists are appended to only:
+ * - a {@link NameTrie} of the names' words finds the names having a word starting with the query
+ * - an inverted index of the names' trigrams finds the names containing the query: the postings of the query's
+ * trigrams are intersected, driven by the rarest one, and only the docs having all of them are verified against the names
+ * Postings are {@link DocPostings} of primitive doc numbers. A renamed employee gets a new doc, the old one is marked
+ * deleted and skipped, since names hardly ever change.
+ * Searches stop as soon as the requested number of names is found, so they don't depend on the number of matches.
+ * Updates run under the write lock, searches under the read lock, so searches don't block each other.
+ */
+@Component
+public class EmployeeNameIndex implements EmployeeStatusListener {
+
+    private static final String ACCEPTED = "ACCEPTED";
+
+    private static final float LOAD_FACTOR = 0.7f;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final NameTrie words = new NameTrie();
+
+    private final Map<Long, DocPostings> trigrams = new HashMap<>();
+
+    private final BitSet deletedDocs = new BitSet();
+
+    private long[] docIds = new long[1024];
+
+    private String[] docNames = new String[1024];
+
+    private int docs;
+
+    /**
+     * Open-addressing hash map of employee IDs to their current docs, with linear probing.
+     */
+    private long[] keys = new long[1024];
+
+    /**
+     * Doc plus one, zero marks a free slot.
+     */
+    private int[] keyDocs = new int[1024];
+
+    private int keyCount;
+
+    @Override
+    public void onStatusRecord(ConsumerRecord<String, EmployeeStatusEventDto> record) {
+
+        EmployeeStatusEventDto eventDto = record.value();
+
+        if (eventDto != null && eventDto.getEmployee() != null && eventDto.getEmployee().getId() != null
+                && (eventDto.getEvent() == null || ACCEPTED.equals(eventDto.getResult()))) {
+
+            Employee employee = eventDto.getEmployee();
+
+            index(employee.getId(), employee.getName());
+        }
+    }
+
+    /**
+     * Indexes the employee's name, replacing the previous one. Does nothing if the name hasn't changed.
+     *
+     * @param id   employee's ID
+     * @param name employee's name, null to remove the employee from the index
+     */
+    public void index(long id, String name) {
+
+        lock.writeLock().lock();
+        try {
+            int slot = find(id);
+            int doc = keyDocs[slot] - 1;
+
+            if (doc >= 0) {
+
+                if (!deletedDocs.get(doc) && docNames[doc].equals(name)) {
+                    return;
+                }
+
+                deletedDocs.set(doc);
+            }
+
+            if (name == null) {
+                return;
+            }
+
+            addDoc(slot, id, name);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the names having a word starting with the query, in the lexicographic order of the words,
+     * then, for queries of at least 3 chars, the names containing the query, in the order of indexing.
+     * Case-insensitive.
+     *
+     * @param query text to search for
+     * @param limit maximum number of results
+     * @return found employees
+     */
+    public List<EmployeeSearchResultDto> search(String query, int limit) {
+
+        String normalized = normalize(query);
+
+        if (normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Results results = new Results(limit);
+
+            if (isWord(normalized)) {
+                words.forEachWithPrefix(normalized, doc -> deletedDocs.get(doc) || results.add(doc));
+            }
+
+            if (!results.isFull() && normalized.length() >= 3) {
+                findContaining(normalized, results);
+            }
+
+            List<EmployeeSearchResultDto> found = new ArrayList<>(results.count);
+
+            for (int i = 0; i < results.count; i++) {
+                found.add(new EmployeeSearchResultDto(docIds[results.docs[i]], docNames[results.docs[i]]));
+            }
+
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of indexed employees
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs - deletedDocs.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addDoc(int slot, long id, String name) {
+
+        if (docs == docIds.length) {
+            docIds = Arrays.copyOf(docIds, docs * 2);
+            docNames = Arrays.copyOf(docNames, docs * 2);
+        }
+
+        int doc = docs++;
+
+        docIds[doc] = id;
+        docNames[doc] = name;
+
+        if (keyDocs[slot] == 0) {
+
+            keys[slot] = id;
+            keyDocs[slot] = doc + 1;
+
+            if (++keyCount > keys.length * LOAD_FACTOR) {
+                resize();
+            }
+        } else {
+            keyDocs[slot] = doc + 1;
+        }
+
+        String normalized = normalize(name);
+        int wordStart = -1;
+
+        for (int i = 0; i <= normalized.length(); i++) {
+
+            boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+
+            if (wordChar && wordStart < 0) {
+                wordStart = i;
+            } else if (!wordChar && wordStart >= 0) {
+                words.add(normalized.substring(wordStart, i), doc);
+                wordStart = -1;
+            }
+        }
+
+        for (int i = 0; i + 3 <= normalized.length(); i++) {
+            trigrams.computeIfAbsent(trigram(normalized, i), key -> new DocPostings()).add(doc);
+        }
+    }
+
+    /**
+     * Leapfrogs the cursors of the query's trigrams, so every posting list is decoded at most once
+     * and names are only read for the docs having all the trigrams.
+     */
+    private void findContaining(String normalized, Results results) {
+
+        List<DocPostings> postings = new ArrayList<>();
+
+        for (int i = 0; i + 3 <= normalized.length(); i++) {
+
+            DocPostings trigramPostings = trigrams.get(trigram(normalized, i));
+
+            if (trigramPostings == null) {
+                return;
+            }
+
+            if (!postings.contains(trigramPostings)) {
+                postings.add(trigramPostings);
+            }
+        }
+
+        postings.sort(Comparator.comparingInt(DocPostings::size));
+
+        DocPostings.Cursor[] cursors = new DocPostings.Cursor[postings.size()];
+
+        for (int i = 0; i < cursors.length; i++) {
+            cursors[i] = postings.get(i).cursor();
+        }
+
+        int doc = cursors[0].advance(0);
+
+        while (doc != Integer.MAX_VALUE) {
+
+            int next = doc;
+
+            for (int i = 1; i < cursors.length && next == doc; i++) {
+                next = cursors[i].advance(doc);
+            }
+
+            if (next == doc) {
+
+                if (!deletedDocs.get(doc) && containsIgnoreCase(docNames[doc], normalized) && !results.add(doc)) {
+                    return;
+                }
+
+                next = doc + 1;
+            }
+
+            doc = cursors[0].advance(next);
+        }
+    }
+
+    private int find(long id) {
+
+        int mask = keys.length - 1;
+        int slot = hash(id) & mask;
+
+        while (keyDocs[slot] != 0 && keys[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private void resize() {
+
+        long[] oldKeys = keys;
+        int[] oldKeyDocs = keyDocs;
+
+        keys = new long[oldKeys.length << 1];
+        keyDocs = new int[oldKeyDocs.length << 1];
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeyDocs[i] != 0) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                keyDocs[slot] = oldKeyDocs[i];
+            }
+        }
+    }
+
+    private static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static long trigram(String normalized, int start) {
+        return (long) normalized.charAt(start) << 32 | (long) normalized.charAt(start + 1) << 16 | normalized.charAt(start + 2);
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isWord(String normalized) {
+
+        for (int i = 0; i < normalized.length(); i++) {
+            if (!Character.isLetterOrDigit(normalized.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean containsIgnoreCase(String name, String normalized) {
+
+        for (int i = 0; i + normalized.length() <= name.length(); i++) {
+            if (name.regionMatches(true, i, normalized, 0, normalized.length())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Distinct docs found so far, in the order found.
+     */
+    private static final class Results {
+
+        private final int[] docs;
+
+        private int count;
+
+        private Results(int limit) {
+            this.docs = new int[limit];
+        }
+
+        /**
+         * @return false once full, to stop the search
+         */
+        private boolean add(int doc) {
+
+            for (int i = 0; i < count; i++) {
+                if (docs[i] == doc) {
+                    return true;
+                }
+            }
+
+            docs[count++] = doc;
+
+            return !isFull();
+        }
+
+        private boolean isFull() {
+            return count == docs.length;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.pplflw.challenge.service.search;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Trie of the words of the employee names, for the prefix lookups of {@link EmployeeNameIndex}.
+ * Children are kept in exactly sized arrays sorted by their chars, so a node without children takes no arrays
+ * and a child is found by a binary search. The node of a word holds the word's {@link DocPostings}.
+ * Not thread-safe, guarded by the index's lock.
+ */
+final class NameTrie {
+
+    private static final char[] NO_LABELS = new char[0];
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final Node root = new Node();
+
+    private int words;
+
+    /**
+     * @param word word, already normalized
+     * @param doc  doc containing the word, not lower than the docs added before
+     */
+    void add(String word, int doc) {
+
+        Node node = root;
+
+        for (int i = 0; i < word.length(); i++) {
+            node = node.childOrAdd(word.charAt(i));
+        }
+
+        if (node.postings == null) {
+            node.postings = new DocPostings();
+            words++;
+        }
+
+        node.postings.add(doc);
+    }
+
+    /**
+     * Visits the docs of the words starting with the prefix, words in lexicographic order, docs of a word in ascending order.
+     * A doc is visited once per word it contains.
+     *
+     * @param prefix  prefix, already normalized
+     * @param visitor called for every doc, returns false to stop
+     */
+    void forEachWithPrefix(String prefix, IntPredicate visitor) {
+
+        Node node = root;
+
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(prefix.charAt(i));
+        }
+
+        if (node != null) {
+            visit(node, visitor);
+        }
+    }
+
+    /**
+     * @return number of distinct words
+     */
+    int words() {
+        return words;
+    }
+
+    private static boolean visit(Node node, IntPredicate visitor) {
+
+        if (node.postings != null && !node.postings.forEach(visitor)) {
+            return false;
+        }
+
+        for (Node child : node.children) {
+            if (!visit(child, visitor)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static final class Node {
+
+        private char[] labels = NO_LABELS;
+
+        private Node[] children = NO_CHILDREN;
+
+        private DocPostings postings;
+
+        private Node child(char label) {
+
+            int index = Arrays.binarySearch(labels, label);
+
+            return index < 0 ? null : children[index];
+        }
+
+        private Node childOrAdd(char label) {
+
+            int index = Arrays.binarySearch(labels, label);
+
+            if (index >= 0) {
+                return children[index];
+            }
+
+            index = -index - 1;
+
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+
+            System.arraycopy(labels, 0, newLabels, 0, index);
+            System.arraycopy(labels, index, newLabels, index + 1, labels.length - index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+
+            Node child = new Node();
+
+            newLabels[index] = label;
+            newChildren[index] = child;
+            labels = newLabels;
+            children = newChildren;
+
+            return child;
+        }
+    }
+}
@@ -79,10 +79,13 @@ public class RestApiIntegrationTests {
 
         InputEmployeeDto inputEmployeeDto = createTestInputEmployeeDto();
 
-        restTemplate.exchange("/employees/add",
+        Employee employee = restTemplate.exchange("/employees/add",
                 HttpMethod.POST,
                 new HttpEntity<>(inputEmployeeDto),
-                Employee.class);
+                Employee.class).getBody();
+
+        assertThat(employee).isNotNull();
+        assertThat(employee.getId()).isPositive();
 
         Unreliables.retryUntilTrue(10, TimeUnit.SECONDS, () -> {
             ConsumerRecords<String, EmployeeAddEventDto> records = consumer.poll(Duration.ofMillis(100));
@@ -92,8 +95,10 @@ public class RestApiIntegrationTests {
             }
 
             assertThat(records).hasSize(1)
-                    .extracting(ConsumerRecord::topic, ConsumerRecord::value)
-                    .containsExactly(tuple(addEmployeeTopic, new EmployeeAddEventDto(createTestEmployee())));
+                    .extracting(ConsumerRecord::topic, ConsumerRecord::key, ConsumerRecord::value)
+                    .containsExactly(tuple(addEmployeeTopic,
+                            employee.getId().toString(),
+                            new EmployeeAddEventDto(createTestEmployee(employee.getId()))));
 
             return true;
         });
@@ -140,6 +145,7 @@ public class RestApiIntegrationTests {
 
             assertThat(records).hasSize(4);
             assertThat(records).extracting(ConsumerRecord::topic).containsOnly(changeEmployeeStateTopic);
+            assertThat(records).extracting(ConsumerRecord::key).containsOnly(employee.getId().toString());
             assertThat(records).extracting(r -> r.value().getEmployeeId()).containsOnly(employee.getId());
             assertThat(records).extracting(r -> r.value().getEvent())
                     .containsExactly(EmployeeEvent.CHECK,
@@ -163,7 +169,11 @@ public class RestApiIntegrationTests {
     }
 
     private Employee createTestEmployee() {
-        return new Employee(1L, EmployeeState.ADDED, "Aliaksei Protas", "Washington Capitals prospect", 20);
+        return createTestEmployee(1L);
+    }
+
+    private Employee createTestEmployee(Long id) {
+        return new Employee(id, EmployeeState.ADDED, "Aliaksei Protas", "Washington Capitals prospect", 20);
     }
 
     private InputEmployeeDto createTestInputEmployeeDto() {
@@ -4,7 +4,13 @@ import com.pplflw.challenge.domain.Employee;
 import com.pplflw.challenge.dto.EmployeeChangeStateEventDto;
 import com.pplflw.challenge.dto.EmployeeStatusEventDto;
 import com.pplflw.challenge.service.ReactiveEmployeeService;
+import com.pplflw.challenge.service.dto.EmployeeImportResultDto;
+import com.pplflw.challenge.service.dto.EmployeeSearchResultDto;
+import com.pplflw.challenge.service.dto.EmployeeStateChangeResultDto;
+import com.pplflw.challenge.service.dto.EmployeeViewDto;
 import com.pplflw.challenge.service.dto.InputEmployeeDto;
+import com.pplflw.challenge.service.dto.InputStateChangeDto;
+import com.pplflw.challenge.service.dto.InputStateChangesDto;
 import com.pplflw.challenge.statemachine.EmployeeState;
 import org.junit.jupiter.api.Test;
 import org.junit.runner.RunWith;
@@ -18,7 +24,12 @@ import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
 import static com.pplflw.challenge.statemachine.EmployeeEvent.ACTIVATE;
+import static com.pplflw.challenge.statemachine.EmployeeEvent.APPROVE;
 import static com.pplflw.challenge.statemachine.EmployeeEvent.CHECK;
 import static org.hamcrest.Matchers.stringContainsInOrder;
 import static org.hamcrest.core.IsEqual.equalTo;
@@ -131,6 +142,172 @@ public class ControllerTests {
                         employee.getState().toString()));
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBulkAdd() {
+
+        Employee employee = createTestEmployee();
+
+        // every received line is echoed as a result, so the test sees how the body has been split
+        when(employeeService.importEmployees(any(Flux.class))).thenAnswer(invocation -> invocation.<Flux<String>>getArgument(0)
+                .index()
+                .map(line -> new EmployeeImportResultDto(line.getT1() + 1,
+                        EmployeeImportResultDto.Status.CREATED,
+                        employee,
+                        line.getT2())));
+
+        webTestClient.post().uri("/employees/bulk")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue("{\"name\":\"A\"}\n{\"name\":\"B\"}\n")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(EmployeeImportResultDto.class)
+                .contains(new EmployeeImportResultDto(1, EmployeeImportResultDto.Status.CREATED, employee, "{\"name\":\"A\"}"),
+                        new EmployeeImportResultDto(2, EmployeeImportResultDto.Status.CREATED, employee, "{\"name\":\"B\"}"))
+                .hasSize(2);
+    }
+
+    @Test
+    public void testChangeStateAndWait() {
+
+        EmployeeStatusEventDto eventDto = new EmployeeStatusEventDto(CHECK, "ACCEPTED", createTestEmployee());
+
+        when(employeeService.changeEmployeeStateAndWait(1L, CHECK)).thenReturn(Mono.just(eventDto));
+
+        webTestClient.put().uri("/employees/1/CHECK?wait=true")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(EmployeeStatusEventDto.class)
+                .isEqualTo(eventDto);
+
+        verify(employeeService, never()).changeEmployeeState(any(), any());
+    }
+
+    @Test
+    public void testChangeStateAndWaitTimesOut() {
+
+        when(employeeService.changeEmployeeStateAndWait(1L, CHECK)).thenReturn(Mono.error(new TimeoutException()));
+
+        webTestClient.put().uri("/employees/1/CHECK?wait=true")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+    }
+
+    @Test
+    public void testBulkChangeState() {
+
+        Employee employee = createTestEmployee();
+        List<InputStateChangeDto> changes = List.of(new InputStateChangeDto(1L, CHECK), new InputStateChangeDto(2L, APPROVE));
+
+        when(employeeService.changeEmployeeStates(changes)).thenReturn(Mono.just(List.of(
+                new EmployeeStateChangeResultDto(1L, CHECK, EmployeeStateChangeResultDto.Result.ACCEPTED, employee),
+                new EmployeeStateChangeResultDto(2L, APPROVE, EmployeeStateChangeResultDto.Result.TIMED_OUT, null))));
+
+        webTestClient.put().uri("/employees/bulk")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new InputStateChangesDto(changes))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].result").isEqualTo("ACCEPTED")
+                .jsonPath("$[0].employee.id").isEqualTo(employee.getId())
+                .jsonPath("$[1].employeeId").isEqualTo(2)
+                .jsonPath("$[1].result").isEqualTo("TIMED_OUT");
+    }
+
+    @Test
+    public void testBulkChangeStateIsValidated() {
+
+        webTestClient.put().uri("/employees/bulk")
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new InputStateChangesDto(List.of(new InputStateChangeDto(1L, null))))
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verify(employeeService, never()).changeEmployeeStates(any());
+    }
+
+    @Test
+    public void testGetEmployee() {
+
+        Employee employee = createTestEmployee();
+
+        when(employeeService.getEmployee(employee.getId()))
+                .thenReturn(Mono.just(new EmployeeViewDto(employee, 3, Instant.ofEpochMilli(1_000))));
+
+        webTestClient.get().uri("/employees/{id}", employee.getId())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.employee.id").isEqualTo(employee.getId())
+                .jsonPath("$.employee.state").isEqualTo(employee.getState().toString())
+                .jsonPath("$.lag").isEqualTo(3)
+                .jsonPath("$.asOf").isEqualTo("1970-01-01T00:00:01Z");
+    }
+
+    @Test
+    public void testListEmployees() {
+
+        Employee employee = new Employee(1L, EmployeeState.IN_CHECK, "Aliaksei Protas", "Washington Capitals prospect", 20);
+
+        when(employeeService.getEmployees(EmployeeState.IN_CHECK, 0L, 10L)).thenReturn(Flux.just(employee));
+
+        webTestClient.get().uri("/employees?state=IN_CHECK&after=0&limit=10")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Employee.class)
+                .isEqualTo(List.of(employee));
+
+        webTestClient.get().uri("/employees?state=IN_CHECK&minAge=20")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        webTestClient.get().uri("/employees?minAge=30&maxAge=20")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void testSearchEmployees() {
+
+        when(employeeService.searchEmployees("prot", 5)).thenReturn(Flux.just(new EmployeeSearchResultDto(1L, "Aliaksei Protas")));
+
+        webTestClient.get().uri("/employees/search?q=prot&limit=5")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(EmployeeSearchResultDto.class)
+                .isEqualTo(List.of(new EmployeeSearchResultDto(1L, "Aliaksei Protas")));
+
+        webTestClient.get().uri("/employees/search?q=prot&limit=1000")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void testGetUnknownEmployee() {
+
+        when(employeeService.getEmployee(2L)).thenReturn(Mono.empty());
+
+        webTestClient.get().uri("/employees/{id}", 2L)
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Cannot find employee with id=2");
+    }
+
     private Employee createTestEmployee() {
         return new Employee(1L, EmployeeState.ADDED, "Aliaksei Protas", "Washington Capitals prospect", 20);
     }
@@ -0,0 +1,109 @@
+package com.pplflw.challenge.service;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import com.pplflw.challenge.service.dto.EmployeeViewDto;
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import com.pplflw.challenge.storage.InMemoryEmployeeStorage;
+import com.pplflw.challenge.storage.IndexedEmployeeStorage;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.reactive.ReactiveKafkaConsumerTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class EmployeeReadModelTest {
+
+    private static final TopicPartition PARTITION = new TopicPartition("status", 0);
+
+    private ReactiveKafkaConsumerTemplate<String, EmployeeStatusEventDto> kafkaConsumer;
+
+    private EmployeeReadModel readModel;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        kafkaConsumer = mock(ReactiveKafkaConsumerTemplate.class);
+
+        readModel = new EmployeeReadModel(kafkaConsumer, new IndexedEmployeeStorage(new InMemoryEmployeeStorage()));
+
+        ReflectionTestUtils.setField(readModel, "lagRefreshInterval", Duration.ofMillis(10));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        readModel.stop();
+    }
+
+    @Test
+    public void testOnlyCreationsAndAcceptedChangesAreApplied() {
+
+        when(kafkaConsumer.doOnConsumer(any())).thenReturn(Mono.error(new IllegalStateException("Not subscribed")));
+
+        readModel.start();
+
+        assertThat(readModel.getEmployee(1L)).isEmpty();
+
+        readModel.onStatusRecord(createRecord(0, 1_000, null, null, EmployeeState.ADDED));
+        readModel.onStatusRecord(createRecord(1, 2_000, EmployeeEvent.CHECK, "ACCEPTED", EmployeeState.IN_CHECK));
+        readModel.onStatusRecord(createRecord(2, 3_000, EmployeeEvent.ACTIVATE, "DENIED", EmployeeState.ACTIVE));
+        readModel.onStatusRecord(new ConsumerRecord<>(PARTITION.topic(), PARTITION.partition(), 3, "1", null));
+
+        EmployeeViewDto view = readModel.getEmployee(1L).orElseThrow();
+
+        assertThat(view.getEmployee().getState()).isEqualTo(EmployeeState.IN_CHECK);
+        assertThat(view.getAsOf()).isEqualTo(Instant.ofEpochMilli(3_000));
+        // the lag is not known until the consumer is available
+        assertThat(view.getLag()).isEqualTo(-1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLagIsComputedFromEndOffsets() {
+
+        TopicPartition notConsumed = new TopicPartition("status", 1);
+        Consumer<String, EmployeeStatusEventDto> consumer = mock(Consumer.class);
+
+        when(consumer.assignment()).thenReturn(Set.of(PARTITION, notConsumed));
+        when(consumer.endOffsets(Set.of(PARTITION, notConsumed))).thenReturn(Map.of(PARTITION, 10L, notConsumed, 7L));
+        when(consumer.beginningOffsets(Set.of(notConsumed))).thenReturn(Map.of(notConsumed, 2L));
+        when(kafkaConsumer.doOnConsumer(any())).thenAnswer(invocation
+                -> Mono.fromSupplier(() -> invocation.<Function<Consumer<String, EmployeeStatusEventDto>, Long>>getArgument(0)
+                .apply(consumer)));
+
+        readModel.onStatusRecord(createRecord(3, 1_000, null, null, EmployeeState.ADDED));
+
+        readModel.start();
+
+        // 10 - 4 behind in the consumed partition, 7 - 2 in the other one
+        await().atMost(Duration.ofSeconds(5)).until(() -> readModel.lag() == 11);
+        assertThat(readModel.getEmployee(1L).map(EmployeeViewDto::getLag)).contains(11L);
+    }
+
+    private ConsumerRecord<String, EmployeeStatusEventDto> createRecord(long offset,
+                                                                         long timestamp,
+                                                                         EmployeeEvent event,
+                                                                         String result,
+                                                                         EmployeeState state) {
+        return new ConsumerRecord<>(PARTITION.topic(), PARTITION.partition(), offset, timestamp, TimestampType.CREATE_TIME,
+                0L, 0, 0, "1", new EmployeeStatusEventDto(event, result,
+                new Employee(1L, state, "Aliaksei Protas", "Washington Capitals prospect", 20)));
+    }
+}
@@ -0,0 +1,83 @@
+package com.pplflw.challenge.service;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.service.dto.EmployeeStatisticsDto;
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static com.pplflw.challenge.service.StatusRecords.createRecord;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+class EmployeeStatisticsTest {
+
+    private final EmployeeStatistics statistics = new EmployeeStatistics();
+
+    @Test
+    public void testTransitionsMoveEmployeesBetweenCounters() {
+
+        statistics.onStatusRecord(createRecord(null, null, new Employee(1L, EmployeeState.ADDED, "Alex Ovechkin", "Full-time", 35)));
+        statistics.onStatusRecord(createRecord(null, null, new Employee(2L, EmployeeState.ADDED, "Tom Wilson", "Part-time", 27)));
+        statistics.onStatusRecord(createRecord(EmployeeEvent.CHECK, "ACCEPTED", new Employee(1L, EmployeeState.IN_CHECK, "Alex Ovechkin", "Full-time", 35)));
+        statistics.onStatusRecord(createRecord(EmployeeEvent.ACTIVATE, "DENIED", new Employee(2L, EmployeeState.ACTIVE, "Tom Wilson", "Part-time", 27)));
+        // redelivered creation
+        statistics.onStatusRecord(createRecord(null, null, new Employee(2L, EmployeeState.ADDED, "Tom Wilson", "Part-time", 27)));
+        statistics.onStatusRecord(new ConsumerRecord<>("status", 0, 5, "3", null));
+
+        EmployeeStatisticsDto dto = statistics.getStatistics();
+
+        assertThat(dto.getTotal()).isEqualTo(2);
+        assertThat(dto.getByState()).containsExactly(entry(EmployeeState.ADDED, 1L), entry(EmployeeState.IN_CHECK, 1L),
+                entry(EmployeeState.APPROVED, 0L), entry(EmployeeState.ACTIVE, 0L));
+        assertThat(dto.getByAge()).contains(entry("20-29", 1L), entry("30-39", 1L), entry("40-49", 0L));
+        assertThat(dto.getByContract()).isEqualTo(Map.of("Full-time", 1L, "Part-time", 1L));
+    }
+
+    @Test
+    public void testChangedAttributesAreUncounted() {
+
+        statistics.onStatusRecord(createRecord(null, null, new Employee(1L, EmployeeState.ADDED, "Nicklas Backstrom", "Full-time", 33)));
+        statistics.onStatusRecord(createRecord(EmployeeEvent.CHECK, "ACCEPTED", new Employee(1L, EmployeeState.IN_CHECK, "Nicklas Backstrom", "Consultant", 120)));
+
+        EmployeeStatisticsDto dto = statistics.getStatistics();
+
+        assertThat(dto.getTotal()).isEqualTo(1);
+        assertThat(dto.getByAge()).contains(entry("30-39", 0L), entry("90+", 1L));
+        assertThat(dto.getByContract()).isEqualTo(Map.of("Consultant", 1L));
+    }
+
+    @Test
+    public void testUncountedContractIsCountedAgain() {
+
+        statistics.onStatusRecord(createRecord(null, null, new Employee(1L, EmployeeState.ADDED, "Alex Ovechkin", "Full-time", 35)));
+        statistics.onStatusRecord(createRecord(null, null, new Employee(1L, EmployeeState.ADDED, "Alex Ovechkin", null, 35)));
+        statistics.onStatusRecord(createRecord(null, null, new Employee(2L, null, "T. J. Oshie", "Full-time", 34)));
+
+        EmployeeStatisticsDto dto = statistics.getStatistics();
+
+        assertThat(dto.getTotal()).isEqualTo(2);
+        assertThat(dto.getByState()).contains(entry(EmployeeState.ADDED, 1L));
+        assertThat(dto.getByAge()).contains(entry("30-39", 2L));
+        assertThat(dto.getByContract()).isEqualTo(Map.of("Full-time", 1L));
+    }
+
+    @Test
+    public void testContractNumbersAreReused() {
+
+        for (long id = 1; id <= 5000; id++) {
+            statistics.onStatusRecord(createRecord(null, null, new Employee(id, EmployeeState.ADDED, "Evgeny Kuznetsov", "Contract " + id, 29)));
+            statistics.onStatusRecord(createRecord(EmployeeEvent.CHECK, "ACCEPTED", new Employee(id, EmployeeState.IN_CHECK, "Evgeny Kuznetsov", "Full-time", 29)));
+        }
+
+        EmployeeStatisticsDto dto = statistics.getStatistics();
+
+        assertThat(dto.getTotal()).isEqualTo(5000);
+        assertThat(dto.getByState()).contains(entry(EmployeeState.ADDED, 0L), entry(EmployeeState.IN_CHECK, 5000L));
+        assertThat(dto.getByContract()).isEqualTo(Map.of("Full-time", 5000L));
+        assertThat(statistics.contractNumbers()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,217 @@
+package com.pplflw.challenge.service;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.reactive.ReactiveKafkaConsumerTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Sinks;
+import reactor.kafka.receiver.ReceiverRecord;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class EmployeeStatusHubTest {
+
+    private final Sinks.Many<ReceiverRecord<String, EmployeeStatusEventDto>> records
+            = Sinks.many().multicast().directBestEffort();
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private EmployeeStatusCache statusCache;
+
+    private long offset;
+
+    private EmployeeStatusHub hub;
+
+    private ReactiveKafkaConsumerTemplate<String, EmployeeStatusEventDto> kafkaConsumer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        kafkaConsumer = mock(ReactiveKafkaConsumerTemplate.class);
+
+        when(kafkaConsumer.receive()).thenReturn(records.asFlux());
+
+        meterRegistry = new SimpleMeterRegistry();
+        statusCache = new EmployeeStatusCache(100, meterRegistry);
+
+        hub = new EmployeeStatusHub(kafkaConsumer, List.of(statusCache), statusCache);
+
+        ReflectionTestUtils.setField(hub, "subscriberBufferSize", 2);
+
+        hub.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        hub.stop();
+    }
+
+    @Test
+    public void testSubscribersReceiveOnlyTheirEmployeeEvents() {
+
+        EmployeeStatusEventDto first = createStatusEvent(1L, EmployeeEvent.CHECK);
+        EmployeeStatusEventDto second = createStatusEvent(2L, EmployeeEvent.CHECK);
+        EmployeeStatusEventDto third = createStatusEvent(1L, EmployeeEvent.APPROVE);
+
+        StepVerifier.create(hub.subscribe(1L))
+                .then(() -> {
+                    emit(first);
+                    emit(second);
+                    emit(third);
+                })
+                .expectNext(first, third)
+                .thenCancel()
+                .verify();
+
+        // a single consumer is shared by all the subscribers
+        StepVerifier.create(hub.subscribe(2L))
+                .then(() -> emit(second))
+                .expectNext(second)
+                .thenCancel()
+                .verify();
+
+        verify(kafkaConsumer, times(1)).receive();
+    }
+
+    @Test
+    public void testSubscriptionIsReleasedOnCancel() {
+
+        StepVerifier.create(hub.subscribe(1L).mergeWith(hub.subscribe(1L)))
+                .then(() -> assertThat(hub.subscribedEmployees()).isEqualTo(1))
+                .then(() -> emit(createStatusEvent(1L, EmployeeEvent.CHECK)))
+                .expectNextCount(2)
+                .thenCancel()
+                .verify();
+
+        assertThat(hub.subscribedEmployees()).isZero();
+    }
+
+    @Test
+    public void testSlowSubscriberDropsOldestEvents() {
+
+        EmployeeStatusEventDto check = createStatusEvent(1L, EmployeeEvent.CHECK);
+        EmployeeStatusEventDto approve = createStatusEvent(1L, EmployeeEvent.APPROVE);
+        EmployeeStatusEventDto activate = createStatusEvent(1L, EmployeeEvent.ACTIVATE);
+
+        StepVerifier.create(hub.subscribe(1L), 0)
+                .then(() -> {
+                    emit(check);
+                    emit(approve);
+                    emit(activate);
+                })
+                .thenRequest(2)
+                .expectNext(approve, activate)
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    public void testNewSubscribersArePrimedWithLatestEvent() {
+
+        EmployeeStatusEventDto check = createStatusEvent(1L, EmployeeEvent.CHECK);
+        EmployeeStatusEventDto approve = createStatusEvent(1L, EmployeeEvent.APPROVE);
+        EmployeeStatusEventDto activate = createStatusEvent(1L, EmployeeEvent.ACTIVATE);
+
+        // nobody is subscribed, the events only reach the cache
+        emit(check);
+        emit(approve);
+
+        StepVerifier.create(hub.subscribe(1L))
+                .expectNext(approve)
+                .then(() -> emit(activate))
+                .expectNext(activate)
+                .thenCancel()
+                .verify();
+
+        StepVerifier.create(hub.subscribe(2L))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(50))
+                .thenCancel()
+                .verify();
+
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "employee-status").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "employee-status").tag("result", "miss")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testLaterSubscribersArePrimedByChannel() {
+
+        EmployeeStatusEventDto check = createStatusEvent(1L, EmployeeEvent.CHECK);
+
+        StepVerifier.create(hub.subscribe(1L))
+                .then(() -> emit(check))
+                .expectNext(check)
+                .then(() -> StepVerifier.create(hub.subscribe(1L))
+                        .expectNext(check)
+                        .thenCancel()
+                        .verify())
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    public void testReplayedRecordsAreSkipped() {
+
+        EmployeeStatusEventDto check = createStatusEvent(1L, EmployeeEvent.CHECK);
+        EmployeeStatusEventDto approve = createStatusEvent(1L, EmployeeEvent.APPROVE);
+        EmployeeStatusEventDto activate = createStatusEvent(1L, EmployeeEvent.ACTIVATE);
+
+        StepVerifier.create(hub.subscribe(1L))
+                .then(() -> {
+                    emit(check, 0);
+                    emit(approve, 1);
+                    // a re-subscription receives the partition from the beginning again
+                    emit(check, 0);
+                    emit(approve, 1);
+                    emit(activate, 2);
+                })
+                .expectNext(check, approve, activate)
+                .thenCancel()
+                .verify();
+
+        assertThat(statusCache.getLatest(1L)).contains(activate);
+    }
+
+    @Test
+    public void testSubscriberCancellingInOnNextIsReleased() {
+
+        EmployeeStatusEventDto check = createStatusEvent(1L, EmployeeEvent.CHECK);
+
+        StepVerifier.create(hub.subscribe(1L).next())
+                .then(() -> emit(check))
+                .expectNext(check)
+                .verifyComplete();
+
+        assertThat(hub.subscribedEmployees()).isZero();
+    }
+
+    private void emit(EmployeeStatusEventDto eventDto) {
+        emit(eventDto, offset++);
+    }
+
+    private void emit(EmployeeStatusEventDto eventDto, long offset) {
+        records.tryEmitNext(new ReceiverRecord<>(
+                new ConsumerRecord<>("status", 0, offset, eventDto.getEmployee().getId().toString(), eventDto),
+                null));
+    }
+
+    private EmployeeStatusEventDto createStatusEvent(Long employeeId, EmployeeEvent event) {
+        return new EmployeeStatusEventDto(event,
+                "ACCEPTED",
+                new Employee(employeeId, EmployeeState.ADDED, "Aliaksei Protas", "Washington Capitals prospect", 20));
+    }
+}
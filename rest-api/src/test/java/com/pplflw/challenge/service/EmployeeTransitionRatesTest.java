@@ -0,0 +1,96 @@
+package com.pplflw.challenge.service;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.service.dto.EmployeeTransitionRatesDto;
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.pplflw.challenge.service.StatusRecords.createRecord;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EmployeeTransitionRatesTest {
+
+    private static final long START = Duration.ofHours(1000).toMillis();
+
+    private static final Employee EMPLOYEE = new Employee(1L, EmployeeState.ADDED, "John Carlson", "Defenseman", 31);
+
+    private final AtomicLong clock = new AtomicLong(START);
+
+    private final EmployeeTransitionRates rates = new EmployeeTransitionRates(clock::get);
+
+    @Test
+    public void testAttemptsAreBucketedAndExpire() {
+
+        rates.onStatusRecord(createRecord(EmployeeEvent.APPROVE, "ACCEPTED", EMPLOYEE, START - 61_000));
+        rates.onStatusRecord(createRecord(EmployeeEvent.APPROVE, "ACCEPTED", EMPLOYEE, START - 1_000));
+        rates.onStatusRecord(createRecord(EmployeeEvent.APPROVE, "ACCEPTED", EMPLOYEE, START));
+        rates.onStatusRecord(createRecord(EmployeeEvent.ACTIVATE, "DENIED", EMPLOYEE, START + 500));
+        // employee creation
+        rates.onStatusRecord(createRecord(null, null, EMPLOYEE, START));
+
+        EmployeeTransitionRatesDto perSecond = rates.getRates(ChronoUnit.SECONDS);
+
+        assertThat(perSecond.getFrom()).isEqualTo(Instant.ofEpochMilli(START - 59_000));
+        assertThat(perSecond.getBucket()).isEqualTo(Duration.ofSeconds(1));
+        assertThat(perSecond.getAccepted().get(EmployeeEvent.APPROVE)[58]).isEqualTo(1);
+        assertThat(perSecond.getAccepted().get(EmployeeEvent.APPROVE)[59]).isEqualTo(1);
+        assertThat(perSecond.getDenied().get(EmployeeEvent.ACTIVATE)[59]).isEqualTo(1);
+        assertThat(perSecond.getAccepted().get(EmployeeEvent.CHECK)).containsOnly(0);
+
+        EmployeeTransitionRatesDto perMinute = rates.getRates(ChronoUnit.MINUTES);
+
+        assertThat(perMinute.getAccepted().get(EmployeeEvent.APPROVE)[57]).isEqualTo(1);
+        assertThat(perMinute.getAccepted().get(EmployeeEvent.APPROVE)[58]).isEqualTo(1);
+        assertThat(perMinute.getAccepted().get(EmployeeEvent.APPROVE)[59]).isEqualTo(1);
+
+        // the next lap reuses the buckets of the expired seconds
+        clock.set(START + 60_000);
+        rates.record(EmployeeEvent.APPROVE, true, START + 60_000);
+
+        perSecond = rates.getRates(ChronoUnit.SECONDS);
+
+        assertThat(perSecond.getAccepted().get(EmployeeEvent.APPROVE)).containsExactly(expectedLast(1));
+        assertThat(perSecond.getDenied().get(EmployeeEvent.ACTIVATE)).containsOnly(0);
+
+        assertThatThrownBy(() -> rates.getRates(ChronoUnit.HOURS)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testConcurrentAttemptsAreNotLost() throws InterruptedException {
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        for (int thread = 0; thread < 4; thread++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    rates.record(EmployeeEvent.CHECK, true, START);
+                }
+            });
+        }
+
+        executor.shutdown();
+
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(rates.getRates(ChronoUnit.SECONDS).getAccepted().get(EmployeeEvent.CHECK)[59]).isEqualTo(40_000);
+        assertThat(rates.getRates(ChronoUnit.MINUTES).getAccepted().get(EmployeeEvent.CHECK)[59]).isEqualTo(40_000);
+    }
+
+    private static long[] expectedLast(long count) {
+
+        long[] counts = new long[60];
+
+        counts[59] = count;
+
+        return counts;
+    }
+}
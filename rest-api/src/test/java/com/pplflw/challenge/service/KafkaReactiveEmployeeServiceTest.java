@@ -0,0 +1,330 @@
+package com.pplflw.challenge.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.dto.EmployeeAddEventDto;
+import com.pplflw.challenge.dto.EmployeeChangeStateEventDto;
+import com.pplflw.challenge.dto.EmployeeEventDto;
+import com.pplflw.challenge.dto.EmployeeEventHeaders;
+import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import com.pplflw.challenge.service.dto.EmployeeImportResultDto;
+import com.pplflw.challenge.service.dto.EmployeeStateChangeResultDto;
+import com.pplflw.challenge.service.dto.EmployeeViewDto;
+import com.pplflw.challenge.service.dto.InputStateChangeDto;
+import com.pplflw.challenge.service.id.EmployeeIdGenerator;
+import com.pplflw.challenge.service.search.EmployeeNameIndex;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.kafka.sender.SenderRecord;
+import reactor.kafka.sender.SenderResult;
+import reactor.test.StepVerifier;
+
+import javax.validation.Validation;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static com.pplflw.challenge.statemachine.EmployeeEvent.APPROVE;
+import static com.pplflw.challenge.statemachine.EmployeeEvent.CHECK;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.longThat;
+import static org.mockito.Mockito.*;
+
+class KafkaReactiveEmployeeServiceTest {
+
+    private final List<EmployeeEventDto> sentEvents = new CopyOnWriteArrayList<>();
+
+    private final PendingStateChanges pendingStateChanges = new PendingStateChanges("node");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ReactiveKafkaProducerTemplate<String, EmployeeEventDto> changeStateKafkaProducer;
+
+    private ReactiveKafkaProducerTemplate<String, EmployeeEventDto> bulkKafkaProducer;
+
+    private EmployeeReadModel employeeReadModel;
+
+    private KafkaReactiveEmployeeService employeeService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        changeStateKafkaProducer = mock(ReactiveKafkaProducerTemplate.class);
+        bulkKafkaProducer = mock(ReactiveKafkaProducerTemplate.class);
+        employeeReadModel = mock(EmployeeReadModel.class);
+
+        AtomicLong ids = new AtomicLong();
+        EmployeeIdGenerator employeeIdGenerator = ids::incrementAndGet;
+
+        employeeService = new KafkaReactiveEmployeeService(mock(ReactiveKafkaProducerTemplate.class),
+                changeStateKafkaProducer,
+                bulkKafkaProducer,
+                mock(EmployeeStatusHub.class),
+                employeeIdGenerator,
+                employeeReadModel,
+                mock(EmployeeNameIndex.class),
+                pendingStateChanges,
+                new ObjectMapper(),
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                meterRegistry);
+
+        ReflectionTestUtils.setField(employeeService, "employeeAddTopic", "add");
+        ReflectionTestUtils.setField(employeeService, "employeeEventsTopic", "change-state");
+        ReflectionTestUtils.setField(employeeService, "resultTimeout", Duration.ofMillis(500));
+        ReflectionTestUtils.setField(employeeService, "replyTimeout", Duration.ofMillis(500));
+        ReflectionTestUtils.setField(employeeService, "pageSize", 2);
+    }
+
+    @Test
+    public void testEmployeesAreListedPageByPage() {
+
+        List<Employee> inCheck = LongStream.rangeClosed(1, 5)
+                .mapToObj(id -> new Employee(id, EmployeeState.IN_CHECK, "Employee #" + id, null, 30))
+                .collect(Collectors.toList());
+
+        when(employeeReadModel.getEmployees(eq(EmployeeState.IN_CHECK), any(), anyInt())).thenAnswer(invocation -> {
+
+            Long afterId = invocation.getArgument(1);
+
+            return inCheck.stream()
+                    .filter(employee -> afterId == null || employee.getId() > afterId)
+                    .limit(invocation.<Integer>getArgument(2))
+                    .collect(Collectors.toList());
+        });
+
+        StepVerifier.create(employeeService.getEmployees(EmployeeState.IN_CHECK, null, null).map(Employee::getId))
+                .expectNext(1L, 2L, 3L, 4L, 5L)
+                .verifyComplete();
+
+        // pages of 2, the short last one ends the listing
+        verify(employeeReadModel, times(3)).getEmployees(eq(EmployeeState.IN_CHECK), any(), anyInt());
+
+        StepVerifier.create(employeeService.getEmployees(EmployeeState.IN_CHECK, 1L, 3L).map(Employee::getId))
+                .expectNext(2L, 3L, 4L)
+                .verifyComplete();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testImportAnswersEveryLine() {
+
+        // the second sent employee fails
+        when(bulkKafkaProducer.send(any(Publisher.class))).thenAnswer(invocation -> Flux.from(invocation
+                .<Publisher<SenderRecord<String, EmployeeEventDto, EmployeeImportResultDto>>>getArgument(0))
+                .doOnNext(record -> sentEvents.add(record.value()))
+                .index()
+                .map(record -> new TestSenderResult<>(record.getT2().correlationMetadata(),
+                        record.getT1() == 1 ? new IllegalStateException("Broker is gone") : null)));
+
+        List<EmployeeImportResultDto> results = employeeService.importEmployees(Flux.just(
+                "{\"name\":\"John Smith\",\"contractInfo\":\"Full-time\",\"age\":30}",
+                "",
+                "{\"name\":\"Jane",
+                "{\"name\":\"\",\"age\":17}",
+                "{\"name\":\"Jane Doe\",\"age\":40}",
+                "{\"name\":\"Richard Roe\",\"age\":50}"))
+                .collectList()
+                .block();
+
+        assertThat(results)
+                .usingElementComparator(Comparator.comparingLong(EmployeeImportResultDto::getLine)
+                        .thenComparing(EmployeeImportResultDto::getStatus))
+                .containsExactlyInAnyOrder(
+                        new EmployeeImportResultDto(1, EmployeeImportResultDto.Status.CREATED, null, null),
+                        new EmployeeImportResultDto(3, EmployeeImportResultDto.Status.INVALID, null, null),
+                        new EmployeeImportResultDto(4, EmployeeImportResultDto.Status.INVALID, null, null),
+                        new EmployeeImportResultDto(5, EmployeeImportResultDto.Status.FAILED, null, null),
+                        new EmployeeImportResultDto(6, EmployeeImportResultDto.Status.CREATED, null, null));
+
+        assertThat(results)
+                .filteredOn(result -> result.getLine() == 4)
+                .extracting(EmployeeImportResultDto::getMessage)
+                .containsExactly("age must be greater than or equal to 18, name must not be blank");
+
+        assertThat(results)
+                .filteredOn(result -> result.getStatus() == EmployeeImportResultDto.Status.CREATED)
+                .extracting(result -> result.getEmployee().getName(), result -> result.getEmployee().getState())
+                .containsExactlyInAnyOrder(tuple("John Smith", EmployeeState.ADDED), tuple("Richard Roe", EmployeeState.ADDED));
+
+        // only the valid lines are sent, each with a new ID
+        assertThat(sentEvents)
+                .extracting(eventDto -> ((EmployeeAddEventDto) eventDto).getEmployee().getId())
+                .containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStateChangesAreAggregatedFromStatusEvents() {
+
+        // the third event fails, no status event answers the fourth one nor the fifth one, which is for an unknown employee
+        when(employeeReadModel.getEmployee(longThat(id -> id < 5))).thenReturn(Optional.of(new EmployeeViewDto()));
+        when(bulkKafkaProducer.send(any(Publisher.class))).thenAnswer(invocation -> Flux.from(invocation
+                .<Publisher<SenderRecord<String, EmployeeEventDto, Integer>>>getArgument(0))
+                .doOnNext(record -> {
+
+                    sentEvents.add(record.value());
+
+                    // status events may arrive before the acknowledgements
+                    switch (record.correlationMetadata()) {
+                        case 0:
+                        case 1:
+                            replyTo(record, "ACCEPTED");
+                            break;
+                        case 5:
+                            replyTo(record, "DENIED");
+                            break;
+                    }
+                })
+                .map(record -> new TestSenderResult<>(record.correlationMetadata(),
+                        record.correlationMetadata() == 2 ? new IllegalStateException("Broker is gone") : null)));
+
+        List<EmployeeStateChangeResultDto> results = employeeService.changeEmployeeStates(List.of(
+                new InputStateChangeDto(1L, CHECK),
+                new InputStateChangeDto(2L, CHECK),
+                new InputStateChangeDto(3L, CHECK),
+                new InputStateChangeDto(4L, CHECK),
+                new InputStateChangeDto(5L, CHECK),
+                new InputStateChangeDto(1L, APPROVE)))
+                .block();
+
+        assertThat(results)
+                .extracting(EmployeeStateChangeResultDto::getEmployeeId,
+                        EmployeeStateChangeResultDto::getEvent,
+                        EmployeeStateChangeResultDto::getResult)
+                .containsExactly(tuple(1L, CHECK, EmployeeStateChangeResultDto.Result.ACCEPTED),
+                        tuple(2L, CHECK, EmployeeStateChangeResultDto.Result.ACCEPTED),
+                        tuple(3L, CHECK, EmployeeStateChangeResultDto.Result.FAILED),
+                        tuple(4L, CHECK, EmployeeStateChangeResultDto.Result.TIMED_OUT),
+                        tuple(5L, CHECK, EmployeeStateChangeResultDto.Result.NOT_FOUND),
+                        tuple(1L, APPROVE, EmployeeStateChangeResultDto.Result.DENIED));
+
+        assertThat(sentEvents)
+                .extracting(eventDto -> ((EmployeeChangeStateEventDto) eventDto).getEmployeeId())
+                .containsExactly(1L, 2L, 3L, 4L, 5L, 1L);
+
+        assertThat(pendingStateChanges.pendingChanges()).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testUnknownEmployeeTimesOutWhileReadModelLags() {
+
+        when(employeeReadModel.lag()).thenReturn(3L);
+        when(bulkKafkaProducer.send(any(Publisher.class))).thenAnswer(invocation -> Flux.from(invocation
+                .<Publisher<SenderRecord<String, EmployeeEventDto, Integer>>>getArgument(0))
+                .map(record -> new TestSenderResult<>(record.correlationMetadata(), null)));
+
+        List<EmployeeStateChangeResultDto> results = employeeService.changeEmployeeStates(List.of(
+                new InputStateChangeDto(5L, CHECK)))
+                .block();
+
+        // the employee may have been created moments before
+        assertThat(results)
+                .extracting(EmployeeStateChangeResultDto::getResult)
+                .containsExactly(EmployeeStateChangeResultDto.Result.TIMED_OUT);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testWaitCompletesWithStatusEvent() {
+
+        when(changeStateKafkaProducer.send(any(ProducerRecord.class))).thenAnswer(invocation -> {
+
+            ProducerRecord<String, EmployeeEventDto> record = invocation.getArgument(0);
+
+            // a status event of another node's change of the same employee
+            ProducerRecord<String, EmployeeEventDto> otherNodeRecord = new ProducerRecord<>(record.topic(), record.key(), record.value());
+            otherNodeRecord.headers().add(EmployeeEventHeaders.CORRELATION_ID, "other-node-1".getBytes(StandardCharsets.UTF_8));
+
+            replyTo(otherNodeRecord, "DENIED");
+            replyTo(record, "ACCEPTED");
+
+            return Mono.just(new TestSenderResult<>(null, null));
+        });
+
+        StepVerifier.create(employeeService.changeEmployeeStateAndWait(1L, CHECK))
+                .assertNext(statusEventDto -> assertThat(statusEventDto.getResult()).isEqualTo("ACCEPTED"))
+                .verifyComplete();
+
+        assertThat(meterRegistry.get("employee.change-state.reply").tag("outcome", "replied").timer().count()).isOne();
+        assertThat(pendingStateChanges.pendingChanges()).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testWaitTimesOutWithoutStatusEvent() {
+
+        when(changeStateKafkaProducer.send(any(ProducerRecord.class))).thenReturn(Mono.just(new TestSenderResult<>(null, null)));
+
+        StepVerifier.create(employeeService.changeEmployeeStateAndWait(-1L, CHECK))
+                .verifyError(TimeoutException.class);
+
+        assertThat(meterRegistry.get("employee.change-state.reply").tag("outcome", "timed-out").timer().count()).isOne();
+        assertThat(pendingStateChanges.pendingChanges()).isZero();
+    }
+
+    /**
+     * Publishes the status event of a sent change-state event the way the service does it, echoing the correlation ID.
+     */
+    private void replyTo(ProducerRecord<String, EmployeeEventDto> record, String result) {
+
+        EmployeeChangeStateEventDto eventDto = (EmployeeChangeStateEventDto) record.value();
+
+        ConsumerRecord<String, EmployeeStatusEventDto> statusRecord = new ConsumerRecord<>("status", 0, 0, record.key(),
+                new EmployeeStatusEventDto(eventDto.getEvent(),
+                        result,
+                        new Employee(eventDto.getEmployeeId(), EmployeeState.IN_CHECK, "Employee", null, 30)));
+
+        record.headers().forEach(statusRecord.headers()::add);
+
+        pendingStateChanges.onStatusRecord(statusRecord);
+    }
+
+    private static class TestSenderResult<T> implements SenderResult<T> {
+
+        private final T correlationMetadata;
+
+        private final Exception exception;
+
+        private TestSenderResult(T correlationMetadata, Exception exception) {
+            this.correlationMetadata = correlationMetadata;
+            this.exception = exception;
+        }
+
+        @Override
+        public RecordMetadata recordMetadata() {
+            return null;
+        }
+
+        @Override
+        public Exception exception() {
+            return exception;
+        }
+
+        @Override
+        public T correlationMetadata() {
+            return correlationMetadata;
+        }
+    }
+}
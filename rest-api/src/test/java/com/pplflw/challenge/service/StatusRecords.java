@@ -0,0 +1,28 @@
+package com.pplflw.challenge.service;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.record.TimestampType;
+
+/**
+ * Status records fed to the {@link EmployeeStatusListener}s under test.
+ */
+public final class StatusRecords {
+
+    private StatusRecords() {
+    }
+
+    public static ConsumerRecord<String, EmployeeStatusEventDto> createRecord(EmployeeEvent event, String result, Employee employee) {
+        return new ConsumerRecord<>("status", 0, 0, String.valueOf(employee.getId()), new EmployeeStatusEventDto(event, result, employee));
+    }
+
+    public static ConsumerRecord<String, EmployeeStatusEventDto> createRecord(EmployeeEvent event,
+                                                                             String result,
+                                                                             Employee employee,
+                                                                             long timestamp) {
+        return new ConsumerRecord<>("status", 0, 0, timestamp, TimestampType.CREATE_TIME, 0L, 0, 0,
+                String.valueOf(employee.getId()), new EmployeeStatusEventDto(event, result, employee));
+    }
+}
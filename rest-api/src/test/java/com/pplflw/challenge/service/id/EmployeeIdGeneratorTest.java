@@ -0,0 +1,140 @@
+package com.pplflw.challenge.service.id;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EmployeeIdGeneratorTest {
+
+    private static final int THREADS = 8;
+
+    private static final int IDS_PER_THREAD = 20_000;
+
+    @Test
+    public void testSnowflakeIdsAreUniqueUnderContention() throws InterruptedException {
+        assertThat(generateConcurrently(new SnowflakeEmployeeIdGenerator(42))).hasSize(THREADS * IDS_PER_THREAD);
+    }
+
+    @Test
+    public void testSnowflakeIdLayout() {
+
+        long now = SnowflakeEmployeeIdGenerator.EPOCH + 1000;
+
+        SnowflakeEmployeeIdGenerator generator = new SnowflakeEmployeeIdGenerator(3, () -> now);
+
+        long first = generator.nextId();
+        long second = generator.nextId();
+
+        assertThat(first >>> 22).isEqualTo(1000);
+        assertThat((first >>> 12) & SnowflakeEmployeeIdGenerator.MAX_NODE_ID).isEqualTo(3);
+        assertThat(second).isEqualTo(first + 1);
+    }
+
+    @Test
+    public void testSnowflakeIdsGrowWhenClockGoesBackwards() {
+
+        AtomicLong clock = new AtomicLong(SnowflakeEmployeeIdGenerator.EPOCH + 1000);
+
+        SnowflakeEmployeeIdGenerator generator = new SnowflakeEmployeeIdGenerator(1, clock::get);
+
+        long beforeRewind = generator.nextId();
+
+        clock.addAndGet(-SnowflakeEmployeeIdGenerator.MAX_DRIFT_MILLIS);
+
+        assertThat(generator.nextId()).isGreaterThan(beforeRewind);
+    }
+
+    @Test
+    public void testSnowflakeWaitsForClockBeyondMaxDrift() {
+
+        AtomicLong clock = new AtomicLong(SnowflakeEmployeeIdGenerator.EPOCH + 1000);
+        AtomicBoolean ticking = new AtomicBoolean();
+
+        // once ticking, every reading of the clock takes a millisecond
+        SnowflakeEmployeeIdGenerator generator = new SnowflakeEmployeeIdGenerator(1,
+                () -> ticking.get() ? clock.incrementAndGet() : clock.get());
+
+        long beforeRewind = generator.nextId();
+
+        clock.addAndGet(-SnowflakeEmployeeIdGenerator.MAX_DRIFT_MILLIS - 10);
+        ticking.set(true);
+
+        long afterRewind = generator.nextId();
+
+        assertThat(afterRewind).isGreaterThan(beforeRewind);
+        assertThat(clock.get() - SnowflakeEmployeeIdGenerator.EPOCH + SnowflakeEmployeeIdGenerator.MAX_DRIFT_MILLIS)
+                .isGreaterThanOrEqualTo(afterRewind >>> 22);
+    }
+
+    @Test
+    public void testSnowflakeRejectsInvalidNodeId() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeEmployeeIdGenerator(-1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new SnowflakeEmployeeIdGenerator(SnowflakeEmployeeIdGenerator.MAX_NODE_ID + 1));
+    }
+
+    @Test
+    public void testBlockLeasingIdsAreUniqueAcrossGenerators(@TempDir Path directory) throws InterruptedException {
+
+        Path blockFile = directory.resolve("blocks");
+
+        Set<Long> firstNodeIds = generateConcurrently(new BlockLeasingEmployeeIdGenerator(new FileIdBlockSource(blockFile), 1000));
+        Set<Long> secondNodeIds = generateConcurrently(new BlockLeasingEmployeeIdGenerator(new FileIdBlockSource(blockFile), 1000));
+
+        assertThat(firstNodeIds).hasSize(THREADS * IDS_PER_THREAD).allMatch(id -> id > 0);
+        assertThat(secondNodeIds).hasSize(THREADS * IDS_PER_THREAD);
+
+        firstNodeIds.retainAll(secondNodeIds);
+
+        assertThat(firstNodeIds).isEmpty();
+    }
+
+    @Test
+    public void testBlockLeasingContactsSourceOncePerBlock() {
+
+        AtomicLong leases = new AtomicLong();
+
+        BlockLeasingEmployeeIdGenerator generator = new BlockLeasingEmployeeIdGenerator(size -> {
+            leases.incrementAndGet();
+            return 1;
+        }, 10);
+
+        for (int i = 0; i < 10; i++) {
+            generator.nextId();
+        }
+
+        assertThat(leases).hasValue(1);
+    }
+
+    private Set<Long> generateConcurrently(EmployeeIdGenerator generator) throws InterruptedException {
+
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        for (int i = 0; i < THREADS; i++) {
+            executor.execute(() -> {
+                for (int j = 0; j < IDS_PER_THREAD; j++) {
+                    ids.add(generator.nextId());
+                }
+            });
+        }
+
+        executor.shutdown();
+
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        return ids;
+    }
+}
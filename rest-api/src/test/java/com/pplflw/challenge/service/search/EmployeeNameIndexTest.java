@@ -0,0 +1,69 @@
+package com.pplflw.challenge.service.search;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.service.dto.EmployeeSearchResultDto;
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.pplflw.challenge.service.StatusRecords.createRecord;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmployeeNameIndexTest {
+
+    private final EmployeeNameIndex index = new EmployeeNameIndex();
+
+    @Test
+    public void testWordPrefixesComeBeforeSubstrings() {
+
+        index.onStatusRecord(createRecord(null, null, new Employee(1L, EmployeeState.ADDED, "Evgeny Kuznetsov", null, 29)));
+        index.onStatusRecord(createRecord(null, null, new Employee(2L, EmployeeState.ADDED, "Nic Dowd", null, 31)));
+        index.onStatusRecord(createRecord(null, null, new Employee(3L, EmployeeState.ADDED, "Nicklas Backstrom", null, 33)));
+        index.onStatusRecord(createRecord(null, null, new Employee(4L, EmployeeState.ADDED, "Dominic Nicolas", null, 25)));
+        // repeated by a state change
+        index.onStatusRecord(createRecord(EmployeeEvent.CHECK, "ACCEPTED", new Employee(3L, EmployeeState.IN_CHECK, "Nicklas Backstrom", null, 33)));
+
+        // 'nic', 'nicklas', 'nicolas', then 'dominic'
+        assertThat(ids(index.search("NIC", 10))).containsExactly(2L, 3L, 4L);
+        assertThat(ids(index.search("nic", 2))).containsExactly(2L, 3L);
+        assertThat(ids(index.search("etso", 10))).containsExactly(1L);
+        assertThat(ids(index.search("dowd", 10))).containsExactly(2L);
+        assertThat(ids(index.search("ic d", 10))).containsExactly(2L);
+        assertThat(index.search("xyz", 10)).isEmpty();
+        assertThat(index.search(" ", 10)).isEmpty();
+        assertThat(index.size()).isEqualTo(4);
+    }
+
+    @Test
+    public void testRenamedEmployeesAreFoundByTheNewNameOnly() {
+
+        index.index(1L, "Tom Wilson");
+        index.index(1L, "Thomas Wilson");
+        index.index(2L, "Garnet Hathaway");
+        index.index(2L, null);
+
+        assertThat(index.search("tom", 10)).isEmpty();
+        assertThat(index.search("wilson", 10)).containsExactly(new EmployeeSearchResultDto(1L, "Thomas Wilson"));
+        assertThat(index.search("hathaway", 10)).isEmpty();
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testPostingsSpanLongGaps() {
+
+        for (long id = 1; id <= 100_000; id++) {
+            index.index(id, id % 50_000 == 0 ? "Rare Name " + id : "Common Name " + id);
+        }
+
+        assertThat(ids(index.search("rare", 10))).containsExactly(50_000L, 100_000L);
+        assertThat(ids(index.search("name 9999", 3))).containsExactly(9999L, 99990L, 99991L);
+        assertThat(index.search("common", 100)).hasSize(100);
+    }
+
+    private static List<Long> ids(List<EmployeeSearchResultDto> results) {
+        return results.stream().map(EmployeeSearchResultDto::getId).collect(Collectors.toList());
+    }
+}
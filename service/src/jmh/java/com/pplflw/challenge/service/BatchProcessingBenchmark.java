@@ -0,0 +1,116 @@
+package com.pplflw.challenge.service;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.dto.EmployeeChangeStateEventDto;
+import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import com.pplflw.challenge.service.snapshot.ConsumedOffsets;
+import com.pplflw.challenge.service.statemachine.StateMachineConfiguration;
+import com.pplflw.challenge.service.statemachine.TableTransitionEngine;
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import com.pplflw.challenge.storage.InMemoryEmployeeStorage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.statemachine.config.StateMachineFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares one poll batch of change-state events processed record by record
+ * (one storage write and one send per event) with the same batch processed by
+ * {@link EmployeeService#changeEmployeeStates(List)} (one bulk storage write and one outbox hand-over).
+ * Status events go through {@link StatusEventOutbox} to a stub producer which serializes every event,
+ * so the numbers cover the service overhead only.
+ * <p>
+ * Run with {@code gradle :service:jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchProcessingBenchmark {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final int EMPLOYEES = 100;
+
+    private static final EmployeeEvent[] EVENTS = {EmployeeEvent.CHECK, EmployeeEvent.APPROVE, EmployeeEvent.ACTIVATE};
+
+    private AnnotationConfigApplicationContext context;
+
+    private InMemoryEmployeeStorage employeeStorage;
+
+    private StatusEventOutbox statusEventOutbox;
+
+    private EmployeeService employeeService;
+
+    private List<EmployeeChangeStateEventDto> batch;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext(StateMachineConfiguration.class);
+
+        StateMachineFactory<EmployeeState, EmployeeEvent> stateMachineFactory = context.getBean(StateMachineFactory.class);
+
+        statusEventOutbox = new StatusEventOutbox(new StubProducerTemplate(), 10_000, new SimpleMeterRegistry());
+
+        ReflectionTestUtils.setField(statusEventOutbox, "employeeStatusTopic", "status");
+        ReflectionTestUtils.setField(statusEventOutbox, "timeoutInSeconds", 5);
+        ReflectionTestUtils.setField(statusEventOutbox, "batchSize", BATCH_SIZE);
+
+        statusEventOutbox.start();
+
+        employeeStorage = new InMemoryEmployeeStorage();
+        employeeService = new EmployeeServiceImpl(new TableTransitionEngine(stateMachineFactory.getStateMachine()),
+                employeeStorage,
+                statusEventOutbox,
+                new ConsumedOffsets());
+
+        batch = new ArrayList<>(BATCH_SIZE);
+
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new EmployeeChangeStateEventDto((long) (i % EMPLOYEES), EVENTS[i / EMPLOYEES % EVENTS.length]));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void resetEmployees() {
+        for (long id = 0; id < EMPLOYEES; id++) {
+            employeeStorage.updateEmployee(new Employee(id, EmployeeState.ADDED, "Employee " + id, "Contract " + id, 30));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        statusEventOutbox.stop();
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int recordByRecord() {
+
+        int accepted = 0;
+
+        for (EmployeeChangeStateEventDto eventDto : batch) {
+            if ("ACCEPTED".equals(employeeService.changeEmployeeState(eventDto.getEmployeeId(), eventDto.getEvent()).getResult())) {
+                accepted++;
+            }
+        }
+
+        return accepted;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<EmployeeStatusEventDto> batched() {
+        return employeeService.changeEmployeeStates(batch);
+    }
+}
@@ -0,0 +1,90 @@
+package com.pplflw.challenge.service;
+
+import com.pplflw.challenge.codec.EmployeeEventDeserializer;
+import com.pplflw.challenge.codec.EmployeeEventSerializer;
+import com.pplflw.challenge.config.EmployeeEventMessageConverter;
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trip of a status event through the producer's value serializer and the listener's deserializer
+ * and message converter, the way the service is configured:
+ * - json: {@link JsonSerializer}, then {@link StringDeserializer} and the JSON message converter
+ * - binary: {@link EmployeeEventSerializer} with the binary codec, then {@link EmployeeEventDeserializer}
+ * and the converter's pass-through.
+ * Prints the sizes of both encodings at setup.
+ * <p>
+ * Run with {@code gradle :service:jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventSerializationBenchmark {
+
+    private static final String TOPIC = "status";
+
+    private EmployeeStatusEventDto event;
+
+    private EmployeeEventSerializer<Object> jsonSerializer;
+
+    private EmployeeEventSerializer<Object> binarySerializer;
+
+    private EmployeeEventDeserializer<Object> deserializer;
+
+    private EmployeeEventMessageConverter messageConverter;
+
+    @Setup
+    public void setUp() {
+
+        event = new EmployeeStatusEventDto(EmployeeEvent.APPROVE, "ACCEPTED",
+                new Employee(1_234_567_890_123L, EmployeeState.APPROVED, "Employee #1234567", "Full-time contract, office 42", 35));
+
+        jsonSerializer = new EmployeeEventSerializer<>(new JsonSerializer<>(), false);
+        binarySerializer = new EmployeeEventSerializer<>(new JsonSerializer<>(), true);
+        deserializer = new EmployeeEventDeserializer<>(new StringDeserializer());
+        messageConverter = new EmployeeEventMessageConverter();
+
+        jsonSerializer.configure(Map.of(), false);
+        binarySerializer.configure(Map.of(), false);
+
+        System.out.printf("%nStatus event: json %d bytes, binary %d bytes%n",
+                jsonSerializer.serialize(TOPIC, new RecordHeaders(), event).length,
+                binarySerializer.serialize(TOPIC, new RecordHeaders(), event).length);
+    }
+
+    @Benchmark
+    public Object json() {
+        return roundTrip(jsonSerializer);
+    }
+
+    @Benchmark
+    public Object binary() {
+        return roundTrip(binarySerializer);
+    }
+
+    private Object roundTrip(EmployeeEventSerializer<Object> serializer) {
+
+        Headers headers = new RecordHeaders();
+        byte[] value = serializer.serialize(TOPIC, headers, event);
+
+        ConsumerRecord<String, Object> record = new ConsumerRecord<>(TOPIC, 0, 0, 0, TimestampType.CREATE_TIME, 0L,
+                ConsumerRecord.NULL_SIZE, value.length, null, deserializer.deserialize(TOPIC, headers, value), headers);
+
+        return messageConverter.toMessage(record, null, null, EmployeeStatusEventDto.class).getPayload();
+    }
+}
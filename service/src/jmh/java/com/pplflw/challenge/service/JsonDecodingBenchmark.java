@@ -0,0 +1,77 @@
+package com.pplflw.challenge.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pplflw.challenge.config.EmployeeEventJsonDeserializer;
+import com.pplflw.challenge.config.EmployeeEventMessageConverter;
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.dto.EmployeeAddEventDto;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of a JSON add-employee record into the listener's payload:
+ * - string: {@link StringDeserializer}, then the JSON message converter parses the String
+ * - bytes: {@link EmployeeEventJsonDeserializer} parses the record bytes with the topic's reader,
+ * the converter passes the event through.
+ * <p>
+ * Run with {@code gradle :service:jmh}, add the {@code gc} profiler for the allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonDecodingBenchmark {
+
+    private static final String TOPIC = "add";
+
+    private byte[] value;
+
+    private Deserializer<String> stringDeserializer;
+
+    private EmployeeEventJsonDeserializer jsonDeserializer;
+
+    private EmployeeEventMessageConverter messageConverter;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        value = new ObjectMapper().writeValueAsBytes(new EmployeeAddEventDto(
+                new Employee(1_234_567_890_123L, EmployeeState.ADDED, "Employee #1234567", "Full-time contract, office 42", 35)));
+
+        stringDeserializer = new StringDeserializer();
+        jsonDeserializer = new EmployeeEventJsonDeserializer();
+        messageConverter = new EmployeeEventMessageConverter();
+
+        jsonDeserializer.configure(Map.of(EmployeeEventJsonDeserializer.TOPIC_TYPES_CONFIG,
+                TOPIC + ":" + EmployeeAddEventDto.class.getName()), false);
+    }
+
+    @Benchmark
+    public Object string() {
+        return toPayload(stringDeserializer.deserialize(TOPIC, value));
+    }
+
+    @Benchmark
+    public Object bytes() {
+        return toPayload(jsonDeserializer.deserialize(TOPIC, value));
+    }
+
+    private Object toPayload(Object deserialized) {
+
+        ConsumerRecord<String, Object> record = new ConsumerRecord<>(TOPIC, 0, 0, 0, TimestampType.CREATE_TIME, 0L,
+                ConsumerRecord.NULL_SIZE, value.length, null, deserialized, new RecordHeaders());
+
+        return messageConverter.toMessage(record, null, null, EmployeeAddEventDto.class).getPayload();
+    }
+}
@@ -0,0 +1,124 @@
+package com.pplflw.challenge.service;
+
+import com.pplflw.challenge.codec.EmployeeEventSerializer;
+import com.pplflw.challenge.config.ServiceConfiguration;
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import com.pplflw.challenge.kafka.ProducerProfile;
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import reactor.core.publisher.Flux;
+import reactor.kafka.sender.SenderRecord;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of the {@link ProducerProfile producer profiles} against an embedded broker: every iteration sends
+ * {@value #RECORDS} status events as fast as the status producer, built the way {@link ServiceConfiguration} builds it,
+ * accepts them. Prints the throughput and the send-to-acknowledgement latency percentiles of every iteration.
+ * The sender requests a record only when it has room for it, so the latency includes the time in the producer's
+ * buffer but not the time waiting for max-in-flight.
+ * <p>
+ * Run with {@code gradle :service:jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ProducerProfileBenchmark {
+
+    private static final int RECORDS = 200_000;
+
+    private static final int PARTITIONS = 4;
+
+    private static final String TOPIC = "status";
+
+    @Param({"low-latency", "high-throughput", "exactly-once"})
+    private String profile;
+
+    private EmbeddedKafkaBroker broker;
+
+    private ReactiveKafkaProducerTemplate<String, EmployeeStatusEventDto> kafkaProducer;
+
+    private Timer latency;
+
+    private long elapsedNanos;
+
+    @Setup
+    public void setUp() {
+
+        broker = new EmbeddedKafkaBroker(1, false, PARTITIONS, TOPIC);
+        broker.afterPropertiesSet();
+
+        KafkaProperties kafkaProperties = new KafkaProperties();
+
+        kafkaProperties.setBootstrapServers(List.of(broker.getBrokersAsString()));
+        kafkaProperties.getProducer().setKeySerializer(StringSerializer.class);
+        kafkaProperties.getProducer().setValueSerializer(EmployeeEventSerializer.class);
+        kafkaProperties.getProducer().getProperties().put(EmployeeEventSerializer.CODEC_CONFIG, "binary");
+        kafkaProperties.getProducer().getProperties().put(EmployeeEventSerializer.JSON_DELEGATE_CLASS_CONFIG, JsonSerializer.class.getName());
+
+        kafkaProducer = new ServiceConfiguration().kafkaProducer(profile, kafkaProperties);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetLatency() {
+        latency = Timer.builder("producer.latency")
+                .publishPercentiles(0.5, 0.99)
+                .register(new SimpleMeterRegistry());
+    }
+
+    @TearDown(Level.Iteration)
+    public void printIteration() {
+
+        StringBuilder percentiles = new StringBuilder();
+
+        for (ValueAtPercentile percentile : latency.takeSnapshot().percentileValues()) {
+            percentiles.append(String.format(" p%.0f=%.2fms", percentile.percentile() * 100, percentile.value(TimeUnit.MILLISECONDS)));
+        }
+
+        System.out.printf("%n%s: %d records/s,%s max=%.2fms%n", profile, RECORDS * TimeUnit.SECONDS.toNanos(1) / elapsedNanos,
+                percentiles, latency.max(TimeUnit.MILLISECONDS));
+    }
+
+    @TearDown
+    public void tearDown() {
+        kafkaProducer.destroy();
+        broker.destroy();
+    }
+
+    @Benchmark
+    public long send() {
+
+        long start = System.nanoTime();
+
+        long acknowledged = kafkaProducer.send(Flux.range(0, RECORDS)
+                        .map(i -> SenderRecord.create(new ProducerRecord<>(TOPIC, Integer.toString(i), createStatusEvent(i)),
+                                System.nanoTime())))
+                .doOnNext(result -> latency.record(System.nanoTime() - result.correlationMetadata(), TimeUnit.NANOSECONDS))
+                .count()
+                .block();
+
+        elapsedNanos = System.nanoTime() - start;
+
+        return acknowledged;
+    }
+
+    private static EmployeeStatusEventDto createStatusEvent(long id) {
+        return new EmployeeStatusEventDto(EmployeeEvent.CHECK, "ACCEPTED",
+                new Employee(id, EmployeeState.IN_CHECK, "Employee #" + id, "Full-time contract, office " + (id % 100), 20 + (int) (id % 45)));
+    }
+}
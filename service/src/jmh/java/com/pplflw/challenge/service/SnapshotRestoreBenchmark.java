@@ -0,0 +1,184 @@
+package com.pplflw.challenge.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.dto.EmployeeAddEventDto;
+import com.pplflw.challenge.service.snapshot.ConsumedOffsets;
+import com.pplflw.challenge.service.statemachine.StateMachineConfiguration;
+import com.pplflw.challenge.service.statemachine.TableTransitionEngine;
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import com.pplflw.challenge.storage.CompactEmployeeStorage;
+import com.pplflw.challenge.storage.EmployeeSnapshots;
+import com.pplflw.challenge.storage.EmployeeStorage;
+import com.pplflw.challenge.storage.InMemoryEmployeeStorage;
+import com.pplflw.challenge.storage.SnapshottingEmployeeStorage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.statemachine.config.StateMachineFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time-to-ready of a restarted service with five million employees:
+ * - replaying the whole add topic: every JSON record is converted to {@link EmployeeAddEventDto} the way
+ * {@link org.springframework.kafka.support.converter.StringJsonMessageConverter} does it and added in poll batches
+ * through {@link EmployeeServiceImpl}, which also republishes the status events to a stub producer.
+ * Broker fetches are not included, so this is a lower bound of the replay.
+ * - loading the latest {@link EmployeeSnapshots snapshot}, after which only the tail consumed since the snapshot
+ * is replayed.
+ * Also measures writing a snapshot of the same employees.
+ * <p>
+ * Run with {@code gradle :service:jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3500m")
+public class SnapshotRestoreBenchmark {
+
+    private static final int EMPLOYEES = 5_000_000;
+
+    private static final int POLL_BATCH_SIZE = 500;
+
+    private AnnotationConfigApplicationContext context;
+
+    private StateMachineFactory<EmployeeState, EmployeeEvent> stateMachineFactory;
+
+    private ObjectReader addEventReader;
+
+    private byte[][] addEvents;
+
+    private Path directory;
+
+    private EmployeeSnapshots snapshots;
+
+    private SnapshottingEmployeeStorage snapshotSource;
+
+    private StatusEventOutbox statusEventOutbox;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException {
+
+        context = new AnnotationConfigApplicationContext(StateMachineConfiguration.class);
+        stateMachineFactory = context.getBean(StateMachineFactory.class);
+
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        addEventReader = objectMapper.readerFor(EmployeeAddEventDto.class);
+        addEvents = new byte[EMPLOYEES][];
+
+        CompactEmployeeStorage compactStorage = new CompactEmployeeStorage(EMPLOYEES, false);
+
+        for (int id = 0; id < EMPLOYEES; id++) {
+
+            Employee employee = createEmployee(id);
+
+            addEvents[id] = objectMapper.writeValueAsBytes(new EmployeeAddEventDto(employee));
+            compactStorage.updateEmployee(employee);
+        }
+
+        snapshotSource = new SnapshottingEmployeeStorage(compactStorage);
+
+        directory = Files.createTempDirectory("employee-snapshots");
+        snapshots = new EmployeeSnapshots(directory, 1);
+
+        writeSnapshot();
+    }
+
+    @Setup(Level.Iteration)
+    public void startOutbox() {
+
+        statusEventOutbox = new StatusEventOutbox(new StubProducerTemplate(), 10_000, new SimpleMeterRegistry());
+
+        ReflectionTestUtils.setField(statusEventOutbox, "employeeStatusTopic", "status");
+        ReflectionTestUtils.setField(statusEventOutbox, "timeoutInSeconds", 60);
+        ReflectionTestUtils.setField(statusEventOutbox, "batchSize", POLL_BATCH_SIZE);
+
+        statusEventOutbox.start();
+    }
+
+    @TearDown(Level.Iteration)
+    public void stopOutbox() {
+        statusEventOutbox.stop();
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        context.close();
+
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Benchmark
+    public EmployeeStorage replayAddTopic() throws IOException {
+
+        EmployeeStorage storage = new InMemoryEmployeeStorage();
+        EmployeeService employeeService = new EmployeeServiceImpl(new TableTransitionEngine(stateMachineFactory.getStateMachine()),
+                storage,
+                statusEventOutbox,
+                new ConsumedOffsets());
+
+        List<EmployeeAddEventDto> batch = new ArrayList<>(POLL_BATCH_SIZE);
+
+        for (byte[] addEvent : addEvents) {
+
+            batch.add(addEventReader.readValue(new String(addEvent, StandardCharsets.UTF_8)));
+
+            if (batch.size() == POLL_BATCH_SIZE) {
+                employeeService.addEmployees(batch);
+                batch = new ArrayList<>(POLL_BATCH_SIZE);
+            }
+        }
+
+        employeeService.addEmployees(batch);
+
+        return storage;
+    }
+
+    @Benchmark
+    public Optional<Map<String, Long>> loadSnapshot() {
+        return snapshots.loadLatest(new InMemoryEmployeeStorage());
+    }
+
+    @Benchmark
+    public long writeSnapshot() {
+
+        snapshotSource.openSnapshot();
+        try {
+            return snapshots.write(Map.of("employee-add-topic-0", (long) EMPLOYEES), snapshotSource::forEachSnapshotEmployee);
+        } finally {
+            snapshotSource.closeSnapshot();
+        }
+    }
+
+    private static Employee createEmployee(long id) {
+        return new Employee(id,
+                EmployeeState.values()[(int) (id & 3)],
+                "Employee #" + id,
+                "Full-time contract, office " + (id % 100),
+                20 + (int) (id % 45));
+    }
+}
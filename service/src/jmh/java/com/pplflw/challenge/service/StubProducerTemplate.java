@@ -0,0 +1,31 @@
+package com.pplflw.challenge.service;
+
+import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import org.reactivestreams.Publisher;
+import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import reactor.core.publisher.Flux;
+import reactor.kafka.sender.SenderOptions;
+import reactor.kafka.sender.SenderRecord;
+import reactor.kafka.sender.SenderResult;
+
+import java.util.Collections;
+
+/**
+ * Producer which never touches a broker but pays the serialization cost of every record.
+ */
+class StubProducerTemplate extends ReactiveKafkaProducerTemplate<String, EmployeeStatusEventDto> {
+
+    private final JsonSerializer<EmployeeStatusEventDto> serializer = new JsonSerializer<>();
+
+    StubProducerTemplate() {
+        super(SenderOptions.create(Collections.singletonMap("bootstrap.servers", "localhost:9092")));
+    }
+
+    @Override
+    public <T> Flux<SenderResult<T>> send(Publisher<? extends SenderRecord<String, EmployeeStatusEventDto, T>> records) {
+        return Flux.from(records)
+                .doOnNext(record -> serializer.serialize(record.topic(), record.value()))
+                .thenMany(Flux.empty());
+    }
+}
@@ -0,0 +1,102 @@
+package com.pplflw.challenge.service;
+
+import com.pplflw.challenge.codec.EmployeeEventSerializer;
+import com.pplflw.challenge.config.ServiceConfiguration;
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the Kafka transactions of 'transactional' processing mode against an embedded broker: sends
+ * {@value #RECORDS} status events in transactions of the given number of records, the way
+ * {@link TransactionalEmployeeListener} sends a poll batch. Every transaction adds a few broker round trips
+ * (partition registration, commit markers), so the time per record falls as the transactions grow.
+ * <p>
+ * Run with {@code gradle :service:jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class TransactionBatchingBenchmark {
+
+    private static final int RECORDS = 2_000;
+
+    private static final String TOPIC = "status";
+
+    @Param({"1", "10", "100", "500"})
+    private int recordsPerTransaction;
+
+    private EmbeddedKafkaBroker broker;
+
+    private ProducerFactory<String, EmployeeStatusEventDto> producerFactory;
+
+    private KafkaTemplate<String, EmployeeStatusEventDto> kafkaTemplate;
+
+    @Setup
+    public void setUp() {
+
+        broker = new EmbeddedKafkaBroker(1, false, 4, TOPIC)
+                .brokerProperties(Map.of("transaction.state.log.replication.factor", "1",
+                        "transaction.state.log.min.isr", "1"));
+        broker.afterPropertiesSet();
+
+        KafkaProperties kafkaProperties = new KafkaProperties();
+
+        kafkaProperties.setBootstrapServers(List.of(broker.getBrokersAsString()));
+        kafkaProperties.getProducer().setKeySerializer(StringSerializer.class);
+        kafkaProperties.getProducer().setValueSerializer(EmployeeEventSerializer.class);
+        kafkaProperties.getProducer().getProperties().put(EmployeeEventSerializer.JSON_DELEGATE_CLASS_CONFIG, JsonSerializer.class.getName());
+
+        ServiceConfiguration configuration = new ServiceConfiguration();
+
+        producerFactory = configuration.transactionalProducerFactory("exactly-once", "benchmark-", kafkaProperties);
+        kafkaTemplate = configuration.transactionalKafkaTemplate(producerFactory);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ((DefaultKafkaProducerFactory<String, EmployeeStatusEventDto>) producerFactory).destroy();
+        broker.destroy();
+    }
+
+    @Benchmark
+    public int send() {
+
+        for (int first = 0; first < RECORDS; first += recordsPerTransaction) {
+
+            int from = first;
+
+            kafkaTemplate.executeInTransaction(operations -> {
+
+                for (int id = from; id < from + recordsPerTransaction; id++) {
+                    operations.send(StatusEventOutbox.toRecord(TOPIC, createStatusEvent(id), null));
+                }
+
+                return null;
+            });
+        }
+
+        return RECORDS;
+    }
+
+    private static EmployeeStatusEventDto createStatusEvent(long id) {
+        return new EmployeeStatusEventDto(EmployeeEvent.CHECK, "ACCEPTED",
+                new Employee(id, EmployeeState.IN_CHECK, "Employee #" + id, "Full-time contract, office " + (id % 100), 20 + (int) (id % 45)));
+    }
+}
@@ -0,0 +1,98 @@
+package com.pplflw.challenge.service.statemachine;
+
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.statemachine.StateMachine;
+import org.springframework.statemachine.StateMachineEventResult;
+import org.springframework.statemachine.config.StateMachineFactory;
+import org.springframework.statemachine.support.DefaultStateMachineContext;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the cost of one change-state event processed with a state machine built per event
+ * (the previous {@code EmployeeServiceImpl} path), with a machine borrowed from {@link StateMachinePool}
+ * and with {@link TableTransitionEngine}.
+ * Use {@code -prof gc} to see the allocation rate as well.
+ * <p>
+ * Run with {@code gradle :service:jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StateMachinePoolBenchmark {
+
+    private final AtomicLong employeeIds = new AtomicLong();
+
+    private final Message<EmployeeEvent> checkEvent = MessageBuilder.withPayload(EmployeeEvent.CHECK).build();
+
+    private AnnotationConfigApplicationContext context;
+
+    private StateMachineFactory<EmployeeState, EmployeeEvent> stateMachineFactory;
+
+    private StateMachinePool stateMachinePool;
+
+    private TableTransitionEngine tableTransitionEngine;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext(StateMachineConfiguration.class);
+
+        stateMachineFactory = context.getBean(StateMachineFactory.class);
+        stateMachinePool = new StateMachinePool(stateMachineFactory, 4, Duration.ofSeconds(1), new SimpleMeterRegistry());
+        tableTransitionEngine = new TableTransitionEngine(stateMachineFactory.getStateMachine());
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public StateMachineEventResult<EmployeeState, EmployeeEvent> factoryPerEvent() {
+
+        StateMachine<EmployeeState, EmployeeEvent> stateMachine
+                = stateMachineFactory.getStateMachine(Long.toString(employeeIds.incrementAndGet()));
+
+        stateMachine.stopReactively().block();
+        stateMachine.getStateMachineAccessor()
+                .doWithAllRegions(sma ->
+                        sma.resetStateMachineReactively(new DefaultStateMachineContext<>(EmployeeState.ADDED,
+                                null,
+                                null,
+                                stateMachine.getExtendedState())).block());
+        stateMachine.startReactively().block();
+
+        return stateMachine.sendEvent(Mono.just(checkEvent)).blockFirst();
+    }
+
+    @Benchmark
+    public StateMachineEventResult<EmployeeState, EmployeeEvent> pooled() {
+
+        StateMachine<EmployeeState, EmployeeEvent> stateMachine = stateMachinePool.borrow(EmployeeState.ADDED);
+
+        try {
+            return stateMachine.sendEvent(Mono.just(checkEvent)).blockFirst();
+        } finally {
+            stateMachinePool.release(stateMachine);
+        }
+    }
+
+    @Benchmark
+    public EmployeeTransition table() {
+        return tableTransitionEngine.transition(EmployeeState.ADDED, EmployeeEvent.CHECK);
+    }
+}
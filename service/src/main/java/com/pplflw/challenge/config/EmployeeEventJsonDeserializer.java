@@ -0,0 +1,83 @@
+package com.pplflw.challenge.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.JacksonUtils;
+import org.springframework.util.ClassUtils;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parses JSON employee events straight from the record bytes into the DTO of the record's topic,
+ * without the intermediate String of {@link org.apache.kafka.common.serialization.StringDeserializer}
+ * and {@link org.springframework.kafka.support.converter.StringJsonMessageConverter}.
+ * Readers are built once per topic at configuration, from {@value #TOPIC_TYPES_CONFIG}: comma-separated
+ * {@code topic:class} pairs. The object mapper is configured the way the message converter's one is.
+ * Parsing errors are thrown as {@link SerializationException}, so {@link org.springframework.kafka.support.serializer.ErrorHandlingDeserializer}
+ * still turns poison pills into failed records.
+ */
+public class EmployeeEventJsonDeserializer implements Deserializer<Object> {
+
+    public static final String TOPIC_TYPES_CONFIG = "employee.json.topic-types";
+
+    private static final ObjectMapper OBJECT_MAPPER = JacksonUtils.enhancedObjectMapper();
+
+    private final Map<String, ObjectReader> readers = new HashMap<>();
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+
+        Object topicTypes = configs.get(TOPIC_TYPES_CONFIG);
+
+        if (topicTypes == null) {
+            throw new ConfigException(TOPIC_TYPES_CONFIG, null, "Has to map the topics to their event types");
+        }
+
+        for (String topicType : topicTypes.toString().split(",")) {
+
+            String[] topicAndType = topicType.trim().split(":");
+
+            if (topicAndType.length != 2) {
+                throw new ConfigException(TOPIC_TYPES_CONFIG, topicTypes, "Has to consist of 'topic:class' pairs");
+            }
+
+            try {
+                readers.put(topicAndType[0].trim(), OBJECT_MAPPER.readerFor(
+                        ClassUtils.forName(topicAndType[1].trim(), ClassUtils.getDefaultClassLoader())));
+            } catch (ClassNotFoundException e) {
+                throw new ConfigException(TOPIC_TYPES_CONFIG, topicTypes, "Class not found: " + topicAndType[1]);
+            }
+        }
+    }
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+
+        if (data == null) {
+            return null;
+        }
+
+        ObjectReader reader = readers.get(topic);
+
+        if (reader == null) {
+            throw new SerializationException("No event type is configured for topic " + topic);
+        }
+
+        try {
+            return reader.readValue(data);
+        } catch (IOException e) {
+            throw new SerializationException("Cannot parse JSON event of topic " + topic, e);
+        }
+    }
+
+    @Override
+    public Object deserialize(String topic, Headers headers, byte[] data) {
+        return deserialize(topic, data);
+    }
+}
@@ -0,0 +1,27 @@
+package com.pplflw.challenge.config;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.utils.Bytes;
+import org.springframework.kafka.support.converter.StringJsonMessageConverter;
+
+import java.lang.reflect.Type;
+
+/**
+ * Converts the JSON values like {@link StringJsonMessageConverter} and passes through the values already decoded
+ * by {@link com.pplflw.challenge.codec.EmployeeEventDeserializer} or {@link EmployeeEventJsonDeserializer},
+ * which the parent rejects.
+ */
+public class EmployeeEventMessageConverter extends StringJsonMessageConverter {
+
+    @Override
+    protected Object extractAndConvertValue(ConsumerRecord<?, ?> record, Type type) {
+
+        Object value = record.value();
+
+        if (value == null || value instanceof String || value instanceof byte[] || value instanceof Bytes) {
+            return super.extractAndConvertValue(record, type);
+        }
+
+        return value;
+    }
+}
@@ -2,37 +2,213 @@ package com.pplflw.challenge.config;
 
 import com.pplflw.challenge.EmployeeNotFoundException;
 import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import com.pplflw.challenge.kafka.ProducerProfile;
+import com.pplflw.challenge.service.statemachine.EmployeeTransitionEngine;
+import com.pplflw.challenge.service.statemachine.SpringStateMachineTransitionEngine;
+import com.pplflw.challenge.service.statemachine.StateMachinePool;
+import com.pplflw.challenge.service.statemachine.TableTransitionEngine;
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import com.pplflw.challenge.storage.CompactEmployeeStorage;
 import com.pplflw.challenge.storage.EmployeeStorage;
 import com.pplflw.challenge.storage.InMemoryEmployeeStorage;
+import com.pplflw.challenge.storage.MappedEmployeeStorage;
+import com.pplflw.challenge.storage.SnapshottingEmployeeStorage;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
 import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate;
+import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.listener.KafkaListenerErrorHandler;
+import org.springframework.kafka.support.converter.BatchMessagingMessageConverter;
 import org.springframework.kafka.support.converter.RecordMessageConverter;
-import org.springframework.kafka.support.converter.StringJsonMessageConverter;
+import org.springframework.kafka.transaction.KafkaTransactionManager;
+import org.springframework.statemachine.config.StateMachineFactory;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
 import reactor.kafka.sender.SenderOptions;
 
+import java.nio.file.Path;
+import java.time.Duration;
+
 @Configuration
 @EnableKafka
 @Slf4j
 public class ServiceConfiguration {
 
+    /**
+     * Producer of the status events, tuned by the status topic's {@link ProducerProfile}.
+     */
     @Bean
-    public ReactiveKafkaProducerTemplate<String, EmployeeStatusEventDto> kafkaProducer(KafkaProperties kafkaProperties) {
-        return new ReactiveKafkaProducerTemplate<>(SenderOptions.create(kafkaProperties.buildProducerProperties()));
+    public ReactiveKafkaProducerTemplate<String, EmployeeStatusEventDto> kafkaProducer(
+            @Value(value = "${com.pplflw.challenge.kafka.producer-profile.employee-status-topic}") String profileName,
+            KafkaProperties kafkaProperties) {
+
+        ProducerProfile profile = ProducerProfile.forName(profileName);
+
+        return new ReactiveKafkaProducerTemplate<>(SenderOptions
+                .<String, EmployeeStatusEventDto>create(profile.apply(kafkaProperties.buildProducerProperties()))
+                .maxInFlight(profile.getMaxInFlight()));
     }
 
     @Bean
-    public EmployeeStorage employeeStorage() {
-        return new InMemoryEmployeeStorage();
+    @ConditionalOnProperty(name = "com.pplflw.challenge.storage.type", havingValue = "in-memory", matchIfMissing = true)
+    public EmployeeStorage employeeStorage(
+            @Value(value = "${com.pplflw.challenge.snapshot.enabled}") boolean snapshotEnabled) {
+        return snapshotting(new InMemoryEmployeeStorage(), snapshotEnabled);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "com.pplflw.challenge.storage.type", havingValue = "compact")
+    public EmployeeStorage compactEmployeeStorage(
+            @Value(value = "${com.pplflw.challenge.storage.compact.expected-size}") int expectedSize,
+            @Value(value = "${com.pplflw.challenge.storage.compact.off-heap}") boolean offHeap,
+            @Value(value = "${com.pplflw.challenge.snapshot.enabled}") boolean snapshotEnabled) {
+        return snapshotting(new CompactEmployeeStorage(expectedSize, offHeap), snapshotEnabled);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "com.pplflw.challenge.storage.type", havingValue = "mapped")
+    public EmployeeStorage mappedEmployeeStorage(
+            @Value(value = "${com.pplflw.challenge.storage.mapped.directory}") Path directory,
+            @Value(value = "${com.pplflw.challenge.storage.mapped.expected-size}") int expectedSize,
+            @Value(value = "${com.pplflw.challenge.storage.mapped.maintenance-interval}") Duration maintenanceInterval,
+            @Value(value = "${com.pplflw.challenge.storage.mapped.compaction-garbage-ratio}") double compactionGarbageRatio,
+            @Value(value = "${com.pplflw.challenge.snapshot.enabled}") boolean snapshotEnabled) {
+        return snapshotting(new MappedEmployeeStorage(directory, expectedSize, maintenanceInterval, compactionGarbageRatio),
+                snapshotEnabled);
+    }
+
+    /**
+     * Wraps the storage so {@link com.pplflw.challenge.service.snapshot.SnapshotManager} can snapshot it.
+     */
+    private static EmployeeStorage snapshotting(EmployeeStorage employeeStorage, boolean snapshotEnabled) {
+        return snapshotEnabled ? new SnapshottingEmployeeStorage(employeeStorage) : employeeStorage;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "com.pplflw.challenge.state-machine.engine", havingValue = "spring", matchIfMissing = true)
+    public StateMachinePool stateMachinePool(StateMachineFactory<EmployeeState, EmployeeEvent> stateMachineFactory,
+                                             @Value(value = "${com.pplflw.challenge.state-machine.pool-size}") int poolSize,
+                                             @Value(value = "${com.pplflw.challenge.state-machine.borrow-timeout}") Duration borrowTimeout,
+                                             MeterRegistry meterRegistry) {
+        return new StateMachinePool(stateMachineFactory, poolSize, borrowTimeout, meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "com.pplflw.challenge.state-machine.engine", havingValue = "spring", matchIfMissing = true)
+    public EmployeeTransitionEngine springStateMachineTransitionEngine(StateMachinePool stateMachinePool) {
+        return new SpringStateMachineTransitionEngine(stateMachinePool);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "com.pplflw.challenge.state-machine.engine", havingValue = "table")
+    public EmployeeTransitionEngine tableTransitionEngine(StateMachineFactory<EmployeeState, EmployeeEvent> stateMachineFactory) {
+        return new TableTransitionEngine(stateMachineFactory.getStateMachine());
     }
 
     @Bean
     public RecordMessageConverter messageConverter() {
-        return new StringJsonMessageConverter();
+        return new EmployeeEventMessageConverter();
+    }
+
+    /**
+     * Container factory of the batch listeners, every listener call gets the whole poll result.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> batchKafkaListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory,
+            RecordMessageConverter messageConverter) {
+
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+
+        configurer.configure(factory, consumerFactory);
+
+        factory.setBatchListener(true);
+        factory.setMessageConverter(new BatchMessagingMessageConverter(messageConverter));
+
+        return factory;
+    }
+
+    /**
+     * Transactional producer of the status events, 'transactional' processing mode only.
+     * Tuned by the status topic's {@link ProducerProfile}, the idempotence it enables is required by transactions.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "com.pplflw.challenge.kafka.processing-mode", havingValue = "transactional")
+    public ProducerFactory<String, EmployeeStatusEventDto> transactionalProducerFactory(
+            @Value(value = "${com.pplflw.challenge.kafka.producer-profile.employee-status-topic}") String profileName,
+            @Value(value = "${com.pplflw.challenge.kafka.transaction-id-prefix}") String transactionIdPrefix,
+            KafkaProperties kafkaProperties) {
+
+        DefaultKafkaProducerFactory<String, EmployeeStatusEventDto> producerFactory = new DefaultKafkaProducerFactory<>(
+                ProducerProfile.forName(profileName).apply(kafkaProperties.buildProducerProperties()));
+
+        producerFactory.setTransactionIdPrefix(transactionIdPrefix);
+
+        return producerFactory;
+    }
+
+    /**
+     * Transaction manager of the transactional listener containers. Synchronizations are enabled, so the listeners
+     * can save the employees after the commit.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "com.pplflw.challenge.kafka.processing-mode", havingValue = "transactional")
+    public KafkaTransactionManager<String, EmployeeStatusEventDto> kafkaTransactionManager(
+            ProducerFactory<String, EmployeeStatusEventDto> transactionalProducerFactory) {
+
+        KafkaTransactionManager<String, EmployeeStatusEventDto> transactionManager =
+                new KafkaTransactionManager<>(transactionalProducerFactory);
+
+        transactionManager.setTransactionSynchronization(AbstractPlatformTransactionManager.SYNCHRONIZATION_ON_ACTUAL_TRANSACTION);
+
+        return transactionManager;
+    }
+
+    /**
+     * Sends the status events within the transaction of the listener container calling it.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "com.pplflw.challenge.kafka.processing-mode", havingValue = "transactional")
+    public KafkaTemplate<String, EmployeeStatusEventDto> transactionalKafkaTemplate(
+            ProducerFactory<String, EmployeeStatusEventDto> transactionalProducerFactory) {
+        return new KafkaTemplate<>(transactionalProducerFactory);
+    }
+
+    /**
+     * Container factory of the transactional batch listeners: every poll batch is processed in one Kafka transaction,
+     * which also commits the batch's offsets.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "com.pplflw.challenge.kafka.processing-mode", havingValue = "transactional")
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> transactionalKafkaListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory,
+            RecordMessageConverter messageConverter,
+            KafkaTransactionManager<String, EmployeeStatusEventDto> kafkaTransactionManager) {
+
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+
+        configurer.configure(factory, consumerFactory);
+
+        factory.setBatchListener(true);
+        factory.setMessageConverter(new BatchMessagingMessageConverter(messageConverter));
+        factory.getContainerProperties().setTransactionManager(kafkaTransactionManager);
+        factory.getContainerProperties().setEosMode(ContainerProperties.EOSMode.BETA);
+
+        return factory;
     }
 
     @Bean
@@ -2,8 +2,13 @@ package com.pplflw.challenge.service;
 
 import com.pplflw.challenge.domain.Employee;
 import com.pplflw.challenge.dto.EmployeeAddEventDto;
+import com.pplflw.challenge.dto.EmployeeChangeStateEventDto;
 import com.pplflw.challenge.dto.EmployeeStatusEventDto;
 import com.pplflw.challenge.statemachine.EmployeeEvent;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.List;
 
 /**
  * This interface describes all employee processing use cases.
@@ -18,6 +23,15 @@ public interface EmployeeService {
      */
     Employee addEmployee(EmployeeAddEventDto employeeAddEventDto);
 
+    /**
+     * Bulk counterpart of {@link #addEmployee(EmployeeAddEventDto)}.
+     * Saves all the employees with one storage call and publishes their status events as one batch.
+     *
+     * @param employeeAddEventDtos add employee event DTOs
+     * @return just created employees with ADDED state
+     */
+    List<Employee> addEmployees(List<EmployeeAddEventDto> employeeAddEventDtos);
+
     /**
      * Processes a state machine event as a request for employee's state change.
      * Returns DTO with state machine result and an updated(or not) employee.
@@ -27,5 +41,63 @@ public interface EmployeeService {
      * @return DTO with state machine result and an updated employee
      * @throws com.pplflw.challenge.EmployeeNotFoundException if employee cannot be found
      */
-    EmployeeStatusEventDto changeEmployeeState(Long employeeId, EmployeeEvent event);
+    default EmployeeStatusEventDto changeEmployeeState(Long employeeId, EmployeeEvent event) {
+        return changeEmployeeState(employeeId, event, null);
+    }
+
+    /**
+     * Counterpart of {@link #changeEmployeeState(Long, EmployeeEvent)} which echoes the correlation ID
+     * of the change-state event on the status event.
+     *
+     * @param employeeId    employee's ID
+     * @param event         state machine event
+     * @param correlationId correlation ID of the change-state event, null if it has none
+     * @return DTO with state machine result and an updated employee
+     * @throws com.pplflw.challenge.EmployeeNotFoundException if employee cannot be found
+     */
+    EmployeeStatusEventDto changeEmployeeState(Long employeeId, EmployeeEvent event, String correlationId);
+
+    /**
+     * Non-blocking counterpart of {@link #changeEmployeeState(Long, EmployeeEvent)}.
+     * Applies the event and updates the storage but doesn't publish the status event, it's up to the caller.
+     *
+     * @param employeeId employee's ID
+     * @param event      state machine event
+     * @return DTO with state machine result and an updated employee,
+     * or {@link com.pplflw.challenge.EmployeeNotFoundException} error if employee cannot be found
+     */
+    Mono<EmployeeStatusEventDto> changeEmployeeStateReactively(Long employeeId, EmployeeEvent event);
+
+    /**
+     * Bulk counterpart of {@link #changeEmployeeState(Long, EmployeeEvent)}.
+     * Events are applied in the given order, every employee is loaded once and all the updated employees
+     * are saved with one storage call. Status events are published as one batch.
+     * Events of unknown employees are skipped.
+     *
+     * @param employeeChangeStateEventDtos change state event DTOs
+     * @return DTOs with state machine results, in the order of the events
+     */
+    default List<EmployeeStatusEventDto> changeEmployeeStates(List<EmployeeChangeStateEventDto> employeeChangeStateEventDtos) {
+        return changeEmployeeStates(employeeChangeStateEventDtos, Collections.nCopies(employeeChangeStateEventDtos.size(), null));
+    }
+
+    /**
+     * Counterpart of {@link #changeEmployeeStates(List)} which echoes the correlation ID of every change-state event
+     * on its status event.
+     *
+     * @param employeeChangeStateEventDtos change state event DTOs
+     * @param correlationIds               correlation ID of every change state event, null elements for the ones without
+     * @return DTOs with state machine results, in the order of the events
+     */
+    List<EmployeeStatusEventDto> changeEmployeeStates(List<EmployeeChangeStateEventDto> employeeChangeStateEventDtos,
+                                                      List<String> correlationIds);
+
+    /**
+     * Counterpart of {@link #changeEmployeeStates(List)} which neither saves the updated employees nor publishes
+     * the status events, so the caller can do both atomically with other work.
+     *
+     * @param employeeChangeStateEventDtos change state event DTOs
+     * @return status events and the updated employees
+     */
+    EmployeeStateChanges applyEmployeeStates(List<EmployeeChangeStateEventDto> employeeChangeStateEventDtos);
 }
@@ -4,146 +4,314 @@ import com.pplflw.challenge.EmployeeNotFoundException;
 import com.pplflw.challenge.domain.Employee;
 import com.pplflw.challenge.dto.EmployeeAddEventDto;
 import com.pplflw.challenge.dto.EmployeeChangeStateEventDto;
+import com.pplflw.challenge.dto.EmployeeEventHeaders;
 import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import com.pplflw.challenge.service.snapshot.ConsumedOffsets;
+import com.pplflw.challenge.service.statemachine.EmployeeTransitionEngine;
 import com.pplflw.challenge.statemachine.EmployeeEvent;
-import com.pplflw.challenge.statemachine.EmployeeState;
 import com.pplflw.challenge.storage.EmployeeStorage;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate;
-import org.springframework.messaging.support.MessageBuilder;
-import org.springframework.statemachine.StateMachine;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.statemachine.StateMachineEventResult;
-import org.springframework.statemachine.config.StateMachineFactory;
-import org.springframework.statemachine.support.DefaultStateMachineContext;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.time.Duration;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
- * {@link EmployeeService} implementation. Encapsulates interaction with Spring State Machine.
+ * {@link EmployeeService} implementation. Encapsulates interaction with the state machine.
  * Works with the state machine in the following manner:
  * - on every state update request({@link EmployeeEvent}) loads the employee from the storage
  * and takes his/her actual state from {@link Employee}.state field
- * - instantiates new state machine and rehydrates it with the employee's state
- * - feeds event to the state machine and receives a result
+ * - feeds the employee's state and the event to {@link EmployeeTransitionEngine} and receives a result
  * - depending on the result changes employee's state and saves to the storage or not changes/saves
+ * Single state changes are saved with {@link EmployeeStorage#updateIfState}, so a change racing with another one
+ * of the same employee is never lost: the event is fired again on the state left by the other change.
+ * Status events are published through {@link StatusEventOutbox}, echoing the {@link EmployeeEventHeaders#CORRELATION_ID}
+ * header of their change-state events. The outbox returns only when Kafka has acknowledged them, so the offsets of a record
+ * are committed only after its status event has been published, at least once.
+ * Listeners record the consumed offsets in {@link ConsumedOffsets}, which also seeks them to the offsets of a restored
+ * snapshot, and never modify a stored employee in place. Records replayed after a restore are applied to the storage
+ * again, but their status events are not published again: a replayed record's offset had been committed, which happens
+ * only after the outbox has got its status event acknowledged.
+ * All the employee events are keyed by employee ID, so the events of one employee always come from the same partition
+ * and are processed sequentially by the listener thread owning that partition.
  */
 @Slf4j
 @Service
-public class EmployeeServiceImpl implements EmployeeService {
+public class EmployeeServiceImpl implements EmployeeService, ConsumerSeekAware {
 
-    private final StateMachineFactory<EmployeeState, EmployeeEvent> stateMachineFactory;
+    private final EmployeeTransitionEngine transitionEngine;
 
     private final EmployeeStorage employeeStorage;
 
-    private final ReactiveKafkaProducerTemplate<String, EmployeeStatusEventDto> kafkaProducer;
+    private final StatusEventOutbox statusEventOutbox;
 
-    @Value(value = "${com.pplflw.challenge.kafka.employee-status-topic}")
-    private String employeeStatusTopic;
+    private final ConsumedOffsets consumedOffsets;
 
-    @Value(value = "${com.pplflw.challenge.kafka.timeout-in-seconds}")
-    private int timeoutInSeconds;
-
-    public EmployeeServiceImpl(StateMachineFactory<EmployeeState, EmployeeEvent> stateMachineFactory,
+    public EmployeeServiceImpl(EmployeeTransitionEngine transitionEngine,
                                EmployeeStorage employeeStorage,
-                               ReactiveKafkaProducerTemplate<String, EmployeeStatusEventDto> kafkaProducer) {
-        this.stateMachineFactory = stateMachineFactory;
+                               StatusEventOutbox statusEventOutbox,
+                               ConsumedOffsets consumedOffsets) {
+        this.transitionEngine = transitionEngine;
         this.employeeStorage = employeeStorage;
-        this.kafkaProducer = kafkaProducer;
+        this.statusEventOutbox = statusEventOutbox;
+        this.consumedOffsets = consumedOffsets;
     }
 
     @Override
     public Employee addEmployee(EmployeeAddEventDto employeeAddEventDto) {
         Employee employee = employeeStorage.updateEmployee(employeeAddEventDto.getEmployee());
 
-        sendStatusEvent(new EmployeeStatusEventDto(null, null, employee));
+        statusEventOutbox.publish(new EmployeeStatusEventDto(null, null, employee));
 
         return employee;
     }
 
-    public EmployeeStatusEventDto changeEmployeeState(Long employeeId, EmployeeEvent event) {
+    @Override
+    public List<Employee> addEmployees(List<EmployeeAddEventDto> employeeAddEventDtos) {
+        return addEmployees(employeeAddEventDtos, index -> true);
+    }
 
-        Optional<Employee> optionalEmployee = employeeStorage.getEmployee(employeeId);
+    /**
+     * @param published whether the status event of the employee at the index is published
+     */
+    private List<Employee> addEmployees(List<EmployeeAddEventDto> employeeAddEventDtos, IntPredicate published) {
 
-        if (optionalEmployee.isEmpty())
-            throw new EmployeeNotFoundException("Cannot find employee with id=" + employeeId);
+        List<Employee> employees = employeeAddEventDtos.stream()
+                .map(EmployeeAddEventDto::getEmployee)
+                .collect(Collectors.toList());
 
-        Employee employee = optionalEmployee.get();
+        employeeStorage.updateEmployees(employees);
 
-        StateMachine<EmployeeState, EmployeeEvent> stateMachine = rehydrateStateMachine(employeeId, employee.getState());
+        statusEventOutbox.publishAll(IntStream.range(0, employees.size())
+                .filter(published)
+                .mapToObj(index -> new EmployeeStatusEventDto(null, null, employees.get(index)))
+                .collect(Collectors.toList()));
 
-        return stateMachine.sendEvent(Mono.just(MessageBuilder.withPayload(event).build()))
-                .map(eventResult -> {
+        return employees;
+    }
 
-                    log.debug("State machine result for event {}: {}", event, eventResult);
+    @Override
+    public EmployeeStatusEventDto changeEmployeeState(Long employeeId, EmployeeEvent event, String correlationId) {
+        return changeEmployeeStateReactively(employeeId, event)
+                .doOnNext(statusEventDto -> statusEventOutbox.publish(statusEventDto, correlationId))
+                .block();
+    }
 
-                    employee.setState(stateMachine.getState().getId());
+    @Override
+    public Mono<EmployeeStatusEventDto> changeEmployeeStateReactively(Long employeeId, EmployeeEvent event) {
+        return Mono.defer(() -> {
 
-                    EmployeeStatusEventDto employeeStatusEventDto
-                            = new EmployeeStatusEventDto(event, eventResult.getResultType().toString(), employee);
+            Optional<Employee> optionalEmployee = employeeStorage.getEmployee(employeeId);
 
-                    if (StateMachineEventResult.ResultType.ACCEPTED == eventResult.getResultType()) {
+            if (optionalEmployee.isEmpty())
+                return Mono.error(new EmployeeNotFoundException("Cannot find employee with id=" + employeeId));
 
-                        employee.setState(stateMachine.getState().getId());
+            Employee employee = optionalEmployee.get();
 
-                        employeeStorage.updateEmployee(employee);
-                    }
+            return transitionEngine.fire(employee.getState(), event)
+                    .flatMap(transition -> {
+
+                        log.debug("Transition result for event {}: {}", event, transition);
+
+                        String result = transition.getResultType().toString();
+
+                        if (StateMachineEventResult.ResultType.ACCEPTED != transition.getResultType()) {
+                            return Mono.just(new EmployeeStatusEventDto(event, result, employee.withState(transition.getState())));
+                        }
+
+                        // empty if the state has been changed concurrently
+                        return Mono.justOrEmpty(employeeStorage.updateIfState(employee.getId(),
+                                        employee.getState(),
+                                        transition.getState()))
+                                .map(updatedEmployee -> new EmployeeStatusEventDto(event, result, updatedEmployee));
+                    });
+        }).repeatWhenEmpty(conflicts -> conflicts.doOnNext(conflict ->
+                log.debug("State of employee id={} changed concurrently, firing {} again", employeeId, event)));
+    }
+
+    @Override
+    public List<EmployeeStatusEventDto> changeEmployeeStates(List<EmployeeChangeStateEventDto> employeeChangeStateEventDtos,
+                                                             List<String> correlationIds) {
+        return changeEmployeeStates(employeeChangeStateEventDtos, correlationIds, index -> true);
+    }
+
+    /**
+     * @param published whether the status event of the change-state event at the index is published
+     */
+    private List<EmployeeStatusEventDto> changeEmployeeStates(List<EmployeeChangeStateEventDto> employeeChangeStateEventDtos,
+                                                              List<String> correlationIds,
+                                                              IntPredicate published) {
+
+        EmployeeStateChanges stateChanges = applyEmployeeStates(employeeChangeStateEventDtos);
+
+        employeeStorage.updateEmployees(stateChanges.getUpdatedEmployees());
+
+        List<EmployeeStatusEventDto> publishedEvents = new ArrayList<>(stateChanges.getStatusEvents().size());
+        List<String> publishedCorrelationIds = new ArrayList<>(stateChanges.getStatusEvents().size());
+
+        // unknown employees have no status events
+        for (int i = 0; i < stateChanges.getStatusEvents().size(); i++) {
 
-                    sendStatusEvent(employeeStatusEventDto);
+            int index = stateChanges.getEventIndexes().get(i);
 
-                    return employeeStatusEventDto;
-                }).next().block();
+            if (published.test(index)) {
+                publishedEvents.add(stateChanges.getStatusEvents().get(i));
+                publishedCorrelationIds.add(correlationIds.get(index));
+            }
+        }
+
+        statusEventOutbox.publishAll(publishedEvents, publishedCorrelationIds);
+
+        return stateChanges.getStatusEvents();
     }
 
-    private StateMachine<EmployeeState, EmployeeEvent> rehydrateStateMachine(Long employeeId, EmployeeState employeeState) {
+    @Override
+    public EmployeeStateChanges applyEmployeeStates(List<EmployeeChangeStateEventDto> employeeChangeStateEventDtos) {
+
+        // the latest version of every employee touched by the batch
+        Map<Long, Employee> employees = new HashMap<>();
+        Set<Long> updatedEmployeeIds = new HashSet<>();
+        List<Integer> eventIndexes = new ArrayList<>(employeeChangeStateEventDtos.size());
+
+        List<EmployeeStatusEventDto> employeeStatusEventDtos = Flux.range(0, employeeChangeStateEventDtos.size())
+                .concatMap(index -> {
+
+                    EmployeeChangeStateEventDto eventDto = employeeChangeStateEventDtos.get(index);
+
+                    Employee employee = employees.computeIfAbsent(eventDto.getEmployeeId(),
+                            employeeId -> employeeStorage.getEmployee(employeeId).orElse(null));
+
+                    if (employee == null) {
+                        log.warn("Cannot find employee with id={}, skipping '{}' message", eventDto.getEmployeeId(), eventDto);
+                        return Mono.empty();
+                    }
+
+                    return transitionEngine.fire(employee.getState(), eventDto.getEvent())
+                            .map(transition -> {
+
+                                log.debug("Transition result for event {}: {}", eventDto, transition);
 
-        StateMachine<EmployeeState, EmployeeEvent> stateMachine = stateMachineFactory.getStateMachine(employeeId.toString());
+                                // every status event gets its own copy as later events of the batch may change the employee
+                                Employee updatedEmployee = employee.withState(transition.getState());
 
-        stateMachine.stopReactively().block();
-        stateMachine.getStateMachineAccessor()
-                .doWithAllRegions(sma ->
-                        sma.resetStateMachineReactively(new DefaultStateMachineContext<>(employeeState,
-                                null,
-                                null,
-                                stateMachine.getExtendedState())).block());
-        stateMachine.startReactively().block();
+                                if (StateMachineEventResult.ResultType.ACCEPTED == transition.getResultType()) {
+                                    employees.put(updatedEmployee.getId(), updatedEmployee);
+                                    updatedEmployeeIds.add(updatedEmployee.getId());
+                                }
 
-        return stateMachine;
+                                eventIndexes.add(index);
+
+                                return new EmployeeStatusEventDto(eventDto.getEvent(),
+                                        transition.getResultType().toString(),
+                                        updatedEmployee);
+                            });
+                })
+                .collectList()
+                .block();
+
+        return new EmployeeStateChanges(employeeStatusEventDtos,
+                eventIndexes,
+                updatedEmployeeIds.stream().map(employees::get).collect(Collectors.toList()));
     }
 
-    private void sendStatusEvent(EmployeeStatusEventDto employeeStatusEventDto) {
-        log.debug("Sending employee-status event to Kafka: {}", employeeStatusEventDto);
-
-        kafkaProducer.send(employeeStatusTopic, employeeStatusEventDto)
-                .doOnSuccess(voidSenderResult
-                        ->
-                        log.debug("Successfully sent employee-status event to Kafka: {}", employeeStatusEventDto))
-                .timeout(Duration.ofSeconds(timeoutInSeconds))
-                .doOnError(throwable
-                        ->
-                        log.warn("An exception occurred while sending employee-status event={} to Kafka: {}",
-                                employeeStatusEventDto,
-                                throwable.getMessage()))
-                .subscribe();
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        consumedOffsets.onPartitionsAssigned(assignments, callback);
     }
 
-    @KafkaListener(topics = "${com.pplflw.challenge.kafka.employee-add-topic}", clientIdPrefix = "add")
-    public void listenEmployeeAddEvents(EmployeeAddEventDto employeeAddEventDto) {
+    @KafkaListener(topics = "${com.pplflw.challenge.kafka.employee-add-topic}",
+            clientIdPrefix = "add",
+            autoStartup = "#{'${com.pplflw.challenge.kafka.processing-mode}' matches 'record|reactive'}",
+            concurrency = "${com.pplflw.challenge.kafka.listener-concurrency}")
+    public void listenEmployeeAddEvents(EmployeeAddEventDto employeeAddEventDto,
+                                        @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
+                                        @Header(KafkaHeaders.RECEIVED_PARTITION_ID) int partition,
+                                        @Header(KafkaHeaders.OFFSET) long offset) {
         log.debug("Received EmployeeAddEventDto message: {}", employeeAddEventDto);
 
-        addEmployee(employeeAddEventDto);
+        consumedOffsets.process(topic, partition, offset, () -> consumedOffsets.isReplayed(topic, partition, offset)
+                ? employeeStorage.updateEmployee(employeeAddEventDto.getEmployee())
+                : addEmployee(employeeAddEventDto));
     }
 
     @KafkaListener(topics = "${com.pplflw.challenge.kafka.employee-change-state-topic}",
             clientIdPrefix = "change-state",
+            autoStartup = "#{'${com.pplflw.challenge.kafka.processing-mode}' == 'record'}",
+            concurrency = "${com.pplflw.challenge.kafka.listener-concurrency}",
             errorHandler = "errorHandler")
-    public void listenEmployeeChangeStateEvent(EmployeeChangeStateEventDto employeeChangeStateEventDto) {
+    public void listenEmployeeChangeStateEvent(EmployeeChangeStateEventDto employeeChangeStateEventDto,
+                                               @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
+                                               @Header(KafkaHeaders.RECEIVED_PARTITION_ID) int partition,
+                                               @Header(KafkaHeaders.OFFSET) long offset,
+                                               @Header(name = EmployeeEventHeaders.CORRELATION_ID, required = false)
+                                                       byte[] correlationId) {
         log.debug("Received EmployeeChangeStateEventDto message: {}", employeeChangeStateEventDto);
 
-        changeEmployeeState(employeeChangeStateEventDto.getEmployeeId(), employeeChangeStateEventDto.getEvent());
+        consumedOffsets.process(topic, partition, offset, () -> consumedOffsets.isReplayed(topic, partition, offset)
+                ? changeEmployeeStateReactively(employeeChangeStateEventDto.getEmployeeId(), employeeChangeStateEventDto.getEvent()).block()
+                : changeEmployeeState(employeeChangeStateEventDto.getEmployeeId(), employeeChangeStateEventDto.getEvent(),
+                toCorrelationId(correlationId)));
+    }
+
+    @KafkaListener(topics = "${com.pplflw.challenge.kafka.employee-add-topic}",
+            clientIdPrefix = "add-batch",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "#{'${com.pplflw.challenge.kafka.processing-mode}' == 'batch'}",
+            concurrency = "${com.pplflw.challenge.kafka.listener-concurrency}")
+    public void listenEmployeeAddEventBatch(List<EmployeeAddEventDto> employeeAddEventDtos,
+                                            @Header(KafkaHeaders.RECEIVED_TOPIC) List<String> topics,
+                                            @Header(KafkaHeaders.RECEIVED_PARTITION_ID) List<Integer> partitions,
+                                            @Header(KafkaHeaders.OFFSET) List<Long> offsets) {
+        log.debug("Received {} EmployeeAddEventDto messages", employeeAddEventDtos.size());
+
+        consumedOffsets.processBatch(topics, partitions, offsets, () -> addEmployees(employeeAddEventDtos,
+                index -> !consumedOffsets.isReplayed(topics.get(index), partitions.get(index), offsets.get(index))));
+    }
+
+    @KafkaListener(topics = "${com.pplflw.challenge.kafka.employee-change-state-topic}",
+            clientIdPrefix = "change-state-batch",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "#{'${com.pplflw.challenge.kafka.processing-mode}' == 'batch'}",
+            concurrency = "${com.pplflw.challenge.kafka.listener-concurrency}")
+    public void listenEmployeeChangeStateEventBatch(List<EmployeeChangeStateEventDto> employeeChangeStateEventDtos,
+                                                    @Header(KafkaHeaders.RECEIVED_TOPIC) List<String> topics,
+                                                    @Header(KafkaHeaders.RECEIVED_PARTITION_ID) List<Integer> partitions,
+                                                    @Header(KafkaHeaders.OFFSET) List<Long> offsets,
+                                                    @Header(KafkaHeaders.BATCH_CONVERTED_HEADERS)
+                                                            List<Map<String, Object>> headers) {
+        log.debug("Received {} EmployeeChangeStateEventDto messages", employeeChangeStateEventDtos.size());
+
+        List<String> correlationIds = headers.stream()
+                .map(recordHeaders -> toCorrelationId((byte[]) recordHeaders.get(EmployeeEventHeaders.CORRELATION_ID)))
+                .collect(Collectors.toList());
+
+        consumedOffsets.processBatch(topics, partitions, offsets, () -> changeEmployeeStates(employeeChangeStateEventDtos,
+                correlationIds,
+                index -> !consumedOffsets.isReplayed(topics.get(index), partitions.get(index), offsets.get(index))));
+    }
+
+    /**
+     * @param header raw {@link EmployeeEventHeaders#CORRELATION_ID} header, null if the record has none
+     * @return correlation ID, null if there is no header
+     */
+    static String toCorrelationId(byte[] header) {
+        return header == null ? null : new String(header, StandardCharsets.UTF_8);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,36 @@
+package com.pplflw.challenge.service;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Result of applying a batch of change-state events with {@link EmployeeService#applyEmployeeStates(List)},
+ * neither saved nor published yet.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+@EqualsAndHashCode
+public class EmployeeStateChanges {
+
+    /**
+     * Status events of the known employees, in the order of the change-state events.
+     */
+    private final List<EmployeeStatusEventDto> statusEvents;
+
+    /**
+     * Index of the change-state event of every status event.
+     */
+    private final List<Integer> eventIndexes;
+
+    /**
+     * The latest version of every employee updated by the batch.
+     */
+    private final List<Employee> updatedEmployees;
+}
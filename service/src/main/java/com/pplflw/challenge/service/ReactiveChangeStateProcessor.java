@@ -0,0 +1,264 @@
+package com.pplflw.challenge.service;
+
+import com.pplflw.challenge.EmployeeNotFoundException;
+import com.pplflw.challenge.codec.EmployeeEventDeserializer;
+import com.pplflw.challenge.dto.EmployeeChangeStateEventDto;
+import com.pplflw.challenge.dto.EmployeeEventHeaders;
+import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import com.pplflw.challenge.service.statemachine.StateMachinePoolExhaustedException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.kafka.receiver.KafkaReceiver;
+import reactor.kafka.receiver.ReceiverOffset;
+import reactor.kafka.receiver.ReceiverOptions;
+import reactor.kafka.receiver.ReceiverRecord;
+import reactor.kafka.sender.SenderRecord;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Non-blocking alternative to the change-state {@link org.springframework.kafka.annotation.KafkaListener},
+ * enabled with {@code com.pplflw.challenge.kafka.processing-mode=reactive}.
+ * Records of every partition go through the following stages:
+ * - lookup, transition and storage update, sequentially and in offset order, so per-employee ordering is kept
+ * - status event publishing with the correlation ID header of the change-state record, pipelined with up to max-in-flight unacknowledged sends per partition
+ * - offset acknowledgement, in offset order and only after the status event has been acknowledged by Kafka
+ * Records without a status event, i.e. undeserializable ones and the ones of unknown employees, are acknowledged in order too.
+ * <p>
+ * A failed send is retried with backoff until Kafka acknowledges it, so one broken send doesn't restart the receiver,
+ * and a transition failing because the state machine pool is exhausted is retried the same way.
+ * Should the receiver restart anyway, it receives the records from the last committed offset again: the records
+ * already applied by this node are not applied again, the status events not yet acknowledged are sent again instead.
+ * <p>
+ * Transitions may block while borrowing a pooled state machine, so the stages run on a bounded elastic scheduler.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "com.pplflw.challenge.kafka.processing-mode", havingValue = "reactive")
+public class ReactiveChangeStateProcessor {
+
+    private static final Duration MIN_RETRY_BACKOFF = Duration.ofMillis(100);
+
+    private static final Duration MAX_RETRY_BACKOFF = Duration.ofSeconds(10);
+
+    private final EmployeeService employeeService;
+
+    private final ReactiveKafkaProducerTemplate<String, EmployeeStatusEventDto> kafkaProducer;
+
+    private final KafkaProperties kafkaProperties;
+
+    /**
+     * Applied records of every partition, kept across receiver restarts.
+     */
+    private final Map<TopicPartition, PartitionProgress> partitions = new ConcurrentHashMap<>();
+
+    @Value(value = "${com.pplflw.challenge.kafka.employee-change-state-topic}")
+    private String employeeChangeStateTopic;
+
+    @Value(value = "${com.pplflw.challenge.kafka.employee-status-topic}")
+    private String employeeStatusTopic;
+
+    @Value(value = "${com.pplflw.challenge.kafka.listener-concurrency}")
+    private int concurrency;
+
+    @Value(value = "${com.pplflw.challenge.kafka.reactive.max-in-flight-per-partition}")
+    private int maxInFlightPerPartition;
+
+    private Scheduler scheduler;
+
+    private Disposable subscription;
+
+    public ReactiveChangeStateProcessor(EmployeeService employeeService,
+                                        ReactiveKafkaProducerTemplate<String, EmployeeStatusEventDto> kafkaProducer,
+                                        KafkaProperties kafkaProperties) {
+        this.employeeService = employeeService;
+        this.kafkaProducer = kafkaProducer;
+        this.kafkaProperties = kafkaProperties;
+    }
+
+    @PostConstruct
+    public void start() {
+
+        scheduler = Schedulers.newBoundedElastic(concurrency, Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, "change-state");
+
+        subscription = Flux.defer(() -> process(createReceiver().receive()))
+                .doOnError(throwable -> log.error("Change-state processing failed, restarting: {}", throwable.getMessage()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+        if (scheduler != null) {
+            scheduler.dispose();
+        }
+    }
+
+    /**
+     * Runs the processing pipeline.
+     *
+     * @param records change-state records
+     * @return offsets acknowledged after their status events had been published
+     */
+    Flux<ReceiverOffset> process(Flux<ReceiverRecord<String, EmployeeChangeStateEventDto>> records) {
+        return records
+                .groupBy(record -> record.receiverOffset().topicPartition())
+                .flatMap(partitionRecords -> partitionRecords
+                        .publishOn(scheduler)
+                        .concatMap(this::changeState)
+                        .flatMapSequential(this::publish, maxInFlightPerPartition)
+                        .map(this::acknowledge), Integer.MAX_VALUE);
+    }
+
+    private Mono<ProcessedRecord> changeState(ReceiverRecord<String, EmployeeChangeStateEventDto> record) {
+
+        ReceiverOffset offset = record.receiverOffset();
+        PartitionProgress progress = partitions.computeIfAbsent(offset.topicPartition(), partition -> new PartitionProgress());
+
+        if (offset.offset() < progress.nextOffset) {
+            log.debug("Skipping change-state record applied before the receiver restarted, offset={}", offset);
+            ProcessedRecord unacknowledged = progress.unacknowledged.get(offset.offset());
+
+            return Mono.just(unacknowledged == null
+                    ? new ProcessedRecord(offset, null, null)
+                    : new ProcessedRecord(offset, unacknowledged.statusEvent, unacknowledged.correlationId));
+        }
+
+        EmployeeChangeStateEventDto eventDto = record.value();
+
+        log.debug("Received EmployeeChangeStateEventDto message: {}", eventDto);
+
+        if (eventDto == null) {
+            log.warn("Skipping change-state record which cannot be deserialized, offset={}", offset);
+            return Mono.just(progress.applied(new ProcessedRecord(offset, null, null)));
+        }
+
+        Header correlationId = record.headers().lastHeader(EmployeeEventHeaders.CORRELATION_ID);
+
+        return employeeService.changeEmployeeStateReactively(eventDto.getEmployeeId(), eventDto.getEvent())
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, MIN_RETRY_BACKOFF)
+                        .maxBackoff(MAX_RETRY_BACKOFF)
+                        .filter(StateMachinePoolExhaustedException.class::isInstance)
+                        .doBeforeRetry(signal -> log.warn("Retrying '{}' message: {}", eventDto, signal.failure().getMessage())))
+                .map(statusEventDto -> progress.applied(new ProcessedRecord(offset, statusEventDto, correlationId)))
+                .onErrorResume(EmployeeNotFoundException.class, exception -> {
+                    log.warn("Got '{}' exception while processing '{}' message", exception.getMessage(), eventDto);
+                    return Mono.just(progress.applied(new ProcessedRecord(offset, null, null)));
+                });
+    }
+
+    private Mono<ReceiverOffset> publish(ProcessedRecord processedRecord) {
+
+        if (processedRecord.statusEvent == null) {
+            return Mono.just(processedRecord.offset);
+        }
+
+        log.debug("Sending employee-status event to Kafka: {}", processedRecord.statusEvent);
+
+        // a new record for every attempt, the serializer adds headers and a sent record's headers are read-only
+        return Mono.defer(() -> kafkaProducer.send(SenderRecord.create(new ProducerRecord<>(employeeStatusTopic,
+                                null,
+                                processedRecord.statusEvent.getEmployee().getId().toString(),
+                                processedRecord.statusEvent,
+                                processedRecord.correlationId == null ? null : List.of(processedRecord.correlationId)),
+                        processedRecord.offset)))
+                .flatMap(senderResult -> senderResult.exception() == null
+                        ? Mono.just(senderResult.correlationMetadata())
+                        : Mono.error(senderResult.exception()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, MIN_RETRY_BACKOFF)
+                        .maxBackoff(MAX_RETRY_BACKOFF)
+                        .doBeforeRetry(signal -> log.warn("Retrying to send employee-status event {}: {}",
+                                processedRecord.statusEvent, signal.failure().getMessage())));
+    }
+
+    private ReceiverOffset acknowledge(ReceiverOffset offset) {
+
+        partitions.get(offset.topicPartition()).unacknowledged.remove(offset.offset());
+        offset.acknowledge();
+
+        return offset;
+    }
+
+    private KafkaReceiver<String, EmployeeChangeStateEventDto> createReceiver() {
+
+        Map<String, Object> consumerProperties = kafkaProperties.buildConsumerProperties();
+
+        consumerProperties.put(ConsumerConfig.CLIENT_ID_CONFIG,
+                consumerProperties.get(ConsumerConfig.CLIENT_ID_CONFIG) + "-change-state-reactive");
+
+        ReceiverOptions<String, EmployeeChangeStateEventDto> receiverOptions = ReceiverOptions
+                .<String, EmployeeChangeStateEventDto>create(consumerProperties)
+                .withKeyDeserializer(new StringDeserializer())
+                .withValueDeserializer(new ErrorHandlingDeserializer<>(new EmployeeEventDeserializer<>(
+                        new JsonDeserializer<>(EmployeeChangeStateEventDto.class, false))))
+                .subscription(Collections.singleton(employeeChangeStateTopic));
+
+        return KafkaReceiver.create(receiverOptions);
+    }
+
+    /**
+     * Offset of a processed change-state record and its status event, null if there is nothing to publish.
+     */
+    private static class ProcessedRecord {
+
+        private final ReceiverOffset offset;
+
+        private final EmployeeStatusEventDto statusEvent;
+
+        private final Header correlationId;
+
+        private ProcessedRecord(ReceiverOffset offset, EmployeeStatusEventDto statusEvent, Header correlationId) {
+            this.offset = offset;
+            this.statusEvent = statusEvent;
+            this.correlationId = correlationId;
+        }
+    }
+
+    /**
+     * Next offset to apply of a partition, only accessed by the partition's processing stage,
+     * and the processed records whose status events have not been acknowledged by Kafka yet.
+     */
+    private static class PartitionProgress {
+
+        private final Map<Long, ProcessedRecord> unacknowledged = new ConcurrentHashMap<>();
+
+        private volatile long nextOffset;
+
+        private ProcessedRecord applied(ProcessedRecord processedRecord) {
+
+            if (processedRecord.statusEvent != null) {
+                unacknowledged.put(processedRecord.offset.offset(), processedRecord);
+            }
+
+            nextOffset = processedRecord.offset.offset() + 1;
+
+            return processedRecord;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.pplflw.challenge.service;
+
+import com.pplflw.challenge.dto.EmployeeEventHeaders;
+import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.kafka.sender.SenderRecord;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded stage between state transitions and status event publishing.
+ * Listener threads put status events into a bounded queue and a single flusher thread sends them to Kafka in batches:
+ * a batch is everything queued when the flusher takes it, up to the batch size, so the events queued while a batch
+ * is being sent form the next one.
+ * A flush completes only when Kafka has acknowledged every event of the batch, failed flushes are retried with backoff
+ * as a whole until they succeed or the outbox is stopped, so status consumers may see an event more than once.
+ * The publish methods return only when Kafka has acknowledged the events, so a listener returns, and the container
+ * commits its offsets, only after the status events of its records have been published. Delivery is at-least-once:
+ * the records of a listener failing or stopped while waiting are consumed again, and their events published again.
+ * An event published with a correlation ID carries it in the {@link EmployeeEventHeaders#CORRELATION_ID} header.
+ * When the queue is full the publish methods block on queueing as well, which stops the calling listener from polling
+ * more records until the broker catches up.
+ * Exposes the queue depth, the flush latency and the number of events failed by stopping the outbox as metrics.
+ */
+@Slf4j
+@Component
+public class StatusEventOutbox {
+
+    /**
+     * Interval of checking whether the outbox has been stopped while the queue is empty.
+     */
+    private static final Duration IDLE_POLL_INTERVAL = Duration.ofMillis(100);
+
+    private final ReactiveKafkaProducerTemplate<String, EmployeeStatusEventDto> kafkaProducer;
+
+    private final BlockingQueue<OutboxEvent> queue;
+
+    private final Timer flushTimer;
+
+    private final Counter failedCounter;
+
+    @Value(value = "${com.pplflw.challenge.kafka.employee-status-topic}")
+    private String employeeStatusTopic;
+
+    @Value(value = "${com.pplflw.challenge.kafka.timeout-in-seconds}")
+    private int timeoutInSeconds;
+
+    @Value(value = "${com.pplflw.challenge.outbox.batch-size}")
+    private int batchSize;
+
+    private volatile boolean running;
+
+    private Thread flusher;
+
+    public StatusEventOutbox(ReactiveKafkaProducerTemplate<String, EmployeeStatusEventDto> kafkaProducer,
+                             @Value(value = "${com.pplflw.challenge.outbox.capacity}") int capacity,
+                             MeterRegistry meterRegistry) {
+
+        this.kafkaProducer = kafkaProducer;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+
+        Gauge.builder("employee.outbox.depth", queue, BlockingQueue::size)
+                .description("Number of status events waiting to be published")
+                .register(meterRegistry);
+
+        this.flushTimer = Timer.builder("employee.outbox.flush")
+                .description("Time to publish a batch of status events, including retries")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+
+        this.failedCounter = Counter.builder("employee.outbox.failed")
+                .description("Number of status events not published because the outbox has been stopped")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+
+        flusher = new Thread(this::flushLoop, "status-outbox");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Stops accepting new events and waits until the queued ones are flushed or the Kafka timeout passes.
+     * The events still waiting then fail, so do their publishers.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+
+        if (flusher != null) {
+            try {
+                flusher.join(TimeUnit.SECONDS.toMillis(timeoutInSeconds));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flusher.interrupt();
+        }
+
+        List<OutboxEvent> unpublished = new ArrayList<>();
+
+        queue.drainTo(unpublished);
+        fail(unpublished, new IllegalStateException("Status event outbox has been stopped"));
+    }
+
+    /**
+     * Publishes a status event. Blocks while the outbox is full and then until Kafka has acknowledged the event.
+     *
+     * @param employeeStatusEventDto status event
+     * @throws IllegalStateException if the outbox has been stopped or the calling thread is interrupted
+     */
+    public void publish(EmployeeStatusEventDto employeeStatusEventDto) {
+        publish(employeeStatusEventDto, null);
+    }
+
+    /**
+     * Publishes a status event with the correlation ID of the change-state event it answers.
+     * Blocks while the outbox is full and then until Kafka has acknowledged the event.
+     *
+     * @param employeeStatusEventDto status event
+     * @param correlationId          correlation ID, null if the change-state event has none
+     * @throws IllegalStateException if the outbox has been stopped or the calling thread is interrupted
+     */
+    public void publish(EmployeeStatusEventDto employeeStatusEventDto, String correlationId) {
+        await(queue(employeeStatusEventDto, correlationId));
+    }
+
+    /**
+     * Publishes status events in the given order. Blocks while the outbox is full and then until Kafka has
+     * acknowledged all the events.
+     *
+     * @param employeeStatusEventDtos status events
+     * @throws IllegalStateException if the outbox has been stopped or the calling thread is interrupted
+     */
+    public void publishAll(List<EmployeeStatusEventDto> employeeStatusEventDtos) {
+        publishAll(employeeStatusEventDtos, Collections.nCopies(employeeStatusEventDtos.size(), null));
+    }
+
+    /**
+     * Publishes status events in the given order with their correlation IDs. Blocks while the outbox is full and then
+     * until Kafka has acknowledged all the events.
+     *
+     * @param employeeStatusEventDtos status events
+     * @param correlationIds          correlation ID of every status event, null elements for the ones without
+     * @throws IllegalStateException if the outbox has been stopped or the calling thread is interrupted
+     */
+    public void publishAll(List<EmployeeStatusEventDto> employeeStatusEventDtos, List<String> correlationIds) {
+
+        CompletableFuture<?>[] acknowledgements = new CompletableFuture<?>[employeeStatusEventDtos.size()];
+
+        for (int i = 0; i < employeeStatusEventDtos.size(); i++) {
+            acknowledgements[i] = queue(employeeStatusEventDtos.get(i), correlationIds.get(i));
+        }
+
+        await(CompletableFuture.allOf(acknowledgements));
+    }
+
+    /**
+     * @return number of status events waiting to be published
+     */
+    public int depth() {
+        return queue.size();
+    }
+
+    private CompletableFuture<Void> queue(EmployeeStatusEventDto employeeStatusEventDto, String correlationId) {
+
+        if (!running) {
+            throw new IllegalStateException("Status event outbox is stopped");
+        }
+
+        OutboxEvent outboxEvent = new OutboxEvent(employeeStatusEventDto, correlationId);
+
+        try {
+            queue.put(outboxEvent);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the status event outbox", e);
+        }
+
+        return outboxEvent.acknowledged;
+    }
+
+    private static void await(CompletableFuture<?> acknowledged) {
+        try {
+            acknowledged.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for status events to be published", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Status events have not been published", e.getCause());
+        }
+    }
+
+    private void flushLoop() {
+
+        List<OutboxEvent> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                OutboxEvent first = queue.poll(IDLE_POLL_INTERVAL.toNanos(), TimeUnit.NANOSECONDS);
+
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+            } catch (InterruptedException e) {
+                log.warn("Status event outbox was interrupted with {} unpublished events", queue.size());
+                return;
+            }
+
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private void flush(List<OutboxEvent> batch) {
+
+        log.debug("Sending {} employee-status events to Kafka", batch.size());
+
+        long start = System.nanoTime();
+
+        try {
+            Flux.defer(() -> kafkaProducer.send(Flux.fromIterable(batch)
+                            .map(outboxEvent -> SenderRecord.create(
+                                    toRecord(employeeStatusTopic, outboxEvent.statusEvent, outboxEvent.correlationId), outboxEvent))))
+                    .flatMap(senderResult -> senderResult.exception() == null
+                            ? Mono.just(senderResult)
+                            : Mono.error(senderResult.exception()))
+                    .then()
+                    .timeout(Duration.ofSeconds(timeoutInSeconds))
+                    .doOnError(throwable -> log.warn("An exception occurred while sending {} employee-status events to Kafka: {}",
+                            batch.size(),
+                            throwable.getMessage()))
+                    // until stopped, a batch given up while running would leave its records committed and unpublished
+                    .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofMillis(100))
+                            .maxBackoff(Duration.ofSeconds(10))
+                            .filter(throwable -> running))
+                    .block();
+        } catch (RuntimeException e) {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            log.error("Giving up {} employee-status events as the outbox has been stopped: {}", batch.size(), e.getMessage());
+            fail(batch, e);
+            return;
+        }
+
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.debug("Successfully sent {} employee-status events to Kafka", batch.size());
+
+        batch.forEach(outboxEvent -> outboxEvent.acknowledged.complete(null));
+    }
+
+    private void fail(List<OutboxEvent> outboxEvents, RuntimeException exception) {
+
+        failedCounter.increment(outboxEvents.size());
+        outboxEvents.forEach(outboxEvent -> outboxEvent.acknowledged.completeExceptionally(exception));
+    }
+
+    /**
+     * @param topic         status topic
+     * @param statusEvent   status event
+     * @param correlationId correlation ID, null if the change-state event has none
+     * @return status record keyed by employee ID
+     */
+    static ProducerRecord<String, EmployeeStatusEventDto> toRecord(String topic, EmployeeStatusEventDto statusEvent,
+                                                                  String correlationId) {
+
+        RecordHeaders headers = new RecordHeaders();
+
+        if (correlationId != null) {
+            headers.add(EmployeeEventHeaders.CORRELATION_ID, correlationId.getBytes(StandardCharsets.UTF_8));
+        }
+
+        return new ProducerRecord<>(topic,
+                null,
+                statusEvent.getEmployee().getId().toString(),
+                statusEvent,
+                headers);
+    }
+
+    private static class OutboxEvent {
+
+        private final EmployeeStatusEventDto statusEvent;
+
+        private final String correlationId;
+
+        private final CompletableFuture<Void> acknowledged = new CompletableFuture<>();
+
+        private OutboxEvent(EmployeeStatusEventDto statusEvent, String correlationId) {
+            this.statusEvent = statusEvent;
+            this.correlationId = correlationId;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.pplflw.challenge.service;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.dto.EmployeeAddEventDto;
+import com.pplflw.challenge.dto.EmployeeChangeStateEventDto;
+import com.pplflw.challenge.dto.EmployeeEventHeaders;
+import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import com.pplflw.challenge.service.snapshot.ConsumedOffsets;
+import com.pplflw.challenge.storage.EmployeeStorage;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Exactly-once consume-transform-produce listeners of 'transactional' processing mode.
+ * Every poll batch is processed in one Kafka transaction started by the listener container: the status events
+ * are sent by the transactional producer and the container adds the consumed offsets to the same transaction,
+ * so either both are committed or neither is. A batch's transaction costs a few broker round trips however many
+ * records it has, so the transaction overhead is amortized over the poll batch.
+ * The employees are computed against the storage but saved only after the commit, so the records of an aborted
+ * transaction are re-consumed against the unchanged storage. Records replayed after a snapshot restore had their
+ * status events committed before, they only update the storage.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "com.pplflw.challenge.kafka.processing-mode", havingValue = "transactional")
+public class TransactionalEmployeeListener implements ConsumerSeekAware {
+
+    private final EmployeeService employeeService;
+
+    private final EmployeeStorage employeeStorage;
+
+    private final ConsumedOffsets consumedOffsets;
+
+    private final KafkaTemplate<String, EmployeeStatusEventDto> kafkaTemplate;
+
+    @Value(value = "${com.pplflw.challenge.kafka.employee-status-topic}")
+    private String employeeStatusTopic;
+
+    public TransactionalEmployeeListener(EmployeeService employeeService,
+                                         EmployeeStorage employeeStorage,
+                                         ConsumedOffsets consumedOffsets,
+                                         @Qualifier("transactionalKafkaTemplate")
+                                                 KafkaTemplate<String, EmployeeStatusEventDto> kafkaTemplate) {
+        this.employeeService = employeeService;
+        this.employeeStorage = employeeStorage;
+        this.consumedOffsets = consumedOffsets;
+        this.kafkaTemplate = kafkaTemplate;
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        consumedOffsets.onPartitionsAssigned(assignments, callback);
+    }
+
+    @KafkaListener(topics = "${com.pplflw.challenge.kafka.employee-add-topic}",
+            clientIdPrefix = "add-transactional",
+            containerFactory = "transactionalKafkaListenerContainerFactory",
+            concurrency = "${com.pplflw.challenge.kafka.listener-concurrency}")
+    public void listenEmployeeAddEventBatch(List<EmployeeAddEventDto> employeeAddEventDtos,
+                                            @Header(KafkaHeaders.RECEIVED_TOPIC) List<String> topics,
+                                            @Header(KafkaHeaders.RECEIVED_PARTITION_ID) List<Integer> partitions,
+                                            @Header(KafkaHeaders.OFFSET) List<Long> offsets) {
+        log.debug("Received {} EmployeeAddEventDto messages", employeeAddEventDtos.size());
+
+        List<Employee> employees = employeeAddEventDtos.stream()
+                .map(EmployeeAddEventDto::getEmployee)
+                .collect(Collectors.toList());
+
+        for (int i = 0; i < employees.size(); i++) {
+            if (!consumedOffsets.isReplayed(topics.get(i), partitions.get(i), offsets.get(i))) {
+                kafkaTemplate.send(StatusEventOutbox.toRecord(employeeStatusTopic,
+                        new EmployeeStatusEventDto(null, null, employees.get(i)), null));
+            }
+        }
+
+        afterCommit(topics, partitions, offsets, employees);
+    }
+
+    @KafkaListener(topics = "${com.pplflw.challenge.kafka.employee-change-state-topic}",
+            clientIdPrefix = "change-state-transactional",
+            containerFactory = "transactionalKafkaListenerContainerFactory",
+            concurrency = "${com.pplflw.challenge.kafka.listener-concurrency}")
+    public void listenEmployeeChangeStateEventBatch(List<EmployeeChangeStateEventDto> employeeChangeStateEventDtos,
+                                                    @Header(KafkaHeaders.RECEIVED_TOPIC) List<String> topics,
+                                                    @Header(KafkaHeaders.RECEIVED_PARTITION_ID) List<Integer> partitions,
+                                                    @Header(KafkaHeaders.OFFSET) List<Long> offsets,
+                                                    @Header(KafkaHeaders.BATCH_CONVERTED_HEADERS)
+                                                            List<Map<String, Object>> headers) {
+        log.debug("Received {} EmployeeChangeStateEventDto messages", employeeChangeStateEventDtos.size());
+
+        EmployeeStateChanges stateChanges = employeeService.applyEmployeeStates(employeeChangeStateEventDtos);
+
+        for (int i = 0; i < stateChanges.getStatusEvents().size(); i++) {
+
+            int index = stateChanges.getEventIndexes().get(i);
+
+            if (!consumedOffsets.isReplayed(topics.get(index), partitions.get(index), offsets.get(index))) {
+                kafkaTemplate.send(StatusEventOutbox.toRecord(employeeStatusTopic,
+                        stateChanges.getStatusEvents().get(i),
+                        EmployeeServiceImpl.toCorrelationId((byte[]) headers.get(index).get(EmployeeEventHeaders.CORRELATION_ID))));
+            }
+        }
+
+        afterCommit(topics, partitions, offsets, stateChanges.getUpdatedEmployees());
+    }
+
+    /**
+     * Saves the employees and records the offsets once the listener container has committed the batch's transaction.
+     */
+    private void afterCommit(List<String> topics, List<Integer> partitions, List<Long> offsets, List<Employee> employees) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                consumedOffsets.processBatch(topics, partitions, offsets, () -> employeeStorage.updateEmployees(employees));
+            }
+        });
+    }
+}
@@ -0,0 +1,165 @@
+package com.pplflw.challenge.service.snapshot;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Tracks the next offset to consume of every partition processed by the listeners.
+ * Records are processed under a shared lock, so {@link #checkpoint(Runnable)} can capture offsets which match
+ * the storage exactly: it waits for the in-flight records and runs its action before any other record is processed.
+ * After {@link #restore(Map)} the listeners are sought to the restored offsets on the first assignment of every partition,
+ * partitions without a restored offset are consumed from the beginning. The records between the restored offset
+ * and the partition's committed offset have been processed before, they are {@link #isReplayed replayed}.
+ */
+@Slf4j
+@Component
+public class ConsumedOffsets {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<TopicPartition, Long> offsets = new ConcurrentHashMap<>();
+
+    private final Set<TopicPartition> sought = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Position of every sought partition at its assignment, the committed offset.
+     */
+    private final Map<TopicPartition, Long> replayEnds = new ConcurrentHashMap<>();
+
+    private volatile Map<TopicPartition, Long> restoredOffsets;
+
+    /**
+     * Processes a record and records its offset once it has been processed successfully.
+     *
+     * @param topic     record's topic
+     * @param partition record's partition
+     * @param offset    record's offset
+     * @param action    processing of the record
+     * @return result of the processing
+     */
+    public <T> T process(String topic, int partition, long offset, Supplier<T> action) {
+
+        lock.readLock().lock();
+        try {
+            T result = action.get();
+
+            offsets.put(new TopicPartition(topic, partition), offset + 1);
+
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Processes a batch of records and records the highest offset of every partition once the batch has been processed
+     * successfully.
+     *
+     * @param topics     records' topics
+     * @param partitions records' partitions
+     * @param offsets    records' offsets
+     * @param action     processing of the batch
+     * @return result of the processing
+     */
+    public <T> T processBatch(List<String> topics, List<Integer> partitions, List<Long> offsets, Supplier<T> action) {
+
+        lock.readLock().lock();
+        try {
+            T result = action.get();
+
+            for (int i = 0; i < offsets.size(); i++) {
+                this.offsets.merge(new TopicPartition(topics.get(i), partitions.get(i)), offsets.get(i) + 1, Math::max);
+            }
+
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Waits for the records being processed, runs the action and captures the offsets, while no record is processed.
+     *
+     * @param action action to run at the checkpoint, must be short
+     * @return next offset to consume of every partition
+     */
+    public Map<TopicPartition, Long> checkpoint(Runnable action) {
+
+        lock.writeLock().lock();
+        try {
+            action.run();
+
+            return new HashMap<>(offsets);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Restores offsets of a snapshot, must be called before the listeners start.
+     *
+     * @param restoredOffsets next offset to consume of every partition
+     */
+    public void restore(Map<TopicPartition, Long> restoredOffsets) {
+        this.offsets.putAll(restoredOffsets);
+        this.restoredOffsets = Map.copyOf(restoredOffsets);
+    }
+
+    /**
+     * Seeks newly assigned partitions to the restored offsets, if any.
+     *
+     * @param assignments assigned partitions with their current offsets
+     * @param callback    seek callback of the consumer
+     */
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekAware.ConsumerSeekCallback callback) {
+
+        Map<TopicPartition, Long> snapshotOffsets = restoredOffsets;
+
+        if (snapshotOffsets == null) {
+            return;
+        }
+
+        for (TopicPartition partition : assignments.keySet()) {
+
+            if (!sought.add(partition)) {
+                continue;
+            }
+
+            replayEnds.put(partition, assignments.get(partition));
+
+            Long offset = snapshotOffsets.get(partition);
+
+            if (offset == null) {
+                log.info("No snapshot offset of {}, consuming from the beginning", partition);
+                callback.seekToBeginning(partition.topic(), partition.partition());
+            } else {
+                log.info("Seeking {} to snapshot offset {}", partition, offset);
+                callback.seek(partition.topic(), partition.partition(), offset);
+            }
+        }
+    }
+
+    /**
+     * @param topic     record's topic
+     * @param partition record's partition
+     * @param offset    record's offset
+     * @return true if the record had been processed and committed before the partition was sought back to a snapshot
+     */
+    public boolean isReplayed(String topic, int partition, long offset) {
+
+        Long replayEnd = replayEnds.get(new TopicPartition(topic, partition));
+
+        return replayEnd != null && offset < replayEnd;
+    }
+}
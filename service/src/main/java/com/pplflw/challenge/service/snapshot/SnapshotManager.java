@@ -0,0 +1,197 @@
+package com.pplflw.challenge.service.snapshot;
+
+import com.pplflw.challenge.storage.EmployeeSnapshots;
+import com.pplflw.challenge.storage.EmployeeStorage;
+import com.pplflw.challenge.storage.SnapshottingEmployeeStorage;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Takes periodic snapshots of the employee storage together with the consumed offsets, so a restarted service
+ * replays only the records consumed after the latest snapshot instead of both topics from the beginning.
+ * On start loads the latest snapshot into the storage and restores its offsets into {@link ConsumedOffsets},
+ * which seeks the listeners to them. Listeners are paused only while a snapshot is opened, the employees are written
+ * by a background thread while the storage keeps the pre-images of the employees updated in the meantime.
+ * A final snapshot is taken on shutdown, after the listeners have stopped.
+ * Not supported in 'reactive' processing mode, whose pipeline commits offsets on its own: snapshots stay off there.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "com.pplflw.challenge.snapshot.enabled", havingValue = "true")
+public class SnapshotManager {
+
+    private final SnapshottingEmployeeStorage employeeStorage;
+
+    private final ConsumedOffsets consumedOffsets;
+
+    private final EmployeeSnapshots snapshots;
+
+    private final Timer writeTimer;
+
+    @Value(value = "${com.pplflw.challenge.snapshot.interval}")
+    private Duration interval;
+
+    @Value(value = "${com.pplflw.challenge.kafka.processing-mode}")
+    private String processingMode;
+
+    private volatile boolean running;
+
+    private Thread snapshotter;
+
+    private Map<TopicPartition, Long> lastOffsets;
+
+    public SnapshotManager(EmployeeStorage employeeStorage,
+                           ConsumedOffsets consumedOffsets,
+                           @Value(value = "${com.pplflw.challenge.snapshot.directory}") Path directory,
+                           @Value(value = "${com.pplflw.challenge.snapshot.retained}") int retained,
+                           MeterRegistry meterRegistry) {
+
+        if (!(employeeStorage instanceof SnapshottingEmployeeStorage)) {
+            throw new IllegalStateException("Snapshots require a " + SnapshottingEmployeeStorage.class.getSimpleName());
+        }
+
+        this.employeeStorage = (SnapshottingEmployeeStorage) employeeStorage;
+        this.consumedOffsets = consumedOffsets;
+        this.snapshots = new EmployeeSnapshots(directory, retained);
+
+        Gauge.builder("employee.snapshot.pre-images", this.employeeStorage, SnapshottingEmployeeStorage::preImages)
+                .description("Number of employee pre-images kept for the snapshot being written")
+                .register(meterRegistry);
+
+        this.writeTimer = Timer.builder("employee.snapshot.write")
+                .description("Time to write a snapshot of the employee storage")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+
+        if ("reactive".equals(processingMode)) {
+            log.warn("Snapshots are not supported in 'reactive' processing mode, they are off");
+            return;
+        }
+
+        long startTime = System.nanoTime();
+
+        Optional<Map<String, Long>> checkpoints = snapshots.loadLatest(employeeStorage);
+
+        Map<TopicPartition, Long> offsets = checkpoints.map(SnapshotManager::toOffsets).orElse(Map.of());
+
+        consumedOffsets.restore(offsets);
+        lastOffsets = offsets;
+
+        log.info("Restored {} partition offsets from {} in {} ms",
+                offsets.size(), checkpoints.isPresent() ? "the latest snapshot" : "no snapshot",
+                Duration.ofNanos(System.nanoTime() - startTime).toMillis());
+
+        running = true;
+
+        snapshotter = new Thread(this::snapshotLoop, "employee-snapshots");
+        snapshotter.setDaemon(true);
+        snapshotter.start();
+    }
+
+    /**
+     * Stops the periodic snapshots and takes the final one.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+
+        if (snapshotter == null) {
+            return;
+        }
+
+        snapshotter.interrupt();
+        try {
+            snapshotter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        snapshot();
+    }
+
+    /**
+     * Takes a snapshot unless nothing has been consumed since the previous one.
+     *
+     * @return whether a snapshot has been written
+     */
+    public synchronized boolean snapshot() {
+
+        Map<TopicPartition, Long> offsets = consumedOffsets.checkpoint(employeeStorage::openSnapshot);
+
+        try {
+            if (offsets.equals(lastOffsets)) {
+                return false;
+            }
+
+            long startTime = System.nanoTime();
+
+            long count = snapshots.write(toCheckpoints(offsets), employeeStorage::forEachSnapshotEmployee);
+
+            long duration = System.nanoTime() - startTime;
+
+            writeTimer.record(Duration.ofNanos(duration));
+
+            log.info("Written snapshot of {} employees at {} in {} ms", count, offsets, Duration.ofNanos(duration).toMillis());
+
+            lastOffsets = offsets;
+
+            return true;
+        } finally {
+            employeeStorage.closeSnapshot();
+        }
+    }
+
+    private void snapshotLoop() {
+        while (running) {
+            try {
+                Thread.sleep(interval.toMillis());
+
+                snapshot();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Cannot take a snapshot", e);
+            }
+        }
+    }
+
+    private static Map<String, Long> toCheckpoints(Map<TopicPartition, Long> offsets) {
+
+        Map<String, Long> checkpoints = new HashMap<>();
+
+        offsets.forEach((partition, offset) -> checkpoints.put(partition.toString(), offset));
+
+        return checkpoints;
+    }
+
+    private static Map<TopicPartition, Long> toOffsets(Map<String, Long> checkpoints) {
+
+        Map<TopicPartition, Long> offsets = new HashMap<>();
+
+        checkpoints.forEach((key, offset) -> {
+            int separator = key.lastIndexOf('-');
+            offsets.put(new TopicPartition(key.substring(0, separator), Integer.parseInt(key.substring(separator + 1))), offset);
+        });
+
+        return offsets;
+    }
+}
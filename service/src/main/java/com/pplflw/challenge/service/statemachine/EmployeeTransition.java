@@ -0,0 +1,28 @@
+package com.pplflw.challenge.service.statemachine;
+
+import com.pplflw.challenge.statemachine.EmployeeState;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.statemachine.StateMachineEventResult.ResultType;
+
+/**
+ * Result of feeding an {@link com.pplflw.challenge.statemachine.EmployeeEvent} to an {@link EmployeeTransitionEngine}.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+@EqualsAndHashCode
+public class EmployeeTransition {
+
+    /**
+     * Whether the event was accepted or denied.
+     */
+    private final ResultType resultType;
+
+    /**
+     * Employee's state after the event, the source state if the event was denied.
+     */
+    private final EmployeeState state;
+}
@@ -0,0 +1,20 @@
+package com.pplflw.challenge.service.statemachine;
+
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import reactor.core.publisher.Mono;
+
+/**
+ * Applies the employee workflow described in {@link StateMachineConfiguration} to a single state.
+ */
+public interface EmployeeTransitionEngine {
+
+    /**
+     * Feeds an event to the workflow being in the given state.
+     *
+     * @param state employee's current state
+     * @param event state machine event
+     * @return the transition result
+     */
+    Mono<EmployeeTransition> fire(EmployeeState state, EmployeeEvent event);
+}
@@ -0,0 +1,34 @@
+package com.pplflw.challenge.service.statemachine;
+
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link EmployeeTransitionEngine} running every event through a Spring State Machine borrowed from {@link StateMachinePool}.
+ */
+@Slf4j
+public class SpringStateMachineTransitionEngine implements EmployeeTransitionEngine {
+
+    private final StateMachinePool stateMachinePool;
+
+    public SpringStateMachineTransitionEngine(StateMachinePool stateMachinePool) {
+        this.stateMachinePool = stateMachinePool;
+    }
+
+    @Override
+    public Mono<EmployeeTransition> fire(EmployeeState state, EmployeeEvent event) {
+        return stateMachinePool.borrowReactively(state)
+                .flatMap(stateMachine -> stateMachine.sendEvent(Mono.just(MessageBuilder.withPayload(event).build()))
+                        .next()
+                        .map(eventResult -> {
+
+                            log.debug("State machine result for event {}: {}", event, eventResult);
+
+                            return new EmployeeTransition(eventResult.getResultType(), stateMachine.getState().getId());
+                        })
+                        .doFinally(signalType -> stateMachinePool.release(stateMachine)));
+    }
+}
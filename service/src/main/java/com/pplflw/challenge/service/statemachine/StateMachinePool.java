@@ -0,0 +1,127 @@
+package com.pplflw.challenge.service.statemachine;
+
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.statemachine.StateMachine;
+import org.springframework.statemachine.config.StateMachineFactory;
+import org.springframework.statemachine.support.DefaultStateMachineContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded pool of pre-built state machines.
+ * Building a state machine is expensive, so machines are built once at startup and then only reset
+ * to an employee's state when borrowed.
+ * Exposes the pool size, the number of idle machines and the borrow latency as metrics.
+ */
+public class StateMachinePool {
+
+    private final BlockingQueue<StateMachine<EmployeeState, EmployeeEvent>> idleStateMachines;
+
+    private final Duration borrowTimeout;
+
+    private final Timer borrowTimer;
+
+    public StateMachinePool(StateMachineFactory<EmployeeState, EmployeeEvent> stateMachineFactory,
+                            int size,
+                            Duration borrowTimeout,
+                            MeterRegistry meterRegistry) {
+
+        this.idleStateMachines = new ArrayBlockingQueue<>(size);
+        this.borrowTimeout = borrowTimeout;
+
+        for (int i = 0; i < size; i++) {
+            idleStateMachines.add(stateMachineFactory.getStateMachine("pooled-" + i));
+        }
+
+        Gauge.builder("employee.statemachine.pool.size", () -> size)
+                .description("Number of pooled state machines")
+                .register(meterRegistry);
+        Gauge.builder("employee.statemachine.pool.idle", idleStateMachines, BlockingQueue::size)
+                .description("Number of state machines available for borrowing")
+                .register(meterRegistry);
+
+        this.borrowTimer = Timer.builder("employee.statemachine.pool.borrow")
+                .description("Time to borrow a state machine and reset it to the employee's state")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Borrows a state machine and resets it to the given state.
+     * The machine has to be returned with {@link #release(StateMachine)}.
+     *
+     * @param employeeState state to reset the machine to
+     * @return started state machine in the given state
+     * @throws StateMachinePoolExhaustedException if no machine becomes available within the borrow timeout
+     */
+    public StateMachine<EmployeeState, EmployeeEvent> borrow(EmployeeState employeeState) {
+        return borrowReactively(employeeState).block();
+    }
+
+    /**
+     * Reactive counterpart of {@link #borrow(EmployeeState)}. Doesn't block unless the pool is exhausted.
+     *
+     * @param employeeState state to reset the machine to
+     * @return started state machine in the given state
+     */
+    public Mono<StateMachine<EmployeeState, EmployeeEvent>> borrowReactively(EmployeeState employeeState) {
+        return Mono.defer(() -> {
+
+            long start = System.nanoTime();
+
+            StateMachine<EmployeeState, EmployeeEvent> stateMachine = pollIdle();
+
+            return reset(stateMachine, employeeState)
+                    .thenReturn(stateMachine)
+                    .doOnSuccess(ignored -> borrowTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                    .doOnError(throwable -> release(stateMachine));
+        });
+    }
+
+    /**
+     * Returns a borrowed state machine to the pool.
+     *
+     * @param stateMachine state machine taken from {@link #borrow(EmployeeState)}
+     */
+    public void release(StateMachine<EmployeeState, EmployeeEvent> stateMachine) {
+        idleStateMachines.offer(stateMachine);
+    }
+
+    private StateMachine<EmployeeState, EmployeeEvent> pollIdle() {
+
+        StateMachine<EmployeeState, EmployeeEvent> stateMachine;
+
+        try {
+            stateMachine = idleStateMachines.poll(borrowTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a state machine", e);
+        }
+
+        if (stateMachine == null) {
+            throw new StateMachinePoolExhaustedException("No state machine became available within " + borrowTimeout);
+        }
+
+        return stateMachine;
+    }
+
+    private Mono<Void> reset(StateMachine<EmployeeState, EmployeeEvent> stateMachine, EmployeeState employeeState) {
+
+        DefaultStateMachineContext<EmployeeState, EmployeeEvent> context
+                = new DefaultStateMachineContext<>(employeeState, null, null, stateMachine.getExtendedState());
+
+        return stateMachine.stopReactively()
+                .thenMany(Flux.fromIterable(stateMachine.getStateMachineAccessor().withAllRegions()))
+                .concatMap(region -> region.resetStateMachineReactively(context))
+                .then(stateMachine.startReactively());
+    }
+}
@@ -0,0 +1,11 @@
+package com.pplflw.challenge.service.statemachine;
+
+/**
+ * No pooled state machine has become available within the borrow timeout. Nothing has been changed yet,
+ * so the transition can be retried.
+ */
+public class StateMachinePoolExhaustedException extends IllegalStateException {
+    public StateMachinePoolExhaustedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,82 @@
+package com.pplflw.challenge.service.statemachine;
+
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import org.springframework.statemachine.StateMachine;
+import org.springframework.statemachine.StateMachineEventResult.ResultType;
+import org.springframework.statemachine.transition.Transition;
+import org.springframework.statemachine.trigger.Trigger;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link EmployeeTransitionEngine} backed by a precompiled {@link EmployeeState} x {@link EmployeeEvent} table.
+ * The table is compiled from the transitions of a state machine built by {@link StateMachineConfiguration},
+ * so both engines share the same workflow definition.
+ * Every cell holds a ready-made result, so a transition is an array lookup and allocates nothing.
+ */
+public class TableTransitionEngine implements EmployeeTransitionEngine {
+
+    private final EmployeeTransition[][] transitions;
+
+    /**
+     * Results of {@link #transitions}, row by row.
+     */
+    private final List<Mono<EmployeeTransition>> results;
+
+    private final int eventCount;
+
+    public TableTransitionEngine(StateMachine<EmployeeState, EmployeeEvent> stateMachine) {
+
+        EmployeeState[] states = EmployeeState.values();
+        EmployeeEvent[] events = EmployeeEvent.values();
+
+        transitions = new EmployeeTransition[states.length][events.length];
+        results = new ArrayList<>(states.length * events.length);
+        eventCount = events.length;
+
+        for (EmployeeState state : states) {
+            for (EmployeeEvent event : events) {
+                transitions[state.ordinal()][event.ordinal()] = new EmployeeTransition(ResultType.DENIED, state);
+            }
+        }
+
+        for (Transition<EmployeeState, EmployeeEvent> transition : stateMachine.getTransitions()) {
+
+            Trigger<EmployeeState, EmployeeEvent> trigger = transition.getTrigger();
+
+            if (trigger == null || trigger.getEvent() == null) {
+                continue;
+            }
+
+            EmployeeState source = transition.getSource().getId();
+
+            transitions[source.ordinal()][trigger.getEvent().ordinal()]
+                    = new EmployeeTransition(ResultType.ACCEPTED, transition.getTarget().getId());
+        }
+
+        for (EmployeeState state : states) {
+            for (EmployeeEvent event : events) {
+                results.add(Mono.just(transitions[state.ordinal()][event.ordinal()]));
+            }
+        }
+    }
+
+    @Override
+    public Mono<EmployeeTransition> fire(EmployeeState state, EmployeeEvent event) {
+        return results.get(state.ordinal() * eventCount + event.ordinal());
+    }
+
+    /**
+     * Synchronous counterpart of {@link #fire(EmployeeState, EmployeeEvent)}.
+     *
+     * @param state employee's current state
+     * @param event state machine event
+     * @return the transition result
+     */
+    public EmployeeTransition transition(EmployeeState state, EmployeeEvent event) {
+        return transitions[state.ordinal()][event.ordinal()];
+    }
+}
@@ -188,7 +188,8 @@ public class ServiceIntegrationTests {
         consumerProperties.put(ConsumerConfig.CLIENT_ID_CONFIG, UUID.randomUUID().toString());
 
         consumerProperties.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
-        consumerProperties.put("value.deserializer", "org.springframework.kafka.support.serializer.JsonDeserializer");
+        consumerProperties.put("value.deserializer", "com.pplflw.challenge.codec.EmployeeEventDeserializer");
+        consumerProperties.put("employee.codec.json.delegate.class", "org.springframework.kafka.support.serializer.JsonDeserializer");
 
         return new KafkaConsumer<>(consumerProperties);
     }
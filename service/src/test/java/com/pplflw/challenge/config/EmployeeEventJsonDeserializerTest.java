@@ -0,0 +1,78 @@
+package com.pplflw.challenge.config;
+
+import com.pplflw.challenge.codec.EmployeeEventCodec;
+import com.pplflw.challenge.codec.EmployeeEventDeserializer;
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.dto.EmployeeAddEventDto;
+import com.pplflw.challenge.dto.EmployeeChangeStateEventDto;
+import com.pplflw.challenge.dto.EmployeeEventHeaders;
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmployeeEventJsonDeserializerTest {
+
+    private ErrorHandlingDeserializer<Object> deserializer;
+
+    /**
+     * Configured like the service's consumers.
+     */
+    @BeforeEach
+    public void setUp() {
+        deserializer = new ErrorHandlingDeserializer<>();
+        deserializer.configure(Map.of(
+                ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, EmployeeEventDeserializer.class.getName(),
+                EmployeeEventDeserializer.JSON_DELEGATE_CLASS_CONFIG, EmployeeEventJsonDeserializer.class.getName(),
+                EmployeeEventJsonDeserializer.TOPIC_TYPES_CONFIG, "add:" + EmployeeAddEventDto.class.getName()
+                        + ", change-state:" + EmployeeChangeStateEventDto.class.getName()), false);
+    }
+
+    @Test
+    public void testJsonIsParsedIntoTopicType() {
+
+        Object addEvent = deserializer.deserialize("add", new RecordHeaders(), json("{\"employee\":{\"id\":1,"
+                + "\"state\":\"ADDED\",\"name\":\"\u041a\u0438\u0440\u0438\u043b\u043b\",\"contractInfo\":\"Full-time\",\"age\":30,\"unknown\":true}}"));
+        Object changeStateEvent = deserializer.deserialize("change-state", new RecordHeaders(),
+                json("{\"employeeId\":1,\"event\":\"CHECK\"}"));
+
+        assertThat(addEvent).isEqualTo(new EmployeeAddEventDto(new Employee(1L, EmployeeState.ADDED, "\u041a\u0438\u0440\u0438\u043b\u043b", "Full-time", 30)));
+        assertThat(changeStateEvent).isEqualTo(new EmployeeChangeStateEventDto(1L, EmployeeEvent.CHECK));
+    }
+
+    @Test
+    public void testBinaryEventsAreStillDecoded() {
+
+        EmployeeChangeStateEventDto event = new EmployeeChangeStateEventDto(1L, EmployeeEvent.APPROVE);
+        Headers headers = new RecordHeaders();
+
+        headers.add(EmployeeEventHeaders.CONTENT_TYPE, EmployeeEventHeaders.BINARY_CONTENT_TYPE.getBytes(StandardCharsets.UTF_8));
+
+        assertThat(deserializer.deserialize("change-state", headers, EmployeeEventCodec.encode(event))).isEqualTo(event);
+    }
+
+    @Test
+    public void testPoisonPillsAreReportedInHeaders() {
+
+        Headers malformed = new RecordHeaders();
+        Headers unknownTopic = new RecordHeaders();
+
+        assertThat(deserializer.deserialize("change-state", malformed, json("{\"employeeId\":"))).isNull();
+        assertThat(deserializer.deserialize("other", unknownTopic, json("{}"))).isNull();
+
+        assertThat(malformed.lastHeader(ErrorHandlingDeserializer.VALUE_DESERIALIZER_EXCEPTION_HEADER)).isNotNull();
+        assertThat(unknownTopic.lastHeader(ErrorHandlingDeserializer.VALUE_DESERIALIZER_EXCEPTION_HEADER)).isNotNull();
+    }
+
+    private static byte[] json(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
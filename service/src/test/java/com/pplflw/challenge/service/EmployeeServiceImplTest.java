@@ -3,19 +3,27 @@ package com.pplflw.challenge.service;
 import com.pplflw.challenge.EmployeeNotFoundException;
 import com.pplflw.challenge.domain.Employee;
 import com.pplflw.challenge.dto.EmployeeAddEventDto;
+import com.pplflw.challenge.dto.EmployeeChangeStateEventDto;
 import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import com.pplflw.challenge.service.snapshot.ConsumedOffsets;
+import com.pplflw.challenge.service.statemachine.EmployeeTransitionEngine;
 import com.pplflw.challenge.statemachine.EmployeeEvent;
 import com.pplflw.challenge.statemachine.EmployeeState;
 import com.pplflw.challenge.storage.EmployeeStorage;
+import org.apache.kafka.common.TopicPartition;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate;
-import reactor.core.publisher.Mono;
+import org.springframework.kafka.listener.ConsumerSeekAware.ConsumerSeekCallback;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
@@ -28,7 +36,7 @@ class EmployeeServiceImplTest {
     private EmployeeStorage employeeStorage;
 
     @MockBean
-    private ReactiveKafkaProducerTemplate<String, EmployeeStatusEventDto> kafkaProducer;
+    private StatusEventOutbox statusEventOutbox;
 
     @Autowired
     private EmployeeService employeeService;
@@ -41,7 +49,6 @@ class EmployeeServiceImplTest {
         EmployeeAddEventDto employeeAddEventDto = new EmployeeAddEventDto(employee);
 
         when(employeeStorage.updateEmployee(any(Employee.class))).thenReturn(employee);
-        when(kafkaProducer.send(any(String.class), any(EmployeeStatusEventDto.class))).thenReturn(Mono.empty());
 
         Employee savedEmployee = employeeService.addEmployee(employeeAddEventDto);
 
@@ -49,7 +56,7 @@ class EmployeeServiceImplTest {
         assertEquals(EmployeeState.ADDED, savedEmployee.getState());
 
         verify(employeeStorage, times(1)).updateEmployee(same(employee));
-        verify(kafkaProducer, times(1)).send(any(String.class), any(EmployeeStatusEventDto.class));
+        verify(statusEventOutbox, times(1)).publish(any(EmployeeStatusEventDto.class));
     }
 
     @Test
@@ -59,7 +66,7 @@ class EmployeeServiceImplTest {
 
         assertThrows(RuntimeException.class, () -> employeeService.addEmployee(new EmployeeAddEventDto(createTestEmployee())));
 
-        verify(kafkaProducer, never()).send(any(String.class), any(EmployeeStatusEventDto.class));
+        verify(statusEventOutbox, never()).publish(any(EmployeeStatusEventDto.class));
     }
 
     @Test
@@ -67,7 +74,7 @@ class EmployeeServiceImplTest {
         assertThrows(EmployeeNotFoundException.class,
                 () -> employeeService.changeEmployeeState(-1L, EmployeeEvent.CHECK));
 
-        verify(kafkaProducer, never()).send(any(String.class), any(EmployeeStatusEventDto.class));
+        verify(statusEventOutbox, never()).publish(any(EmployeeStatusEventDto.class), any());
         verify(employeeStorage, never()).updateEmployee(any(Employee.class));
     }
 
@@ -77,9 +84,10 @@ class EmployeeServiceImplTest {
         Employee employee = createTestEmployee();
         EmployeeAddEventDto employeeAddEventDto = new EmployeeAddEventDto(createTestEmployee());
 
-        when(kafkaProducer.send(any(String.class), any(EmployeeStatusEventDto.class))).thenReturn(Mono.empty());
         when(employeeStorage.updateEmployee(any(Employee.class))).thenAnswer(i -> i.getArgument(0));
         when(employeeStorage.getEmployee(any(Long.class))).thenReturn(Optional.of(employee));
+        when(employeeStorage.updateIfState(eq(employee.getId()), eq(EmployeeState.ADDED), any(EmployeeState.class)))
+                .thenAnswer(i -> Optional.of(employee.withState(i.getArgument(2))));
 
         Employee savedEmployee = employeeService.addEmployee(employeeAddEventDto);
 
@@ -93,8 +101,10 @@ class EmployeeServiceImplTest {
         assertEquals(employeeStatusEventDto.getEmployee().getState(), EmployeeState.IN_CHECK);
         assertEquals(employeeStatusEventDto.getResult(), "ACCEPTED");
 
-        verify(kafkaProducer, times(2)).send(any(String.class), any(EmployeeStatusEventDto.class));
-        verify(employeeStorage, times(2)).updateEmployee(any(Employee.class));
+        verify(statusEventOutbox, times(1)).publish(any(EmployeeStatusEventDto.class));
+        verify(statusEventOutbox, times(1)).publish(any(EmployeeStatusEventDto.class), isNull());
+        verify(employeeStorage, times(1)).updateEmployee(any(Employee.class));
+        verify(employeeStorage, times(1)).updateIfState(employee.getId(), EmployeeState.ADDED, EmployeeState.IN_CHECK);
     }
 
     @Test
@@ -103,7 +113,6 @@ class EmployeeServiceImplTest {
         Employee employee = createTestEmployee();
         EmployeeAddEventDto employeeAddEventDto = new EmployeeAddEventDto(createTestEmployee());
 
-        when(kafkaProducer.send(any(String.class), any(EmployeeStatusEventDto.class))).thenReturn(Mono.empty());
         when(employeeStorage.updateEmployee(any(Employee.class))).thenAnswer(i -> i.getArgument(0));
         when(employeeStorage.getEmployee(any(Long.class))).thenReturn(Optional.of(employee));
 
@@ -119,8 +128,32 @@ class EmployeeServiceImplTest {
         assertEquals(employeeStatusEventDto.getEmployee().getState(), EmployeeState.ADDED);
         assertEquals(employeeStatusEventDto.getResult(), "DENIED");
 
-        verify(kafkaProducer, times(2)).send(any(String.class), any(EmployeeStatusEventDto.class));
+        verify(statusEventOutbox, times(1)).publish(any(EmployeeStatusEventDto.class));
+        verify(statusEventOutbox, times(1)).publish(any(EmployeeStatusEventDto.class), isNull());
         verify(employeeStorage, times(1)).updateEmployee(eq(employee));
+        verify(employeeStorage, never()).updateIfState(any(), any(), any());
+    }
+
+    @Test
+    public void changeEmployeeStateFiresAgainAfterConcurrentChange() {
+
+        Employee employee = createTestEmployee();
+
+        // another change moves the employee to IN_CHECK between the read and the update
+        when(employeeStorage.getEmployee(eq(employee.getId())))
+                .thenReturn(Optional.of(employee), Optional.of(employee.withState(EmployeeState.IN_CHECK)));
+        when(employeeStorage.updateIfState(any(), any(), any())).thenReturn(Optional.empty());
+
+        EmployeeStatusEventDto employeeStatusEventDto
+                = employeeService.changeEmployeeState(employee.getId(), EmployeeEvent.CHECK);
+
+        // checked once only
+        assertEquals("DENIED", employeeStatusEventDto.getResult());
+        assertEquals(EmployeeState.IN_CHECK, employeeStatusEventDto.getEmployee().getState());
+
+        verify(employeeStorage, times(2)).getEmployee(eq(employee.getId()));
+        verify(employeeStorage, times(1)).updateIfState(employee.getId(), EmployeeState.ADDED, EmployeeState.IN_CHECK);
+        verify(statusEventOutbox, times(1)).publish(any(EmployeeStatusEventDto.class), isNull());
     }
 
     @Test
@@ -128,13 +161,120 @@ class EmployeeServiceImplTest {
 
         Employee employee = createTestEmployee();
 
-        when(kafkaProducer.send(any(String.class), any(EmployeeStatusEventDto.class))).thenReturn(Mono.empty());
         when(employeeStorage.getEmployee(any(Long.class))).thenReturn(Optional.of(employee));
-        when(employeeStorage.updateEmployee(any(Employee.class))).thenThrow(RuntimeException.class);
+        when(employeeStorage.updateIfState(any(), any(), any())).thenThrow(RuntimeException.class);
 
         assertThrows(RuntimeException.class, () -> employeeService.changeEmployeeState(employee.getId(), EmployeeEvent.CHECK));
 
-        verify(kafkaProducer, never()).send(any(String.class), any(EmployeeStatusEventDto.class));
+        verify(statusEventOutbox, never()).publish(any(EmployeeStatusEventDto.class), any());
+    }
+
+    @Test
+    public void addEmployees() {
+
+        Employee first = createTestEmployee();
+        Employee second = new Employee(2L, EmployeeState.ADDED, "Vitaly Abramov", "Ottawa Senators prospect", 22);
+
+
+        List<Employee> savedEmployees = employeeService.addEmployees(Arrays.asList(
+                new EmployeeAddEventDto(first),
+                new EmployeeAddEventDto(second)));
+
+        assertThat(savedEmployees).containsExactly(first, second);
+
+        verify(employeeStorage, times(1)).updateEmployees(eq(Arrays.asList(first, second)));
+        verify(employeeStorage, never()).updateEmployee(any(Employee.class));
+        verify(statusEventOutbox, times(1)).publishAll(argThat(eventDtos -> eventDtos.size() == 2));
+        verify(statusEventOutbox, never()).publish(any(EmployeeStatusEventDto.class));
+    }
+
+    @Test
+    public void changeEmployeeStates() {
+
+        Employee employee = createTestEmployee();
+
+        when(employeeStorage.getEmployee(eq(1L))).thenReturn(Optional.of(employee));
+        when(employeeStorage.getEmployee(eq(-1L))).thenReturn(Optional.empty());
+
+        List<EmployeeStatusEventDto> employeeStatusEventDtos = employeeService.changeEmployeeStates(Arrays.asList(
+                new EmployeeChangeStateEventDto(1L, EmployeeEvent.CHECK),
+                new EmployeeChangeStateEventDto(-1L, EmployeeEvent.CHECK),
+                new EmployeeChangeStateEventDto(1L, EmployeeEvent.ACTIVATE),
+                new EmployeeChangeStateEventDto(1L, EmployeeEvent.APPROVE)));
+
+        // the unknown employee is skipped, later events see the state left by earlier ones
+        assertThat(employeeStatusEventDtos).extracting(EmployeeStatusEventDto::getResult)
+                .containsExactly("ACCEPTED", "DENIED", "ACCEPTED");
+        assertThat(employeeStatusEventDtos).extracting(eventDto -> eventDto.getEmployee().getState())
+                .containsExactly(EmployeeState.IN_CHECK, EmployeeState.IN_CHECK, EmployeeState.APPROVED);
+
+        // the stored employee is loaded once and saved once, in its final state
+        verify(employeeStorage, times(1)).getEmployee(eq(1L));
+        verify(employeeStorage, times(1)).updateEmployees(argThat((Collection<Employee> employees)
+                -> employees.size() == 1 && employees.iterator().next().getState() == EmployeeState.APPROVED));
+        verify(employeeStorage, never()).updateEmployee(any(Employee.class));
+        verify(statusEventOutbox, times(1)).publishAll(eq(employeeStatusEventDtos), eq(Arrays.asList(null, null, null)));
+        assertEquals(EmployeeState.ADDED, employee.getState());
+    }
+
+    @Test
+    public void changeEmployeeStatesEchoesCorrelationIds() {
+
+        when(employeeStorage.getEmployee(eq(1L))).thenReturn(Optional.of(createTestEmployee()));
+        when(employeeStorage.getEmployee(eq(-1L))).thenReturn(Optional.empty());
+
+        List<EmployeeStatusEventDto> employeeStatusEventDtos = employeeService.changeEmployeeStates(Arrays.asList(
+                new EmployeeChangeStateEventDto(1L, EmployeeEvent.CHECK),
+                new EmployeeChangeStateEventDto(-1L, EmployeeEvent.CHECK),
+                new EmployeeChangeStateEventDto(1L, EmployeeEvent.APPROVE)),
+                Arrays.asList("node-1", "node-2", null));
+
+        // the correlation IDs stay aligned with the status events when an unknown employee is skipped
+        verify(statusEventOutbox, times(1)).publishAll(eq(employeeStatusEventDtos), eq(Arrays.asList("node-1", null)));
+    }
+
+    @Test
+    public void applyEmployeeStatesNeitherSavesNorPublishes() {
+
+        when(employeeStorage.getEmployee(eq(1L))).thenReturn(Optional.of(createTestEmployee()));
+        when(employeeStorage.getEmployee(eq(-1L))).thenReturn(Optional.empty());
+
+        EmployeeStateChanges stateChanges = employeeService.applyEmployeeStates(Arrays.asList(
+                new EmployeeChangeStateEventDto(-1L, EmployeeEvent.CHECK),
+                new EmployeeChangeStateEventDto(1L, EmployeeEvent.CHECK),
+                new EmployeeChangeStateEventDto(1L, EmployeeEvent.APPROVE)));
+
+        assertThat(stateChanges.getStatusEvents()).extracting(EmployeeStatusEventDto::getResult)
+                .containsExactly("ACCEPTED", "ACCEPTED");
+        assertThat(stateChanges.getEventIndexes()).containsExactly(1, 2);
+        assertThat(stateChanges.getUpdatedEmployees()).extracting(Employee::getState).containsExactly(EmployeeState.APPROVED);
+
+        verify(employeeStorage, never()).updateEmployees(any());
+        verifyNoInteractions(statusEventOutbox);
+    }
+
+    @Test
+    public void replayedRecordsAreNotPublishedAgain() {
+
+        ConsumedOffsets consumedOffsets = new ConsumedOffsets();
+        EmployeeServiceImpl service = new EmployeeServiceImpl(mock(EmployeeTransitionEngine.class),
+                employeeStorage, statusEventOutbox, consumedOffsets);
+
+        // restored to offset 5 of a partition committed up to offset 7
+        consumedOffsets.restore(Map.of(new TopicPartition("add", 0), 5L));
+        service.onPartitionsAssigned(Map.of(new TopicPartition("add", 0), 7L), mock(ConsumerSeekCallback.class));
+
+        Employee first = createTestEmployee();
+        Employee second = new Employee(2L, EmployeeState.ADDED, "Vitaly Abramov", "Ottawa Senators prospect", 22);
+
+        service.listenEmployeeAddEvents(new EmployeeAddEventDto(first), "add", 0, 5L);
+        service.listenEmployeeAddEventBatch(List.of(new EmployeeAddEventDto(first), new EmployeeAddEventDto(second)),
+                List.of("add", "add"), List.of(0, 0), List.of(6L, 7L));
+
+        verify(employeeStorage, times(1)).updateEmployee(same(first));
+        verify(employeeStorage, times(1)).updateEmployees(eq(List.of(first, second)));
+        verify(statusEventOutbox, never()).publish(any(EmployeeStatusEventDto.class));
+        verify(statusEventOutbox, times(1)).publishAll(eq(List.of(new EmployeeStatusEventDto(null, null, second))));
     }
 
     private Employee createTestEmployee() {
@@ -0,0 +1,218 @@
+package com.pplflw.challenge.service;
+
+import com.pplflw.challenge.EmployeeNotFoundException;
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.dto.EmployeeChangeStateEventDto;
+import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import com.pplflw.challenge.service.statemachine.StateMachinePoolExhaustedException;
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.kafka.receiver.ReceiverOffset;
+import reactor.kafka.receiver.ReceiverRecord;
+import reactor.kafka.sender.SenderRecord;
+import reactor.kafka.sender.SenderResult;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ReactiveChangeStateProcessorTest {
+
+    private EmployeeService employeeService;
+
+    private ReactiveKafkaProducerTemplate<String, EmployeeStatusEventDto> kafkaProducer;
+
+    private ReactiveChangeStateProcessor processor;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        employeeService = mock(EmployeeService.class);
+        kafkaProducer = mock(ReactiveKafkaProducerTemplate.class);
+
+        processor = new ReactiveChangeStateProcessor(employeeService, kafkaProducer, new KafkaProperties());
+
+        ReflectionTestUtils.setField(processor, "employeeStatusTopic", "status");
+        ReflectionTestUtils.setField(processor, "maxInFlightPerPartition", 16);
+        ReflectionTestUtils.setField(processor, "scheduler", Schedulers.immediate());
+
+        when(employeeService.changeEmployeeStateReactively(any(Long.class), any(EmployeeEvent.class)))
+                .thenAnswer(i -> Mono.just(createStatusEvent(i.getArgument(0), i.getArgument(1))));
+    }
+
+    /**
+     * Checks offsets are acknowledged in offset order even if status events are acknowledged out of order.
+     */
+    @Test
+    public void testOffsetsAreAcknowledgedInOrderAfterPublishing() {
+
+        ReceiverRecord<String, EmployeeChangeStateEventDto> first = createRecord(0, 1L, EmployeeEvent.CHECK);
+        ReceiverRecord<String, EmployeeChangeStateEventDto> second = createRecord(1, 2L, EmployeeEvent.CHECK);
+
+        when(kafkaProducer.send(any(SenderRecord.class))).thenAnswer(i -> {
+
+            SenderRecord<String, EmployeeStatusEventDto, ReceiverOffset> senderRecord = i.getArgument(0);
+
+            Mono<SenderResult<ReceiverOffset>> result = Mono.just(createSenderResult(senderRecord.correlationMetadata()));
+
+            // the first status event is acknowledged last
+            return senderRecord.correlationMetadata() == first.receiverOffset()
+                    ? result.delayElement(Duration.ofMillis(200))
+                    : result;
+        });
+
+        StepVerifier.create(processor.process(Flux.just(first, second)))
+                .expectNext(first.receiverOffset(), second.receiverOffset())
+                .verifyComplete();
+
+        verify(first.receiverOffset(), times(1)).acknowledge();
+        verify(second.receiverOffset(), times(1)).acknowledge();
+        verify(employeeService, times(1)).changeEmployeeStateReactively(eq(1L), eq(EmployeeEvent.CHECK));
+        verify(employeeService, times(1)).changeEmployeeStateReactively(eq(2L), eq(EmployeeEvent.CHECK));
+    }
+
+    @Test
+    public void testUnknownEmployeeIsSkipped() {
+
+        ReceiverRecord<String, EmployeeChangeStateEventDto> unknown = createRecord(0, -1L, EmployeeEvent.CHECK);
+        ReceiverRecord<String, EmployeeChangeStateEventDto> known = createRecord(1, 1L, EmployeeEvent.CHECK);
+
+        when(employeeService.changeEmployeeStateReactively(eq(-1L), any(EmployeeEvent.class)))
+                .thenReturn(Mono.error(new EmployeeNotFoundException("Cannot find employee with id=-1")));
+        when(kafkaProducer.send(any(SenderRecord.class))).thenAnswer(i -> Mono.just(createSenderResult(
+                i.<SenderRecord<String, EmployeeStatusEventDto, ReceiverOffset>>getArgument(0).correlationMetadata())));
+
+        StepVerifier.create(processor.process(Flux.just(unknown, known)))
+                .expectNext(unknown.receiverOffset(), known.receiverOffset())
+                .verifyComplete();
+
+        // the skipped record is acknowledged too, so a restart doesn't apply it to an employee added meanwhile
+        verify(unknown.receiverOffset(), times(1)).acknowledge();
+        verify(kafkaProducer, times(1)).send(any(SenderRecord.class));
+    }
+
+    @Test
+    public void testOnlyFailedSendIsRetried() {
+
+        ReceiverRecord<String, EmployeeChangeStateEventDto> record = createRecord(0, 1L, EmployeeEvent.CHECK);
+        AtomicInteger sends = new AtomicInteger();
+
+        when(kafkaProducer.send(any(SenderRecord.class))).thenAnswer(i -> sends.incrementAndGet() < 3
+                ? Mono.error(new RuntimeException("Broker is down"))
+                : Mono.just(createSenderResult(i.<SenderRecord<String, EmployeeStatusEventDto, ReceiverOffset>>getArgument(0).correlationMetadata())));
+
+        StepVerifier.create(processor.process(Flux.just(record)))
+                .expectNext(record.receiverOffset())
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        assertThat(sends).hasValue(3);
+        verify(record.receiverOffset(), times(1)).acknowledge();
+        verify(employeeService, times(1)).changeEmployeeStateReactively(eq(1L), eq(EmployeeEvent.CHECK));
+    }
+
+    @Test
+    public void testAppliedRecordsAreNotAppliedAgainAfterRestart() {
+
+        ReceiverRecord<String, EmployeeChangeStateEventDto> first = createRecord(0, 1L, EmployeeEvent.CHECK);
+        ReceiverRecord<String, EmployeeChangeStateEventDto> second = createRecord(1, 2L, EmployeeEvent.CHECK);
+
+        // the first status event is acknowledged, the second one never before the receiver fails
+        when(kafkaProducer.send(any(SenderRecord.class)))
+                .thenAnswer(i -> Mono.just(createSenderResult(
+                        i.<SenderRecord<String, EmployeeStatusEventDto, ReceiverOffset>>getArgument(0).correlationMetadata())))
+                .thenReturn(Mono.never());
+
+        StepVerifier.create(processor.process(Flux.just(first, second).concatWith(Flux.never())))
+                .expectNext(first.receiverOffset())
+                .thenCancel()
+                .verify();
+
+        when(kafkaProducer.send(any(SenderRecord.class))).thenAnswer(i -> Mono.just(createSenderResult(
+                i.<SenderRecord<String, EmployeeStatusEventDto, ReceiverOffset>>getArgument(0).correlationMetadata())));
+
+        // the restarted receiver starts from the last committed offset
+        ReceiverRecord<String, EmployeeChangeStateEventDto> firstAgain = createRecord(0, 1L, EmployeeEvent.CHECK);
+        ReceiverRecord<String, EmployeeChangeStateEventDto> secondAgain = createRecord(1, 2L, EmployeeEvent.CHECK);
+
+        StepVerifier.create(processor.process(Flux.just(firstAgain, secondAgain)))
+                .expectNext(firstAgain.receiverOffset(), secondAgain.receiverOffset())
+                .verifyComplete();
+
+        verify(employeeService, times(1)).changeEmployeeStateReactively(eq(1L), eq(EmployeeEvent.CHECK));
+        verify(employeeService, times(1)).changeEmployeeStateReactively(eq(2L), eq(EmployeeEvent.CHECK));
+        // the unacknowledged status event is sent again, the acknowledged one is not
+        verify(kafkaProducer, times(1)).send(argThat((SenderRecord<String, EmployeeStatusEventDto, ReceiverOffset> senderRecord)
+                -> senderRecord.correlationMetadata() == secondAgain.receiverOffset()));
+        verify(kafkaProducer, never()).send(argThat((SenderRecord<String, EmployeeStatusEventDto, ReceiverOffset> senderRecord)
+                -> senderRecord.correlationMetadata() == firstAgain.receiverOffset()));
+    }
+
+    @Test
+    public void testTransitionIsRetriedWhenPoolIsExhausted() {
+
+        ReceiverRecord<String, EmployeeChangeStateEventDto> record = createRecord(0, 1L, EmployeeEvent.CHECK);
+        AtomicInteger attempts = new AtomicInteger();
+
+        when(employeeService.changeEmployeeStateReactively(eq(1L), eq(EmployeeEvent.CHECK))).thenReturn(Mono.defer(() ->
+                attempts.incrementAndGet() == 1
+                        ? Mono.error(new StateMachinePoolExhaustedException("No state machine became available"))
+                        : Mono.just(createStatusEvent(1L, EmployeeEvent.CHECK))));
+        when(kafkaProducer.send(any(SenderRecord.class))).thenAnswer(i -> Mono.just(createSenderResult(
+                i.<SenderRecord<String, EmployeeStatusEventDto, ReceiverOffset>>getArgument(0).correlationMetadata())));
+
+        StepVerifier.create(processor.process(Flux.just(record)))
+                .expectNext(record.receiverOffset())
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        assertThat(attempts).hasValue(2);
+    }
+
+    private ReceiverRecord<String, EmployeeChangeStateEventDto> createRecord(long offset, Long employeeId, EmployeeEvent event) {
+
+        ReceiverOffset receiverOffset = mock(ReceiverOffset.class);
+
+        when(receiverOffset.topicPartition()).thenReturn(new TopicPartition("change-state", 0));
+        when(receiverOffset.offset()).thenReturn(offset);
+
+        return new ReceiverRecord<>(new ConsumerRecord<>("change-state",
+                0,
+                offset,
+                employeeId.toString(),
+                new EmployeeChangeStateEventDto(employeeId, event)),
+                receiverOffset);
+    }
+
+    @SuppressWarnings("unchecked")
+    private SenderResult<ReceiverOffset> createSenderResult(ReceiverOffset receiverOffset) {
+
+        SenderResult<ReceiverOffset> senderResult = mock(SenderResult.class);
+
+        when(senderResult.correlationMetadata()).thenReturn(receiverOffset);
+
+        return senderResult;
+    }
+
+    private EmployeeStatusEventDto createStatusEvent(Long employeeId, EmployeeEvent event) {
+        return new EmployeeStatusEventDto(event,
+                "ACCEPTED",
+                new Employee(employeeId, EmployeeState.IN_CHECK, "Aliaksei Protas", "Washington Capitals prospect", 20));
+    }
+}
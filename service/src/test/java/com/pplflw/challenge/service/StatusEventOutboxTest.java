@@ -0,0 +1,180 @@
+package com.pplflw.challenge.service;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.dto.EmployeeEventHeaders;
+import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.header.Header;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.kafka.sender.SenderRecord;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class StatusEventOutboxTest {
+
+    private static final int CAPACITY = 2;
+
+    private static final int BATCH_SIZE = 3;
+
+    private final List<List<Long>> sentBatches = new CopyOnWriteArrayList<>();
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ReactiveKafkaProducerTemplate<String, EmployeeStatusEventDto> kafkaProducer;
+
+    private StatusEventOutbox outbox;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        kafkaProducer = mock(ReactiveKafkaProducerTemplate.class);
+
+        outbox = new StatusEventOutbox(kafkaProducer, CAPACITY, meterRegistry);
+
+        ReflectionTestUtils.setField(outbox, "employeeStatusTopic", "status");
+        ReflectionTestUtils.setField(outbox, "timeoutInSeconds", 5);
+        ReflectionTestUtils.setField(outbox, "batchSize", BATCH_SIZE);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        outbox.stop();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEventsAreFlushedInBatches() {
+
+        when(kafkaProducer.send(any(Publisher.class))).thenAnswer(i -> recordBatch(i.getArgument(0)));
+
+        outbox.start();
+        // returns when all the events have been acknowledged
+        outbox.publishAll(List.of(createStatusEvent(1L), createStatusEvent(2L), createStatusEvent(3L), createStatusEvent(4L)));
+
+        assertThat(sentBatches.stream().mapToInt(List::size).sum()).isEqualTo(4);
+        assertThat(sentBatches).allSatisfy(batch -> assertThat(batch).hasSizeLessThanOrEqualTo(BATCH_SIZE));
+        assertThat(sentBatches.stream().flatMap(List::stream)).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(meterRegistry.get("employee.outbox.flush").timer().count()).isEqualTo(sentBatches.size());
+        assertThat(meterRegistry.get("employee.outbox.depth").gauge().value()).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCorrelationIdIsSentAsHeader() {
+
+        List<Optional<String>> correlationIds = new CopyOnWriteArrayList<>();
+
+        when(kafkaProducer.send(any(Publisher.class))).thenAnswer(i -> Flux.from(i
+                .<Publisher<SenderRecord<String, EmployeeStatusEventDto, ?>>>getArgument(0))
+                .doOnNext(record -> correlationIds.add(Optional.ofNullable(record.headers().lastHeader(EmployeeEventHeaders.CORRELATION_ID))
+                        .map(Header::value)
+                        .map(value -> new String(value, StandardCharsets.UTF_8))))
+                .thenMany(Flux.empty()));
+
+        outbox.start();
+        outbox.publishAll(List.of(createStatusEvent(1L), createStatusEvent(2L)), Arrays.asList("node-1", null));
+
+        assertThat(correlationIds).containsExactly(Optional.of("node-1"), Optional.empty());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFailedFlushIsRetried() {
+
+        when(kafkaProducer.send(any(Publisher.class)))
+                .thenReturn(Flux.error(new RuntimeException("Broker is down")))
+                .thenAnswer(i -> recordBatch(i.getArgument(0)));
+
+        outbox.start();
+        outbox.publish(createStatusEvent(1L));
+
+        assertThat(sentBatches).containsExactly(List.of(1L));
+        assertThat(meterRegistry.get("employee.outbox.failed").counter().count()).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFailingFlushIsRetriedUntilStopped() {
+
+        when(kafkaProducer.send(any(Publisher.class))).thenReturn(Flux.error(new RuntimeException("Broker is down")));
+
+        outbox.start();
+
+        CompletableFuture<Void> publisher = CompletableFuture.runAsync(() -> outbox.publish(createStatusEvent(1L)));
+
+        // the batch is never given up while the outbox is running, so the publisher's offsets are never committed
+        await().during(500, TimeUnit.MILLISECONDS).atMost(5, TimeUnit.SECONDS).until(() -> !publisher.isDone());
+
+        outbox.stop();
+
+        await().atMost(5, TimeUnit.SECONDS).until(publisher::isCompletedExceptionally);
+        assertThat(meterRegistry.get("employee.outbox.failed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPublishBlocksWhenFull() throws Exception {
+
+        Sinks.Empty<Void> brokerAvailable = Sinks.empty();
+
+        // the broker doesn't acknowledge anything until it becomes available
+        when(kafkaProducer.send(any(Publisher.class))).thenAnswer(i -> brokerAvailable.asMono()
+                .thenMany(recordBatch(i.getArgument(0))));
+
+        outbox.start();
+
+        // taken by the flusher
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> outbox.publish(createStatusEvent(1L)));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> outbox.depth() == 0);
+        // fill the queue up
+        CompletableFuture<Void> queued = CompletableFuture.runAsync(() -> outbox.publishAll(List.of(createStatusEvent(2L), createStatusEvent(3L))));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> outbox.depth() == CAPACITY);
+
+        CompletableFuture<Void> blocked = CompletableFuture.runAsync(() -> outbox.publish(createStatusEvent(4L)));
+
+        // nobody returns before the broker has acknowledged the events
+        await().during(200, TimeUnit.MILLISECONDS).atMost(5, TimeUnit.SECONDS)
+                .until(() -> !first.isDone() && !queued.isDone() && !blocked.isDone() && outbox.depth() == CAPACITY);
+
+        brokerAvailable.tryEmitEmpty();
+
+        CompletableFuture.allOf(first, queued, blocked).get(5, TimeUnit.SECONDS);
+
+        assertThat(sentBatches.stream().mapToInt(List::size).sum()).isEqualTo(4);
+    }
+
+    private <T> Flux<T> recordBatch(Publisher<SenderRecord<String, EmployeeStatusEventDto, EmployeeStatusEventDto>> records) {
+        return Flux.from(records)
+                .map(record -> record.value().getEmployee().getId())
+                .collectList()
+                .doOnNext(sentBatches::add)
+                .thenMany(Flux.empty());
+    }
+
+    private EmployeeStatusEventDto createStatusEvent(Long employeeId) {
+        return new EmployeeStatusEventDto(EmployeeEvent.CHECK,
+                "ACCEPTED",
+                new Employee(employeeId, EmployeeState.IN_CHECK, "Aliaksei Protas", "Washington Capitals prospect", 20));
+    }
+}
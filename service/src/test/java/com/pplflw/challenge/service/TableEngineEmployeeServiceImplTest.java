@@ -0,0 +1,10 @@
+package com.pplflw.challenge.service;
+
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Runs {@link EmployeeServiceImplTest} with the table transition engine.
+ */
+@TestPropertySource(properties = "com.pplflw.challenge.state-machine.engine=table")
+class TableEngineEmployeeServiceImplTest extends EmployeeServiceImplTest {
+}
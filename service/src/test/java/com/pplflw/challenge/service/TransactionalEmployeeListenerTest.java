@@ -0,0 +1,135 @@
+package com.pplflw.challenge.service;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.dto.EmployeeAddEventDto;
+import com.pplflw.challenge.dto.EmployeeChangeStateEventDto;
+import com.pplflw.challenge.dto.EmployeeEventHeaders;
+import com.pplflw.challenge.dto.EmployeeStatusEventDto;
+import com.pplflw.challenge.service.snapshot.ConsumedOffsets;
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import com.pplflw.challenge.storage.EmployeeStorage;
+import com.pplflw.challenge.storage.InMemoryEmployeeStorage;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TransactionalEmployeeListenerTest {
+
+    private final Employee employee = new Employee(1L, EmployeeState.ADDED, "Name", "Contract", 30);
+
+    private final EmployeeStorage employeeStorage = new InMemoryEmployeeStorage();
+
+    private final ConsumedOffsets consumedOffsets = new ConsumedOffsets();
+
+    private EmployeeService employeeService;
+
+    private KafkaTemplate<String, EmployeeStatusEventDto> kafkaTemplate;
+
+    private TransactionalEmployeeListener listener;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        employeeService = mock(EmployeeService.class);
+        kafkaTemplate = mock(KafkaTemplate.class);
+
+        listener = new TransactionalEmployeeListener(employeeService, employeeStorage, consumedOffsets, kafkaTemplate);
+
+        ReflectionTestUtils.setField(listener, "employeeStatusTopic", "status");
+
+        employeeStorage.updateEmployee(employee);
+
+        // the listener container's transaction
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testEmployeesAreSavedAfterCommit() {
+
+        Employee checked = new Employee(1L, EmployeeState.IN_CHECK, "Name", "Contract", 30);
+        EmployeeStatusEventDto statusEvent = new EmployeeStatusEventDto(EmployeeEvent.CHECK, "ACCEPTED", checked);
+
+        when(employeeService.applyEmployeeStates(any())).thenReturn(new EmployeeStateChanges(List.of(statusEvent),
+                List.of(1),
+                List.of(checked)));
+
+        listener.listenEmployeeChangeStateEventBatch(List.of(new EmployeeChangeStateEventDto(2L, EmployeeEvent.CHECK),
+                        new EmployeeChangeStateEventDto(1L, EmployeeEvent.CHECK)),
+                List.of("change-state", "change-state"),
+                List.of(0, 0),
+                List.of(10L, 11L),
+                List.of(Map.of(), Map.of(EmployeeEventHeaders.CORRELATION_ID, "node-1".getBytes(StandardCharsets.UTF_8))));
+
+        ArgumentCaptor<ProducerRecord<String, EmployeeStatusEventDto>> record = ArgumentCaptor.forClass(ProducerRecord.class);
+
+        verify(kafkaTemplate, times(1)).send(record.capture());
+
+        assertThat(record.getValue().value()).isSameAs(statusEvent);
+        assertThat(record.getValue().headers().lastHeader(EmployeeEventHeaders.CORRELATION_ID).value())
+                .isEqualTo("node-1".getBytes(StandardCharsets.UTF_8));
+
+        // not committed yet
+        assertThat(employeeStorage.getEmployee(1L)).contains(employee);
+
+        commit();
+
+        assertThat(employeeStorage.getEmployee(1L)).contains(checked);
+        assertThat(consumedOffsets.checkpoint(() -> {
+        })).isEqualTo(Map.of(new TopicPartition("change-state", 0), 12L));
+    }
+
+    @Test
+    public void testReplayedRecordsOnlyUpdateStorage() {
+
+        TopicPartition partition = new TopicPartition("add", 0);
+
+        // restored from a snapshot taken at offset 0, offsets up to 2 had been committed
+        consumedOffsets.restore(Map.of(partition, 0L));
+        consumedOffsets.onPartitionsAssigned(Map.of(partition, 2L), mock(ConsumerSeekAware.ConsumerSeekCallback.class));
+
+        Employee replayed = new Employee(2L, EmployeeState.ADDED, "Replayed", "Contract", 30);
+        Employee added = new Employee(3L, EmployeeState.ADDED, "Added", "Contract", 30);
+
+        listener.listenEmployeeAddEventBatch(List.of(new EmployeeAddEventDto(replayed),
+                        new EmployeeAddEventDto(added)),
+                List.of("add", "add"),
+                List.of(0, 0),
+                List.of(1L, 2L));
+
+        verify(kafkaTemplate, times(1)).send(argThat((ProducerRecord<String, EmployeeStatusEventDto> record) ->
+                record.value().getEmployee() == added));
+
+        commit();
+
+        assertThat(employeeStorage.getEmployee(2L)).isEqualTo(Optional.of(replayed));
+        assertThat(employeeStorage.getEmployee(3L)).isEqualTo(Optional.of(added));
+    }
+
+    private static void commit() {
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+    }
+}
@@ -0,0 +1,110 @@
+package com.pplflw.challenge.service.snapshot;
+
+import com.pplflw.challenge.domain.Employee;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import com.pplflw.challenge.storage.InMemoryEmployeeStorage;
+import com.pplflw.challenge.storage.SnapshottingEmployeeStorage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class SnapshotManagerTest {
+
+    private static final String TOPIC = "test-employee-add-topic";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRestartResumesFromSnapshotOffsets() {
+
+        SnapshottingEmployeeStorage storage = new SnapshottingEmployeeStorage(new InMemoryEmployeeStorage());
+        ConsumedOffsets consumedOffsets = new ConsumedOffsets();
+        SnapshotManager snapshotManager = createSnapshotManager(storage, consumedOffsets, "record");
+
+        snapshotManager.start();
+
+        consumedOffsets.process(TOPIC, 0, 41, () -> storage.updateEmployee(createEmployee(1L)));
+        consumedOffsets.processBatch(List.of(TOPIC, TOPIC, TOPIC), List.of(1, 1, 1), List.of(5L, 6L, 7L),
+                () -> storage.updateEmployees(List.of(createEmployee(2L), createEmployee(3L), createEmployee(4L))));
+
+        assertThat(snapshotManager.snapshot()).isTrue();
+        // nothing has been consumed since the previous snapshot
+        assertThat(snapshotManager.snapshot()).isFalse();
+
+        snapshotManager.stop();
+
+        SnapshottingEmployeeStorage restartedStorage = new SnapshottingEmployeeStorage(new InMemoryEmployeeStorage());
+        ConsumedOffsets restartedOffsets = new ConsumedOffsets();
+        SnapshotManager restartedManager = createSnapshotManager(restartedStorage, restartedOffsets, "batch");
+
+        restartedManager.start();
+
+        assertThat(restartedStorage.getEmployee(1L)).contains(createEmployee(1L));
+        assertThat(restartedStorage.getEmployee(4L)).contains(createEmployee(4L));
+
+        ConsumerSeekAware.ConsumerSeekCallback callback = mock(ConsumerSeekAware.ConsumerSeekCallback.class);
+
+        restartedOffsets.onPartitionsAssigned(Map.of(
+                new TopicPartition(TOPIC, 0), 0L,
+                new TopicPartition(TOPIC, 1), 0L,
+                new TopicPartition(TOPIC, 2), 0L), callback);
+        // partitions are sought on their first assignment only
+        restartedOffsets.onPartitionsAssigned(Map.of(new TopicPartition(TOPIC, 0), 50L), callback);
+
+        verify(callback).seek(TOPIC, 0, 42L);
+        verify(callback).seek(TOPIC, 1, 8L);
+        verify(callback).seekToBeginning(TOPIC, 2);
+        verifyNoMoreInteractions(callback);
+
+        restartedManager.stop();
+    }
+
+    @Test
+    public void testReactiveModeLeavesSnapshotsOff() throws IOException {
+
+        SnapshottingEmployeeStorage storage = new SnapshottingEmployeeStorage(new InMemoryEmployeeStorage());
+        ConsumedOffsets consumedOffsets = new ConsumedOffsets();
+        SnapshotManager snapshotManager = createSnapshotManager(storage, consumedOffsets, "reactive");
+
+        snapshotManager.start();
+
+        consumedOffsets.process(TOPIC, 0, 41, () -> storage.updateEmployee(createEmployee(1L)));
+
+        snapshotManager.stop();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    private SnapshotManager createSnapshotManager(SnapshottingEmployeeStorage storage,
+                                                  ConsumedOffsets consumedOffsets,
+                                                  String processingMode) {
+
+        SnapshotManager snapshotManager = new SnapshotManager(storage, consumedOffsets, directory, 2, new SimpleMeterRegistry());
+
+        ReflectionTestUtils.setField(snapshotManager, "interval", Duration.ofHours(1));
+        ReflectionTestUtils.setField(snapshotManager, "processingMode", processingMode);
+
+        return snapshotManager;
+    }
+
+    private static Employee createEmployee(Long id) {
+        return new Employee(id, EmployeeState.ADDED, "Employee " + id, "Contract " + id, 30);
+    }
+}
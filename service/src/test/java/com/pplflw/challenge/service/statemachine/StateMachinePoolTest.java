@@ -0,0 +1,64 @@
+package com.pplflw.challenge.service.statemachine;
+
+import com.pplflw.challenge.statemachine.EmployeeEvent;
+import com.pplflw.challenge.statemachine.EmployeeState;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.statemachine.StateMachine;
+import org.springframework.statemachine.config.StateMachineFactory;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+class StateMachinePoolTest {
+
+    @Autowired
+    private StateMachineFactory<EmployeeState, EmployeeEvent> stateMachineFactory;
+
+    /**
+     * Checks a reused machine is reset to the requested state and doesn't keep the previous employee's state.
+     */
+    @Test
+    public void testBorrowedMachineIsRehydrated() {
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        StateMachinePool pool = new StateMachinePool(stateMachineFactory, 1, Duration.ofMillis(100), meterRegistry);
+
+        StateMachine<EmployeeState, EmployeeEvent> stateMachine = pool.borrow(EmployeeState.IN_CHECK);
+
+        assertThat(stateMachine.getState().getId()).isEqualTo(EmployeeState.IN_CHECK);
+
+        stateMachine.sendEvent(Mono.just(MessageBuilder.withPayload(EmployeeEvent.APPROVE).build())).blockFirst();
+
+        assertThat(stateMachine.getState().getId()).isEqualTo(EmployeeState.APPROVED);
+
+        pool.release(stateMachine);
+
+        StateMachine<EmployeeState, EmployeeEvent> reused = pool.borrow(EmployeeState.ADDED);
+
+        assertThat(reused).isSameAs(stateMachine);
+        assertThat(reused.getState().getId()).isEqualTo(EmployeeState.ADDED);
+
+        assertThat(meterRegistry.get("employee.statemachine.pool.size").gauge().value()).isEqualTo(1);
+        assertThat(meterRegistry.get("employee.statemachine.pool.idle").gauge().value()).isZero();
+        assertThat(meterRegistry.get("employee.statemachine.pool.borrow").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    public void testExhaustedPoolThrows() {
+
+        StateMachinePool pool = new StateMachinePool(stateMachineFactory, 1, Duration.ofMillis(10), new SimpleMeterRegistry());
+
+        pool.borrow(EmployeeState.ADDED);
+
+        assertThrows(IllegalStateException.class, () -> pool.borrow(EmployeeState.ADDED));
+    }
+}
@@ -2,18 +2,27 @@ package com.pplflw.challenge.service.statemachine;
 
 import com.pplflw.challenge.statemachine.EmployeeEvent;
 import com.pplflw.challenge.statemachine.EmployeeState;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.statemachine.StateMachine;
-import org.springframework.statemachine.StateMachineEventResult;
+import org.springframework.statemachine.StateMachineEventResult.ResultType;
 import org.springframework.statemachine.config.StateMachineFactory;
-import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+/**
+ * Runs the workflow scenarios against both {@link EmployeeTransitionEngine} implementations.
+ */
 @SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
 class StateMachineTests {
 
     @Autowired
@@ -31,68 +40,104 @@ class StateMachineTests {
         assertThat(stateMachine.getState().getId()).isEqualTo(EmployeeState.ADDED);
     }
 
+    Stream<EmployeeTransitionEngine> engines() {
+        return Stream.of(springEngine(), tableEngine());
+    }
+
     /**
      * Tests state machine 'happy-end' path.
      */
-    @Test
-    public void testHappyEndPath() {
-
-        StateMachine<EmployeeState, EmployeeEvent> stateMachine = stateMachineFactory.getStateMachine();
+    @ParameterizedTest
+    @MethodSource("engines")
+    public void testHappyEndPath(EmployeeTransitionEngine engine) {
 
-        assertThat(stateMachine.getState().getId()).isEqualTo(EmployeeState.ADDED);
+        EmployeeState state = EmployeeState.ADDED;
 
-        stateMachine.sendEvent(Mono.just(MessageBuilder.withPayload(EmployeeEvent.CHECK).build())).blockFirst();
+        state = fire(engine, state, EmployeeEvent.CHECK, ResultType.ACCEPTED);
 
-        assertThat(stateMachine.getState().getId()).isEqualTo(EmployeeState.IN_CHECK);
+        assertThat(state).isEqualTo(EmployeeState.IN_CHECK);
 
-        stateMachine.sendEvent(Mono.just(MessageBuilder.withPayload(EmployeeEvent.REJECT).build())).blockFirst();
+        state = fire(engine, state, EmployeeEvent.REJECT, ResultType.ACCEPTED);
 
-        assertThat(stateMachine.getState().getId()).isEqualTo(EmployeeState.ADDED);
+        assertThat(state).isEqualTo(EmployeeState.ADDED);
 
-        stateMachine.sendEvent(Mono.just(MessageBuilder.withPayload(EmployeeEvent.CHECK).build())).blockFirst();
-        stateMachine.sendEvent(Mono.just(MessageBuilder.withPayload(EmployeeEvent.APPROVE).build())).blockFirst();
+        state = fire(engine, state, EmployeeEvent.CHECK, ResultType.ACCEPTED);
+        state = fire(engine, state, EmployeeEvent.APPROVE, ResultType.ACCEPTED);
 
-        assertThat(stateMachine.getState().getId()).isEqualTo(EmployeeState.APPROVED);
+        assertThat(state).isEqualTo(EmployeeState.APPROVED);
 
-        stateMachine.sendEvent(Mono.just(MessageBuilder.withPayload(EmployeeEvent.ACTIVATE).build())).blockFirst();
+        state = fire(engine, state, EmployeeEvent.ACTIVATE, ResultType.ACCEPTED);
 
-        assertThat(stateMachine.getState().getId()).isEqualTo(EmployeeState.ACTIVE);
+        assertThat(state).isEqualTo(EmployeeState.ACTIVE);
     }
 
     /**
      * Tests state machine DENIED responses.
      */
-    @Test
-    public void testDeniedResponses() {
+    @ParameterizedTest
+    @MethodSource("engines")
+    public void testDeniedResponses(EmployeeTransitionEngine engine) {
 
-        StateMachine<EmployeeState, EmployeeEvent> stateMachine = stateMachineFactory.getStateMachine();
+        EmployeeState state = EmployeeState.ADDED;
 
-        assertThat(stateMachine.getState().getId()).isEqualTo(EmployeeState.ADDED);
+        state = fire(engine, state, EmployeeEvent.REJECT, ResultType.DENIED);
+        state = fire(engine, state, EmployeeEvent.APPROVE, ResultType.DENIED);
 
-        StateMachineEventResult<EmployeeState, EmployeeEvent> result
-                = stateMachine.sendEvent(Mono.just(MessageBuilder.withPayload(EmployeeEvent.REJECT).build())).blockFirst();
+        assertThat(state).isEqualTo(EmployeeState.ADDED);
 
-        assertThat(result).isNotNull();
-        assertThat(result.getResultType()).isEqualTo(StateMachineEventResult.ResultType.DENIED);
-        assertThat(stateMachine.getState().getId()).isEqualTo(EmployeeState.ADDED);
+        state = fire(engine, state, EmployeeEvent.CHECK, ResultType.ACCEPTED);
+        state = fire(engine, state, EmployeeEvent.ACTIVATE, ResultType.DENIED);
 
-        stateMachine.sendEvent(Mono.just(MessageBuilder.withPayload(EmployeeEvent.APPROVE).build())).blockFirst();
+        assertThat(state).isEqualTo(EmployeeState.IN_CHECK);
 
-        assertThat(stateMachine.getState().getId()).isEqualTo(EmployeeState.ADDED);
+        state = fire(engine, state, EmployeeEvent.APPROVE, ResultType.ACCEPTED);
+        state = fire(engine, state, EmployeeEvent.CHECK, ResultType.DENIED);
+
+        assertThat(state).isEqualTo(EmployeeState.APPROVED);
+
+        state = fire(engine, state, EmployeeEvent.ACTIVATE, ResultType.ACCEPTED);
+        state = fire(engine, state, EmployeeEvent.REJECT, ResultType.DENIED);
+
+        assertThat(state).isEqualTo(EmployeeState.ACTIVE);
+    }
+
+    /**
+     * Checks both engines agree on every state and event combination.
+     */
+    @Test
+    public void testEnginesAreEquivalent() {
+
+        EmployeeTransitionEngine springEngine = springEngine();
+        EmployeeTransitionEngine tableEngine = tableEngine();
+
+        for (EmployeeState state : EmployeeState.values()) {
+            for (EmployeeEvent event : EmployeeEvent.values()) {
+                assertThat(tableEngine.fire(state, event).block())
+                        .as("%s x %s", state, event)
+                        .isEqualTo(springEngine.fire(state, event).block());
+            }
+        }
+    }
 
-        stateMachine.sendEvent(Mono.just(MessageBuilder.withPayload(EmployeeEvent.CHECK).build())).blockFirst();
-        stateMachine.sendEvent(Mono.just(MessageBuilder.withPayload(EmployeeEvent.ACTIVATE).build())).blockFirst();
+    private EmployeeState fire(EmployeeTransitionEngine engine,
+                               EmployeeState state,
+                               EmployeeEvent event,
+                               ResultType expectedResultType) {
 
-        assertThat(stateMachine.getState().getId()).isEqualTo(EmployeeState.IN_CHECK);
+        EmployeeTransition transition = engine.fire(state, event).block();
 
-        stateMachine.sendEvent(Mono.just(MessageBuilder.withPayload(EmployeeEvent.APPROVE).build())).blockFirst();
-        stateMachine.sendEvent(Mono.just(MessageBuilder.withPayload(EmployeeEvent.CHECK).build())).blockFirst();
+        assertThat(transition).isNotNull();
+        assertThat(transition.getResultType()).isEqualTo(expectedResultType);
 
-        assertThat(stateMachine.getState().getId()).isEqualTo(EmployeeState.APPROVED);
+        return transition.getState();
+    }
 
-        stateMachine.sendEvent(Mono.just(MessageBuilder.withPayload(EmployeeEvent.ACTIVATE).build())).blockFirst();
-        stateMachine.sendEvent(Mono.just(MessageBuilder.withPayload(EmployeeEvent.REJECT).build())).blockFirst();
+    private EmployeeTransitionEngine springEngine() {
+        return new SpringStateMachineTransitionEngine(
+                new StateMachinePool(stateMachineFactory, 1, Duration.ofSeconds(1), new SimpleMeterRegistry()));
+    }
 
-        assertThat(stateMachine.getState().getId()).isEqualTo(EmployeeState.ACTIVE);
+    private EmployeeTransitionEngine tableEngine() {
+        return new TableTransitionEngine(stateMachineFactory.getStateMachine());
     }
 }